@@ -0,0 +1,85 @@
+package io.pocat.benchmarks.fixture;
+
+import io.pocat.gateway.connector.AbstractExchange;
+import io.pocat.gateway.connector.Connection;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.ExchangeContext;
+
+import java.util.*;
+
+/**
+ * Exchange which behaves like a parsed HTTP request, without a network connection behind it.
+ */
+public class FixtureExchange extends AbstractExchange {
+    private static final ExchangeContext DISCARD_CONTEXT = new ExchangeContext() {
+        @Override
+        public Connection getConnection() {
+            return null;
+        }
+
+        @Override
+        public void write(Exchange exchange) {
+            // discard response
+        }
+    };
+
+    private final Map<String, String> requestHeaders;
+    private final byte[] requestContents;
+    private final Map<String, String> responseHeaders = new HashMap<>();
+    private byte[] responseContents;
+
+    public FixtureExchange() {
+        this(Collections.emptyMap(), new byte[0]);
+    }
+
+    public FixtureExchange(Map<String, String> requestHeaders, byte[] requestContents) {
+        this.requestHeaders = requestHeaders;
+        this.requestContents = requestContents;
+        setContext(DISCARD_CONTEXT);
+    }
+
+    @Override
+    public String getCorrelationId() {
+        return getTxId();
+    }
+
+    @Override
+    public String getRequestHeader(String headerName) {
+        return requestHeaders.get(headerName);
+    }
+
+    @Override
+    public Collection<String> getRequestHeaderNames() {
+        return requestHeaders.keySet();
+    }
+
+    @Override
+    public byte[] getRequestContents() {
+        return requestContents;
+    }
+
+    @Override
+    public Set<String> getResponseHeaderNames() {
+        return responseHeaders.keySet();
+    }
+
+    @Override
+    public String getResponseHeader(String headerName) {
+        return responseHeaders.get(headerName);
+    }
+
+    @Override
+    public void setResponseHeader(String headerName, String headerValue) {
+        responseHeaders.put(headerName, headerValue);
+    }
+
+    @Override
+    public byte[] getResponseContents() {
+        return responseContents;
+    }
+
+    @Override
+    public void setResponseContents(byte[] contents) {
+        this.responseContents = contents;
+    }
+}
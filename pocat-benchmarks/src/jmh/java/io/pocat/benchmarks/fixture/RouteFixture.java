@@ -0,0 +1,94 @@
+package io.pocat.benchmarks.fixture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import io.pocat.gateway.route.http.HttpErrorTemplate;
+import io.pocat.gateway.route.http.HttpRoute;
+import io.pocat.gateway.route.http.config.HttpErrorTemplateType;
+import io.pocat.gateway.route.http.config.HttpRouteGroupType;
+import io.pocat.gateway.route.http.config.HttpRouteType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes of the rest-group-1 test deployment, scaled out to any number of services.
+ * Route i is a copy of rest-api1 or rest-api2 in turn, mounted under "/api/v1/svc{i}" instead of "/api/v1".
+ */
+public class RouteFixture {
+    private static final String GROUP_RESOURCE = "/routes/rest-group-1.xml";
+    private static final String[] ROUTE_RESOURCES = {"/routes/rest-group-1/rest-api1.xml", "/routes/rest-group-1/rest-api2.xml"};
+    private static final String PATH_PREFIX = "/api/v1";
+
+    private static final ObjectMapper MAPPER = new XmlMapper();
+
+    public static List<HttpRoute> scaledRoutes(int count) {
+        byte[][] descriptors = new byte[ROUTE_RESOURCES.length][];
+        for(int i = 0; i < ROUTE_RESOURCES.length; i++) {
+            descriptors[i] = readResource(ROUTE_RESOURCES[i]);
+        }
+        List<HttpRoute> routes = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            HttpRouteType descriptor = readValue(descriptors[i % descriptors.length], HttpRouteType.class);
+            descriptor.setName(descriptor.getName() + "-svc" + i);
+            descriptor.setPath(servicePrefix(i) + descriptor.getPath().substring(PATH_PREFIX.length()));
+            routes.add(new HttpRoute(descriptor));
+        }
+        return routes;
+    }
+
+    /**
+     * @return a request path matched by route i of {@link #scaledRoutes}
+     */
+    public static String matchedPath(int i) {
+        if(i % ROUTE_RESOURCES.length == 0) {
+            // /api/v1/{username+}/stage/{stage_num}
+            return servicePrefix(i) + "/kim/devices/stage/" + (i % 7);
+        }
+        // /api/v1/{username}/status
+        return servicePrefix(i) + "/kim/status";
+    }
+
+    /**
+     * @return a request path which goes down to route i of {@link #scaledRoutes} but is not matched
+     */
+    public static String unmatchedPath(int i) {
+        return servicePrefix(i) + "/kim/profile";
+    }
+
+    public static List<HttpErrorTemplate> groupErrorTemplates() {
+        HttpRouteGroupType descriptor = readValue(readResource(GROUP_RESOURCE), HttpRouteGroupType.class);
+        List<HttpErrorTemplate> templates = new ArrayList<>();
+        for(HttpErrorTemplateType templateType:descriptor.getErrorTemplates()) {
+            templates.add(new HttpErrorTemplate(templateType));
+        }
+        return templates;
+    }
+
+    private static String servicePrefix(int i) {
+        return PATH_PREFIX + "/svc" + i;
+    }
+
+    private static byte[] readResource(String name) {
+        try (InputStream is = RouteFixture.class.getResourceAsStream(name)) {
+            if(is == null) {
+                throw new IllegalStateException("Fixture [" + name + "] is not found");
+            }
+            return is.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T readValue(byte[] descriptor, Class<T> type) {
+        try (InputStream is = new ByteArrayInputStream(descriptor)) {
+            return MAPPER.readValue(is, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
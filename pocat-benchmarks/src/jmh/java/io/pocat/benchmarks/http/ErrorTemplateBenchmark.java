@@ -0,0 +1,64 @@
+package io.pocat.benchmarks.http;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.http.HttpExchange;
+import io.pocat.gateway.connector.http.HttpExchangeFixture;
+import io.pocat.gateway.protocol.CompiledTemplate;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.http.HttpProtocolErrorHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render the 404 error body of rest-api1 with path variables, error code and message.
+ * replaceVariables is the regex based rendering of protocol error handler, compiled is the template compiled at load time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ErrorTemplateBenchmark {
+    private static final String JSON_TEMPLATE = "{\"error-code\":\"${error.code}\", \"error-message\":\"Stage ${path:stage_num} of ${path:username} not found\"}";
+    private static final String XML_TEMPLATE = "\n                        <?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+            "                        <response>\n" +
+            "                            <error-code>${error.code}</error-code>\n" +
+            "                            <error-message>Stage ${path:stage_num} of ${path:username} not found</error-message>\n" +
+            "                        </response>\n                    ";
+
+    @Param({"JSON", "XML"})
+    public String format;
+
+    private String template;
+    private CompiledTemplate compiled;
+    private ExposedErrorHandler errorHandler;
+    private HttpExchange exchange;
+    private RouteProcessException error;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        template = format.equals("JSON") ? JSON_TEMPLATE : XML_TEMPLATE;
+        compiled = CompiledTemplate.compile(template);
+        errorHandler = new ExposedErrorHandler();
+        exchange = HttpExchangeFixture.create("GET", "/api/v1/svc0/kim/devices/stage/3", HttpExchangeFixture.CHROME_HEADERS, null);
+        exchange.setAttribute("path:username", "kim/devices");
+        exchange.setAttribute("path:stage_num", "3");
+        error = new RouteProcessException(40400, "Not found");
+    }
+
+    @Benchmark
+    public byte[] replaceVariables() {
+        return errorHandler.replace(template, exchange, error).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] compiled() {
+        return compiled.render(exchange, error);
+    }
+
+    private static class ExposedErrorHandler extends HttpProtocolErrorHandler {
+        String replace(String template, Exchange exchange, RouteProcessException e) {
+            return replaceVariables(template, exchange, e);
+        }
+    }
+}
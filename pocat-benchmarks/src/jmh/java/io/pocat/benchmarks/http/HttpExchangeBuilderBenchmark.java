@@ -0,0 +1,61 @@
+package io.pocat.benchmarks.http;
+
+import io.pocat.gateway.connector.http.HttpExchange;
+import io.pocat.gateway.connector.http.HttpExchangeFixture;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build an exchange from a decoded request with header set of a real browser, as connection handler does for every request.
+ * Content negotiation of error responses runs on the same exchange, so it is measured here too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class HttpExchangeBuilderBenchmark {
+    private static final Set<String> ERROR_MIME_TYPES = Set.of("application/json", "application/xml");
+    private static final byte[] JSON_BODY = "{\"device\":\"kim-phone\",\"stage\":3,\"tags\":[\"mobile\",\"ios\"],\"enabled\":true}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"CHROME", "FIREFOX", "SAFARI"})
+    public String browser;
+
+    private Map<String, String> headers;
+    private HttpExchange exchange;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (browser) {
+            case "CHROME":
+                headers = HttpExchangeFixture.CHROME_HEADERS;
+                break;
+            case "FIREFOX":
+                headers = HttpExchangeFixture.FIREFOX_HEADERS;
+                break;
+            case "SAFARI":
+                headers = HttpExchangeFixture.SAFARI_HEADERS;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown browser [" + browser + "]");
+        }
+        exchange = HttpExchangeFixture.create("GET", "/api/v1/svc1/kim/status", headers, null);
+    }
+
+    @Benchmark
+    public HttpExchange get() {
+        return HttpExchangeFixture.create("GET", "/api/v1/svc1/kim/status?detail=true&lang=ko", headers, null);
+    }
+
+    @Benchmark
+    public HttpExchange post() {
+        return HttpExchangeFixture.create("POST", "/api/v1/svc0/kim/devices/stage/3", headers, JSON_BODY);
+    }
+
+    @Benchmark
+    public String negotiate() {
+        return exchange.getAcceptableMimeType(ERROR_MIME_TYPES);
+    }
+}
@@ -0,0 +1,114 @@
+package io.pocat.benchmarks.http;
+
+import io.pocat.benchmarks.fixture.RouteFixture;
+import io.pocat.gateway.connector.http.HttpExchange;
+import io.pocat.gateway.connector.http.HttpExchangeFixture;
+import io.pocat.gateway.message.MessageDelivery;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.http.HttpErrorTemplate;
+import io.pocat.gateway.route.http.HttpMessageConverter;
+import io.pocat.gateway.route.http.HttpProtocolErrorHandler;
+import io.pocat.platform.gateway.MessageConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convert a request exchange to upstream message, and an upstream outcome back to response.
+ * Outcomes are mixed like a busy gateway: 90 success replies, 8 not found replies and 2 timeouts of every 100.
+ * Failures go through error templates of rest-group-1 as upstream task does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class HttpMessageConverterBenchmark {
+    private static final int OUTCOME_NUM = 100;
+    private static final int NOT_FOUND_NUM = 8;
+    private static final int TIMEOUT_NUM = 2;
+    private static final byte[] REPLY_BODY = ("{\"username\":\"kim\",\"status\":\"ACTIVE\",\"devices\":[{\"id\":\"d-1\",\"stage\":3},{\"id\":\"d-2\",\"stage\":1}]," +
+            "\"updatedAt\":\"2024-01-15T09:30:00Z\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final HttpMessageConverter converter = new HttpMessageConverter();
+    private HttpProtocolErrorHandler errorHandler;
+    private HttpExchange request;
+    private HttpExchange response;
+    private Outcome[] outcomes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        errorHandler = new HttpProtocolErrorHandler();
+        for(HttpErrorTemplate template:RouteFixture.groupErrorTemplates()) {
+            errorHandler.addErrorTemplate(template);
+        }
+        request = HttpExchangeFixture.create("GET", "/api/v1/svc1/kim/status?detail=true&lang=ko", HttpExchangeFixture.FIREFOX_HEADERS, null);
+        response = HttpExchangeFixture.create("GET", "/api/v1/svc1/kim/status", HttpExchangeFixture.SAFARI_HEADERS, null);
+
+        outcomes = new Outcome[OUTCOME_NUM];
+        for(int i = 0; i < OUTCOME_NUM; i++) {
+            if(i % (OUTCOME_NUM / TIMEOUT_NUM) == 0) {
+                outcomes[i] = new Outcome(null, new RouteProcessException(MessageConstants.GATEWAY_TIMEOUT, "Gateway timeout"));
+            } else if(i % (OUTCOME_NUM / NOT_FOUND_NUM) == 1) {
+                outcomes[i] = new Outcome(reply(MessageConstants.NOT_FOUND, "Stage of kim not found".getBytes(StandardCharsets.UTF_8)), null);
+            } else {
+                outcomes[i] = new Outcome(reply(0, REPLY_BODY), null);
+            }
+        }
+    }
+
+    @Benchmark
+    public MessageDelivery request() {
+        return converter.convertExchangeToMessage(request);
+    }
+
+    @Benchmark
+    public int responseMixed() {
+        Outcome outcome = outcomes[next];
+        next = next + 1 == OUTCOME_NUM ? 0 : next + 1;
+        if(outcome.error != null) {
+            // expired before reply
+            errorHandler.handleError(response, outcome.error);
+        } else {
+            int statusCode = Integer.parseInt(outcome.reply.getHeaders().get(MessageConstants.STATUS_CODE_HEADER_NAME));
+            if(statusCode != 0) {
+                errorHandler.handleError(response, new RouteProcessException(statusCode, new String(outcome.reply.getPayload(), StandardCharsets.UTF_8)));
+            } else {
+                converter.convertMessageToExchange(outcome.reply, response);
+            }
+        }
+        return response.getResponseStatus();
+    }
+
+    private static MessageDelivery reply(int statusCode, byte[] payload) {
+        Map<String, String> rawHeaders = new HashMap<>();
+        rawHeaders.put(MessageConstants.STATUS_CODE_HEADER_NAME, String.valueOf(statusCode));
+        rawHeaders.put(MessageHeaders.CONTENT_TYPE_HEADER_NAME, "application/json");
+        rawHeaders.put(MessageHeaders.TX_ID_HEADER_NAME, "0000018d0a1b2c3d-0001");
+        MessageHeaders headers = new MessageHeaders(rawHeaders);
+        return new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return payload;
+            }
+        };
+    }
+
+    private static class Outcome {
+        private final MessageDelivery reply;
+        private final RouteProcessException error;
+
+        Outcome(MessageDelivery reply, RouteProcessException error) {
+            this.reply = reply;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.pocat.benchmarks.http;
+
+import io.pocat.benchmarks.fixture.RouteFixture;
+import io.pocat.gateway.connector.http.HttpExchange;
+import io.pocat.gateway.connector.http.HttpExchangeFixture;
+import io.pocat.gateway.route.Route;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.http.HttpRoute;
+import io.pocat.gateway.route.http.HttpRouter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Find route of a request among {@code routes} routes scaled from rest-group-1, binding path variables on the way.
+ * Requests are spread over all routes so lookups do not stay in one branch of path tree.
+ * Mixed lookup is 9 matched requests to 1 not found request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class HttpRouterBenchmark {
+    private static final int REQUEST_NUM = 1024;
+    private static final int NOT_FOUND_RATIO = 10;
+
+    @Param({"100", "2000", "10000"})
+    public int routes;
+
+    private HttpRouter router;
+    private HttpExchange[] matched;
+    private HttpExchange[] unmatched;
+    private HttpExchange[] mixed;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        router = new HttpRouter();
+        List<HttpRoute> httpRoutes = RouteFixture.scaledRoutes(routes);
+        for(HttpRoute route:httpRoutes) {
+            router.addRoute(route);
+        }
+        matched = new HttpExchange[REQUEST_NUM];
+        unmatched = new HttpExchange[REQUEST_NUM];
+        mixed = new HttpExchange[REQUEST_NUM];
+        for(int i = 0; i < REQUEST_NUM; i++) {
+            // spread requests over routes with a stride co-prime to route num
+            int routeIndex = (int) ((i * 7919L) % routes);
+            matched[i] = HttpExchangeFixture.create("GET", RouteFixture.matchedPath(routeIndex), HttpExchangeFixture.FIREFOX_HEADERS, null);
+            unmatched[i] = HttpExchangeFixture.create("GET", RouteFixture.unmatchedPath(routeIndex), HttpExchangeFixture.FIREFOX_HEADERS, null);
+            mixed[i] = i % NOT_FOUND_RATIO == 0 ? unmatched[i] : matched[i];
+        }
+    }
+
+    @Benchmark
+    public Route matched() throws RouteProcessException {
+        return router.findRoute(matched[nextIndex()]);
+    }
+
+    @Benchmark
+    public int notFound() {
+        try {
+            router.findRoute(unmatched[nextIndex()]);
+            return 0;
+        } catch (RouteProcessException e) {
+            return e.getErrorCode();
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        try {
+            return router.findRoute(mixed[nextIndex()]);
+        } catch (RouteProcessException e) {
+            return e.getErrorCode();
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (REQUEST_NUM - 1);
+        return next;
+    }
+}
@@ -0,0 +1,66 @@
+package io.pocat.benchmarks.pathtree;
+
+import io.pocat.platform.gateway.utils.pathtree.InvalidPathException;
+import io.pocat.platform.gateway.utils.pathtree.PathTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of a path tree holding {@code paths} items.
+ * One item of every 10 has a single level wildcard and one of every 10 has a multiple level wildcard,
+ * so lookups go through literal, "*" and "#" branches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PathTreeBenchmark {
+    @Param({"10", "1000", "50000"})
+    public int paths;
+
+    private PathTree<String> tree;
+    private String literalPath;
+    private String singleLevelPath;
+    private String multipleLevelPath;
+    private String missingPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws InvalidPathException {
+        tree = new PathTree<>();
+        for(int i = 0; i < paths; i++) {
+            String group = "group" + (i % 100);
+            if(i % 10 == 1) {
+                tree.addItem("/api/v1/" + group + "/res" + i + "/*/detail", "single-" + i);
+            } else if(i % 10 == 2) {
+                tree.addItem("/api/v1/" + group + "/res" + i + "/#", "multiple-" + i);
+            } else {
+                tree.addItem("/api/v1/" + group + "/res" + i + "/items", "literal-" + i);
+            }
+        }
+        int last = paths - 1;
+        literalPath = "/api/v1/group" + (last - last % 10) % 100 + "/res" + (last - last % 10) + "/items";
+        singleLevelPath = "/api/v1/group1/res1/12345/detail";
+        multipleLevelPath = "/api/v1/group2/res2/a/b/c/d";
+        missingPath = "/api/v1/group3/unknown/items";
+    }
+
+    @Benchmark
+    public String literal() throws InvalidPathException {
+        return tree.findItem(literalPath);
+    }
+
+    @Benchmark
+    public String singleLevelWildCard() throws InvalidPathException {
+        return tree.findItem(singleLevelPath);
+    }
+
+    @Benchmark
+    public String multipleLevelWildCard() throws InvalidPathException {
+        return tree.findItem(multipleLevelPath);
+    }
+
+    @Benchmark
+    public String notFound() throws InvalidPathException {
+        return tree.findItem(missingPath);
+    }
+}
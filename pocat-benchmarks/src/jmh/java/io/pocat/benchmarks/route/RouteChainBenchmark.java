@@ -0,0 +1,137 @@
+package io.pocat.benchmarks.route;
+
+import io.pocat.benchmarks.fixture.FixtureExchange;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.*;
+import io.pocat.platform.gateway.metrics.RouteMetrics;
+import io.pocat.platform.gateway.route.*;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process one exchange through a route of 5 request filters.
+ * STAGED hops to the filter stage for every filter, INLINE runs the non-blocking filters on the caller thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RouteChainBenchmark {
+    private static final int FILTER_NUM = 5;
+    private static final String DONE_ATTRIBUTE = "done";
+
+    @Param({"STAGED", "INLINE"})
+    public ExecutionMode mode;
+
+    private HashedWheelTimer timer;
+    private InFlightTable inFlightTable;
+    private ExecutorService filterStage;
+    private RouteProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timer = HashedWheelTimer.builder().setName("benchmark-timer").build();
+        timer.start();
+        inFlightTable = new InFlightTable(timer);
+        filterStage = Executors.newFixedThreadPool(4);
+
+        RouteErrorProcedure errorProcedure = (exchange, e) -> exchange.close();
+        AdmissionController admission = new AdmissionController("benchmark", AdmissionController.UNLIMITED,
+                AdmissionController.UNLIMITED, 50300, 1);
+        List<RouteProcedure> procedures = new ArrayList<>();
+        List<String> procedureNames = new ArrayList<>();
+        for(int i = 0; i < FILTER_NUM; i++) {
+            String attrName = "filter-" + i;
+            RouteTask filter = exchange -> exchange.setAttribute(attrName, Boolean.TRUE);
+            procedures.add(new RouteTaskProcedure("benchmark", filter, mode == ExecutionMode.INLINE ? null : filterStage, errorProcedure, admission));
+            procedureNames.add(attrName);
+        }
+        procedures.add((exchange, chain) -> {
+            inFlightTable.complete(exchange.getTxId());
+            admission.release(exchange);
+            ((AtomicBoolean) exchange.getAttribute(DONE_ATTRIBUTE)).set(true);
+        });
+        procedureNames.add("response");
+        RouteMetrics metrics = new RouteMetrics("benchmark");
+        metrics.setProcedureNames(procedureNames);
+        processor = new RouteProcessor(new BenchmarkRoute(mode), procedures, inFlightTable, tx -> {}, admission, errorProcedure, metrics);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        filterStage.shutdown();
+        timer.stop();
+    }
+
+    @Benchmark
+    public Exchange fiveFilterRoute() {
+        FixtureExchange exchange = new FixtureExchange();
+        AtomicBoolean done = new AtomicBoolean();
+        exchange.setAttribute(DONE_ATTRIBUTE, done);
+        processor.process(exchange);
+        while(!done.get()) {
+            Thread.onSpinWait();
+        }
+        return exchange;
+    }
+
+    private static class BenchmarkRoute implements Route {
+        private final ExecutionMode mode;
+
+        BenchmarkRoute(ExecutionMode mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public String getName() {
+            return "benchmark";
+        }
+
+        @Override
+        public long getExpireIn() {
+            return 60000;
+        }
+
+        @Override
+        public ExecutionMode getExecutionMode() {
+            return mode;
+        }
+
+        @Override
+        public List<RouteTask> getBeforeFilterTasks() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RouteFilterConfig> getRequestFilterConfigs() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public UpstreamConfig getUpstreamConfig() {
+            return null;
+        }
+
+        @Override
+        public List<RouteFilterConfig> getResponseFilterConfigs() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RouteTask> getAfterFilterTasks() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<ErrorTemplate> getErrorTemplates() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.pocat.benchmarks.route;
+
+import io.pocat.benchmarks.fixture.FixtureExchange;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.platform.gateway.route.TopicTemplate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render upstream destination of a request, as upstream task does before every publish.
+ * Templates are the topics of rest-group-1 routes: a constant one, one with a path variable,
+ * and one with a path variable and a request header.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TopicTemplateBenchmark {
+    @Param({"alpha:test1", "httpChannel:test.${path:username}", "httpChannel:test.${path:username}.${header:X-Region}"})
+    public String template;
+
+    private TopicTemplate topic;
+    private FixtureExchange exchange;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        topic = TopicTemplate.compile(template);
+        exchange = new FixtureExchange(Map.of("X-Region", "kr-central-1"), new byte[0]);
+        exchange.setAttribute("path:username", "kim/devices");
+    }
+
+    @Benchmark
+    public String render() throws RouteProcessException {
+        return topic.render(exchange);
+    }
+}
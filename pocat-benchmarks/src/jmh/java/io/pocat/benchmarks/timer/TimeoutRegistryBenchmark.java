@@ -0,0 +1,83 @@
+package io.pocat.benchmarks.timer;
+
+import io.pocat.platform.gateway.utils.ExpireRegistry;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import io.pocat.platform.gateway.utils.timer.Timeout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Register and cancel one timeout while the registry already holds {@code outstanding} pending timeouts.
+ * This is what every request does on a loaded gateway: register on dispatch, cancel on response.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TimeoutRegistryBenchmark {
+    private static final long EXPIRE_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final Runnable NOOP = () -> {};
+
+    @Param({"10000", "100000"})
+    public int outstanding;
+
+    private final AtomicLong keySeq = new AtomicLong();
+    private HashedWheelTimer timer;
+    private ExpireRegistry<String, Object> registry;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timer = HashedWheelTimer.builder().setName("benchmark-timer").build();
+        timer.start();
+        registry = new ExpireRegistry.Builder<String, Object>().build();
+        for(int i = 0; i < outstanding; i++) {
+            timer.newTimeout(NOOP, EXPIRE_IN_MILLIS, TimeUnit.MILLISECONDS);
+            registry.register(nextKey(), NOOP, EXPIRE_IN_MILLIS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean hashedWheelTimer() {
+        return registerAndCancelOnWheel();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean hashedWheelTimerContended() {
+        return registerAndCancelOnWheel();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object expireRegistry() {
+        return registerAndUnregisterOnRegistry();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object expireRegistryContended() {
+        return registerAndUnregisterOnRegistry();
+    }
+
+    private boolean registerAndCancelOnWheel() {
+        Timeout timeout = timer.newTimeout(NOOP, EXPIRE_IN_MILLIS, TimeUnit.MILLISECONDS);
+        return timeout.cancel();
+    }
+
+    private Object registerAndUnregisterOnRegistry() {
+        String key = nextKey();
+        registry.register(key, NOOP, EXPIRE_IN_MILLIS);
+        return registry.unregister(key);
+    }
+
+    private String nextKey() {
+        return Long.toString(keySeq.getAndIncrement());
+    }
+}
@@ -0,0 +1,35 @@
+package io.pocat.benchmarks.txid;
+
+import io.pocat.gateway.connector.SequenceTxIdGenerator;
+import io.pocat.gateway.connector.TxIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tx id of every exchange. uuid is the former AbstractExchange path, sequence is the default generator.
+ * Run with -t 4 or more threads to see SecureRandom contention of the uuid path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TxIdGeneratorBenchmark {
+    private TxIdGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        generator = new SequenceTxIdGenerator();
+        generator.init(UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    @Benchmark
+    public String uuid() {
+        return UUID.randomUUID().toString().replace("-", "") + System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public String sequence() {
+        return generator.generate();
+    }
+}
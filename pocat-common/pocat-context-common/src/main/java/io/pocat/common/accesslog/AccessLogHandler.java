@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import java.io.IOException;
+
+/**
+ * Output of access log. Called only by the writer thread of {@link AsyncAccessLogger}.
+ */
+public interface AccessLogHandler {
+    /**
+     * Write a batch of formatted records
+     * @param lines records separated by line feed. Last record also ends with line feed.
+     * @throws IOException if it encounters a problem to write
+     */
+    void write(CharSequence lines) throws IOException;
+
+    /**
+     * Release resources of handler
+     */
+    void close();
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import io.pocat.platform.messagebus.MessageBusConnection;
+
+import java.util.Map;
+
+/**
+ * Create access log handler from handler config of gateway and service group
+ */
+public final class AccessLogHandlers {
+    public static final String CONSOLE_TYPE = "console";
+    public static final String FILE_TYPE = "file";
+    public static final String CHANNEL_TYPE = "channel";
+
+    public static final String PATH_PARAM = "path";
+    public static final String ROLLING_PARAM = "rolling";
+    public static final String CHANNEL_PARAM = "channel";
+
+    private AccessLogHandlers() {
+
+    }
+
+    /**
+     * @param type handler type. console, file or channel
+     * @param params handler params
+     * @param connection connection to publish log with. Used by channel handler only.
+     * @return created handler
+     * @throws IllegalArgumentException if type is unknown or required param is missing
+     */
+    public static AccessLogHandler create(String type, Map<String, String> params, MessageBusConnection connection) {
+        switch (type.trim().toLowerCase()) {
+            case CONSOLE_TYPE:
+                return new ConsoleAccessLogHandler();
+            case FILE_TYPE:
+                return new FileAccessLogHandler(params.get(PATH_PARAM), Boolean.parseBoolean(params.get(ROLLING_PARAM)));
+            case CHANNEL_TYPE:
+                String channel = params.get(CHANNEL_PARAM);
+                if(channel == null || channel.isBlank()) {
+                    throw new IllegalArgumentException("Param [" + CHANNEL_PARAM + "] of channel access log handler is required.");
+                }
+                return new ChannelAccessLogHandler(connection, channel);
+            default:
+                throw new IllegalArgumentException("Invalid access log handler type [" + type + "]");
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access logger which never blocks caller.
+ * Callers copy fixed fields into a preallocated ring of entries; nothing is formatted or allocated on caller thread.
+ * A single writer thread formats entries in batch and writes to handlers. If ring is full, the record is dropped and counted.
+ * A record which fails to format is dropped alone, and the rest of its batch is written.
+ */
+public class AsyncAccessLogger {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAccessLogger.class);
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
+    private static final String EMPTY_FIELD = "-";
+
+    private final String name;
+    private final Entry[] ring;
+    private final int mask;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final List<AccessLogHandler> handlers;
+
+    // Next position to claim by callers
+    private final AtomicLong tail = new AtomicLong();
+    // Next position to read by writer. Accessed by writer thread only.
+    private long head = 0;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running = false;
+    private Thread writer;
+
+    private AsyncAccessLogger(Builder builder) {
+        this.name = builder.name;
+        int capacity = Integer.highestOneBit(Math.max(builder.capacity - 1, 1)) << 1;
+        this.ring = new Entry[capacity];
+        for(int i = 0; i < capacity; i++) {
+            ring[i] = new Entry(i);
+        }
+        this.mask = capacity - 1;
+        this.batchSize = builder.batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushInterval);
+        this.handlers = List.copyOf(builder.handlers);
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * Record an access. Never blocks.
+     * @param timestamp start time of access in epoch millis
+     * @param txId transaction id
+     * @param client client of access, e.g. remote address or message source. Formatted by writer thread.
+     * @param method operation of access, e.g. http method
+     * @param target target of access, e.g. request path or channel
+     * @param status status code of result
+     * @param elapsed elapsed time in millis
+     * @param requestSize request body size in bytes
+     * @param responseSize response body size in bytes
+     * @return false if the record is dropped because ring is full
+     */
+    public boolean log(long timestamp, String txId, Object client, String method, String target,
+                       int status, long elapsed, long requestSize, long responseSize) {
+        long pos = tail.get();
+        for(;;) {
+            Entry entry = ring[(int) (pos & mask)];
+            long diff = entry.sequence - pos;
+            if(diff == 0) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    entry.timestamp = timestamp;
+                    entry.txId = txId;
+                    entry.client = client;
+                    entry.method = method;
+                    entry.target = target;
+                    entry.status = status;
+                    entry.elapsed = elapsed;
+                    entry.requestSize = requestSize;
+                    entry.responseSize = responseSize;
+                    // Publish entry to writer
+                    entry.sequence = pos + 1;
+                    return true;
+                }
+                pos = tail.get();
+            } else if(diff < 0) {
+                // Writer has not consumed this slot yet
+                dropped.increment();
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if(running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "access-log-writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop writer after writing records remaining in ring, and close handlers
+     */
+    public synchronized void stop() {
+        if(!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for(AccessLogHandler handler:handlers) {
+            handler.close();
+        }
+    }
+
+    private void runWriter() {
+        StringBuilder batch = new StringBuilder(batchSize * 128);
+        while(running) {
+            if(drain(batch) == 0) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        while(drain(batch) > 0) {
+            // flush remains
+        }
+    }
+
+    private int drain(StringBuilder batch) {
+        batch.setLength(0);
+        int count = 0;
+        int formatted = 0;
+        while(count < batchSize) {
+            Entry entry = ring[(int) (head & mask)];
+            if(entry.sequence != head + 1) {
+                break;
+            }
+            int length = batch.length();
+            try {
+                format(entry, batch);
+                formatted++;
+            } catch (RuntimeException e) {
+                batch.setLength(length);
+                failed.increment();
+                LOGGER.warn("Access log record [" + entry.txId + "] of [" + name + "] is dropped. Format failed.", e);
+            }
+            entry.clear();
+            // Hand slot back to callers for the next lap
+            entry.sequence = head + ring.length;
+            head++;
+            count++;
+        }
+        if(formatted > 0) {
+            for(AccessLogHandler handler:handlers) {
+                try {
+                    handler.write(batch);
+                } catch (IOException | RuntimeException e) {
+                    failed.add(formatted);
+                    LOGGER.warn("Access log handler [" + handler.getClass().getSimpleName() + "] of [" + name + "] failed.", e);
+                }
+            }
+            written.add(formatted);
+        }
+        return count;
+    }
+
+    private static void format(Entry entry, StringBuilder out) {
+        TIME_FORMATTER.formatTo(Instant.ofEpochMilli(entry.timestamp), out);
+        out.append(' ');
+        appendClient(entry.client, out);
+        out.append(" \"").append(orEmpty(entry.method)).append(' ').append(orEmpty(entry.target)).append("\" ")
+                .append(entry.status).append(' ')
+                .append(entry.elapsed).append("ms ")
+                .append(entry.requestSize).append(' ')
+                .append(entry.responseSize).append(' ')
+                .append(orEmpty(entry.txId)).append('\n');
+    }
+
+    private static void appendClient(Object client, StringBuilder out) {
+        if(client instanceof InetSocketAddress) {
+            InetSocketAddress address = (InetSocketAddress) client;
+            out.append(address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress());
+        } else {
+            out.append(client == null ? EMPTY_FIELD : client.toString());
+        }
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? EMPTY_FIELD : value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return records dropped because ring was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return records which failed to format, or to write on at least one handler
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public static class Builder {
+        private final String name;
+        private int capacity = 8192;
+        private int batchSize = 256;
+        private long flushInterval = 100;
+        private final List<AccessLogHandler> handlers = new ArrayList<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param capacity entries of ring. Rounded up to power of 2.
+         */
+        public Builder setCapacity(int capacity) {
+            if(capacity <= 0) {
+                throw new IllegalArgumentException("Capacity of access logger must be positive.");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder setBatchSize(int batchSize) {
+            if(batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size of access logger must be positive.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param flushInterval millis writer waits when ring is empty
+         */
+        public Builder setFlushInterval(long flushInterval) {
+            if(flushInterval <= 0) {
+                throw new IllegalArgumentException("Flush interval of access logger must be positive.");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public Builder addHandler(AccessLogHandler handler) {
+            this.handlers.add(handler);
+            return this;
+        }
+
+        public AsyncAccessLogger build() {
+            return new AsyncAccessLogger(this);
+        }
+    }
+
+    private static class Entry {
+        private volatile long sequence;
+        private long timestamp;
+        private String txId;
+        private Object client;
+        private String method;
+        private String target;
+        private int status;
+        private long elapsed;
+        private long requestSize;
+        private long responseSize;
+
+        private Entry(long sequence) {
+            this.sequence = sequence;
+        }
+
+        // Do not keep references of exchanges already done
+        private void clear() {
+            txId = null;
+            client = null;
+            method = null;
+            target = null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import io.pocat.platform.messagebus.MessageBusConnection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Publish access log to a message bus channel. One message carries a whole batch of records.
+ */
+public class ChannelAccessLogHandler implements AccessLogHandler {
+    private static final Map<String, String> HEADERS = Map.of("Content-Type", "text/plain");
+
+    private final MessageBusConnection connection;
+    private final String channel;
+
+    public ChannelAccessLogHandler(MessageBusConnection connection, String channel) {
+        if(connection == null) {
+            throw new IllegalArgumentException("Message bus connection of access log channel [" + channel + "] is null.");
+        }
+        this.connection = connection;
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(CharSequence lines) throws IOException {
+        connection.publish(channel, HEADERS, lines.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+        // Connection is owned by process
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import java.io.PrintStream;
+
+/**
+ * Write access log to standard out
+ */
+public class ConsoleAccessLogHandler implements AccessLogHandler {
+    private final PrintStream out;
+
+    public ConsoleAccessLogHandler() {
+        this(System.out);
+    }
+
+    public ConsoleAccessLogHandler(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(CharSequence lines) {
+        out.append(lines);
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+    }
+}
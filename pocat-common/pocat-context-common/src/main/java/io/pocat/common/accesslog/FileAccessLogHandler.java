@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Write access log to file. If rolling, file of previous day is renamed to "{path}.{yyyy-MM-dd}".
+ */
+public class FileAccessLogHandler implements AccessLogHandler {
+    private final Path path;
+    private final boolean rolling;
+    private Writer writer;
+    private LocalDate openedDate;
+
+    public FileAccessLogHandler(String path, boolean rolling) {
+        if(path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Access log file path is empty.");
+        }
+        this.path = Paths.get(path);
+        this.rolling = rolling;
+    }
+
+    @Override
+    public void write(CharSequence lines) throws IOException {
+        if(writer == null) {
+            open();
+        } else if(rolling && !LocalDate.now().equals(openedDate)) {
+            writer.close();
+            writer = null;
+            roll(openedDate);
+            open();
+        }
+        writer.append(lines);
+        writer.flush();
+    }
+
+    private void open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if(parent != null) {
+            Files.createDirectories(parent);
+        }
+        LocalDate today = LocalDate.now();
+        if(rolling && Files.exists(path)) {
+            // Left by previous run
+            LocalDate modifiedDate = LocalDate.ofInstant(Instant.ofEpochMilli(Files.getLastModifiedTime(path).toMillis()), ZoneId.systemDefault());
+            if(!modifiedDate.equals(today)) {
+                roll(modifiedDate);
+            }
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.openedDate = today;
+    }
+
+    private void roll(LocalDate date) throws IOException {
+        Path rolled = path.resolveSibling(path.getFileName() + "." + date);
+        Files.move(path, rolled, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() {
+        if(writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+
+            }
+            writer = null;
+        }
+    }
+}
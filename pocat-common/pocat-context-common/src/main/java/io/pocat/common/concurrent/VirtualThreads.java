@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads without compiling against JDK 21.
+ * Platform is built on JDK 17, so virtual thread API is looked up by reflection once.
+ */
+public final class VirtualThreads {
+    public static final String PLATFORM_MODE = "platform";
+    public static final String VIRTUAL_MODE = "virtual";
+
+    private static final Method NEW_PER_TASK_EXECUTOR;
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method perTaskExecutor = null;
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        try {
+            perTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            perTaskExecutor = null;
+        }
+        NEW_PER_TASK_EXECUTOR = perTaskExecutor;
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+    }
+
+    private VirtualThreads() {
+
+    }
+
+    /**
+     * @return true if running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @param threadMode thread mode in config. "platform" or "virtual"
+     * @return true if thread mode is virtual
+     */
+    public static boolean isVirtualMode(String threadMode) {
+        if(threadMode == null || threadMode.isBlank() || PLATFORM_MODE.equalsIgnoreCase(threadMode.trim())) {
+            return false;
+        }
+        if(VIRTUAL_MODE.equalsIgnoreCase(threadMode.trim())) {
+            return true;
+        }
+        throw new IllegalArgumentException("Invalid thread mode [" + threadMode + "]");
+    }
+
+    /**
+     * Create executor which starts a new virtual thread for each task
+     * @return executor
+     * @throws UnsupportedOperationException if virtual thread is not supported
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        checkSupported();
+        try {
+            return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Failed to create virtual thread executor.", e);
+        }
+    }
+
+    /**
+     * Create factory of virtual threads named prefix followed by sequence
+     * @param prefix thread name prefix
+     * @return thread factory
+     * @throws UnsupportedOperationException if virtual thread is not supported
+     */
+    public static ThreadFactory newVirtualThreadFactory(String prefix) {
+        checkSupported();
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Failed to create virtual thread factory.", e);
+        }
+    }
+
+    private static void checkSupported() {
+        if(!isSupported()) {
+            throw new UnsupportedOperationException("Virtual thread is not supported on Java " + Runtime.version().feature() + ".");
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.common.accesslog;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class AsyncAccessLoggerTest {
+    private static boolean log(AsyncAccessLogger logger, String txId, Object client) {
+        return logger.log(1700000000000L, txId, client, "GET", "/orders", 200, 3, 0, 10);
+    }
+
+    private static List<String> txIdsOf(CollectingHandler handler) {
+        List<String> txIds = new ArrayList<>();
+        for(String line:handler.lines.toString().split("\n")) {
+            if(!line.isEmpty()) {
+                txIds.add(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        return txIds;
+    }
+
+    @Test
+    public void testFullRingDropsRecord() {
+        CollectingHandler handler = new CollectingHandler();
+        AsyncAccessLogger logger = AsyncAccessLogger.builder("test").setCapacity(4).addHandler(handler).build();
+        // writer is not started, so nothing leaves the ring
+        for(int i = 0; i < 4; i++) {
+            assertTrue(log(logger, "tx" + i, "client"));
+        }
+        assertFalse(log(logger, "tx4", "client"));
+        assertEquals(1, logger.getDroppedCount());
+
+        logger.start();
+        logger.stop();
+        assertEquals(4, logger.getWrittenCount());
+        assertEquals(Arrays.asList("tx0", "tx1", "tx2", "tx3"), txIdsOf(handler));
+        assertTrue(handler.isClosed);
+    }
+
+    @Test
+    public void testWraparound() throws InterruptedException {
+        CollectingHandler handler = new CollectingHandler();
+        AsyncAccessLogger logger = AsyncAccessLogger.builder("test").setCapacity(4).setBatchSize(3).setFlushInterval(1).addHandler(handler).build();
+        logger.start();
+        List<String> expected = new ArrayList<>();
+        // each record waits for a free slot, so slots are reused over many laps
+        for(int i = 0; i < 40; i++) {
+            String txId = "tx" + i;
+            while(!log(logger, txId, "client")) {
+                Thread.sleep(1);
+            }
+            expected.add(txId);
+        }
+        logger.stop();
+        assertEquals(40, logger.getWrittenCount());
+        assertEquals(expected, txIdsOf(handler));
+    }
+
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        int producerNum = 4;
+        int recordNum = 10000;
+        CollectingHandler handler = new CollectingHandler();
+        AsyncAccessLogger logger = AsyncAccessLogger.builder("test").setCapacity(1024).addHandler(handler).build();
+        logger.start();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for(int p = 0; p < producerNum; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < recordNum; i++) {
+                    log(logger, producer + "-" + i, "client");
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        startLatch.countDown();
+        for(Thread thread:producers) {
+            thread.join();
+        }
+        logger.stop();
+
+        // every record is written once or dropped
+        List<String> txIds = txIdsOf(handler);
+        Set<String> unique = new HashSet<>(txIds);
+        assertEquals(txIds.size(), unique.size());
+        assertEquals(txIds.size(), logger.getWrittenCount());
+        assertEquals(producerNum * recordNum, logger.getWrittenCount() + logger.getDroppedCount());
+        // records of a producer keep their order
+        int[] last = new int[producerNum];
+        Arrays.fill(last, -1);
+        for(String txId:txIds) {
+            int producer = Integer.parseInt(txId.substring(0, txId.indexOf('-')));
+            int seq = Integer.parseInt(txId.substring(txId.indexOf('-') + 1));
+            assertTrue(seq > last[producer]);
+            last[producer] = seq;
+        }
+    }
+
+    @Test
+    public void testFormatFailureDropsOnlyRecord() {
+        CollectingHandler handler = new CollectingHandler();
+        AsyncAccessLogger logger = AsyncAccessLogger.builder("test").addHandler(handler).build();
+        log(logger, "tx0", "client");
+        log(logger, "tx1", new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("Broken client");
+            }
+        });
+        log(logger, "tx2", "client");
+        logger.start();
+        logger.stop();
+        assertEquals(Arrays.asList("tx0", "tx2"), txIdsOf(handler));
+        assertEquals(2, logger.getWrittenCount());
+        assertEquals(1, logger.getFailedCount());
+    }
+
+    @Test
+    public void testHandlerFailure() {
+        CollectingHandler handler = new CollectingHandler();
+        AsyncAccessLogger logger = AsyncAccessLogger.builder("test")
+                .addHandler(new AccessLogHandler() {
+                    @Override
+                    public void write(CharSequence lines) throws IOException {
+                        throw new IOException("Disk full");
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                })
+                .addHandler(handler)
+                .build();
+        log(logger, "tx0", "client");
+        log(logger, "tx1", "client");
+        logger.start();
+        logger.stop();
+        // the other handler still gets the records
+        assertEquals(Arrays.asList("tx0", "tx1"), txIdsOf(handler));
+        assertEquals(2, logger.getFailedCount());
+    }
+
+    private static class CollectingHandler implements AccessLogHandler {
+        private final StringBuilder lines = new StringBuilder();
+        private boolean isClosed = false;
+
+        @Override
+        public void write(CharSequence lines) {
+            this.lines.append(lines);
+        }
+
+        @Override
+        public void close() {
+            isClosed = true;
+        }
+    }
+}
@@ -2,18 +2,19 @@ package io.pocat.gateway.connector;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 public abstract class AbstractExchange implements Exchange {
     private final String txId;
     private ExchangeContext ctx;
     private final Map<String, Object> attributes = new HashMap<>();
     private final long createdAt;
+    private final long createdNanos;
     private boolean isClosed = false;
 
     protected AbstractExchange() {
         this.createdAt = System.currentTimeMillis();
-        this.txId = UUID.randomUUID().toString().replace("-", "") + this.createdAt;
+        this.createdNanos = System.nanoTime();
+        this.txId = TxIdGeneratorProvider.getInstance().provide().generate();
     }
 
     @Override
@@ -26,6 +27,11 @@ public abstract class AbstractExchange implements Exchange {
         return createdAt;
     }
 
+    @Override
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
     @Override
     public void setAttribute(String attrName, Object attrValue) {
         attributes.put(attrName, attrValue);
@@ -1,5 +1,6 @@
 package io.pocat.gateway.connector;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Set;
 
@@ -7,6 +8,8 @@ public interface Exchange {
     String getCorrelationId();
     String getTxId();
     long getCreatedAt();
+    // System.nanoTime() at creation. Used to measure latency only.
+    long getCreatedNanos();
 
     ExchangeContext getContext();
     void setContext(ExchangeContext ctx);
@@ -15,12 +18,83 @@ public interface Exchange {
     Collection<String> getRequestHeaderNames();
     byte[] getRequestContents();
 
+    // Size of request body. Protocols holding body in buffers answer without copying it out.
+    default int getRequestContentLength() {
+        byte[] contents = getRequestContents();
+        return contents == null ? 0 : contents.length;
+    }
+
+    // Body still arriving from connection, or null if body was complete at dispatch
+    default RequestBodyStream getRequestBodyStream() {
+        return null;
+    }
+
+    // Protocol neutral view for access log. Protocols without such fields keep defaults.
+    default String getRequestMethod() {
+        return null;
+    }
+
+    default String getRequestPath() {
+        return null;
+    }
+
+    default int getResponseStatus() {
+        return 0;
+    }
+
     Set<String> getResponseHeaderNames();
     String	getResponseHeader(String headerName);
     void setResponseHeader(String headerName, String headerValue);
     byte[] getResponseContents();
     void setResponseContents(byte[] contents);
 
+    /**
+     * Set response contents held in a buffer, e.g. out of java heap. Buffer is shared and must not be modified.
+     * Protocols writing buffers keep it as it is. Others copy it into response contents.
+     */
+    default void setResponseContentBuffer(ByteBuffer contents) {
+        byte[] bytes = new byte[contents.remaining()];
+        contents.duplicate().get(bytes);
+        setResponseContents(bytes);
+    }
+
+    /**
+     * @return response contents as a buffer which wraps them without copy
+     */
+    default ByteBuffer getResponseContentBuffer() {
+        byte[] contents = getResponseContents();
+        return ByteBuffer.wrap(contents == null ? new byte[0] : contents);
+    }
+
+    // Size of response body. Protocols holding body in a buffer answer without copying it out.
+    default int getResponseContentLength() {
+        byte[] contents = getResponseContents();
+        return contents == null ? 0 : contents.length;
+    }
+
+    /**
+     * Response contents are followed by chunks of {@link #writeResponseChunk(byte[], boolean)}.
+     * Call before exchange is closed.
+     * @param window chunks which can wait to be written to client before response is aborted
+     */
+    default void startResponseStream(int window) {
+        throw new UnsupportedOperationException("Response stream is not supported by " + getClass().getName());
+    }
+
+    /**
+     * @return false if chunk is not accepted because response is aborted, already ended, or client does not keep up
+     */
+    default boolean writeResponseChunk(byte[] chunk, boolean last) {
+        throw new UnsupportedOperationException("Response stream is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Stop response stream which cannot be completed. Connection is closed because status is already sent.
+     */
+    default void abortResponseStream() {
+        throw new UnsupportedOperationException("Response stream is not supported by " + getClass().getName());
+    }
+
     boolean isClosed();
     void close();
 
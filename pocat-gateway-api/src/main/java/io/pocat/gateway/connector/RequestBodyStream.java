@@ -0,0 +1,48 @@
+package io.pocat.gateway.connector;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Request body which is still arriving from connection when exchange is dispatched.
+ * Connection reads only a little of it ahead until it is either aggregated in exchange or read in chunks.
+ */
+public interface RequestBodyStream {
+    /**
+     * @return length announced by client, or -1 if body is sent without length
+     */
+    long getContentLength();
+
+    /**
+     * Deliver body in chunks on executor, in order and one at a time.
+     * At most window chunks are read ahead of delivery. Connection stops reading while they are not delivered.
+     * @param chunkSize bytes of a chunk. Only the last chunk may be smaller
+     */
+    void read(int chunkSize, int window, Executor executor, ChunkHandler handler);
+
+    /**
+     * Keep whole body in exchange, as if it were received before dispatch.
+     * @param onComplete run on executor when body is complete
+     * @param onError run on executor if connection is closed before body is complete
+     */
+    void aggregate(Executor executor, Runnable onComplete, Consumer<Throwable> onError);
+
+    /**
+     * Drop the rest of body. Exchange aborts its stream when it is closed.
+     */
+    void abort();
+
+    interface ChunkHandler {
+        /**
+         * @param seq sequence of chunk from 0
+         * @param last true if this is the last chunk. Empty body comes as one empty last chunk
+         * @throws Exception to stop reading. It is passed to {@link #onError(Throwable)}
+         */
+        void onChunk(byte[] chunk, int seq, boolean last) throws Exception;
+
+        /**
+         * Reading is stopped by connection close or by exception of {@link #onChunk(byte[], int, boolean)}
+         */
+        void onError(Throwable cause);
+    }
+}
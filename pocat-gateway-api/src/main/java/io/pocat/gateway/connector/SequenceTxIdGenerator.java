@@ -0,0 +1,56 @@
+package io.pocat.gateway.connector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Default tx id generator.
+ * Id is [node prefix][stripe][sequence] in base62, always {@value #TX_ID_LENGTH} chars. Node prefix is 11 chars derived
+ * from gateway id, stripe is 1 char chosen by current thread, and sequence is a monotonic counter of the stripe padded with '0'.
+ * Threads hit different counters, so there is no shared random source and almost no contention.
+ */
+public class SequenceTxIdGenerator implements TxIdGenerator {
+    private static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int NODE_PREFIX_LENGTH = 11;
+    private static final int STRIPE_NUM = 32;
+    // Keep counters of stripes on different cache lines
+    private static final int STRIPE_PADDING = 16;
+    // 62^11 exceeds Long.MAX_VALUE, so every sequence fits
+    private static final int SEQUENCE_LENGTH = 11;
+    public static final int TX_ID_LENGTH = NODE_PREFIX_LENGTH + 1 + SEQUENCE_LENGTH;
+
+    private final AtomicLongArray sequences = new AtomicLongArray(STRIPE_NUM * STRIPE_PADDING);
+    private volatile char[] nodePrefix;
+
+    public SequenceTxIdGenerator() {
+        init(UUID.randomUUID().toString());
+    }
+
+    @Override
+    public void init(String nodeId) {
+        long nodeBits = UUID.nameUUIDFromBytes(nodeId.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+        char[] prefix = new char[NODE_PREFIX_LENGTH];
+        for(int i = NODE_PREFIX_LENGTH - 1; i >= 0; i--) {
+            prefix[i] = BASE62[(int) Long.remainderUnsigned(nodeBits, BASE62.length)];
+            nodeBits = Long.divideUnsigned(nodeBits, BASE62.length);
+        }
+        this.nodePrefix = prefix;
+    }
+
+    @Override
+    public String generate() {
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPE_NUM - 1));
+        long sequence = sequences.getAndIncrement(stripe * STRIPE_PADDING);
+
+        char[] prefix = nodePrefix;
+        char[] buf = new char[TX_ID_LENGTH];
+        System.arraycopy(prefix, 0, buf, 0, NODE_PREFIX_LENGTH);
+        buf[NODE_PREFIX_LENGTH] = BASE62[stripe];
+        for(int pos = TX_ID_LENGTH - 1; pos > NODE_PREFIX_LENGTH; pos--) {
+            buf[pos] = BASE62[(int) (sequence % BASE62.length)];
+            sequence /= BASE62.length;
+        }
+        return new String(buf);
+    }
+}
@@ -0,0 +1,17 @@
+package io.pocat.gateway.connector;
+
+/**
+ * Generates transaction id of exchanges.
+ * Id must be unique across every gateway which shares a message bus, because it is used as the key of in-flight transaction
+ * and travels with upstream messages.
+ * Implementation is found by {@link java.util.ServiceLoader}. If none, {@link SequenceTxIdGenerator} is used.
+ */
+public interface TxIdGenerator {
+    /**
+     * Called once by gateway before any exchange is created.
+     * @param nodeId id of the gateway instance
+     */
+    void init(String nodeId);
+
+    String generate();
+}
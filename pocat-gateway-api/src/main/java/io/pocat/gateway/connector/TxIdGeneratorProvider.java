@@ -0,0 +1,39 @@
+package io.pocat.gateway.connector;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+public class TxIdGeneratorProvider {
+    private static final TxIdGeneratorProvider INSTANCE = new TxIdGeneratorProvider();
+
+    private volatile TxIdGenerator generator = new SequenceTxIdGenerator();
+
+    public static TxIdGeneratorProvider getInstance() {
+        return INSTANCE;
+    }
+
+    private TxIdGeneratorProvider() {
+
+    }
+
+    public TxIdGenerator provide() {
+        return generator;
+    }
+
+    /**
+     * Load generator of this node. Called by gateway on start up.
+     * @param nodeId id of the gateway instance
+     */
+    public synchronized void init(String nodeId) {
+        TxIdGenerator loaded = null;
+        Iterator<TxIdGenerator> generators = ServiceLoader.load(TxIdGenerator.class).iterator();
+        if(generators.hasNext()) {
+            loaded = generators.next();
+        }
+        if(loaded == null) {
+            loaded = new SequenceTxIdGenerator();
+        }
+        loaded.init(nodeId);
+        this.generator = loaded;
+    }
+}
@@ -33,6 +33,10 @@ public class MessageHeaders implements Map<String, String> {
 
     public static final String STATUS_CODE_HEADER_NAME = "Status-Code";
 
+    // Sequence from 0 of a chunk message of a streamed body. The last one has Chunk-Last "true".
+    public static final String CHUNK_SEQ_HEADER_NAME = "Chunk-Seq";
+    public static final String CHUNK_LAST_HEADER_NAME = "Chunk-Last";
+
     private final Map<String, String> rawHeaders;
 
     public MessageHeaders(Map<String, String> rawHeaders) {
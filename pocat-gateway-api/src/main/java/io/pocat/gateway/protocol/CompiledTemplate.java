@@ -0,0 +1,163 @@
+package io.pocat.gateway.protocol;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.RouteProcessException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Error template text compiled at load time into UTF-8 byte segments and variable slots.
+ * Variables and their output are the same as {@link ProtocolErrorHandler#replaceVariables}. A variable without value is written as is.
+ * Template without variables is encoded once and shared by every response.
+ */
+public class CompiledTemplate {
+    private static final String VARIABLE_START = "${";
+    private static final char VARIABLE_END = '}';
+    private static final String ERROR_CODE_NAME = "error.code";
+    private static final String ERROR_MESSAGE_NAME = "error.message";
+    private static final String HEADER_PREFIX = "header:";
+    private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<RenderBuffer> BUFFER = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private final String template;
+    private final Slot[] slots;
+    private final byte[] constantBytes;
+
+    private CompiledTemplate(String template, Slot[] slots) {
+        this.template = template;
+        this.slots = slots;
+        if(slots.length == 0) {
+            this.constantBytes = new byte[0];
+        } else if(slots.length == 1 && slots[0] instanceof LiteralSlot) {
+            this.constantBytes = ((LiteralSlot) slots[0]).bytes;
+        } else {
+            this.constantBytes = null;
+        }
+    }
+
+    public static CompiledTemplate compile(String template) {
+        if(template == null) {
+            template = "";
+        }
+        List<Slot> slots = new ArrayList<>();
+        int pos = 0;
+        while(pos < template.length()) {
+            int start = template.indexOf(VARIABLE_START, pos);
+            int end = start < 0 ? -1 : template.indexOf(VARIABLE_END, start + VARIABLE_START.length());
+            if(start < 0 || end < 0) {
+                slots.add(new LiteralSlot(template.substring(pos)));
+                break;
+            }
+            if(start > pos) {
+                slots.add(new LiteralSlot(template.substring(pos, start)));
+            }
+            slots.add(createVariableSlot(template.substring(start, end + 1), template.substring(start + VARIABLE_START.length(), end)));
+            pos = end + 1;
+        }
+        return new CompiledTemplate(template, slots.toArray(new Slot[0]));
+    }
+
+    private static Slot createVariableSlot(String raw, String varName) {
+        if(varName.equals(ERROR_CODE_NAME)) {
+            return (exchange, e) -> String.valueOf(e.getErrorCode());
+        } else if(varName.equals(ERROR_MESSAGE_NAME)) {
+            return (exchange, e) -> String.valueOf(e.getMessage());
+        } else if(varName.startsWith(HEADER_PREFIX)) {
+            String headerName = varName.substring(HEADER_PREFIX.length());
+            return (exchange, e) -> {
+                String value = exchange.getRequestHeader(headerName);
+                return value == null ? raw : value;
+            };
+        }
+        return (exchange, e) -> {
+            Object value = exchange.getAttribute(varName);
+            return value == null ? raw : (String) value;
+        };
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Render into a reused per-thread buffer and copy out once.
+     */
+    public byte[] render(Exchange exchange, RouteProcessException e) {
+        if(constantBytes != null) {
+            return constantBytes;
+        }
+        RenderBuffer buffer = BUFFER.get();
+        buffer.reset();
+        for(Slot slot:slots) {
+            if(slot instanceof LiteralSlot) {
+                buffer.write(((LiteralSlot) slot).bytes);
+            } else {
+                buffer.write(slot.value(exchange, e).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        byte[] result = buffer.toByteArray();
+        if(buffer.capacity() > MAX_REUSED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    public String renderString(Exchange exchange, RouteProcessException e) {
+        if(constantBytes != null) {
+            return template;
+        }
+        StringBuilder builder = new StringBuilder(template.length());
+        for(Slot slot:slots) {
+            builder.append(slot.value(exchange, e));
+        }
+        return builder.toString();
+    }
+
+    private interface Slot {
+        String value(Exchange exchange, RouteProcessException e);
+    }
+
+    private static final class LiteralSlot implements Slot {
+        private final String literal;
+        private final byte[] bytes;
+
+        LiteralSlot(String literal) {
+            this.literal = literal;
+            this.bytes = literal.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String value(Exchange exchange, RouteProcessException e) {
+            return literal;
+        }
+    }
+
+    private static final class RenderBuffer {
+        private byte[] buf = new byte[1024];
+        private int count = 0;
+
+        void reset() {
+            count = 0;
+        }
+
+        void write(byte[] bytes) {
+            if(count + bytes.length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + bytes.length));
+            }
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+}
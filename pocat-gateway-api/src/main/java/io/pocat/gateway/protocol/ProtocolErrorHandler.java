@@ -6,6 +6,7 @@ import io.pocat.gateway.route.RouteProcessException;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,7 +17,12 @@ public abstract class ProtocolErrorHandler {
     private static final String ERROR_MESSAGE_NAME = "error.message";
     private static final String HEADER_PREFIX = "header:";
 
+    // Marks error code without template in resolved cache
+    private static final ErrorTemplate NO_TEMPLATE = () -> -1;
+
     private final Map<Integer, ErrorTemplate> errorTemplates = new HashMap<>();
+    // Template resolved through parent chain. Templates are set up before handling errors, so cache is cleared only on change.
+    private final Map<Integer, ErrorTemplate> resolvedTemplates = new ConcurrentHashMap<>();
     private ProtocolErrorHandler parent;
 
     protected ProtocolErrorHandler() {
@@ -32,15 +38,27 @@ public abstract class ProtocolErrorHandler {
             throw new IllegalArgumentException("Invalid error template for error code [" + errorTemplate.getErrorCode() + "].");
         }
         errorTemplates.put(errorTemplate.getErrorCode(), errorTemplate);
+        resolvedTemplates.clear();
     }
 
     public void setParentHandler(ProtocolErrorHandler parentErrorHandler) {
         this.parent = parentErrorHandler;
+        resolvedTemplates.clear();
     }
 
     public abstract void handleError(Exchange exchange, RouteProcessException e);
 
     protected final ErrorTemplate findErrorTemplate(int errorCode) {
+        ErrorTemplate template = resolvedTemplates.get(errorCode);
+        if(template == null) {
+            template = resolveErrorTemplate(errorCode);
+            resolvedTemplates.put(errorCode, template == null ? NO_TEMPLATE : template);
+            return template;
+        }
+        return template == NO_TEMPLATE ? null : template;
+    }
+
+    private ErrorTemplate resolveErrorTemplate(int errorCode) {
         if(errorTemplates.containsKey(errorCode)) {
             return errorTemplates.get(errorCode);
         } else {
@@ -0,0 +1,31 @@
+package io.pocat.gateway.route;
+
+/**
+ * Circuit breaker settings of an upstream channel.
+ */
+public interface CircuitBreakerConfig {
+    /**
+     * @return failure percentage of calls in window which opens the circuit
+     */
+    int getFailureRateThreshold();
+
+    /**
+     * @return calls in window needed before failure rate is evaluated
+     */
+    int getMinimumCalls();
+
+    /**
+     * @return length of rolling window in milliseconds
+     */
+    long getWindow();
+
+    /**
+     * @return how long circuit stays open before trial calls, in milliseconds
+     */
+    long getOpenDuration();
+
+    /**
+     * @return trial calls allowed while half open
+     */
+    int getHalfOpenCalls();
+}
@@ -0,0 +1,13 @@
+package io.pocat.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+
+/**
+ * Identity of requests of a route which can share one upstream call.
+ */
+public interface CoalescingPolicy {
+    /**
+     * @return key of request, or null if request must have its own upstream call
+     */
+    String createKey(Exchange exchange);
+}
@@ -0,0 +1,12 @@
+package io.pocat.gateway.route;
+
+public enum ExecutionMode {
+    /**
+     * Every procedure hops to its stage executor.
+     */
+    STAGED,
+    /**
+     * Non-blocking procedures run on the current thread. Only blocking filters and upstream hop to their stage.
+     */
+    INLINE
+}
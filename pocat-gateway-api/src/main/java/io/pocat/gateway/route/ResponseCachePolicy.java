@@ -0,0 +1,35 @@
+package io.pocat.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+
+/**
+ * Response cache settings of a route. Key is built by protocol, so it can use protocol specific parts of request.
+ */
+public interface ResponseCachePolicy {
+    /**
+     * @return time to live of cached response in milliseconds
+     */
+    long getTtl();
+
+    /**
+     * @return max bytes of cached responses of route
+     */
+    long getMaxSize();
+
+    /**
+     * @return true if response contents are kept out of java heap, so large caches do not lengthen gc pauses
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+
+    /**
+     * @return message source of invalidation events, or null if route cache is invalidated only by ttl
+     */
+    String getInvalidationSource();
+
+    /**
+     * @return cache key of request, or null if request must not be served from cache
+     */
+    String createKey(Exchange exchange);
+}
@@ -5,6 +5,7 @@ import java.util.List;
 public interface Route {
     String getName();
     long getExpireIn();
+    ExecutionMode getExecutionMode();
 
     List<RouteTask> getBeforeFilterTasks();
     List<RouteFilterConfig> getRequestFilterConfigs();
@@ -15,4 +16,39 @@ public interface Route {
     List<RouteTask> getAfterFilterTasks();
 
     List<ErrorTemplate> getErrorTemplates();
+
+    /**
+     * @return exchanges of this route processed at once. 0 uses the service default.
+     */
+    default int getMaxConcurrency() {
+        return 0;
+    }
+
+    /**
+     * @return exchanges of this route waiting for a free slot. 0 rejects at once when route is full.
+     */
+    default int getMaxQueue() {
+        return 0;
+    }
+
+    /**
+     * @return response cache of this route, or null if responses are not cached
+     */
+    default ResponseCachePolicy getCachePolicy() {
+        return null;
+    }
+
+    /**
+     * @return identity of requests which share one upstream call, or null if every request has its own call
+     */
+    default CoalescingPolicy getCoalescingPolicy() {
+        return null;
+    }
+
+    /**
+     * @return chunked transfer of request and reply bodies, or null if bodies go in one message
+     */
+    default StreamingPolicy getStreamingPolicy() {
+        return null;
+    }
 }
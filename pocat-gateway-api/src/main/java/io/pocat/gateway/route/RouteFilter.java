@@ -6,4 +6,12 @@ public interface RouteFilter {
     void init(RouteFilterContext filterConfig);
     void doFilter(Exchange exchange) throws RouteProcessException;
     void destroy();
+
+    /**
+     * Blocking filter always runs on filter stage. Non-blocking filter may run inline on the current thread.
+     * @return true if doFilter may block the calling thread
+     */
+    default boolean isBlocking() {
+        return true;
+    }
 }
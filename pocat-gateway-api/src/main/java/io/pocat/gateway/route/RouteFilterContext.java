@@ -3,6 +3,10 @@ package io.pocat.gateway.route;
 import java.util.Set;
 
 public interface RouteFilterContext {
+    /**
+     * @return name of filter in its route. It is unique in gateway and kept when route is reloaded.
+     */
+    String getName();
     Object getResource(String resourceName);
     Set<String> getInitParamNames();
     String getInitParam(String paramName);
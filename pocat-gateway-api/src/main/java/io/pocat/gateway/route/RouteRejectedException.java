@@ -0,0 +1,21 @@
+package io.pocat.gateway.route;
+
+/**
+ * Thrown when gateway refuses a request to protect itself, e.g. over admission limit.
+ * Client may retry after {@link #getRetryAfter()} seconds.
+ */
+public class RouteRejectedException extends RouteProcessException {
+    private final long retryAfter;
+
+    public RouteRejectedException(int errorCode, String msg, long retryAfter) {
+        super(errorCode, msg);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return seconds to wait before retry, 0 if not specified
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -4,4 +4,8 @@ import io.pocat.gateway.connector.Exchange;
 
 public interface RouteTask {
     void doTask(Exchange exchange) throws RouteProcessException;
+
+    default boolean isBlocking() {
+        return false;
+    }
 }
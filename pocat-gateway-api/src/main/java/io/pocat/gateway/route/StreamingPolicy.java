@@ -0,0 +1,23 @@
+package io.pocat.gateway.route;
+
+/**
+ * Streaming settings of a route. Request body goes to upstream in chunk messages sharing tx id,
+ * and upstream reply may come back in chunk messages as well. Memory per request is bounded by chunk size and window.
+ * Request filters of the route cannot read body of a request which is still arriving when it is dispatched.
+ */
+public interface StreamingPolicy {
+    /**
+     * @return max bytes of request body. 0 if not limited
+     */
+    long getMaxBodySize();
+
+    /**
+     * @return bytes of a request chunk message
+     */
+    int getChunkSize();
+
+    /**
+     * @return chunks buffered per direction, read ahead of publishing or waiting to be written to client
+     */
+    int getChunkWindow();
+}
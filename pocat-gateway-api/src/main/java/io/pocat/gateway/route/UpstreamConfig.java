@@ -3,4 +3,18 @@ package io.pocat.gateway.route;
 public interface UpstreamConfig {
     String getRequestChannel();
     String getRequestTopic();
+
+    /**
+     * @return exchanges in flight on request channel, shared by every route of service. 0 is unlimited.
+     */
+    default int getMaxConcurrency() {
+        return 0;
+    }
+
+    /**
+     * @return circuit breaker of request channel, or null if channel has no breaker
+     */
+    default CircuitBreakerConfig getCircuitBreakerConfig() {
+        return null;
+    }
 }
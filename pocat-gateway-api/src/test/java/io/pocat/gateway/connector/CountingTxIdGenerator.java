@@ -0,0 +1,21 @@
+package io.pocat.gateway.connector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registered as service of test class path, so it overrides default generator.
+ */
+public class CountingTxIdGenerator implements TxIdGenerator {
+    private final AtomicLong count = new AtomicLong();
+    private String nodeId;
+
+    @Override
+    public void init(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String generate() {
+        return nodeId + "-" + count.getAndIncrement();
+    }
+}
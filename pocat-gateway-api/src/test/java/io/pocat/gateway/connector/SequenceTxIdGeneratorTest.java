@@ -0,0 +1,98 @@
+package io.pocat.gateway.connector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class SequenceTxIdGeneratorTest {
+    private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int PREFIX_LENGTH = 11;
+
+    private static void assertTxId(String txId) {
+        assertEquals(SequenceTxIdGenerator.TX_ID_LENGTH, txId.length());
+        for(int i = 0; i < txId.length(); i++) {
+            assertTrue("Invalid char of " + txId, BASE62.indexOf(txId.charAt(i)) >= 0);
+        }
+    }
+
+    @Test
+    public void testFixedLengthAndCharset() {
+        SequenceTxIdGenerator generator = new SequenceTxIdGenerator();
+        generator.init("gateway-1");
+        String first = generator.generate();
+        assertTxId(first);
+        String previous = first;
+        for(int i = 0; i < 10000; i++) {
+            String txId = generator.generate();
+            assertTxId(txId);
+            // sequence of a stripe is padded, so ids of a thread sort in order
+            assertTrue(txId.compareTo(previous) > 0);
+            previous = txId;
+        }
+        assertEquals(first.substring(0, PREFIX_LENGTH + 1), previous.substring(0, PREFIX_LENGTH + 1));
+    }
+
+    @Test
+    public void testPrefixOfGatewayId() {
+        SequenceTxIdGenerator generator1 = new SequenceTxIdGenerator();
+        generator1.init("gateway-1");
+        SequenceTxIdGenerator generator2 = new SequenceTxIdGenerator();
+        generator2.init("gateway-2");
+        SequenceTxIdGenerator sameNode = new SequenceTxIdGenerator();
+        sameNode.init("gateway-1");
+
+        String prefix1 = generator1.generate().substring(0, PREFIX_LENGTH);
+        String prefix2 = generator2.generate().substring(0, PREFIX_LENGTH);
+        assertFalse(prefix1.equals(prefix2));
+        assertEquals(prefix1, sameNode.generate().substring(0, PREFIX_LENGTH));
+    }
+
+    @Test
+    public void testUniqueAcrossThreadsAndStripes() throws InterruptedException {
+        SequenceTxIdGenerator generator = new SequenceTxIdGenerator();
+        generator.init("gateway-1");
+        // more threads than stripes, so some threads share a stripe counter
+        int threadNum = 64;
+        int idNum = 2000;
+        Set<String> txIds = ConcurrentHashMap.newKeySet();
+        Set<Character> stripes = ConcurrentHashMap.newKeySet();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < threadNum; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < idNum; i++) {
+                    String txId = generator.generate();
+                    txIds.add(txId);
+                    stripes.add(txId.charAt(PREFIX_LENGTH));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        startLatch.countDown();
+        for(Thread thread:threads) {
+            thread.join();
+        }
+        assertEquals(threadNum * idNum, txIds.size());
+        assertTrue(stripes.size() > 1);
+
+        Set<String> prefixes = new HashSet<>();
+        for(String txId:txIds) {
+            assertTxId(txId);
+            prefixes.add(txId.substring(0, PREFIX_LENGTH));
+        }
+        assertEquals(1, prefixes.size());
+    }
+}
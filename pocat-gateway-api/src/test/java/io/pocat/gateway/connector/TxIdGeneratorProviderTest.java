@@ -0,0 +1,17 @@
+package io.pocat.gateway.connector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TxIdGeneratorProviderTest {
+    @Test
+    public void testServiceOverridesDefaultGenerator() {
+        TxIdGeneratorProvider provider = TxIdGeneratorProvider.getInstance();
+        provider.init("gateway-1");
+        TxIdGenerator generator = provider.provide();
+        assertTrue(generator instanceof CountingTxIdGenerator);
+        assertEquals("gateway-1-0", generator.generate());
+        assertEquals("gateway-1-1", generator.generate());
+    }
+}
@@ -0,0 +1,125 @@
+package io.pocat.gateway.protocol;
+
+import io.pocat.gateway.connector.AbstractExchange;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.ErrorTemplate;
+import io.pocat.gateway.route.RouteProcessException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CompiledTemplateTest {
+    private static final RegexErrorHandler REGEX_HANDLER = new RegexErrorHandler();
+
+    private static void assertSameOutput(String template, Exchange exchange, RouteProcessException e) {
+        byte[] expected = REGEX_HANDLER.replaceVariables(template, exchange, e).getBytes(StandardCharsets.UTF_8);
+        CompiledTemplate compiled = CompiledTemplate.compile(template);
+        assertArrayEquals(template, expected, compiled.render(exchange, e));
+        assertEquals(template, new String(expected, StandardCharsets.UTF_8), compiled.renderString(exchange, e));
+    }
+
+    @Test
+    public void testSameOutputAsReplaceVariables() {
+        TemplateExchange exchange = new TemplateExchange();
+        exchange.requestHeaders.put("X-Request-Id", "req-1");
+        exchange.setAttribute("user", "alice");
+        RouteProcessException e = new RouteProcessException(40400, "Order is not found");
+
+        // header and attribute
+        assertSameOutput("{\"code\":${error.code},\"message\":\"${error.message}\",\"request\":\"${header:X-Request-Id}\",\"user\":\"${user}\"}", exchange, e);
+        // same variable twice
+        assertSameOutput("${error.code}/${error.code}", exchange, e);
+        // missing header and attribute are written as is
+        assertSameOutput("${header:X-Missing} ${missing}", exchange, e);
+        // unclosed variable
+        assertSameOutput("code ${error.code} and ${error.message", exchange, e);
+        // without variable
+        assertSameOutput("{\"code\":50000}", exchange, e);
+        assertSameOutput("", exchange, e);
+    }
+
+    @Test
+    public void testNullMessage() {
+        RouteProcessException e = new RouteProcessException(50000, null);
+        assertSameOutput("${error.code}:${error.message}", new TemplateExchange(), e);
+        assertArrayEquals("50000:null".getBytes(StandardCharsets.UTF_8), CompiledTemplate.compile("${error.code}:${error.message}").render(new TemplateExchange(), e));
+    }
+
+    @Test
+    public void testNonAsciiText() {
+        // Korean, accented latin, dash and a surrogate pair
+        TemplateExchange exchange = new TemplateExchange();
+        exchange.requestHeaders.put("X-Name", "\ud64d\uae38\ub3d9");
+        exchange.setAttribute("city", "Z\u00fcrich");
+        RouteProcessException e = new RouteProcessException(40000, "\uc798\ubabb\ub41c \uc694\uccad \u2713");
+        assertSameOutput("\uc624\ub958 ${error.code}: ${error.message} \u2013 ${header:X-Name} in ${city} \ud83d\ude00", exchange, e);
+    }
+
+    private static class RegexErrorHandler extends ProtocolErrorHandler {
+        @Override
+        public void handleError(Exchange exchange, RouteProcessException e) {
+        }
+
+        @Override
+        protected boolean validateTemplate(ErrorTemplate errorTemplate) {
+            return true;
+        }
+
+        @Override
+        protected void writeDefaultErrorResponse(Exchange exchange, RouteProcessException e) {
+        }
+    }
+
+    private static class TemplateExchange extends AbstractExchange {
+        private final Map<String, String> requestHeaders = new HashMap<>();
+
+        @Override
+        public String getCorrelationId() {
+            return getTxId();
+        }
+
+        @Override
+        public String getRequestHeader(String headerName) {
+            return requestHeaders.get(headerName);
+        }
+
+        @Override
+        public Collection<String> getRequestHeaderNames() {
+            return requestHeaders.keySet();
+        }
+
+        @Override
+        public byte[] getRequestContents() {
+            return new byte[0];
+        }
+
+        @Override
+        public Set<String> getResponseHeaderNames() {
+            return null;
+        }
+
+        @Override
+        public String getResponseHeader(String headerName) {
+            return null;
+        }
+
+        @Override
+        public void setResponseHeader(String headerName, String headerValue) {
+        }
+
+        @Override
+        public byte[] getResponseContents() {
+            return null;
+        }
+
+        @Override
+        public void setResponseContents(byte[] contents) {
+        }
+    }
+}
@@ -1,8 +0,0 @@
-package io.pocat.platform.gateway;
-
-import io.pocat.gateway.connector.Exchange;
-
-public class AccessLogRecord {
-    public AccessLogRecord(Exchange exchange) {
-    }
-}
@@ -1,34 +1,77 @@
 package io.pocat.platform.gateway;
 
+import io.pocat.common.accesslog.AccessLogHandlers;
+import io.pocat.common.accesslog.AsyncAccessLogger;
+import io.pocat.gateway.connector.Connection;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.ExchangeContext;
 import io.pocat.platform.gateway.config.AccessLoggerType;
 import io.pocat.platform.gateway.config.LogHandlerType;
+import io.pocat.platform.gateway.config.NameValueType;
+import io.pocat.platform.messagebus.MessageBusConnection;
+
+import java.util.HashMap;
+import java.util.Map;
 
 public class AccessLogger {
-    private static final Builder builder = new Builder();
+    private final AsyncAccessLogger logger;
 
-    public static Builder builder() {
-        return builder;
+    private AccessLogger(AsyncAccessLogger logger) {
+        this.logger = logger;
     }
 
-    private AccessLogger() {
+    /**
+     * @param name name of logger
+     * @param accessLoggerConfig handler configs
+     * @param connection message bus connection for channel handler
+     * @return access logger, or null if no handler is configured
+     */
+    public static AccessLogger createAccessLogger(String name, AccessLoggerType accessLoggerConfig, MessageBusConnection connection) {
+        if(accessLoggerConfig == null || accessLoggerConfig.getHandlers().isEmpty()) {
+            return null;
+        }
+        AsyncAccessLogger.Builder builder = AsyncAccessLogger.builder(name);
+        for(LogHandlerType handlerCfg:accessLoggerConfig.getHandlers()) {
+            if(handlerCfg.getType() == null) {
+                continue;
+            }
+            Map<String, String> params = new HashMap<>();
+            for(NameValueType param:handlerCfg.getParams()) {
+                params.put(param.getName(), param.getValue());
+            }
+            builder.addHandler(AccessLogHandlers.create(handlerCfg.getType(), params, connection));
+        }
+        return new AccessLogger(builder.build());
+    }
 
+    public void start() {
+        logger.start();
     }
 
-    public static AccessLogger createAccessLogger(AccessLoggerType accessLoggerConfig) {
-        AccessLogger logger = new AccessLogger();
-        for(LogHandlerType handlerCfg:accessLoggerConfig.getHandlers()) {
-            // todo setup log handler
-        }
-        return logger;
+    public void stop() {
+        logger.stop();
     }
 
-    public void log(AccessLogRecord accessLogRecord) {
+    /**
+     * Capture fields of finished exchange. Called on request threads, so it never blocks.
+     */
+    public void log(Exchange exchange) {
+        ExchangeContext ctx = exchange.getContext();
+        Connection connection = ctx == null ? null : ctx.getConnection();
+        long createdAt = exchange.getCreatedAt();
+        logger.log(createdAt, exchange.getTxId(),
+                connection == null ? null : connection.getRemoteAddress(),
+                exchange.getRequestMethod(), exchange.getRequestPath(), exchange.getResponseStatus(),
+                System.currentTimeMillis() - createdAt,
+                exchange.getRequestContentLength(),
+                exchange.getResponseContentLength());
+    }
 
+    public long getDroppedCount() {
+        return logger.getDroppedCount();
     }
 
-    public static class Builder {
-        public AccessLogger build() {
-            return new AccessLogger();
-        }
+    public long getWrittenCount() {
+        return logger.getWrittenCount();
     }
 }
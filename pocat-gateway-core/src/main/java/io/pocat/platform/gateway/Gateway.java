@@ -16,52 +16,92 @@
 
 package io.pocat.platform.gateway;
 
+import io.pocat.common.concurrent.VirtualThreads;
 import io.pocat.common.context.messagebus.EnvMessageBusContextProvider;
 import io.pocat.common.context.resources.EnvResourceContextProvider;
 import io.pocat.env.ContextProvider;
+import io.pocat.gateway.connector.TxIdGeneratorProvider;
 import io.pocat.platform.messagebus.MessageBusConnection;
 import io.pocat.platform.messagebus.MessageBusConnectionFactory;
+import io.pocat.platform.gateway.cache.CacheInvalidator;
+import io.pocat.platform.gateway.config.AdminConfigType;
 import io.pocat.platform.gateway.config.GatewayConfigType;
 import io.pocat.platform.gateway.config.ServiceConfigType;
+import io.pocat.platform.gateway.config.StageConfigType;
+import io.pocat.gateway.route.CircuitBreakerConfig;
+import io.pocat.platform.gateway.route.CircuitBreaker;
+import io.pocat.platform.gateway.route.InFlightTable;
+import io.pocat.platform.gateway.route.ReplyStreamTable;
+import io.pocat.platform.gateway.metrics.MetricRegistry;
+import io.pocat.platform.gateway.metrics.MetricWriter;
+import io.pocat.platform.gateway.metrics.MetricsConnector;
+import io.pocat.platform.gateway.utils.stage.StageMetrics;
+import io.pocat.platform.gateway.utils.stage.BlockingStageQueue;
+import io.pocat.platform.gateway.utils.stage.LockFreeStageQueue;
+import io.pocat.platform.gateway.utils.stage.OverflowPolicy;
 import io.pocat.platform.gateway.utils.stage.Stage;
+import io.pocat.platform.gateway.utils.stage.StageQueue;
 import io.pocat.platform.gateway.utils.stage.StageManager;
 import io.pocat.platform.gateway.utils.stage.StagedExecutorService;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
 import io.pocat.resources.ResourceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class Gateway {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Gateway.class);
+
     public static final String FILTER_EXECUTOR_NAME = "filter-stage";
     public static final String UPSTREAM_EXECUTOR_NAME = "upstream-stage";
     public static final String RESPONSE_EXECUTOR_NAME = "response-stage";
     public static final String DISPATCHER_EXECUTOR_NAME = "dispatcher-stage";
 
     public static final String GATEWAY_CONFIG_CONTEXT_PATH = "/env/gateway/config";
+    // Invalidation messages are subscribed with a group of each gateway, so all gateways receive them
+    private static final String CACHE_GROUP_SUFFIX = ".cache";
     private static final String[] STAGE_NAMES = new String[]{FILTER_EXECUTOR_NAME, UPSTREAM_EXECUTOR_NAME, RESPONSE_EXECUTOR_NAME, DISPATCHER_EXECUTOR_NAME};
+    // Stages which may block on I/O. They run on virtual threads in virtual thread mode.
+    private static final Set<String> BLOCKING_STAGE_NAMES = Set.of(FILTER_EXECUTOR_NAME, UPSTREAM_EXECUTOR_NAME);
 
     private final ContextProvider provider;
     private final String gatewayId;
     private ExecutorService executor;
+    private ExecutorService taskExecutor;
     private Map<String, ServiceContainer> containers = new HashMap<>();
     private ResourceManager resourceManager;
     private ResponseHandler responseHandler;
+    private CacheInvalidator cacheInvalidator;
+    // Circuit breakers of upstream channels by service. Each service keeps its own, so its reloads never reset breakers of another.
+    private final Map<String, Map<String, CircuitBreaker>> circuitBreakers = new ConcurrentHashMap<>();
     private boolean isRunning = true;
     private StageManager stageManager;
     private AccessLogger accessLogger;
     private MessageBusConnection connection;
     private GatewayConfigType gatewayConfig;
     private String responseChannel;
+    private HashedWheelTimer timer;
+    private InFlightTable inFlightTable;
+    private ReplyStreamTable replyStreamTable;
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private MetricsConnector metricsConnector;
 
     public Gateway(ContextProvider provider) {
         this.gatewayId = UUID.randomUUID().toString().replaceAll("-", "");
         this.provider = provider;
+        TxIdGeneratorProvider.getInstance().init(gatewayId);
     }
 
     public void init() {
@@ -73,23 +113,122 @@ public class Gateway {
         } catch (IOException e) {
             throw new IllegalArgumentException("Failed to parse config.", e);
         }
+        boolean virtualThreadMode = isVirtualThreadMode();
+        // Netty event loops borrow threads from this executor, so it always has platform threads.
         this.executor = Executors.newFixedThreadPool(gatewayConfig.getWorkerPoolSize());
+        this.taskExecutor = virtualThreadMode ? VirtualThreads.newVirtualThreadPerTaskExecutor() : this.executor;
         Map<String, Stage> stages = new HashMap<>();
         for(String stageName:STAGE_NAMES) {
-            stages.put(stageName, new StagedExecutorService(stageName, executor));
+            boolean virtualStage = virtualThreadMode && BLOCKING_STAGE_NAMES.contains(stageName);
+            stages.put(stageName, createStage(gatewayConfig.getStage(stageName), virtualStage));
         }
         this.stageManager = new StageManager(stages);
+        // Expiry handlers answer clients, so they run on the response stage. Tick thread only advances the wheel.
+        this.timer = HashedWheelTimer.builder()
+                .setName("gateway-timer-" + gatewayId)
+                .setTaskExecutor(stageManager.getExecutor(RESPONSE_EXECUTOR_NAME))
+                .build();
+        this.inFlightTable = new InFlightTable(timer);
+        this.replyStreamTable = new ReplyStreamTable(inFlightTable, timer);
 
-        connection = new MessageBusConnectionFactory(new EnvMessageBusContextProvider(this.provider)).newConnection(this.executor);
+        connection = new MessageBusConnectionFactory(new EnvMessageBusContextProvider(this.provider)).newConnection(this.taskExecutor);
         this.resourceManager = new ResourceManager(new EnvResourceContextProvider(this.provider));
         this.responseChannel = gatewayConfig.getResponseNamespace() + ":" + gatewayId;
-        this.responseHandler = new ResponseHandler(this.gatewayId, connection);
-        this.responseHandler.init(this.responseChannel, executor);
+        this.responseHandler = new ResponseHandler(this.gatewayId, connection, inFlightTable, replyStreamTable);
+        this.responseHandler.init(this.responseChannel, taskExecutor);
+        this.cacheInvalidator = new CacheInvalidator(connection, gatewayId + CACHE_GROUP_SUFFIX);
+        this.accessLogger = AccessLogger.createAccessLogger("gateway-" + gatewayId, gatewayConfig.getAccessLogger(), connection);
+        this.metricRegistry.register(this::collectMetrics);
+        AdminConfigType adminConfig = gatewayConfig.getAdmin();
+        if(adminConfig != null) {
+            this.metricsConnector = new MetricsConnector(metricRegistry, adminConfig.getPort(), adminConfig.getMetricsPath());
+        }
+    }
+
+    private void collectMetrics(MetricWriter writer) {
+        for(Stage stage:stageManager.getStages()) {
+            StageMetrics metrics = stage.getMetrics();
+            String name = stage.getName();
+            writer.summary("pocat_stage_wait_seconds", "Time tasks spent in stage queue", metrics.getWaitHistogram(), 1e-9, "stage", name);
+            writer.summary("pocat_stage_service_seconds", "Time workers spent running stage tasks", metrics.getServiceHistogram(), 1e-9, "stage", name);
+            writer.gauge("pocat_stage_queue_depth", "Tasks waiting in stage queue", metrics.getQueueDepth(), "stage", name);
+            writer.gauge("pocat_stage_queue_capacity", "Capacity of stage queue", metrics.getQueueCapacity(), "stage", name);
+            writer.gauge("pocat_stage_workers", "Workers of stage", metrics.getWorkerNum(), "stage", name);
+            writer.gauge("pocat_stage_active_workers", "Workers running a task", metrics.getActiveWorkerNum(), "stage", name);
+            writer.counter("pocat_stage_submitted", "Tasks submitted to stage", metrics.getSubmittedCount(), "stage", name);
+            writer.counter("pocat_stage_completed", "Tasks completed by stage", metrics.getCompletedCount(), "stage", name);
+            writer.counter("pocat_stage_rejected", "Tasks rejected by full stage", metrics.getRejectedCount(), "stage", name);
+            writer.counter("pocat_stage_shed", "Queued tasks shed by stage", metrics.getShedCount(), "stage", name);
+            writer.counter("pocat_stage_caller_runs", "Tasks run on caller thread by full stage", metrics.getCallerRunsCount(), "stage", name);
+        }
+        writer.gauge("pocat_upstream_in_flight", "Transactions waiting for upstream reply or expiration", inFlightTable.size());
+        writer.gauge("pocat_upstream_reply_streams", "Streamed replies waiting for more chunks", replyStreamTable.size());
+        for(Map.Entry<String, Map<String, CircuitBreaker>> serviceBreakers:circuitBreakers.entrySet()) {
+            String service = serviceBreakers.getKey();
+            for(CircuitBreaker circuitBreaker:serviceBreakers.getValue().values()) {
+                String channel = circuitBreaker.getName();
+                writer.gauge("pocat_circuit_breaker_state", "State of circuit breaker. 0 closed, 1 open, 2 half open", circuitBreaker.getState().ordinal(),
+                        "service", service, "channel", channel);
+                writer.counter("pocat_circuit_breaker_rejected", "Calls rejected by open circuit", circuitBreaker.getRejectedCount(), "service", service, "channel", channel);
+                writer.counter("pocat_circuit_breaker_opened", "Times circuit opened", circuitBreaker.getOpenCount(), "service", service, "channel", channel);
+            }
+        }
+        if(accessLogger != null) {
+            writer.counter("pocat_access_log_written", "Access log records written", accessLogger.getWrittenCount());
+            writer.counter("pocat_access_log_dropped", "Access log records dropped because buffer was full", accessLogger.getDroppedCount());
+        }
+    }
+
+    private boolean isVirtualThreadMode() {
+        if(!VirtualThreads.isVirtualMode(gatewayConfig.getThreadMode())) {
+            return false;
+        }
+        if(!VirtualThreads.isSupported()) {
+            LOGGER.warn("Virtual thread is not supported on this JVM. Gateway runs on platform threads.");
+            return false;
+        }
+        return true;
+    }
+
+    private Stage createStage(StageConfigType stageConfig, boolean virtualThread) {
+        StageQueue queue;
+        switch (stageConfig.getQueueType().trim().toLowerCase()) {
+            case StageConfigType.BLOCKING_QUEUE:
+                queue = new BlockingStageQueue(stageConfig.getCapacity());
+                break;
+            case StageConfigType.LOCK_FREE_QUEUE:
+            case "mpsc":
+                queue = new LockFreeStageQueue(stageConfig.getCapacity());
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid queue type [" + stageConfig.getQueueType() + "] of stage [" + stageConfig.getName() + "]");
+        }
+        StagedExecutorService.Builder builder = StagedExecutorService.builder(stageConfig.getName())
+                .setQueue(queue)
+                .setMinWorkers(stageConfig.getMinWorkers())
+                .setKeepAlive(stageConfig.getKeepAlive(), TimeUnit.MILLISECONDS)
+                .setOverflowPolicy(OverflowPolicy.of(stageConfig.getOverflowPolicy()));
+        int maxWorkers = stageConfig.getMaxWorkers();
+        if(virtualThread) {
+            // A virtual worker is started for every queued task while no worker is idle.
+            // So concurrency of blocking tasks is bounded by queue capacity, not by a thread pool size.
+            builder.setThreadFactory(VirtualThreads.newVirtualThreadFactory(stageConfig.getName() + "-virtual-"));
+            if(maxWorkers <= 0) {
+                maxWorkers = stageConfig.getCapacity();
+            }
+        } else if(maxWorkers <= 0) {
+            maxWorkers = StageConfigType.DEFAULT_MAX_WORKERS;
+        }
+        return builder.setMaxWorkers(Math.max(maxWorkers, stageConfig.getMinWorkers())).build();
     }
 
     public void start() {
         this.isRunning = true;
         stageManager.start();
+        timer.start();
+        if(this.accessLogger != null) {
+            this.accessLogger.start();
+        }
         try {
             this.responseHandler.start();
         } catch (IOException e) {
@@ -106,6 +245,9 @@ public class Gateway {
         for (ServiceContainer container : this.containers.values()) {
             container.start();
         }
+        if(this.metricsConnector != null) {
+            this.metricsConnector.start();
+        }
     }
 
     public void join() throws InterruptedException {
@@ -117,6 +259,9 @@ public class Gateway {
     }
 
     public void shutdown() {
+        if(this.metricsConnector != null) {
+            this.metricsConnector.stop();
+        }
         try {
             this.responseHandler.stop();
         } catch (IOException e) {
@@ -125,6 +270,19 @@ public class Gateway {
         for(ServiceContainer container:this.containers.values()) {
             container.stop();
         }
+        if(this.accessLogger != null) {
+            // Write records of responses already sent
+            this.accessLogger.stop();
+        }
+        if(this.stageManager != null) {
+            this.stageManager.stop();
+        }
+        if(this.timer != null) {
+            this.timer.stop();
+        }
+        if(this.taskExecutor != null && this.taskExecutor != this.executor) {
+            this.taskExecutor.shutdown();
+        }
         if(this.executor != null) {
             this.executor.shutdown();
         }
@@ -151,6 +309,48 @@ public class Gateway {
         return stageManager;
     }
 
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    /**
+     * @return circuit breaker of channel shared by every route of service. Breaker with the same config is kept with its state,
+     * and a different config replaces it. Routes which still hold the old breaker report to it until they are reloaded.
+     */
+    public CircuitBreaker getCircuitBreaker(String serviceName, String channelName, CircuitBreakerConfig config) {
+        Map<String, CircuitBreaker> serviceBreakers = circuitBreakers.computeIfAbsent(serviceName, name -> new ConcurrentHashMap<>());
+        return serviceBreakers.compute(channelName, (name, breaker) -> {
+            if(breaker != null && breaker.isConfiguredBy(config)) {
+                return breaker;
+            }
+            if(breaker != null) {
+                LOGGER.warn("Circuit breaker of upstream channel [" + name + "] of service [" + serviceName + "] is reconfigured. Its state is reset.");
+            }
+            return new CircuitBreaker(name, config);
+        });
+    }
+
+    public Collection<CircuitBreaker> getCircuitBreakers(String serviceName) {
+        Map<String, CircuitBreaker> serviceBreakers = circuitBreakers.get(serviceName);
+        return serviceBreakers == null ? Collections.emptyList() : Collections.unmodifiableCollection(serviceBreakers.values());
+    }
+
+    public CacheInvalidator getCacheInvalidator() {
+        return cacheInvalidator;
+    }
+
+    public InFlightTable getInFlightTable() {
+        return inFlightTable;
+    }
+
+    public ReplyStreamTable getReplyStreamTable() {
+        return replyStreamTable;
+    }
+
     public MessageBusConnection getMessageBusConnection() {
         return connection;
     }
@@ -3,6 +3,7 @@ package io.pocat.platform.gateway;
 public class MessageConstants {
     public static final int SUCCESS_CODE = 0;
     public static final int BAD_REQUEST = 40000;
+    public static final int MISSING_TOPIC_VARIABLE = 40002;
     public static final int NOT_AUTHORIZED = 40100;
     public static final int FORBIDDEN = 40300;
     public static final int NOT_FOUND = 40400;
@@ -13,6 +14,8 @@ public class MessageConstants {
     public static final int UNKNOWN_ERROR = 50000;
     public static final int BAD_GATEWAY = 50200;
     public static final int SERVICE_UNAVAILABLE = 50300;
+    public static final int ROUTE_SATURATED = 50301;
+    public static final int CIRCUIT_OPEN = 50302;
     public static final int GATEWAY_TIMEOUT = 50400;
 
     public static final String TX_ID_HEADER_NAME = "Tx-Id";
@@ -20,23 +20,31 @@ import io.pocat.gateway.message.MessageDelivery;
 import io.pocat.gateway.message.MessageHeaders;
 import io.pocat.platform.messagebus.MessageBusConnection;
 import io.pocat.platform.gateway.route.DownStreamProcedure;
-import io.pocat.platform.gateway.route.DownStreamProcedureRegistry;
+import io.pocat.platform.gateway.route.InFlightTable;
+import io.pocat.platform.gateway.route.InFlightTransaction;
+import io.pocat.platform.gateway.route.ReplyStreamTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
+import static io.pocat.gateway.message.MessageHeaders.CHUNK_SEQ_HEADER_NAME;
 import static io.pocat.platform.gateway.MessageConstants.TX_ID_HEADER_NAME;
 
 public class ResponseHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResponseHandler.class);
     private final String gatewayId;
+    private final InFlightTable inFlightTable;
+    private final ReplyStreamTable replyStreamTable;
     private MessageBusConnection connection;
     private ExecutorService executor;
 
-    public ResponseHandler(String gatewayId, MessageBusConnection connection) {
+    public ResponseHandler(String gatewayId, MessageBusConnection connection, InFlightTable inFlightTable, ReplyStreamTable replyStreamTable) {
         this.gatewayId = gatewayId;
+        this.inFlightTable = inFlightTable;
+        this.replyStreamTable = replyStreamTable;
         this.connection = connection;
     }
 
@@ -51,7 +59,12 @@ public class ResponseHandler {
 
     public void start() throws IOException {
         connection.subscribe(this.gatewayId, (msgSource, messageHeader, payload) -> executor.execute(() -> {
-            DownStreamProcedure procedure = DownStreamProcedureRegistry.getInstance().unregister(messageHeader.get(TX_ID_HEADER_NAME));
+            if(messageHeader.containsKey(CHUNK_SEQ_HEADER_NAME)) {
+                handleChunk(messageHeader, payload);
+                return;
+            }
+            InFlightTransaction tx = inFlightTable.complete(messageHeader.get(TX_ID_HEADER_NAME));
+            DownStreamProcedure procedure = tx == null ? null : tx.getContinuation();
             if(procedure == null) {
                 LOGGER.warn("Response for txid [" + messageHeader.get(TX_ID_HEADER_NAME) + "] not exist. Already time-outed.");
             } else {
@@ -71,6 +84,27 @@ public class ResponseHandler {
         }));
     }
 
+    /**
+     * Chunks of a streamed reply, which may arrive out of order since they are handled concurrently.
+     */
+    private void handleChunk(Map<String, String> messageHeader, byte[] payload) {
+        MessageHeaders headers = new MessageHeaders(messageHeader);
+        boolean accepted = replyStreamTable.offer(new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return payload;
+            }
+        });
+        if(!accepted) {
+            LOGGER.warn("Reply chunk for txid [" + messageHeader.get(TX_ID_HEADER_NAME) + "] not expected. Already time-outed or failed.");
+        }
+    }
+
     public void stop() throws IOException {
 
     }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.platform.gateway;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.protocol.ProtocolErrorHandler;
+import io.pocat.gateway.protocol.ProtocolRouter;
+import io.pocat.gateway.route.Route;
+import io.pocat.gateway.route.RouteFilter;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.platform.gateway.cache.ResponseCache;
+import io.pocat.platform.gateway.route.RouteProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Router, processors and filters of route group. Built without touching state shared with other tables,
+ * so a table which fails to build leaves the service as it is.
+ */
+final class RouteTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteTable.class);
+
+    final ProtocolRouter router;
+    final ProtocolErrorHandler errorHandler;
+    final Map<String, RouteProcessor> processors;
+    final List<RouteFilter> filters;
+    final List<Route> routes;
+    final Map<String, ResponseCache> caches;
+    // Max in-flight of upstream channels. If routes of a channel set different limits, the smallest wins.
+    final Map<String, Integer> channelLimits;
+    final long maxExpireIn;
+
+    RouteTable(ProtocolRouter router, ProtocolErrorHandler errorHandler, Map<String, RouteProcessor> processors, List<RouteFilter> filters,
+               List<Route> routes, Map<String, ResponseCache> caches, Map<String, Integer> channelLimits, long maxExpireIn) {
+        this.router = router;
+        this.errorHandler = errorHandler;
+        this.processors = processors;
+        this.filters = filters;
+        this.routes = routes;
+        this.caches = caches;
+        this.channelLimits = channelLimits;
+        this.maxExpireIn = maxExpireIn;
+    }
+
+    /**
+     * Exchange stays on this table to the end even if routes are reloaded meanwhile.
+     * @throws RouteProcessException if no route of this table matches exchange
+     */
+    void process(Exchange exchange) throws RouteProcessException {
+        Route route = router.findRoute(exchange);
+        processors.get(route.getName()).process(exchange);
+    }
+
+    static void destroyFilters(List<RouteFilter> filters) {
+        for(RouteFilter filter:filters) {
+            try {
+                filter.destroy();
+            } catch (Exception e) {
+                LOGGER.warn("Destroy filter [" + filter.getClass().getName() + "] failed.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.platform.gateway;
+
+import io.pocat.gateway.route.ResponseCachePolicy;
+import io.pocat.gateway.route.Route;
+import io.pocat.platform.gateway.cache.CacheInvalidator;
+import io.pocat.platform.gateway.route.AdmissionController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current route table of a service. Reload builds a new table and swaps it with the current one.
+ * Admission bulkheads and cache invalidation are shared by the tables, so they are changed only for a table which is built.
+ */
+final class RouteTableManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteTableManager.class);
+    // Old filters are destroyed after the longest route expiration so in-flight exchanges can finish with them
+    private static final long RELOAD_GRACE_MILLIS = 1000;
+
+    private final String name;
+    private final RouteTableBuilder builder;
+    private final AdmissionController admission;
+    private final CacheInvalidator cacheInvalidator;
+    private final Set<RouteTable> retiredTables = ConcurrentHashMap.newKeySet();
+
+    private volatile RouteTable routeTable;
+    private ScheduledExecutorService retireExecutor;
+
+    RouteTableManager(String name, RouteTableBuilder builder, AdmissionController admission, CacheInvalidator cacheInvalidator) {
+        this.name = name;
+        this.builder = builder;
+        this.admission = admission;
+        this.cacheInvalidator = cacheInvalidator;
+    }
+
+    synchronized void init() throws IOException {
+        apply(builder.build());
+    }
+
+    RouteTable getRouteTable() {
+        return routeTable;
+    }
+
+    /**
+     * @param retireExecutor executor which destroys filters of replaced tables after grace time. Without it they are destroyed at once.
+     */
+    void setRetireExecutor(ScheduledExecutorService retireExecutor) {
+        this.retireExecutor = retireExecutor;
+    }
+
+    /**
+     * Rebuild route table and swap it with current one.
+     * Exchanges already dispatched finish on the old table. On failure the old table and shared state stay.
+     * @return true if new route table is applied
+     */
+    synchronized boolean reload() {
+        RouteTable newTable;
+        try {
+            newTable = builder.build();
+        } catch (Exception e) {
+            LOGGER.error("Reload " + name + " failed. Keep current routes.", e);
+            return false;
+        }
+        RouteTable oldTable = apply(newTable);
+        LOGGER.info("Reload " + name + " done. " + newTable.processors.size() + " routes.");
+
+        if(!oldTable.filters.isEmpty()) {
+            retiredTables.add(oldTable);
+            if(retireExecutor != null) {
+                try {
+                    retireExecutor.schedule(() -> destroyRetired(oldTable), oldTable.maxExpireIn + RELOAD_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Container is stopping
+                    destroyRetired(oldTable);
+                }
+            } else {
+                destroyRetired(oldTable);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Caches of new table are registered before the swap. No exchange fills them before it, so no invalidation is missed.
+     * Bulkheads are updated after the swap, so exchanges of old table never lose bulkheads of their routes before it.
+     * Exchange of a new route which enters before its bulkhead is added runs without route limit.
+     * @return replaced table, or null on init
+     */
+    private RouteTable apply(RouteTable newTable) {
+        registerCaches(newTable);
+        RouteTable oldTable = this.routeTable;
+        this.routeTable = newTable;
+
+        for(Route route:newTable.routes) {
+            admission.addRoute(route.getName(), route.getMaxConcurrency(), route.getMaxQueue());
+        }
+        for(Map.Entry<String, Integer> channelLimit:newTable.channelLimits.entrySet()) {
+            admission.addChannel(channelLimit.getKey(), channelLimit.getValue());
+        }
+        admission.retainBulkheads(newTable.processors.keySet(), newTable.channelLimits.keySet());
+        if(oldTable != null) {
+            unregisterCaches(oldTable);
+        }
+        return oldTable;
+    }
+
+    private void registerCaches(RouteTable table) {
+        for(Route route:table.routes) {
+            ResponseCachePolicy cachePolicy = route.getCachePolicy();
+            if(cachePolicy != null && cachePolicy.getInvalidationSource() != null) {
+                cacheInvalidator.register(cachePolicy.getInvalidationSource(), table.caches.get(route.getName()));
+            }
+        }
+    }
+
+    private void unregisterCaches(RouteTable table) {
+        for(Route route:table.routes) {
+            ResponseCachePolicy cachePolicy = route.getCachePolicy();
+            if(cachePolicy != null && cachePolicy.getInvalidationSource() != null) {
+                cacheInvalidator.unregister(cachePolicy.getInvalidationSource(), table.caches.get(route.getName()));
+            }
+        }
+    }
+
+    /**
+     * Destroy filters of replaced route table once, either by its delayed task or by destroy.
+     */
+    private void destroyRetired(RouteTable table) {
+        if(retiredTables.remove(table)) {
+            RouteTable.destroyFilters(table.filters);
+        }
+    }
+
+    /**
+     * Destroy filters of current and replaced tables. Delayed destroy of replaced filters is dropped by stopping retire executor.
+     */
+    void destroy() {
+        for(RouteTable retiredTable:retiredTables) {
+            destroyRetired(retiredTable);
+        }
+        RouteTable.destroyFilters(routeTable.filters);
+    }
+
+    interface RouteTableBuilder {
+        /**
+         * Build a table without changing state shared with the current table.
+         */
+        RouteTable build() throws IOException;
+    }
+}
@@ -17,9 +17,13 @@
 package io.pocat.platform.gateway;
 
 import io.pocat.env.ContextProvider;
+import io.pocat.env.EventType;
+import io.pocat.env.EventWatcher;
 import io.pocat.gateway.connector.Exchange;
 import io.pocat.gateway.protocol.*;
 import io.pocat.gateway.route.*;
+import io.pocat.platform.gateway.cache.ResponseCache;
+import io.pocat.platform.gateway.config.AdmissionConfigType;
 import io.pocat.platform.gateway.config.ConnectorConfigType;
 import io.pocat.platform.gateway.config.ServiceConfigType;
 import io.pocat.platform.gateway.config.TLSConfigType;
@@ -27,10 +31,14 @@ import io.pocat.platform.gateway.connector.Server;
 import io.pocat.platform.gateway.connector.ServerConnector;
 import io.pocat.platform.gateway.connector.TlsConnectionHandler;
 import io.pocat.platform.gateway.connector.WebsocketConnectionHandler;
+import io.pocat.platform.gateway.metrics.EventLoopLagMonitor;
+import io.pocat.platform.gateway.metrics.MetricCollector;
+import io.pocat.platform.gateway.metrics.MetricWriter;
+import io.pocat.platform.gateway.metrics.RouteMetrics;
 import io.pocat.platform.gateway.route.*;
-import io.pocat.platform.gateway.utils.ExpireRegistry;
 import io.pocat.platform.gateway.utils.clazz.ClassHelper;
 import io.pocat.platform.gateway.utils.clazz.InstantiationFailedException;
+import io.pocat.platform.gateway.utils.stage.Rejectable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +47,11 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.pocat.platform.gateway.Gateway.*;
 
@@ -50,19 +62,28 @@ public class ServiceContainer {
     private static final String CHANNEL_HOME = "/env/context/channels/";
     private static final String ENDPOINTS_HOME = "/env/context/endpoints/";
     private static final String FILE_HOME = "/env/files";
+    // Coalesce change events of one edit, e.g. a group file and its route files
+    private static final long RELOAD_DELAY_MILLIS = 500;
 
     private final Gateway gateway;
     private final ContextProvider ctxProvider;
-    private final Map<String, RouteProcessor> processors = new HashMap<>();
+    private final AtomicBoolean reloadPending = new AtomicBoolean(false);
 
-    private ProtocolErrorHandler routeGroupErrorHandler;
-    private ProtocolRouter router;
+    // Router, processors and filters of route group. Replaced as a whole on reload.
+    private RouteTableManager routeTables;
+    private ScheduledExecutorService reloadExecutor;
     private Server server;
 
     private ProtocolFactory protocolFactory;
     private AccessLogger accessLogger;
+    // Service has its own access logger instead of the gateway one
+    private boolean ownAccessLogger = false;
     private RouteProcedure responseProcedure;
+    private RouteProcedure inlineResponseProcedure;
     private ServiceConfigType serviceConfig;
+    private AdmissionController admission;
+    private final List<EventLoopLagMonitor> lagMonitors = new ArrayList<>();
+    private final MetricCollector metricCollector = this::collectMetrics;
 
     public ServiceContainer(Gateway gateway) {
         this.gateway = gateway;
@@ -72,41 +93,47 @@ public class ServiceContainer {
 
     public void init(ServiceConfigType serviceConfig) {
         this.serviceConfig = serviceConfig;
-        if(serviceConfig.getAccessLogger() != null) {
-            accessLogger = AccessLogger.builder().build();
+        AdmissionConfigType admissionConfig = serviceConfig.getAdmission();
+        this.admission = new AdmissionController(serviceConfig.getName(), admissionConfig.getMaxInFlight(),
+                admissionConfig.getRouteMaxInFlight(), admissionConfig.getErrorCode(), admissionConfig.getRetryAfter());
+        // Exchange waited in route queue goes on in dispatcher stage, not on the thread which answered another one
+        admission.setQueueExecutor(gateway.getExecutorManager().getExecutor(DISPATCHER_EXECUTOR_NAME));
+        AccessLogger serviceAccessLogger = AccessLogger.createAccessLogger("service-" + serviceConfig.getName(),
+                serviceConfig.getAccessLogger(), gateway.getMessageBusConnection());
+        if(serviceAccessLogger != null) {
+            this.accessLogger = serviceAccessLogger;
+            this.ownAccessLogger = true;
         }
         this.protocolFactory = ProtocolFactoryProvider.getInstance().provide(serviceConfig.getProtocol());
         if(protocolFactory == null) {
             throw new IllegalStateException("Not supported protocol [" + serviceConfig.getProtocol() + "].");
         }
-        this.router = protocolFactory.createRouter();
-
-        ProtocolRouteGroupFactory routeGroupFactory = protocolFactory.createRouteGroupFactory();
-        RouteGroup routeGroup;
-        try {
-            routeGroup = routeGroupFactory.createRouteGroup(
-                    new RouteGroupContextImpl(ctxProvider,
-                            ROUTE_GROUP_CONTEXT_HOME_PATH + CONTEXT_SEPARATOR + serviceConfig.getRouteGroup()
-                    )
-            );
-        } catch (IOException e) {
-            throw new IllegalArgumentException("Route group creation failed.", e);
-        }
 
         ExecutorService responseExecutor = gateway.getExecutorManager().getExecutor(RESPONSE_EXECUTOR_NAME);
 
         this.responseProcedure = (exchange, chain) -> {
+            admission.release(exchange);
             try {
-                responseExecutor.execute(() -> {
-                    //accessLogger.log(new AccessLogRecord(exchange));
-                    exchange.close();
-                });
+                responseExecutor.execute(() -> complete(exchange));
             } catch (RejectedExecutionException e) {
-                LOGGER.warn("Exceed thread pool size : Reject to increase response handler.");
+                // Response must not be dropped. Client waits for it.
+                LOGGER.warn("Exceed thread pool size : Write response on caller thread.");
+                complete(exchange);
             }
         };
 
-        buildRouteProcessors(routeGroup);
+        this.inlineResponseProcedure = (exchange, chain) -> {
+            admission.release(exchange);
+            complete(exchange);
+        };
+
+        this.routeTables = new RouteTableManager("route group [" + serviceConfig.getRouteGroup() + "] of service [" + serviceConfig.getName() + "]",
+                this::buildRouteTable, admission, gateway.getCacheInvalidator());
+        try {
+            routeTables.init();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Route group creation failed.", e);
+        }
 
         this.server = new Server();
         server.setExecutor(gateway.getExecutor());
@@ -117,130 +144,377 @@ public class ServiceContainer {
 
         ExecutorService dispatcherExecutor = gateway.getExecutorManager().getExecutor(DISPATCHER_EXECUTOR_NAME);
         server.setHandler(exchange -> {
+            if(!admission.admit(exchange)) {
+                refuse(exchange, admission.reject("Service [" + serviceConfig.getName() + "] is busy."));
+                return;
+            }
             try {
-                dispatcherExecutor.execute(() -> {
-                    try {
-                        Route route = router.findRoute(exchange);
-                        RouteProcessor processor = processors.get(route.getName());
-                        processor.process(exchange);
-                    } catch (RouteProcessException e) {
-                        routeGroupErrorHandler.handleError(exchange, e);
-                        responseProcedure.call(exchange, null);
+                dispatcherExecutor.execute(new Rejectable() {
+                    @Override
+                    public void run() {
+                        dispatch(exchange);
+                    }
+
+                    @Override
+                    public void reject() {
+                        refuse(exchange, admission.rejectByStage(DISPATCHER_EXECUTOR_NAME));
                     }
                 });
             } catch (RejectedExecutionException e) {
                 LOGGER.warn("Exceed thread pool size : Reject to increase dispatcher handler.");
+                refuse(exchange, admission.rejectByStage(DISPATCHER_EXECUTOR_NAME));
             }
         });
+        gateway.getMetricRegistry().register(metricCollector);
+    }
+
+    private void dispatch(Exchange exchange) {
+        RouteTable table = routeTables.getRouteTable();
+        try {
+            table.process(exchange);
+        } catch (RouteProcessException e) {
+            table.errorHandler.handleError(exchange, e);
+            responseProcedure.call(exchange, null);
+        }
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admission;
     }
 
     public void start() {
+        if(ownAccessLogger) {
+            accessLogger.start();
+        }
+        this.reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "route-reloader-" + serviceConfig.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        routeTables.setRetireExecutor(reloadExecutor);
+        String groupPath = ROUTE_GROUP_CONTEXT_HOME_PATH + CONTEXT_SEPARATOR + serviceConfig.getRouteGroup();
+        try {
+            ctxProvider.watchContext(groupPath, new RouteGroupWatcher());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to watch route group [" + groupPath + "]. Routes are not reloaded on change.", e);
+        }
         this.server.start();
     }
 
     public void stop() {
+        gateway.getMetricRegistry().unregister(metricCollector);
         this.server.stop();
+        if(this.reloadExecutor != null) {
+            this.reloadExecutor.shutdownNow();
+        }
+        routeTables.destroy();
+        if(ownAccessLogger) {
+            accessLogger.stop();
+        }
     }
 
-    private void buildRouteProcessors(RouteGroup routeGroup) {
-        this.routeGroupErrorHandler = protocolFactory.createErrorHandler();
+    /**
+     * Rebuild route group and swap it with current one. Connectors keep running.
+     * Exchanges already dispatched finish on the old table. On failure the old table stays.
+     * @return true if new route table is applied
+     */
+    public boolean reloadRoutes() {
+        return routeTables.reload();
+    }
+
+    private void scheduleReload() {
+        // Every event while a reload is pending is covered by that reload
+        if(reloadPending.compareAndSet(false, true)) {
+            try {
+                reloadExecutor.schedule(() -> {
+                    reloadPending.set(false);
+                    reloadRoutes();
+                }, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Container is stopping
+                reloadPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Write error response on current thread. Used when exchange cannot be handed to any stage.
+     */
+    private void refuse(Exchange exchange, RouteProcessException e) {
+        routeTables.getRouteTable().errorHandler.handleError(exchange, e);
+        admission.release(exchange);
+        complete(exchange);
+    }
+
+    private void complete(Exchange exchange) {
+        if(accessLogger != null) {
+            accessLogger.log(exchange);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Build route group with its router and processors. Filters are initialized here, before the table is used.
+     * Admission and cache invalidation are left to {@link RouteTableManager}, so a failed build changes nothing shared.
+     */
+    private RouteTable buildRouteTable() throws IOException {
+        ProtocolRouteGroupFactory routeGroupFactory = protocolFactory.createRouteGroupFactory();
+        RouteGroup routeGroup = routeGroupFactory.createRouteGroup(
+                new RouteGroupContextImpl(ctxProvider,
+                        ROUTE_GROUP_CONTEXT_HOME_PATH + CONTEXT_SEPARATOR + serviceConfig.getRouteGroup()
+                )
+        );
+
+        ProtocolRouter router = protocolFactory.createRouter();
+        ProtocolErrorHandler groupErrorHandler = protocolFactory.createErrorHandler();
         for(ErrorTemplate template:routeGroup.getErrorTemplates()) {
-            this.routeGroupErrorHandler.addErrorTemplate(template);
+            groupErrorHandler.addErrorTemplate(template);
+        }
+
+        Map<String, RouteProcessor> processors = new HashMap<>();
+        Map<String, ResponseCache> caches = new HashMap<>();
+        List<Route> routes = new ArrayList<>();
+        List<RouteFilter> filters = new ArrayList<>();
+        long maxExpireIn = 0;
+        checkCircuitBreakerConfigs(routeGroup);
+        try {
+            for(String routeName:routeGroup.getRouteNames()) {
+                Route route = routeGroup.getRoute(routeName);
+                router.addRoute(route);
+                ResponseCachePolicy cachePolicy = route.getCachePolicy();
+                ResponseCache cache = null;
+                if(cachePolicy != null) {
+                    cache = new ResponseCache(route.getName(), cachePolicy.getMaxSize(), cachePolicy.getTtl(), cachePolicy.isOffHeap());
+                    caches.put(route.getName(), cache);
+                }
+                processors.put(route.getName(), buildRouteProcessor(route, groupErrorHandler, filters, cache));
+                routes.add(route);
+                maxExpireIn = Math.max(maxExpireIn, route.getExpireIn());
+            }
+        } catch (RuntimeException e) {
+            RouteTable.destroyFilters(filters);
+            throw e;
+        }
+        // If routes of a channel set different limits, the smallest wins
+        Map<String, Integer> channelLimits = new HashMap<>();
+        for(Route route:routes) {
+            UpstreamConfig upstreamConfig = route.getUpstreamConfig();
+            if(upstreamConfig != null && upstreamConfig.getMaxConcurrency() > AdmissionController.UNLIMITED) {
+                channelLimits.merge(upstreamConfig.getRequestChannel(), upstreamConfig.getMaxConcurrency(), Math::min);
+            }
         }
+        return new RouteTable(router, groupErrorHandler, processors, filters, routes, caches, channelLimits, maxExpireIn);
+    }
 
+    /**
+     * Routes of a channel share the circuit breaker of this service, so they must not configure it differently.
+     */
+    private void checkCircuitBreakerConfigs(RouteGroup routeGroup) {
+        Map<String, CircuitBreakerConfig> breakerConfigs = new HashMap<>();
         for(String routeName:routeGroup.getRouteNames()) {
-            Route route = routeGroup.getRoute(routeName);
-            this.router.addRoute(route);
+            UpstreamConfig upstreamConfig = routeGroup.getRoute(routeName).getUpstreamConfig();
+            if(upstreamConfig == null || upstreamConfig.getCircuitBreakerConfig() == null) {
+                continue;
+            }
+            String channelName = upstreamConfig.getRequestChannel();
+            CircuitBreakerConfig other = breakerConfigs.putIfAbsent(channelName, upstreamConfig.getCircuitBreakerConfig());
+            if(other != null && !CircuitBreaker.isSameConfig(other, upstreamConfig.getCircuitBreakerConfig())) {
+                throw new IllegalArgumentException("Routes of upstream channel [" + channelName + "] have different circuit breaker configs.");
+            }
+        }
+    }
+
+    /**
+     * @return response cache of route, or null if route does not cache responses
+     */
+    public ResponseCache getResponseCache(String routeName) {
+        return routeTables.getRouteTable().caches.get(routeName);
+    }
+
+    private void collectMetrics(MetricWriter writer) {
+        String service = serviceConfig.getName();
+        writer.gauge("pocat_service_in_flight", "Exchanges admitted and not yet responded", admission.getInFlight(), "service", service);
+        writer.counter("pocat_service_shed", "Exchanges refused by service admission", admission.getShedCount(), "service", service);
+        writer.counter("pocat_service_stage_rejected", "Exchanges refused because a stage was full", admission.getStageRejectedCount(), "service", service);
+
+        RouteTable table = routeTables.getRouteTable();
+        for(RouteProcessor processor:table.processors.values()) {
+            RouteMetrics metrics = processor.getMetrics();
+            String route = metrics.getRouteName();
+            writer.summary("pocat_route_latency_seconds", "End-to-end latency of route until response is ready", metrics.getLatency(), 1e-9,
+                    "service", service, "route", route);
+            writer.counter("pocat_route_errors", "Exchanges of route answered with error", metrics.getErrorCount(), "service", service, "route", route);
+            for(int i = 0; i < metrics.getProcedureNum(); i++) {
+                writer.summary("pocat_route_procedure_start_seconds", "Time from exchange creation to the start of route procedure", metrics.getBoundary(i), 1e-9,
+                        "service", service, "route", route, "index", String.valueOf(i), "procedure", metrics.getProcedureName(i));
+            }
+        }
+        collectBulkheads(writer, service, "route", admission.getRouteBulkheads());
+        collectBulkheads(writer, service, "channel", admission.getChannelBulkheads());
+        for(ResponseCache cache:table.caches.values()) {
+            String name = cache.getName();
+            writer.counter("pocat_cache_hits", "Response cache hits", cache.getHitCount(), "service", service, "cache", name);
+            writer.counter("pocat_cache_misses", "Response cache misses", cache.getMissCount(), "service", service, "cache", name);
+            writer.counter("pocat_cache_evictions", "Response cache evictions", cache.getEvictionCount(), "service", service, "cache", name);
+            writer.gauge("pocat_cache_size_bytes", "Bytes held by response cache", cache.getSize(), "service", service, "cache", name);
+            writer.gauge("pocat_cache_entries", "Entries held by response cache", cache.getEntryNum(), "service", service, "cache", name);
+        }
+        for(EventLoopLagMonitor lagMonitor:lagMonitors) {
+            writer.summary("pocat_event_loop_lag_seconds", "Delay of event loop in running a scheduled probe", lagMonitor.getLag(), 1e-9,
+                    "service", service, "connector", lagMonitor.getName());
+        }
+    }
 
-            processors.put(route.getName(), buildRouteProcessor(route));
+    private static void collectBulkheads(MetricWriter writer, String service, String kind, Collection<Bulkhead> bulkheads) {
+        for(Bulkhead bulkhead:bulkheads) {
+            String name = bulkhead.getName();
+            writer.gauge("pocat_bulkhead_in_flight", "Exchanges running in bulkhead", bulkhead.getInFlight(), "service", service, "kind", kind, "name", name);
+            writer.gauge("pocat_bulkhead_queued", "Exchanges waiting for bulkhead", bulkhead.getQueued(), "service", service, "kind", kind, "name", name);
+            writer.gauge("pocat_bulkhead_saturation", "In-flight ratio to max concurrency of bulkhead", bulkhead.getSaturation(), "service", service, "kind", kind, "name", name);
+            writer.counter("pocat_bulkhead_rejected", "Exchanges rejected by bulkhead", bulkhead.getRejectedCount(), "service", service, "kind", kind, "name", name);
         }
     }
 
-    private RouteProcessor buildRouteProcessor(Route route) {
+    private RouteProcessor buildRouteProcessor(Route route, ProtocolErrorHandler groupErrorHandler, List<RouteFilter> filters, ResponseCache cache) {
         ProtocolErrorHandler errorHandler = protocolFactory.createErrorHandler();
-        errorHandler.setParentHandler(this.routeGroupErrorHandler);
+        errorHandler.setParentHandler(groupErrorHandler);
         List<ErrorTemplate> errorTemplates = route.getErrorTemplates();
         for(ErrorTemplate errorTemplate:errorTemplates) {
             errorHandler.addErrorTemplate(errorTemplate);
         }
 
+        RouteMetrics routeMetrics = new RouteMetrics(route.getName());
         RouteErrorProcedure errorProcedure = (exchange, e) -> {
             errorHandler.handleError(exchange, e);
+            routeMetrics.recordError();
+            routeMetrics.recordComplete(exchange);
             responseProcedure.call(exchange, null);
         };
+        InFlightTable inFlightTable = gateway.getInFlightTable();
+        RouteErrorProcedure failProcedure = (exchange, e) -> {
+            // expired exchange is answered by expired handler
+            if(inFlightTable.fail(exchange)) {
+                errorProcedure.call(exchange, e);
+            }
+        };
 
         List<RouteProcedure> procedureChain = new ArrayList<>();
+        // Name of each procedure for latency metrics, in chain order
+        List<String> procedureNames = new ArrayList<>();
         ExecutorService filterExecutor = this.gateway.getExecutorManager().getExecutor(FILTER_EXECUTOR_NAME);
+        boolean inline = route.getExecutionMode() == ExecutionMode.INLINE;
         for(RouteTask task:route.getBeforeFilterTasks()) {
-            procedureChain.add(createRouteProcedure(route, filterExecutor, task::doTask, errorProcedure));
+            procedureChain.add(createRouteProcedure(route, filterExecutor, task, task.isBlocking(), inline, failProcedure));
+            procedureNames.add("before-task:" + task.getClass().getSimpleName());
         }
 
-        for(RouteFilterConfig filterConfig:route.getRequestFilterConfigs()) {
-            RouteFilter filter = initFilter(filterConfig);
-            procedureChain.add(createRouteProcedure(route, filterExecutor, filter::doFilter, errorProcedure));
+        String filterNamePrefix = serviceConfig.getName() + "/" + route.getName() + "/";
+        List<RouteFilterConfig> requestFilterConfigs = route.getRequestFilterConfigs();
+        for(int i = 0; i < requestFilterConfigs.size(); i++) {
+            RouteFilter filter = initFilter(requestFilterConfigs.get(i), filterNamePrefix + "request-filter-" + i);
+            filters.add(filter);
+            procedureChain.add(createRouteProcedure(route, filterExecutor, filter::doFilter, filter.isBlocking(), inline, failProcedure));
+            procedureNames.add("request-filter:" + filter.getClass().getSimpleName());
         }
 
-        procedureChain.add(createUpstreamProcedure(route, errorProcedure));
-
-        for(RouteFilterConfig filterConfig:route.getResponseFilterConfigs()) {
-            RouteFilter filter = initFilter(filterConfig);
-            procedureChain.add(createRouteProcedure(route, filterExecutor, filter::doFilter, errorProcedure));
+        CircuitBreaker circuitBreaker = createCircuitBreaker(route);
+        RouteProcedure upstreamProcedure = createUpstreamProcedure(route, circuitBreaker, failProcedure);
+        if(cache != null) {
+            upstreamProcedure = new CachedUpstreamProcedure(route.getCachePolicy(), cache, inFlightTable, upstreamProcedure);
+        }
+        procedureChain.add(upstreamProcedure);
+        procedureNames.add("upstream");
+
+        List<RouteFilterConfig> responseFilterConfigs = route.getResponseFilterConfigs();
+        for(int i = 0; i < responseFilterConfigs.size(); i++) {
+            RouteFilter filter = initFilter(responseFilterConfigs.get(i), filterNamePrefix + "response-filter-" + i);
+            filters.add(filter);
+            procedureChain.add(createRouteProcedure(route, filterExecutor, filter::doFilter, filter.isBlocking(), inline, failProcedure));
+            procedureNames.add("response-filter:" + filter.getClass().getSimpleName());
         }
         for(RouteTask task:route.getAfterFilterTasks()) {
-            procedureChain.add(createRouteProcedure(route, filterExecutor, task::doTask, errorProcedure));
+            procedureChain.add(createRouteProcedure(route, filterExecutor, task, task.isBlocking(), inline, failProcedure));
+            procedureNames.add("after-task:" + task.getClass().getSimpleName());
         }
 
-        procedureChain.add(responseProcedure);
-
-        ExpireRegistry.Builder<String, Exchange> builder = new ExpireRegistry.Builder<>();
-        builder.setThreadPoolSize(1).setExpiredEventHandler((txId, exchange) -> {
-            DownStreamProcedureRegistry.getInstance().unregister(txId);
-            errorProcedure.call(exchange, new RouteProcessException(MessageConstants.GATEWAY_TIMEOUT, "Gateway timeout"));
+        RouteProcedure routeResponseProcedure = inline ? inlineResponseProcedure : responseProcedure;
+        procedureChain.add((exchange, chain) -> {
+            routeMetrics.recordComplete(exchange);
+            routeResponseProcedure.call(exchange, chain);
         });
+        procedureNames.add("response");
+        routeMetrics.setProcedureNames(procedureNames);
+
+        RouteProcessor processor = new RouteProcessor(route, procedureChain, inFlightTable, tx -> {
+            // continuation is set only while waiting upstream reply. It reports the timeout to circuit breaker.
+            DownStreamProcedure continuation = tx.getContinuation();
+            if(continuation != null) {
+                continuation.onExpired();
+            }
+            // handler is called only by the timeout which expired the transaction, so it owns the exchange
+            errorProcedure.call(tx.getExchange(), new RouteProcessException(MessageConstants.GATEWAY_TIMEOUT, "Gateway timeout"));
+        }, admission, errorProcedure, routeMetrics);
+        processor.setBodyExecutor(gateway.getExecutorManager().getExecutor(DISPATCHER_EXECUTOR_NAME));
+        return processor;
+    }
 
-        return new RouteProcessor(route, procedureChain, builder.build());
+    private CircuitBreaker createCircuitBreaker(Route route) {
+        UpstreamConfig upstreamConfig = route.getUpstreamConfig();
+        if(upstreamConfig == null || upstreamConfig.getCircuitBreakerConfig() == null) {
+            return null;
+        }
+        return gateway.getCircuitBreaker(serviceConfig.getName(), upstreamConfig.getRequestChannel(), upstreamConfig.getCircuitBreakerConfig());
     }
 
-    private RouteProcedure createUpstreamProcedure(Route route, RouteErrorProcedure errorProcedure) {
+    private RouteProcedure createUpstreamProcedure(Route route, CircuitBreaker circuitBreaker, RouteErrorProcedure errorProcedure) {
         ExecutorService upstreamExecutor = gateway.getExecutorManager().getExecutor(UPSTREAM_EXECUTOR_NAME);
 
         UpstreamTask upstreamTask = new UpstreamTask(gateway.getMessageBusConnection());
         upstreamTask.setErrorProcedure(errorProcedure);
+        upstreamTask.setInFlightTable(gateway.getInFlightTable());
+        upstreamTask.setCoalescing(route.getCoalescingPolicy(), gateway.getTimer(), route.getExpireIn());
+        upstreamTask.setCircuitBreaker(circuitBreaker);
         upstreamTask.setMessageConverter(protocolFactory.getMessageConverter());
         upstreamTask.setConnection(gateway.getMessageBusConnection());
-        upstreamTask.setDestination(route.getUpstreamConfig().getRequestChannel());
+        upstreamTask.setDestination(buildDestination(route.getUpstreamConfig()));
         upstreamTask.setReplyTo(gateway.getResponseNamespace() + ":" + gateway.getId());
+        upstreamTask.setStreaming(route.getStreamingPolicy(), route.getExpireIn());
+        upstreamTask.setReplyStreamTable(gateway.getReplyStreamTable());
+        upstreamTask.setChunkExecutor(upstreamExecutor);
 
         return ((exchange, chain) -> {
             try {
-                upstreamExecutor.execute(() -> upstreamTask.doTask(exchange, chain));
-            } catch (RejectedExecutionException e) {
-                LOGGER.warn("Exceed thread pool size : Reject to increase upstream executor.");
-            }
-        });
-    }
+                upstreamExecutor.execute(new Rejectable() {
+                    @Override
+                    public void run() {
+                        upstreamTask.doTask(exchange, chain);
+                    }
 
-    private RouteProcedure createRouteProcedure(Route route, ExecutorService executor, ProcedureTask task, RouteErrorProcedure routeErrorProcedure) {
-        return (exchange, chain) -> {
-            try {
-                executor.execute(() -> {
-                    try {
-                        task.doTask(exchange);
-                        chain.doNext(exchange);
-                    } catch (RouteProcessException e) {
-                        routeErrorProcedure.call(exchange, e);
-                    } catch (Exception e) {
-                        LOGGER.error("Unexpected exception is thrown during route [" + route.getName() + "] processing.", e);
-                        routeErrorProcedure.call(exchange, new RouteProcessException(50000, e.getMessage() == null ? "Unknown Error" : e.getMessage()));
+                    @Override
+                    public void reject() {
+                        errorProcedure.call(exchange, admission.rejectByStage(UPSTREAM_EXECUTOR_NAME));
                     }
                 });
             } catch (RejectedExecutionException e) {
-                LOGGER.warn("Exceed thread pool size : Reject to increase route procedure executor.");
+                LOGGER.warn("Exceed thread pool size : Reject route [" + route.getName() + "] upstream.");
+                errorProcedure.call(exchange, admission.rejectByStage(UPSTREAM_EXECUTOR_NAME));
             }
-        };
+        });
+    }
+
+    private String buildDestination(UpstreamConfig upstreamConfig) {
+        String topic = upstreamConfig.getRequestTopic();
+        if(topic == null || topic.isBlank()) {
+            return upstreamConfig.getRequestChannel();
+        }
+        return upstreamConfig.getRequestChannel() + ":" + topic.trim();
     }
 
-    private RouteFilter initFilter(RouteFilterConfig filterConfig) {
+    private RouteProcedure createRouteProcedure(Route route, ExecutorService executor, RouteTask task, boolean isBlocking, boolean inline, RouteErrorProcedure routeErrorProcedure) {
+        return new RouteTaskProcedure(route.getName(), task, (inline && !isBlocking) ? null : executor, routeErrorProcedure, admission);
+    }
+
+    private RouteFilter initFilter(RouteFilterConfig filterConfig, String filterName) {
         RouteFilter filter;
         try {
             filter = (RouteFilter) ClassHelper.createInstance(filterConfig.getFilterType());
@@ -258,7 +532,7 @@ public class ServiceContainer {
                 }
                 resourceRefMap.put(ref.getRefName(), resource);
             }
-            RouteFilterContext filterContext = new RouteFilterContextImpl(filterConfig.getInitParams(), resourceRefMap);
+            RouteFilterContext filterContext = new RouteFilterContextImpl(filterName, filterConfig.getInitParams(), resourceRefMap);
             filter.init(filterContext);
             return filter;
         } catch (InstantiationFailedException e) {
@@ -298,6 +572,9 @@ public class ServiceContainer {
             connector.setAcceptorNum(connectorConfig.getAcceptor());
             connector.setSelectorNum(connectorConfig.getSelector());
             connector.setServerConnectorOptions(connectorConfig.getOptions());
+            EventLoopLagMonitor lagMonitor = new EventLoopLagMonitor(connectorConfig.getName());
+            connector.setLagMonitor(lagMonitor);
+            lagMonitors.add(lagMonitor);
 
             return connector;
         } catch (IOException e) {
@@ -305,6 +582,14 @@ public class ServiceContainer {
         }
     }
 
+    private class RouteGroupWatcher implements EventWatcher {
+        @Override
+        public void handleEvent(EventType type, String key) {
+            LOGGER.debug("Route group context [" + key + "] " + type + ".");
+            scheduleReload();
+        }
+    }
+
     public static class RouteGroupContextImpl implements RouteGroupContext {
         private final ContextProvider ctxProvider;
         private final String groupHome;
@@ -342,14 +627,21 @@ public class ServiceContainer {
     }
 
     private static class RouteFilterContextImpl implements RouteFilterContext {
+        private final String name;
         private final Map<String, String> initParams;
         private final Map<String, Object> resourceRefs;
 
-        public RouteFilterContextImpl(Map<String, String> initParams, Map<String,Object> resourceRefs) {
+        public RouteFilterContextImpl(String name, Map<String, String> initParams, Map<String,Object> resourceRefs) {
+            this.name = name;
             this.initParams = initParams;
             this.resourceRefs = resourceRefs;
         }
 
+        @Override
+        public String getName() {
+            return name;
+        }
+
         @Override
         public Object getResource(String resourceName) {
             return resourceRefs.get(resourceName);
@@ -365,8 +657,4 @@ public class ServiceContainer {
             return initParams.get(paramName);
         }
     }
-
-    private interface ProcedureTask {
-        void doTask(Exchange exchange) throws RouteProcessException;
-    }
 }
@@ -0,0 +1,71 @@
+package io.pocat.platform.gateway.cache;
+
+import io.pocat.platform.messagebus.MessageBusConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Invalidates response caches by messages from bus.
+ * Gateway subscribes with its own group, so every gateway receives every invalidation message.
+ * Message with {@link #CACHE_KEY_HEADER_NAME} header removes the key. Message without it clears caches of the source.
+ */
+public class CacheInvalidator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidator.class);
+    public static final String CACHE_KEY_HEADER_NAME = "Cache-Key";
+
+    private final MessageBusConnection connection;
+    private final String groupName;
+    private final Map<String, Set<ResponseCache>> caches = new ConcurrentHashMap<>();
+    private boolean isSubscribed = false;
+
+    public CacheInvalidator(MessageBusConnection connection, String groupName) {
+        this.connection = connection;
+        this.groupName = groupName;
+    }
+
+    public synchronized void register(String source, ResponseCache cache) {
+        Set<ResponseCache> sourceCaches = caches.get(source);
+        if(sourceCaches == null) {
+            try {
+                connection.bind(groupName, source);
+                if(!isSubscribed) {
+                    connection.subscribe(groupName, (msgSource, headers, payload) -> invalidate(msgSource, headers.get(CACHE_KEY_HEADER_NAME)));
+                    isSubscribed = true;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to bind invalidation source [" + source + "]. Cache [" + cache.getName() + "] expires only by ttl.", e);
+                return;
+            }
+            sourceCaches = new CopyOnWriteArraySet<>();
+            caches.put(source, sourceCaches);
+        }
+        sourceCaches.add(cache);
+    }
+
+    public void unregister(String source, ResponseCache cache) {
+        Set<ResponseCache> sourceCaches = caches.get(source);
+        if(sourceCaches != null) {
+            sourceCaches.remove(cache);
+        }
+    }
+
+    public void invalidate(String source, String key) {
+        Set<ResponseCache> sourceCaches = caches.get(source);
+        if(sourceCaches == null) {
+            return;
+        }
+        for(ResponseCache cache:sourceCaches) {
+            if(key == null) {
+                cache.clear();
+            } else {
+                cache.invalidate(key);
+            }
+        }
+    }
+}
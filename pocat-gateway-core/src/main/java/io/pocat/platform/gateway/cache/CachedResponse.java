@@ -0,0 +1,77 @@
+package io.pocat.platform.gateway.cache;
+
+import io.pocat.gateway.connector.Exchange;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Response headers and contents kept by {@link ResponseCache}.
+ * Contents are a shared heap array, or a direct buffer out of java heap which protocols write without copy.
+ */
+public class CachedResponse {
+    // Rough cost of entry, key and header objects
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final String[] headers;
+    private final byte[] heapContents;
+    private final ByteBuffer offHeapContents;
+    private final long expireAt;
+    private final long weight;
+
+    CachedResponse(String[] headers, byte[] contents, boolean offHeap, long expireAt) {
+        this.headers = headers;
+        if(offHeap) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(contents.length);
+            buffer.put(contents).flip();
+            this.offHeapContents = buffer.asReadOnlyBuffer();
+            this.heapContents = null;
+        } else {
+            this.heapContents = contents;
+            this.offHeapContents = null;
+        }
+        this.expireAt = expireAt;
+        long weight = ENTRY_OVERHEAD + contents.length;
+        for(String header:headers) {
+            weight += header == null ? 0 : header.length() * 2L;
+        }
+        this.weight = weight;
+    }
+
+    boolean isExpired(long now) {
+        return now >= expireAt;
+    }
+
+    long getWeight() {
+        return weight;
+    }
+
+    boolean isOffHeap() {
+        return offHeapContents != null;
+    }
+
+    /**
+     * @return contents of response. Heap contents are shared and must not be modified. Off-heap contents are copied out.
+     */
+    public byte[] getContents() {
+        if(heapContents != null) {
+            return heapContents;
+        }
+        byte[] contents = new byte[offHeapContents.remaining()];
+        offHeapContents.duplicate().get(contents);
+        return contents;
+    }
+
+    /**
+     * Set response headers and contents of exchange as the upstream reply did.
+     */
+    public void applyTo(Exchange exchange) {
+        for(int i = 0; i < headers.length; i += 2) {
+            exchange.setResponseHeader(headers[i], headers[i + 1]);
+        }
+        if(heapContents != null) {
+            exchange.setResponseContents(heapContents);
+        } else {
+            exchange.setResponseContentBuffer(offHeapContents.duplicate());
+        }
+    }
+}
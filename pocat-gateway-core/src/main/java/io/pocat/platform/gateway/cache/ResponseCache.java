@@ -0,0 +1,206 @@
+package io.pocat.platform.gateway.cache;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.message.MessageHeaders;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size aware LRU cache of upstream responses of a route.
+ * Keys are spread over segments, each one a LinkedHashMap in access order with its share of max size,
+ * so a hit locks only one segment. Entries larger than a segment are never cached.
+ */
+public class ResponseCache {
+    private static final int SEGMENT_NUM = 16;
+    // Headers of one transaction or of its bus messages. A hit keeps those of its own exchange.
+    private static final Set<String> TRANSACTION_HEADER_NAMES = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private static final String REPLY_HEADER_PREFIX = "Reply-";
+
+    static {
+        TRANSACTION_HEADER_NAMES.addAll(Arrays.asList(MessageHeaders.TX_ID_HEADER_NAME, MessageHeaders.MESSAGE_ID_HEADER_NAME,
+                MessageHeaders.CORRELATION_ID_HEADER_NAME, MessageHeaders.STATUS_CODE_HEADER_NAME,
+                MessageHeaders.CHUNK_SEQ_HEADER_NAME, MessageHeaders.CHUNK_LAST_HEADER_NAME));
+    }
+
+    private final String name;
+    private final long ttl;
+    private final boolean offHeap;
+    private final Segment[] segments = new Segment[SEGMENT_NUM];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache(String name, long maxSize, long ttl) {
+        this(name, maxSize, ttl, false);
+    }
+
+    /**
+     * @param offHeap true to keep contents in direct buffers out of java heap. They are freed when evicted entries are collected.
+     */
+    public ResponseCache(String name, long maxSize, long ttl, boolean offHeap) {
+        if(maxSize <= 0) {
+            throw new IllegalArgumentException("Max size of response cache [" + name + "] must be positive.");
+        }
+        if(ttl <= 0) {
+            throw new IllegalArgumentException("TTL of response cache [" + name + "] must be positive.");
+        }
+        this.name = name;
+        this.ttl = ttl;
+        this.offHeap = offHeap;
+        long segmentSize = Math.max(maxSize / SEGMENT_NUM, 1);
+        for(int i = 0; i < SEGMENT_NUM; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return live response of key, or null if it is not cached or expired
+     */
+    public CachedResponse get(String key) {
+        CachedResponse response = segmentOf(key).get(key, System.currentTimeMillis());
+        if(response == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return response;
+    }
+
+    /**
+     * Keep response contents of exchange and its headers except transaction headers, e.g. Tx-Id and Correlation-Id, for key.
+     */
+    public void put(String key, Exchange exchange) {
+        List<String> headers = new ArrayList<>();
+        for(String headerName:exchange.getResponseHeaderNames()) {
+            if(!isTransactionHeader(headerName)) {
+                headers.add(headerName);
+                headers.add(exchange.getResponseHeader(headerName));
+            }
+        }
+        byte[] contents = exchange.getResponseContents();
+        CachedResponse response = new CachedResponse(headers.toArray(new String[0]), contents == null ? new byte[0] : contents,
+                offHeap, System.currentTimeMillis() + ttl);
+        evictions.add(segmentOf(key).put(key, response));
+    }
+
+    private static boolean isTransactionHeader(String headerName) {
+        return TRANSACTION_HEADER_NAMES.contains(headerName)
+                || headerName.regionMatches(true, 0, REPLY_HEADER_PREFIX, 0, REPLY_HEADER_PREFIX.length());
+    }
+
+    public void invalidate(String key) {
+        segmentOf(key).remove(key);
+    }
+
+    public void clear() {
+        for(Segment segment:segments) {
+            segment.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return weight of cached responses in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for(Segment segment:segments) {
+            size += segment.getWeight();
+        }
+        return size;
+    }
+
+    public int getEntryNum() {
+        int num = 0;
+        for(Segment segment:segments) {
+            num += segment.getEntryNum();
+        }
+        return num;
+    }
+
+    private Segment segmentOf(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENT_NUM - 1)];
+    }
+
+    private static final class Segment {
+        private final long maxWeight;
+        private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight = 0;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized CachedResponse get(String key, long now) {
+            CachedResponse response = entries.get(key);
+            if(response != null && response.isExpired(now)) {
+                entries.remove(key);
+                weight -= response.getWeight();
+                return null;
+            }
+            return response;
+        }
+
+        /**
+         * @return number of evicted entries
+         */
+        synchronized int put(String key, CachedResponse response) {
+            if(response.getWeight() > maxWeight) {
+                remove(key);
+                return 0;
+            }
+            CachedResponse old = entries.put(key, response);
+            if(old != null) {
+                weight -= old.getWeight();
+            }
+            weight += response.getWeight();
+
+            int evicted = 0;
+            Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+            while(weight > maxWeight && it.hasNext()) {
+                Map.Entry<String, CachedResponse> eldest = it.next();
+                weight -= eldest.getValue().getWeight();
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized void remove(String key) {
+            CachedResponse response = entries.remove(key);
+            if(response != null) {
+                weight -= response.getWeight();
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+
+        synchronized long getWeight() {
+            return weight;
+        }
+
+        synchronized int getEntryNum() {
+            return entries.size();
+        }
+    }
+}
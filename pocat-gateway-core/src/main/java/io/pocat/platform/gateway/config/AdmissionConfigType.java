@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024. dongobi soft inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pocat.platform.gateway.config;
+
+import io.pocat.platform.gateway.MessageConstants;
+
+public class AdmissionConfigType {
+    public static final int UNLIMITED = 0;
+    private static final long DEFAULT_RETRY_AFTER = 1;
+
+    private int maxInFlight = UNLIMITED;
+    private int routeMaxInFlight = UNLIMITED;
+    private int errorCode = MessageConstants.SERVICE_UNAVAILABLE;
+    private long retryAfter = DEFAULT_RETRY_AFTER;
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getRouteMaxInFlight() {
+        return routeMaxInFlight;
+    }
+
+    public void setRouteMaxInFlight(int routeMaxInFlight) {
+        this.routeMaxInFlight = routeMaxInFlight;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(int errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
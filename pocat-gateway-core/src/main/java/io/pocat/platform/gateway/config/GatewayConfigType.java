@@ -32,15 +32,20 @@ import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class GatewayConfigType {
     private String name;
     private int workerPoolSize = Runtime.getRuntime().availableProcessors() * 16;
     private String responseNamespace;
+    private String threadMode = "platform";
 
     private AccessLoggerType accessLogger = null;
+    private AdminConfigType admin = null;
     private final List<ServiceConfigType> services = new ArrayList<>();
+    private final Map<String, StageConfigType> stages = new HashMap<>();
 
     public static GatewayConfigBuilder newBuilder() {
         return new GatewayConfigBuilder();
@@ -70,6 +75,14 @@ public class GatewayConfigType {
         this.responseNamespace = responseNamespace;
     }
 
+    public String getThreadMode() {
+        return threadMode;
+    }
+
+    public void setThreadMode(String threadMode) {
+        this.threadMode = threadMode;
+    }
+
     public AccessLoggerType getAccessLogger() {
         return accessLogger;
     }
@@ -78,6 +91,17 @@ public class GatewayConfigType {
         this.accessLogger = accessLogger;
     }
 
+    /**
+     * @return admin connector config, or null if admin connector is not configured
+     */
+    public AdminConfigType getAdmin() {
+        return admin;
+    }
+
+    public void setAdmin(AdminConfigType admin) {
+        this.admin = admin;
+    }
+
     public List<ServiceConfigType> getServices() {
         return this.services;
     }
@@ -86,6 +110,22 @@ public class GatewayConfigType {
         this.services.add(service);
     }
 
+    /**
+     * @return config of the stage, or default config if the stage is not configured
+     */
+    public StageConfigType getStage(String stageName) {
+        StageConfigType stage = stages.get(stageName);
+        if(stage == null) {
+            stage = new StageConfigType();
+            stage.setName(stageName);
+        }
+        return stage;
+    }
+
+    public void addStage(StageConfigType stage) {
+        this.stages.put(stage.getName(), stage);
+    }
+
     public static class GatewayConfigBuilder {
         private XPath xPath;
         public GatewayConfigType build(InputStream configStream) {
@@ -120,7 +160,21 @@ public class GatewayConfigType {
                         // If invalid use default value
                     }
                 }
+                String threadMode = ((String) xPath.evaluate("/gateway/thread-mode", root, XPathConstants.STRING)).trim();
+                if(!threadMode.isBlank()) {
+                    config.setThreadMode(threadMode);
+                }
+                NodeList stageNodes = (NodeList) xPath.evaluate("/gateway/stages/stage", root, XPathConstants.NODESET);
+                if(stageNodes != null) {
+                    for (int i = 0; i < stageNodes.getLength(); i++) {
+                        config.addStage(buildStage(stageNodes.item(i)));
+                    }
+                }
                 config.setAccessLogger(buildAccessLogger(root));
+                Node adminNode = (Node) xPath.evaluate("/gateway/admin", root, XPathConstants.NODE);
+                if(adminNode != null) {
+                    config.setAdmin(buildAdmin(adminNode));
+                }
                 NodeList serviceNodes = (NodeList) xPath.evaluate("/gateway/services/service", root, XPathConstants.NODESET);
                 if(serviceNodes != null) {
                     for (int i = 0; i < serviceNodes.getLength(); i++) {
@@ -161,6 +215,11 @@ public class GatewayConfigType {
                 }
             }
 
+            Node admissionNode = (Node) xPath.evaluate("admission", serviceNode, XPathConstants.NODE);
+            if(admissionNode != null) {
+                serviceConfig.setAdmission(buildAdmission(name, admissionNode));
+            }
+
             NodeList paramNodes = (NodeList) xPath.evaluate("service-params/service-param", serviceNode, XPathConstants.NODESET);
             if(paramNodes != null) {
                 for(int j = 0; j < paramNodes.getLength(); j++) {
@@ -175,6 +234,83 @@ public class GatewayConfigType {
             return serviceConfig;
         }
 
+        private AdmissionConfigType buildAdmission(String serviceName, Node admissionNode) throws XPathExpressionException {
+            AdmissionConfigType admissionConfig = new AdmissionConfigType();
+            String maxInFlight = ((String) xPath.evaluate("max-in-flight", admissionNode, XPathConstants.STRING)).trim();
+            if(!maxInFlight.isBlank()) {
+                admissionConfig.setMaxInFlight(parseAdmissionNumber(serviceName, "max-in-flight", maxInFlight));
+            }
+            String routeMaxInFlight = ((String) xPath.evaluate("route-max-in-flight", admissionNode, XPathConstants.STRING)).trim();
+            if(!routeMaxInFlight.isBlank()) {
+                admissionConfig.setRouteMaxInFlight(parseAdmissionNumber(serviceName, "route-max-in-flight", routeMaxInFlight));
+            }
+            String errorCode = ((String) xPath.evaluate("error-code", admissionNode, XPathConstants.STRING)).trim();
+            if(!errorCode.isBlank()) {
+                admissionConfig.setErrorCode(parseAdmissionNumber(serviceName, "error-code", errorCode));
+            }
+            String retryAfter = ((String) xPath.evaluate("retry-after", admissionNode, XPathConstants.STRING)).trim();
+            if(!retryAfter.isBlank()) {
+                admissionConfig.setRetryAfter(parseAdmissionNumber(serviceName, "retry-after", retryAfter));
+            }
+            return admissionConfig;
+        }
+
+        private int parseAdmissionNumber(String serviceName, String propertyName, String value) {
+            try {
+                int number = Integer.parseInt(value);
+                if(number < 0) {
+                    throw new IllegalArgumentException("Negative " + propertyName + " [" + value + "] of service [" + serviceName + "] admission");
+                }
+                return number;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + propertyName + " [" + value + "] of service [" + serviceName + "] admission");
+            }
+        }
+
+        private StageConfigType buildStage(Node stageNode) throws XPathExpressionException {
+            StageConfigType stageConfig = new StageConfigType();
+            Node nameNode = stageNode.getAttributes().getNamedItem("name");
+            if(nameNode == null || nameNode.getNodeValue().isBlank()) {
+                throw new IllegalArgumentException("Stage name is empty");
+            }
+            String name = nameNode.getNodeValue().trim();
+            stageConfig.setName(name);
+
+            String capacity = ((String) xPath.evaluate("capacity", stageNode, XPathConstants.STRING)).trim();
+            if(!capacity.isBlank()) {
+                stageConfig.setCapacity(parseStageNumber(name, "capacity", capacity));
+            }
+            String minWorkers = ((String) xPath.evaluate("min-workers", stageNode, XPathConstants.STRING)).trim();
+            if(!minWorkers.isBlank()) {
+                stageConfig.setMinWorkers(parseStageNumber(name, "min-workers", minWorkers));
+            }
+            String maxWorkers = ((String) xPath.evaluate("max-workers", stageNode, XPathConstants.STRING)).trim();
+            if(!maxWorkers.isBlank()) {
+                stageConfig.setMaxWorkers(parseStageNumber(name, "max-workers", maxWorkers));
+            }
+            String keepAlive = ((String) xPath.evaluate("keep-alive", stageNode, XPathConstants.STRING)).trim();
+            if(!keepAlive.isBlank()) {
+                stageConfig.setKeepAlive(parseStageNumber(name, "keep-alive", keepAlive));
+            }
+            String queueType = ((String) xPath.evaluate("queue", stageNode, XPathConstants.STRING)).trim();
+            if(!queueType.isBlank()) {
+                stageConfig.setQueueType(queueType);
+            }
+            String overflowPolicy = ((String) xPath.evaluate("overflow-policy", stageNode, XPathConstants.STRING)).trim();
+            if(!overflowPolicy.isBlank()) {
+                stageConfig.setOverflowPolicy(overflowPolicy);
+            }
+            return stageConfig;
+        }
+
+        private int parseStageNumber(String stageName, String propertyName, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + propertyName + " [" + value + "] of stage [" + stageName + "]");
+            }
+        }
+
         private ConnectorConfigType buildConnectorType(Node connectorNode) throws XPathExpressionException {
             ConnectorConfigType connectorConfig = new ConnectorConfigType();
             String name = (String) xPath.evaluate("name", connectorNode, XPathConstants.STRING);
@@ -202,7 +338,7 @@ public class GatewayConfigType {
 
             if(connectorNode.getAttributes().getNamedItem("selector") != null) {
                 try {
-                    connectorConfig.setAcceptor(Integer.parseInt(connectorNode.getAttributes().getNamedItem("selector").getNodeValue()));
+                    connectorConfig.setSelector(Integer.parseInt(connectorNode.getAttributes().getNamedItem("selector").getNodeValue()));
                 } catch (NumberFormatException e) {
                     throw new IllegalArgumentException("Invalid selector number [" + connectorNode.getAttributes().getNamedItem("selector").getNodeValue() + "]");
                 }
@@ -232,6 +368,21 @@ public class GatewayConfigType {
             return connectorConfig;
         }
 
+        private AdminConfigType buildAdmin(Node adminNode) throws XPathExpressionException {
+            AdminConfigType adminConfig = new AdminConfigType();
+            String port = ((String) xPath.evaluate("port", adminNode, XPathConstants.STRING)).trim();
+            try {
+                adminConfig.setPort(Integer.parseInt(port));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid admin port [" + port + "]");
+            }
+            String metricsPath = ((String) xPath.evaluate("metrics-path", adminNode, XPathConstants.STRING)).trim();
+            if(!metricsPath.isBlank()) {
+                adminConfig.setMetricsPath(metricsPath.startsWith("/") ? metricsPath : "/" + metricsPath);
+            }
+            return adminConfig;
+        }
+
         private AccessLoggerType buildAccessLogger(Node root) throws XPathExpressionException {
             AccessLoggerType accessLoggerType = new AccessLoggerType();
             NodeList accessLogHandlerNodes = (NodeList) xPath.evaluate("/gateway/access-logger/handler", root, XPathConstants.NODESET);
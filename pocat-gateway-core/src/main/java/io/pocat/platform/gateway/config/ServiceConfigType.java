@@ -24,6 +24,7 @@ public class ServiceConfigType {
     private String protocol;
     private String routeGroup;
     private AccessLoggerType accessLogger;
+    private AdmissionConfigType admission = new AdmissionConfigType();
     private List<NameValueType> params = new ArrayList<>();
     private List<ConnectorConfigType> connectors = new ArrayList<>();
 
@@ -59,6 +60,14 @@ public class ServiceConfigType {
         this.accessLogger = accessLogger;
     }
 
+    public AdmissionConfigType getAdmission() {
+        return admission;
+    }
+
+    public void setAdmission(AdmissionConfigType admission) {
+        this.admission = admission;
+    }
+
     public List<NameValueType> getServiceParams() {
         return params;
     }
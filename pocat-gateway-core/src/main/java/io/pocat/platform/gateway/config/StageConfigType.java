@@ -0,0 +1,72 @@
+package io.pocat.platform.gateway.config;
+
+public class StageConfigType {
+    public static final String BLOCKING_QUEUE = "blocking";
+    public static final String LOCK_FREE_QUEUE = "lock-free";
+    public static final int DEFAULT_MAX_WORKERS = Runtime.getRuntime().availableProcessors() * 16;
+
+    private String name;
+    private int capacity = 65536;
+    private int minWorkers = Runtime.getRuntime().availableProcessors();
+    // 0 means default of thread mode
+    private int maxWorkers = 0;
+    private long keepAlive = 60000;
+    private String queueType = BLOCKING_QUEUE;
+    private String overflowPolicy = "reject";
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getMinWorkers() {
+        return minWorkers;
+    }
+
+    public void setMinWorkers(int minWorkers) {
+        this.minWorkers = minWorkers;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public void setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+    }
+
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public String getQueueType() {
+        return queueType;
+    }
+
+    public void setQueueType(String queueType) {
+        this.queueType = queueType;
+    }
+
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+}
@@ -13,6 +13,7 @@ import io.pocat.gateway.connector.ConnectionHandler;
 import io.pocat.gateway.connector.Exchange;
 import io.pocat.gateway.connector.ExchangeContext;
 import io.pocat.platform.gateway.config.ServerConnectorOptionsType;
+import io.pocat.platform.gateway.metrics.EventLoopLagMonitor;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
@@ -34,6 +35,7 @@ public class ServerConnector {
 
     private ChannelFuture channelFuture;
     private final List<ConnectionHandler> connectionHandlers = new ArrayList<>();
+    private EventLoopLagMonitor lagMonitor;
 
     private boolean isRunning = false;
 
@@ -85,6 +87,14 @@ public class ServerConnector {
         this.options = options;
     }
 
+    public EventLoopLagMonitor getLagMonitor() {
+        return lagMonitor;
+    }
+
+    public void setLagMonitor(EventLoopLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
     public boolean isRunning() {
         return isRunning;
     }
@@ -105,6 +115,9 @@ public class ServerConnector {
 
         EventLoopGroup acceptorGroup = createEventLoopGroup(acceptorNum, server.getExecutor());
         EventLoopGroup selectorGroup = createEventLoopGroup(selectorNum, server.getExecutor());
+        if(lagMonitor != null) {
+            lagMonitor.monitor(selectorGroup);
+        }
 
         sb.group(acceptorGroup, selectorGroup)
                 .channel(getChannelType())
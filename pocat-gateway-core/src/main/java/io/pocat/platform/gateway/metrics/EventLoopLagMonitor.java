@@ -0,0 +1,70 @@
+package io.pocat.platform.gateway.metrics;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure how late event loops run a scheduled probe. A busy or blocked loop delays the probe,
+ * and the same delay is seen by every read and write on its channels.
+ */
+public class EventLoopLagMonitor {
+    private static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private final String name;
+    private final long intervalNanos;
+    private final Histogram lag = new Histogram();
+
+    public EventLoopLagMonitor(String name) {
+        this(name, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public EventLoopLagMonitor(String name, long intervalMillis) {
+        this.name = name;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Start probing every loop of group. Probes stop when the group shuts down.
+     */
+    public void monitor(EventExecutorGroup group) {
+        for(EventExecutor loop:group) {
+            new Probe(loop).scheduleNext();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return distribution of lag in nanos
+     */
+    public Histogram getLag() {
+        return lag;
+    }
+
+    private class Probe implements Runnable {
+        private final EventExecutor loop;
+        private long expectedAt;
+
+        private Probe(EventExecutor loop) {
+            this.loop = loop;
+        }
+
+        private void scheduleNext() {
+            if(loop.isShuttingDown()) {
+                return;
+            }
+            expectedAt = System.nanoTime() + intervalNanos;
+            loop.schedule(this, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            lag.record(System.nanoTime() - expectedAt);
+            scheduleNext();
+        }
+    }
+}
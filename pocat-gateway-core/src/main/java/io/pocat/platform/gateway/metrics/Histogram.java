@@ -0,0 +1,94 @@
+package io.pocat.platform.gateway.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram in the way of HdrHistogram.
+ * Each power of 2 range is split into 16 linear sub buckets, so a recorded value is kept within 1/16 of its magnitude.
+ * Recording touches fixed arrays only and never allocates.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int BUCKET_NUM = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_NUM);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value value to record. Negative value is recorded as 0.
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    static int indexOf(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    // Largest value which falls in the bucket
+    static long highestValueOf(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = ((long) (SUB_BUCKET_COUNT + (index & SUB_BUCKET_MASK))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @param quantile quantile between 0 and 1
+     * @return value at the quantile, or 0 if nothing is recorded. Values recorded meanwhile may or may not be counted.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long[] snapshot = new long[BUCKET_NUM];
+        long total = 0;
+        for(int i = 0; i < BUCKET_NUM; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if(total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total));
+        long cumulative = 0;
+        for(int i = 0; i < BUCKET_NUM; i++) {
+            cumulative += snapshot[i];
+            if(cumulative >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+}
@@ -0,0 +1,8 @@
+package io.pocat.platform.gateway.metrics;
+
+/**
+ * Source of metrics. Called on every scrape, so values are read at scrape time and never pushed by hot paths.
+ */
+public interface MetricCollector {
+    void collect(MetricWriter writer);
+}
@@ -0,0 +1,41 @@
+package io.pocat.platform.gateway.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of metric collectors of gateway. Hot paths record into counters and histograms they own.
+ * Registry only reads them when it is scraped.
+ */
+public class MetricRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricRegistry.class);
+
+    private final List<MetricCollector> collectors = new CopyOnWriteArrayList<>();
+
+    public void register(MetricCollector collector) {
+        collectors.add(collector);
+    }
+
+    public void unregister(MetricCollector collector) {
+        collectors.remove(collector);
+    }
+
+    /**
+     * @return all metrics in Prometheus text format
+     */
+    public String scrape() {
+        MetricWriter writer = new MetricWriter();
+        for(MetricCollector collector:collectors) {
+            try {
+                collector.collect(writer);
+            } catch (RuntimeException e) {
+                // One broken collector must not hide the others
+                LOGGER.warn("Metric collector [" + collector.getClass().getName() + "] failed.", e);
+            }
+        }
+        return writer.toText();
+    }
+}
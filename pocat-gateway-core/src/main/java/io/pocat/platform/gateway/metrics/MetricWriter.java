@@ -0,0 +1,138 @@
+package io.pocat.platform.gateway.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write metrics in Prometheus text exposition format.
+ * Samples of the same metric are grouped under one HELP and TYPE even if several collectors write them.
+ */
+public class MetricWriter {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @param labels label name and value pairs
+     */
+    public void counter(String name, String help, double value, String... labels) {
+        sample(family(name, help, "counter"), name + "_total", labels, null, null, value);
+    }
+
+    public void gauge(String name, String help, double value, String... labels) {
+        sample(family(name, help, "gauge"), name, labels, null, null, value);
+    }
+
+    /**
+     * Write histogram as summary with quantiles, sum and count
+     * @param unit multiplier to convert recorded value to exported unit, e.g. 1e-9 for nanos to seconds
+     */
+    public void summary(String name, String help, Histogram histogram, double unit, String... labels) {
+        Family family = family(name, help, "summary");
+        for(int i = 0; i < QUANTILES.length; i++) {
+            sample(family, name, labels, "quantile", QUANTILE_LABELS[i], histogram.getValueAtQuantile(QUANTILES[i]) * unit);
+        }
+        sample(family, name + "_sum", labels, null, null, histogram.getSum() * unit);
+        sample(family, name + "_count", labels, null, null, histogram.getCount());
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.get(name);
+        if(family == null) {
+            family = new Family(help, type);
+            families.put(name, family);
+        } else if(!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric [" + name + "] is already written as " + family.type);
+        }
+        return family;
+    }
+
+    private static void sample(Family family, String sampleName, String[] labels, String extraLabel, String extraValue, double value) {
+        if(labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels of metric [" + sampleName + "] must be name and value pairs.");
+        }
+        StringBuilder out = family.samples;
+        out.append(sampleName);
+        if(labels.length > 0 || extraLabel != null) {
+            out.append('{');
+            boolean first = true;
+            for(int i = 0; i < labels.length; i += 2) {
+                if(!first) {
+                    out.append(',');
+                }
+                appendLabel(out, labels[i], labels[i + 1]);
+                first = false;
+            }
+            if(extraLabel != null) {
+                if(!first) {
+                    out.append(',');
+                }
+                appendLabel(out, extraLabel, extraValue);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        appendValue(out, value);
+        out.append('\n');
+    }
+
+    private static void appendLabel(StringBuilder out, String name, String value) {
+        out.append(name).append("=\"");
+        String escaped = value == null ? "" : value;
+        for(int i = 0; i < escaped.length(); i++) {
+            char c = escaped.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void appendValue(StringBuilder out, double value) {
+        if(Double.isNaN(value)) {
+            out.append("NaN");
+        } else if(Double.isInfinite(value)) {
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        } else if(value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * @return metrics in text format
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder();
+        for(Map.Entry<String, Family> entry:families.entrySet()) {
+            Family family = entry.getValue();
+            out.append("# HELP ").append(entry.getKey()).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            out.append(family.samples);
+        }
+        return out.toString();
+    }
+
+    private static class Family {
+        private final String help;
+        private final String type;
+        private final StringBuilder samples = new StringBuilder();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
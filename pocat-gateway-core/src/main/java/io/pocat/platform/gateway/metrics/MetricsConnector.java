@@ -0,0 +1,111 @@
+package io.pocat.platform.gateway.metrics;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Admin HTTP connector serving metrics of registry in Prometheus text format.
+ * Runs on its own single event loop, apart from service connectors, so scrape keeps working while services are saturated.
+ */
+public class MetricsConnector {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int MAX_REQUEST_SIZE = 8192;
+
+    private final MetricRegistry registry;
+    private final int port;
+    private final String metricsPath;
+
+    private EventLoopGroup group;
+    private Channel channel;
+
+    public MetricsConnector(MetricRegistry registry, int port, String metricsPath) {
+        this.registry = registry;
+        this.port = port;
+        this.metricsPath = metricsPath;
+    }
+
+    public void start() {
+        group = new NioEventLoopGroup(1, new DefaultThreadFactory("metrics-connector", true));
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(MAX_REQUEST_SIZE), new MetricsHandler());
+                    }
+                });
+        try {
+            channel = sb.bind(port).syncUninterruptibly().channel();
+        } catch (Exception e) {
+            group.shutdownGracefully();
+            throw new IllegalStateException("Failed to bind metrics connector on port [" + port + "]", e);
+        }
+    }
+
+    public void stop() {
+        if(channel != null) {
+            channel.close();
+        }
+        if(group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    private class MetricsHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            String uri = request.uri();
+            int queryIndex = uri.indexOf('?');
+            String path = queryIndex < 0 ? uri : uri.substring(0, queryIndex);
+
+            FullHttpResponse response;
+            if(!path.equals(metricsPath)) {
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+            } else if(!HttpMethod.GET.equals(request.method())) {
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.METHOD_NOT_ALLOWED);
+                response.headers().set(HttpHeaderNames.ALLOW, HttpMethod.GET.name());
+            } else {
+                byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(body));
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+            }
+            response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            if(keepAlive) {
+                response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+                ctx.writeAndFlush(response);
+            } else {
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
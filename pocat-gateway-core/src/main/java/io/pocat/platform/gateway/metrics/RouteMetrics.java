@@ -0,0 +1,76 @@
+package io.pocat.platform.gateway.metrics;
+
+import io.pocat.gateway.connector.Exchange;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of a route. Each procedure boundary records time from exchange creation to the start of the procedure,
+ * so the gap between two boundaries is time spent in the earlier procedure including its stage queue.
+ */
+public class RouteMetrics {
+    private final String routeName;
+    private final Histogram latency = new Histogram();
+    private final LongAdder errors = new LongAdder();
+    private String[] procedureNames = new String[0];
+    private Histogram[] boundaries = new Histogram[0];
+
+    public RouteMetrics(String routeName) {
+        this.routeName = routeName;
+    }
+
+    /**
+     * Set names of procedures in chain order. Called once while route is built, before any exchange is processed.
+     */
+    public void setProcedureNames(List<String> procedureNames) {
+        if(this.procedureNames.length != 0) {
+            throw new IllegalStateException("Procedures of route [" + routeName + "] are already set.");
+        }
+        Histogram[] boundaries = new Histogram[procedureNames.size()];
+        for(int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = new Histogram();
+        }
+        this.boundaries = boundaries;
+        this.procedureNames = procedureNames.toArray(new String[0]);
+    }
+
+    public void recordBoundary(int index, Exchange exchange) {
+        boundaries[index].record(System.nanoTime() - exchange.getCreatedNanos());
+    }
+
+    /**
+     * Record end-to-end latency when response is ready
+     */
+    public void recordComplete(Exchange exchange) {
+        latency.record(System.nanoTime() - exchange.getCreatedNanos());
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public String getRouteName() {
+        return routeName;
+    }
+
+    public int getProcedureNum() {
+        return procedureNames.length;
+    }
+
+    public String getProcedureName(int index) {
+        return procedureNames[index];
+    }
+
+    public Histogram getBoundary(int index) {
+        return boundaries[index];
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+}
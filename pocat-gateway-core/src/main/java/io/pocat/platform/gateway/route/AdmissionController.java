@@ -0,0 +1,317 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.RouteRejectedException;
+import io.pocat.platform.gateway.MessageConstants;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Limits exchanges in flight on a service container and on each of its routes.
+ * Exchange is admitted twice, first by the service before dispatch and then by its route after routing.
+ * Both slots are held by a ticket in exchange attribute and released once when the exchange is closed.
+ * Over the limit, exchange is refused at once instead of waiting in stage queues.
+ * Routes and upstream channels are bulkheads. Route may queue a bounded number of exchanges for a free slot,
+ * and breach of route or channel limit is rejected with {@link MessageConstants#ROUTE_SATURATED}.
+ */
+public class AdmissionController {
+    public static final int UNLIMITED = 0;
+    private static final String TICKET_ATTR_NAME = "pocat.admission.ticket";
+
+    private final String name;
+    private final int errorCode;
+    private final long retryAfter;
+    private final int routeMaxInFlight;
+    private final Limiter serviceLimiter;
+    private final Map<String, Bulkhead> routeBulkheads = new ConcurrentHashMap<>();
+    private final Map<String, Bulkhead> channelBulkheads = new ConcurrentHashMap<>();
+    private final LongAdder stageRejected = new LongAdder();
+    // Shared by exchanges entering routes. State of each exchange is kept in its ticket.
+    private final Consumer<Exchange> routeEntered = this::routeEntered;
+    private Executor queueExecutor = Runnable::run;
+
+    public AdmissionController(String name, int maxInFlight, int routeMaxInFlight, int errorCode, long retryAfter) {
+        this.name = name;
+        this.serviceLimiter = new Limiter(maxInFlight);
+        this.routeMaxInFlight = routeMaxInFlight;
+        this.errorCode = errorCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param queueExecutor executor which starts exchanges waited in route queue, instead of the thread releasing a slot.
+     * Applied to route bulkheads added after.
+     */
+    public void setQueueExecutor(Executor queueExecutor) {
+        this.queueExecutor = queueExecutor;
+    }
+
+    /**
+     * Add route bulkhead. Bulkhead of existing route with the same limits is kept, so routes reloaded keep their counts.
+     * @param maxInFlight 0 uses route-max-in-flight of service
+     */
+    public void addRoute(String routeName, int maxInFlight, int maxQueue) {
+        int limit = maxInFlight > 0 ? maxInFlight : routeMaxInFlight;
+        routeBulkheads.compute(routeName, (key, bulkhead) ->
+                isSameLimit(bulkhead, limit, maxQueue) ? bulkhead : new Bulkhead(routeName, limit, maxQueue, queueExecutor));
+    }
+
+    /**
+     * Add upstream channel bulkhead shared by routes of the channel. Bulkhead of existing channel with the same limit is kept.
+     * @param maxInFlight 0 removes the channel bulkhead
+     */
+    public void addChannel(String channelName, int maxInFlight) {
+        if(maxInFlight <= UNLIMITED) {
+            channelBulkheads.remove(channelName);
+            return;
+        }
+        channelBulkheads.compute(channelName, (key, bulkhead) ->
+                isSameLimit(bulkhead, maxInFlight, 0) ? bulkhead : new Bulkhead(channelName, maxInFlight, 0));
+    }
+
+    /**
+     * Remove bulkheads of routes and channels which are not in the current route table.
+     * Exchanges already holding a removed bulkhead still release it.
+     */
+    public void retainBulkheads(Set<String> routeNames, Set<String> channelNames) {
+        routeBulkheads.keySet().retainAll(routeNames);
+        channelBulkheads.keySet().retainAll(channelNames);
+    }
+
+    private static boolean isSameLimit(Bulkhead bulkhead, int maxInFlight, int maxQueue) {
+        return bulkhead != null && bulkhead.getMaxConcurrency() == maxInFlight && bulkhead.getMaxQueue() == Math.max(maxQueue, 0);
+    }
+
+    /**
+     * Take a slot of service.
+     * @return false if service is full. Exchange should be refused.
+     */
+    public boolean admit(Exchange exchange) {
+        if(!serviceLimiter.tryAcquire()) {
+            return false;
+        }
+        exchange.setAttribute(TICKET_ATTR_NAME, new Ticket(serviceLimiter));
+        return true;
+    }
+
+    /**
+     * Take slots of route and its upstream channel, and then call start with exchange.
+     * If route is full, exchange waits in route queue and is started on the queue executor when a route slot is released.
+     * Exchange closed while waiting, e.g. expired, gives its slot to the next one.
+     * Start and reject procedures should be shared by exchanges, since nothing else is allocated on the way.
+     * @param rejectProcedure called with {@link MessageConstants#ROUTE_SATURATED} if route queue or channel is full
+     */
+    public void enter(Exchange exchange, String routeName, String channelName, Consumer<Exchange> start, RouteErrorProcedure rejectProcedure) {
+        Ticket ticket = ticketOf(exchange);
+        ticket.pendingChannel = channelName == null ? null : channelBulkheads.get(channelName);
+        ticket.start = start;
+        ticket.rejectProcedure = rejectProcedure;
+        Bulkhead route = routeBulkheads.get(routeName);
+        if(route == null) {
+            enterChannel(exchange, ticket);
+            return;
+        }
+        ticket.pendingRoute = route;
+        if(!route.enter(exchange, routeEntered)) {
+            rejectProcedure.call(exchange, rejectBySaturation("Route [" + routeName + "] is saturated."));
+        }
+    }
+
+    private void routeEntered(Exchange exchange) {
+        Ticket ticket = (Ticket) exchange.getAttribute(TICKET_ATTR_NAME);
+        Bulkhead route = ticket.pendingRoute;
+        if(exchange.isClosed() || !ticket.hold(route, true)) {
+            route.release();
+            return;
+        }
+        enterChannel(exchange, ticket);
+    }
+
+    private void enterChannel(Exchange exchange, Ticket ticket) {
+        Bulkhead channel = ticket.pendingChannel;
+        if(channel != null) {
+            if(!channel.tryAcquire()) {
+                ticket.rejectProcedure.call(exchange, rejectBySaturation("Upstream channel [" + channel.getName() + "] is saturated."));
+                return;
+            }
+            if(!ticket.hold(channel, false)) {
+                channel.release();
+                return;
+            }
+        }
+        ticket.start.accept(exchange);
+    }
+
+    private Ticket ticketOf(Exchange exchange) {
+        Ticket ticket = (Ticket) exchange.getAttribute(TICKET_ATTR_NAME);
+        if(ticket == null) {
+            ticket = new Ticket(null);
+            exchange.setAttribute(TICKET_ATTR_NAME, ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Give back slots of exchange. Only the first call for an exchange takes effect.
+     */
+    public void release(Exchange exchange) {
+        Ticket ticket = (Ticket) exchange.getAttribute(TICKET_ATTR_NAME);
+        if(ticket != null) {
+            ticket.release();
+        }
+    }
+
+    public RouteRejectedException reject(String msg) {
+        return new RouteRejectedException(errorCode, msg, retryAfter);
+    }
+
+    public RouteRejectedException rejectBySaturation(String msg) {
+        return new RouteRejectedException(MessageConstants.ROUTE_SATURATED, msg, retryAfter);
+    }
+
+    /**
+     * Count work dropped by a full stage and create error for it.
+     */
+    public RouteRejectedException rejectByStage(String stageName) {
+        stageRejected.increment();
+        return reject("Stage [" + stageName + "] is busy.");
+    }
+
+    public int getInFlight() {
+        return serviceLimiter.inFlight.get();
+    }
+
+    public long getShedCount() {
+        return serviceLimiter.shed.sum();
+    }
+
+    public int getRouteInFlight(String routeName) {
+        Bulkhead bulkhead = routeBulkheads.get(routeName);
+        return bulkhead == null ? 0 : bulkhead.getInFlight();
+    }
+
+    public long getRouteShedCount(String routeName) {
+        Bulkhead bulkhead = routeBulkheads.get(routeName);
+        return bulkhead == null ? 0 : bulkhead.getRejectedCount();
+    }
+
+    /**
+     * @return bulkhead of route as its saturation gauges, or null if route is unknown
+     */
+    public Bulkhead getRouteBulkhead(String routeName) {
+        return routeBulkheads.get(routeName);
+    }
+
+    public Collection<Bulkhead> getRouteBulkheads() {
+        return Collections.unmodifiableCollection(routeBulkheads.values());
+    }
+
+    public Collection<Bulkhead> getChannelBulkheads() {
+        return Collections.unmodifiableCollection(channelBulkheads.values());
+    }
+
+    public long getStageRejectedCount() {
+        return stageRejected.sum();
+    }
+
+    private static final class Limiter {
+        private final int maxInFlight;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder shed = new LongAdder();
+
+        Limiter(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        boolean tryAcquire() {
+            if(maxInFlight <= UNLIMITED) {
+                inFlight.incrementAndGet();
+                return true;
+            }
+            while(true) {
+                int current = inFlight.get();
+                if(current >= maxInFlight) {
+                    shed.increment();
+                    return false;
+                }
+                if(inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Slots held by an exchange, and where it is going while it waits for them. Guarded by this.
+     */
+    private static final class Ticket {
+        private final Limiter serviceLimiter;
+        private boolean released = false;
+        private Bulkhead routeBulkhead;
+        private Bulkhead channelBulkhead;
+
+        // Set by the thread entering route and read by the one starting it, which the route queue orders
+        private Bulkhead pendingRoute;
+        private Bulkhead pendingChannel;
+        private Consumer<Exchange> start;
+        private RouteErrorProcedure rejectProcedure;
+
+        Ticket(Limiter serviceLimiter) {
+            this.serviceLimiter = serviceLimiter;
+        }
+
+        /**
+         * @return false if ticket is already released. Caller gives the slot back.
+         */
+        synchronized boolean hold(Bulkhead bulkhead, boolean isRoute) {
+            if(released) {
+                return false;
+            }
+            if(isRoute) {
+                routeBulkhead = bulkhead;
+            } else {
+                channelBulkhead = bulkhead;
+            }
+            return true;
+        }
+
+        void release() {
+            Bulkhead channel;
+            Bulkhead route;
+            synchronized (this) {
+                if(released) {
+                    return;
+                }
+                released = true;
+                channel = channelBulkhead;
+                route = routeBulkhead;
+            }
+            if(serviceLimiter != null) {
+                serviceLimiter.release();
+            }
+            if(channel != null) {
+                channel.release();
+            }
+            // route slot is released last. It may start a waiting exchange.
+            if(route != null) {
+                route.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Concurrency limit of a route or an upstream channel with a bounded wait queue.
+ * Exchange entered over the limit waits in queue. When a slot is released, its task is handed to the queue executor,
+ * so it does not run on the releasing thread. Over the queue limit, exchange is rejected at once.
+ */
+public class Bulkhead {
+    public static final int UNLIMITED = 0;
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int maxQueue;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+    private final Executor queueExecutor;
+
+    public Bulkhead(String name, int maxConcurrency, int maxQueue) {
+        this(name, maxConcurrency, maxQueue, Runnable::run);
+    }
+
+    /**
+     * @param queueExecutor runs tasks of exchanges which waited in queue
+     */
+    public Bulkhead(String name, int maxConcurrency, int maxQueue, Executor queueExecutor) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueue = Math.max(maxQueue, 0);
+        this.queueExecutor = queueExecutor;
+    }
+
+    /**
+     * Take a slot without waiting.
+     * @return false if bulkhead is full
+     */
+    public boolean tryAcquire() {
+        if(acquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Run task with exchange holding a slot, now or later when a slot is released. Task must release its slot.
+     * Task is shared by exchanges, so nothing is allocated unless exchange waits in queue.
+     * @return false if bulkhead and its queue are full. Task is not run.
+     */
+    public boolean enter(Exchange exchange, Consumer<Exchange> task) {
+        if(acquire()) {
+            task.accept(exchange);
+            return true;
+        }
+        if(!reserveQueue()) {
+            rejected.increment();
+            return false;
+        }
+        waiters.offer(new Waiter(exchange, task));
+        // a slot may be released before task is queued
+        drain();
+        return true;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        while(!waiters.isEmpty() && acquire()) {
+            Waiter waiter = waiters.poll();
+            if(waiter == null) {
+                // another thread took it. check again for task queued meanwhile
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                queueExecutor.execute(waiter);
+            } catch (RejectedExecutionException e) {
+                // Waiter holds a slot already. It must not be dropped.
+                waiter.run();
+            }
+        }
+    }
+
+    private boolean acquire() {
+        if(maxConcurrency <= UNLIMITED) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        while(true) {
+            int current = inFlight.get();
+            if(current >= maxConcurrency) {
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean reserveQueue() {
+        while(true) {
+            int current = queued.get();
+            if(current >= maxQueue) {
+                return false;
+            }
+            if(queued.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return ratio of slots in use. 0 if unlimited.
+     */
+    public double getSaturation() {
+        return maxConcurrency <= UNLIMITED ? 0 : (double) inFlight.get() / maxConcurrency;
+    }
+
+    private static final class Waiter implements Runnable {
+        private final Exchange exchange;
+        private final Consumer<Exchange> task;
+
+        Waiter(Exchange exchange, Consumer<Exchange> task) {
+            this.exchange = exchange;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.accept(exchange);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.ResponseCachePolicy;
+import io.pocat.platform.gateway.cache.CachedResponse;
+import io.pocat.platform.gateway.cache.ResponseCache;
+
+/**
+ * Response cache stage in front of upstream.
+ * Hit completes the transaction like a reply, and is written to exchange on the current thread.
+ * It continues to response filters without the upstream stage and bus.
+ * Miss goes upstream and its reply is cached before response filters run.
+ */
+public class CachedUpstreamProcedure implements RouteProcedure {
+    private final ResponseCachePolicy policy;
+    private final ResponseCache cache;
+    private final InFlightTable inFlightTable;
+    private final RouteProcedure upstreamProcedure;
+
+    public CachedUpstreamProcedure(ResponseCachePolicy policy, ResponseCache cache, InFlightTable inFlightTable, RouteProcedure upstreamProcedure) {
+        this.policy = policy;
+        this.cache = cache;
+        this.inFlightTable = inFlightTable;
+        this.upstreamProcedure = upstreamProcedure;
+    }
+
+    @Override
+    public void call(Exchange exchange, RouteProcedureChain chain) {
+        String key = policy.createKey(exchange);
+        if(key == null) {
+            upstreamProcedure.call(exchange, chain);
+            return;
+        }
+        CachedResponse response = cache.get(key);
+        if(response != null) {
+            if(inFlightTable.complete(exchange.getTxId()) == null) {
+                // expired meanwhile. Expired handler answers the exchange.
+                return;
+            }
+            response.applyTo(exchange);
+            chain.doNext(exchange);
+            return;
+        }
+        upstreamProcedure.call(exchange, replied -> {
+            cache.put(key, replied);
+            chain.doNext(replied);
+        });
+    }
+
+    public ResponseCache getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,260 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.route.CircuitBreakerConfig;
+import io.pocat.gateway.route.RouteRejectedException;
+import io.pocat.platform.gateway.MessageConstants;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of an upstream channel.
+ * Calls and failures (error replies and timeouts) are counted in a rolling window of buckets.
+ * Circuit opens when failure rate exceeds threshold, and calls fail fast with {@link MessageConstants#CIRCUIT_OPEN}.
+ * After open duration, a few trial calls are let through. If all of them succeed circuit closes, otherwise it opens again.
+ * Calls report with the permit they took, so only calls of the current state count.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static final long REJECTED = -1;
+    private static final int BUCKET_NUM = 10;
+    private static final State[] STATES = State.values();
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final CircuitBreakerConfig config;
+    private final int minimumCalls;
+    private final long bucketMillis;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final Bucket[] buckets = new Bucket[BUCKET_NUM];
+
+    // generation of state, which changes on each transition, and state in the lowest 2 bits
+    private volatile long phase = State.CLOSED.ordinal();
+    private volatile long stateChangedAt;
+    private final LongSupplier clock;
+    private final AtomicInteger trialPermits = new AtomicInteger();
+    private final AtomicInteger trialSuccesses = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder openCount = new LongAdder();
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this(name, config, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock current time in epoch millis
+     */
+    CircuitBreaker(String name, CircuitBreakerConfig config, LongSupplier clock) {
+        if(config.getFailureRateThreshold() <= 0 || config.getFailureRateThreshold() > 100) {
+            throw new IllegalArgumentException("Failure rate of circuit breaker [" + name + "] must be in 1 ~ 100.");
+        }
+        if(config.getWindow() < BUCKET_NUM) {
+            throw new IllegalArgumentException("Window of circuit breaker [" + name + "] is too short.");
+        }
+        this.name = name;
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.minimumCalls = Math.max(config.getMinimumCalls(), 1);
+        this.config = config;
+        this.bucketMillis = config.getWindow() / BUCKET_NUM;
+        this.openDuration = config.getOpenDuration();
+        this.halfOpenCalls = Math.max(config.getHalfOpenCalls(), 1);
+        this.clock = clock;
+        this.stateChangedAt = clock.getAsLong();
+        for(int i = 0; i < BUCKET_NUM; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * @return true if this breaker is built by the same settings, so it can be kept across route reloads
+     */
+    public boolean isConfiguredBy(CircuitBreakerConfig config) {
+        return isSameConfig(this.config, config);
+    }
+
+    public static boolean isSameConfig(CircuitBreakerConfig config, CircuitBreakerConfig other) {
+        return config.getFailureRateThreshold() == other.getFailureRateThreshold()
+                && config.getMinimumCalls() == other.getMinimumCalls()
+                && config.getWindow() == other.getWindow()
+                && config.getOpenDuration() == other.getOpenDuration()
+                && config.getHalfOpenCalls() == other.getHalfOpenCalls();
+    }
+
+    /**
+     * Take a permit to call upstream. Every permitted call must report {@link #onSuccess(long)} or {@link #onFailure(long)}
+     * with its permit, or give it back by {@link #release(long)}.
+     * Permit belongs to the state it is taken in, so a reply of a call taken before circuit opened is not a trial call.
+     * @return permit, or {@link #REJECTED} if circuit is open
+     */
+    public long tryAcquire() {
+        long current = phase;
+        State state = stateOf(current);
+        if(state == State.CLOSED) {
+            return current;
+        }
+        long now = clock.getAsLong();
+        if(state == State.OPEN) {
+            if(now - stateChangedAt < openDuration) {
+                rejected.increment();
+                return REJECTED;
+            }
+            halfOpen(current, now);
+        } else if(trialPermits.get() <= 0 && now - stateChangedAt >= openDuration) {
+            // trial calls did not report in time, e.g. expired before publish
+            halfOpen(current, now);
+        }
+        current = phase;
+        state = stateOf(current);
+        if(state != State.HALF_OPEN) {
+            // trial calls closed or opened circuit meanwhile
+            if(state == State.CLOSED) {
+                return current;
+            }
+            rejected.increment();
+            return REJECTED;
+        }
+        while(true) {
+            int permits = trialPermits.get();
+            if(permits <= 0) {
+                rejected.increment();
+                return REJECTED;
+            }
+            if(trialPermits.compareAndSet(permits, permits - 1)) {
+                return current;
+            }
+        }
+    }
+
+    public void onSuccess(long permit) {
+        long current = phase;
+        if(permit != current) {
+            // taken in another state
+            return;
+        }
+        if(stateOf(current) == State.HALF_OPEN) {
+            if(trialSuccesses.incrementAndGet() >= halfOpenCalls) {
+                transit(current, State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public void onFailure(long permit) {
+        long current = phase;
+        if(permit != current) {
+            return;
+        }
+        if(stateOf(current) == State.HALF_OPEN) {
+            transit(current, State.OPEN);
+            return;
+        }
+        record(true);
+        long calls = 0;
+        long failures = 0;
+        long oldest = clock.getAsLong() / bucketMillis - BUCKET_NUM;
+        for(Bucket bucket:buckets) {
+            if(bucket.epoch > oldest) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+            }
+        }
+        if(calls >= minimumCalls && failures * 100 >= calls * failureRateThreshold) {
+            transit(current, State.OPEN);
+        }
+    }
+
+    /**
+     * Give back permit of a call which is not made, and so is neither success nor failure of upstream.
+     */
+    public void release(long permit) {
+        if(permit == phase && stateOf(permit) == State.HALF_OPEN) {
+            trialPermits.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return error of fail fast call with seconds until trial calls
+     */
+    public RouteRejectedException reject() {
+        long remains = stateChangedAt + openDuration - clock.getAsLong();
+        return new RouteRejectedException(MessageConstants.CIRCUIT_OPEN, "Circuit of upstream [" + name + "] is open.", Math.max((remains + 999) / 1000, 1));
+    }
+
+    private void record(boolean failure) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        Bucket bucket = buckets[(int) (epoch % BUCKET_NUM)];
+        if(bucket.epoch != epoch) {
+            synchronized (bucket) {
+                if(bucket.epoch != epoch) {
+                    bucket.calls.reset();
+                    bucket.failures.reset();
+                    bucket.epoch = epoch;
+                }
+            }
+        }
+        bucket.calls.increment();
+        if(failure) {
+            bucket.failures.increment();
+        }
+    }
+
+    private synchronized void halfOpen(long from, long now) {
+        if(phase != from || now - stateChangedAt < openDuration) {
+            return;
+        }
+        trialPermits.set(halfOpenCalls);
+        trialSuccesses.set(0);
+        stateChangedAt = now;
+        phase = nextPhase(from, State.HALF_OPEN);
+    }
+
+    private synchronized void transit(long from, State to) {
+        if(phase != from) {
+            return;
+        }
+        if(to == State.OPEN) {
+            openCount.increment();
+        }
+        for(Bucket bucket:buckets) {
+            bucket.epoch = -1;
+        }
+        stateChangedAt = clock.getAsLong();
+        phase = nextPhase(from, to);
+    }
+
+    private static long nextPhase(long phase, State state) {
+        return ((phase >>> 2) + 1) << 2 | state.ordinal();
+    }
+
+    private static State stateOf(long phase) {
+        return STATES[(int) (phase & 3)];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return stateOf(phase);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getOpenCount() {
+        return openCount.sum();
+    }
+
+    private static final class Bucket {
+        private volatile long epoch = -1;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+    }
+}
@@ -4,4 +4,10 @@ import io.pocat.gateway.message.MessageDelivery;
 
 public interface DownStreamProcedure {
     void call(MessageDelivery message);
+
+    /**
+     * Called instead of {@link #call(MessageDelivery)} when transaction expires before reply.
+     */
+    default void onExpired() {
+    }
 }
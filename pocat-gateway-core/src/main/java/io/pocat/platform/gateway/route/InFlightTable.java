@@ -0,0 +1,158 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single table of every transaction in flight on a gateway, keyed by tx id.
+ * A transaction leaves the table exactly once, either completed by reply or error, or expired by the timer.
+ * Table is split into shards guarded by their own lock to spread contention of dispatch and response threads.
+ */
+public class InFlightTable {
+    private static final int DEFAULT_SHARD_NUM = 64;
+    private static final String TX_ATTR_NAME = "pocat.inflight.tx";
+
+    private final HashedWheelTimer timer;
+    private final Shard[] shards;
+    private final int mask;
+    private final LongAdder size = new LongAdder();
+
+    public InFlightTable(HashedWheelTimer timer) {
+        this(timer, DEFAULT_SHARD_NUM);
+    }
+
+    public InFlightTable(HashedWheelTimer timer, int shardNum) {
+        if(shardNum <= 0 || (shardNum & (shardNum - 1)) != 0) {
+            throw new IllegalArgumentException("Shard number must be a power of 2.");
+        }
+        this.timer = timer;
+        this.shards = new Shard[shardNum];
+        for(int i = 0; i < shardNum; i++) {
+            shards[i] = new Shard();
+        }
+        this.mask = shardNum - 1;
+    }
+
+    public InFlightTransaction register(Exchange exchange, long deadline, ExpiredTransactionHandler handler) {
+        InFlightTransaction tx = new InFlightTransaction(exchange, deadline);
+        exchange.setAttribute(TX_ATTR_NAME, tx);
+        shardOf(tx.getTxId()).put(tx);
+        size.increment();
+        try {
+            tx.setTimeout(timer.newTimeout(() -> {
+                if(tx.expire() && remove(tx)) {
+                    handler.handle(tx);
+                }
+            }, deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS));
+        } catch (RuntimeException e) {
+            remove(tx);
+            throw e;
+        }
+        return tx;
+    }
+
+    /**
+     * Set procedure which continues the transaction when reply arrives.
+     * @return false if transaction is not in flight anymore
+     */
+    public boolean attach(String txId, DownStreamProcedure continuation) {
+        InFlightTransaction tx = shardOf(txId).get(txId);
+        if(tx == null) {
+            return false;
+        }
+        tx.setContinuation(continuation);
+        return true;
+    }
+
+    /**
+     * Complete the transaction and remove it from table.
+     * @return completed transaction, or null if it is already completed or expired
+     */
+    public InFlightTransaction complete(String txId) {
+        if(txId == null) {
+            return null;
+        }
+        InFlightTransaction tx = shardOf(txId).get(txId);
+        if(tx == null || !tx.complete()) {
+            return null;
+        }
+        remove(tx);
+        return tx;
+    }
+
+    /**
+     * Complete transaction of exchange which fails in its route. Only the owner of exchange may answer it.
+     * @return true if caller answers the exchange: transaction is completed now, completed by its reply before,
+     * or never registered. false if it is expired, so expired handler answers the exchange.
+     */
+    public boolean fail(Exchange exchange) {
+        InFlightTransaction tx = (InFlightTransaction) exchange.getAttribute(TX_ATTR_NAME);
+        if(tx == null) {
+            return true;
+        }
+        if(tx.complete()) {
+            remove(tx);
+            return true;
+        }
+        return tx.isCompleted();
+    }
+
+    public long size() {
+        return size.sum();
+    }
+
+    private boolean remove(InFlightTransaction tx) {
+        if(shardOf(tx.getTxId()).remove(tx)) {
+            size.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    private Shard shardOf(String txId) {
+        int h = txId.hashCode();
+        return shards[(h ^ (h >>> 16)) & mask];
+    }
+
+    public interface ExpiredTransactionHandler {
+        void handle(InFlightTransaction tx);
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, InFlightTransaction> transactions = new HashMap<>();
+
+        void put(InFlightTransaction tx) {
+            lock.lock();
+            try {
+                transactions.put(tx.getTxId(), tx);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        InFlightTransaction get(String txId) {
+            lock.lock();
+            try {
+                return transactions.get(txId);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(InFlightTransaction tx) {
+            lock.lock();
+            try {
+                return transactions.remove(tx.getTxId(), tx);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.platform.gateway.utils.timer.Timeout;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+public class InFlightTransaction {
+    private static final int ST_PENDING = 0;
+    private static final int ST_COMPLETED = 1;
+    private static final int ST_EXPIRED = 2;
+    private static final AtomicIntegerFieldUpdater<InFlightTransaction> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(InFlightTransaction.class, "state");
+
+    private final Exchange exchange;
+    private final long deadline;
+    private volatile int state = ST_PENDING;
+    private volatile DownStreamProcedure continuation;
+    private volatile Timeout timeout;
+
+    InFlightTransaction(Exchange exchange, long deadline) {
+        this.exchange = exchange;
+        this.deadline = deadline;
+    }
+
+    public String getTxId() {
+        return exchange.getTxId();
+    }
+
+    public Exchange getExchange() {
+        return exchange;
+    }
+
+    /**
+     * @return deadline in epoch millis
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public DownStreamProcedure getContinuation() {
+        return continuation;
+    }
+
+    public boolean isExpired() {
+        return state == ST_EXPIRED;
+    }
+
+    public boolean isCompleted() {
+        return state == ST_COMPLETED;
+    }
+
+    void setContinuation(DownStreamProcedure continuation) {
+        this.continuation = continuation;
+    }
+
+    void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    boolean complete() {
+        if(!STATE_UPDATER.compareAndSet(this, ST_PENDING, ST_COMPLETED)) {
+            return false;
+        }
+        Timeout timeout = this.timeout;
+        if(timeout != null) {
+            timeout.cancel();
+        }
+        return true;
+    }
+
+    boolean expire() {
+        return STATE_UPDATER.compareAndSet(this, ST_PENDING, ST_EXPIRED);
+    }
+}
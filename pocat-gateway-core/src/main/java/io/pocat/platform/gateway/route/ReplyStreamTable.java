@@ -0,0 +1,249 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.message.MessageDelivery;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.platform.gateway.MessageConstants;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replies of streaming routes which come in chunk messages sharing tx id.
+ * Chunks may arrive out of order, so each stream puts them back in order within its window.
+ * The first chunk continues the transaction like a single reply. The rest are written to exchange as response chunks.
+ * A stream leaves table with its last chunk, on failure, or when no chunk arrives for its idle timeout.
+ */
+public class ReplyStreamTable {
+    private static final String TRUE = "true";
+
+    private final InFlightTable inFlightTable;
+    private final HashedWheelTimer timer;
+    private final Map<String, ReplyStream> streams = new ConcurrentHashMap<>();
+
+    public ReplyStreamTable(InFlightTable inFlightTable, HashedWheelTimer timer) {
+        this.inFlightTable = inFlightTable;
+        this.timer = timer;
+    }
+
+    /**
+     * Register before request is published, since reply may come before publish returns.
+     * @param window chunks buffered out of order, and chunks waiting to be written to client
+     * @param idleTimeout millis without a chunk after which stream is given up
+     */
+    public void register(Exchange exchange, int window, long idleTimeout) {
+        ReplyStream stream = new ReplyStream(exchange, window, idleTimeout);
+        streams.put(exchange.getTxId(), stream);
+        timer.newTimeout(stream::checkIdle, idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    public void remove(String txId) {
+        ReplyStream stream = streams.remove(txId);
+        if(stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return false if no stream waits for chunks of the transaction, e.g. it is expired
+     */
+    public boolean offer(MessageDelivery chunk) {
+        MessageHeaders headers = chunk.getHeaders();
+        ReplyStream stream = streams.get(headers.getTxId());
+        if(stream == null) {
+            return false;
+        }
+        int seq;
+        try {
+            seq = Integer.parseInt(headers.get(MessageHeaders.CHUNK_SEQ_HEADER_NAME));
+        } catch (NumberFormatException e) {
+            seq = -1;
+        }
+        stream.offer(seq, TRUE.equalsIgnoreCase(headers.get(MessageHeaders.CHUNK_LAST_HEADER_NAME)), chunk);
+        return true;
+    }
+
+    public long size() {
+        return streams.size();
+    }
+
+    private static MessageDelivery errorReply(int statusCode, String message) {
+        Map<String, String> rawHeaders = new HashMap<>();
+        rawHeaders.put(MessageConstants.STATUS_CODE_HEADER_NAME, Integer.toString(statusCode));
+        MessageHeaders headers = new MessageHeaders(rawHeaders);
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        return new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return payload;
+            }
+        };
+    }
+
+    private final class ReplyStream {
+        private final Exchange exchange;
+        private final int window;
+        private final long idleTimeout;
+        // Guarded by this. Chunks put in order wait in ready, and one thread at a time delivers them out of the lock.
+        private final Map<Integer, MessageDelivery> pending = new HashMap<>();
+        private final ArrayDeque<MessageDelivery> ready = new ArrayDeque<>();
+        private int nextSeq = 0;
+        private int deliveredSeq = 0;
+        private int lastSeq = -1;
+        private String failure;
+        private boolean delivering = false;
+        private boolean isClosed = false;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private ReplyStream(Exchange exchange, int window, long idleTimeout) {
+            this.exchange = exchange;
+            this.window = window;
+            this.idleTimeout = idleTimeout;
+        }
+
+        private void offer(int seq, boolean last, MessageDelivery chunk) {
+            synchronized (this) {
+                if(isClosed || failure != null) {
+                    return;
+                }
+                if(seq < 0) {
+                    failure = "Reply chunk of tx [" + exchange.getTxId() + "] has no valid sequence";
+                } else if(seq < nextSeq || pending.containsKey(seq)) {
+                    // duplicate or late chunk
+                    return;
+                } else if(seq >= nextSeq + window) {
+                    failure = "Reply chunk [" + seq + "] of tx [" + exchange.getTxId() + "] is out of window";
+                } else {
+                    pending.put(seq, chunk);
+                    if(last) {
+                        lastSeq = seq;
+                    }
+                    MessageDelivery next;
+                    while((next = pending.remove(nextSeq)) != null) {
+                        ready.add(next);
+                        nextSeq++;
+                    }
+                }
+                lastActivity = System.currentTimeMillis();
+                if(delivering) {
+                    // delivering thread takes them
+                    return;
+                }
+                delivering = true;
+            }
+            deliver();
+        }
+
+        private void deliver() {
+            while(true) {
+                MessageDelivery next;
+                int seq;
+                boolean isLast;
+                String error;
+                synchronized (this) {
+                    next = isClosed ? null : ready.poll();
+                    error = isClosed || next != null ? null : failure;
+                    if(next == null && error == null) {
+                        delivering = false;
+                        return;
+                    }
+                    seq = next == null ? deliveredSeq : deliveredSeq++;
+                    isLast = next != null && seq == lastSeq;
+                }
+                if(error != null) {
+                    fail(error, seq == 0);
+                    return;
+                }
+                if(seq == 0) {
+                    deliverFirst(next, isLast);
+                } else if(!exchange.writeResponseChunk(next.getPayload(), isLast)) {
+                    // response is aborted
+                    end();
+                }
+                if(isLast) {
+                    end();
+                }
+            }
+        }
+
+        private void deliverFirst(MessageDelivery chunk, boolean isLast) {
+            InFlightTransaction tx = inFlightTable.complete(exchange.getTxId());
+            DownStreamProcedure continuation = tx == null ? null : tx.getContinuation();
+            if(continuation == null) {
+                // expired meanwhile
+                end();
+                return;
+            }
+            if(!isLast) {
+                if(isSuccess(chunk)) {
+                    exchange.startResponseStream(window);
+                } else {
+                    // Error reply is not streamed. Rest of it is dropped.
+                    end();
+                }
+            }
+            continuation.call(chunk);
+        }
+
+        private void fail(String message, boolean isFirst) {
+            end();
+            if(isFirst) {
+                InFlightTransaction tx = inFlightTable.complete(exchange.getTxId());
+                DownStreamProcedure continuation = tx == null ? null : tx.getContinuation();
+                if(continuation != null) {
+                    continuation.call(errorReply(MessageConstants.BAD_GATEWAY, message));
+                }
+            } else {
+                exchange.abortResponseStream();
+            }
+        }
+
+        private void checkIdle() {
+            long idle;
+            boolean started;
+            synchronized (this) {
+                if(isClosed) {
+                    return;
+                }
+                started = deliveredSeq > 0;
+                idle = System.currentTimeMillis() - lastActivity;
+                if(idle >= idleTimeout) {
+                    end();
+                }
+            }
+            if(idle >= idleTimeout) {
+                // Before the first chunk, expiration of transaction answers client
+                if(started) {
+                    exchange.abortResponseStream();
+                }
+                return;
+            }
+            timer.newTimeout(this::checkIdle, idleTimeout - idle, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void close() {
+            isClosed = true;
+            pending.clear();
+            ready.clear();
+        }
+
+        private void end() {
+            close();
+            streams.remove(exchange.getTxId(), this);
+        }
+
+        private boolean isSuccess(MessageDelivery chunk) {
+            return Integer.toString(MessageConstants.SUCCESS_CODE).equals(chunk.getHeaders().get(MessageConstants.STATUS_CODE_HEADER_NAME));
+        }
+    }
+}
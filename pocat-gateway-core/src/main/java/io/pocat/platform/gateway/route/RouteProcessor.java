@@ -1,42 +1,120 @@
 package io.pocat.platform.gateway.route;
 
 import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.RequestBodyStream;
 import io.pocat.gateway.route.Route;
-import io.pocat.platform.gateway.utils.ExpireRegistry;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.UpstreamConfig;
+import io.pocat.platform.gateway.MessageConstants;
+import io.pocat.platform.gateway.metrics.RouteMetrics;
 
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 public class RouteProcessor {
+    private static final RouteProcedureChain END_OF_CHAIN = exchange -> {/* do nothing */};
+
     private final Route route;
-    private final List<RouteProcedure> procedures;
-    private final ExpireRegistry<String, Exchange> exchangeRegistry;
+    private final RouteProcedureChain head;
+    private final InFlightTable inFlightTable;
+    private final InFlightTable.ExpiredTransactionHandler expiredHandler;
+    private final AdmissionController admission;
+    private final RouteErrorProcedure rejectProcedure;
+    // Shared by exchanges, so entering the route allocates nothing
+    private final Consumer<Exchange> startProcedure = this::start;
+    private final RouteErrorProcedure admissionRejectProcedure;
+    private final String channelName;
+    private final RouteMetrics metrics;
+    private Executor bodyExecutor = Runnable::run;
 
-    public RouteProcessor(Route route, List<RouteProcedure> procedures, ExpireRegistry<String, Exchange> exchangeRegistry) {
+    /**
+     * @param metrics latency of route. It must have a procedure name for each of procedures.
+     */
+    public RouteProcessor(Route route, List<RouteProcedure> procedures, InFlightTable inFlightTable, InFlightTable.ExpiredTransactionHandler expiredHandler,
+                          AdmissionController admission, RouteErrorProcedure rejectProcedure, RouteMetrics metrics) {
+        if(metrics.getProcedureNum() != procedures.size()) {
+            throw new IllegalArgumentException("Procedure names of route [" + route.getName() + "] do not match procedures.");
+        }
         this.route = route;
-        this.procedures = procedures;
-        this.exchangeRegistry = exchangeRegistry;
+        this.metrics = metrics;
+        this.inFlightTable = inFlightTable;
+        this.expiredHandler = expiredHandler;
+        this.admission = admission;
+        this.rejectProcedure = rejectProcedure;
+        this.admissionRejectProcedure = (exchange, e) -> {
+            // Transaction expired meanwhile is answered by expired handler
+            if(inFlightTable.fail(exchange)) {
+                rejectProcedure.call(exchange, e);
+            }
+        };
+        UpstreamConfig upstreamConfig = route.getUpstreamConfig();
+        this.channelName = upstreamConfig == null ? null : upstreamConfig.getRequestChannel();
+
+        // Chain links are built once per route. Each link knows its next link, so no per-request state is needed.
+        RouteProcedureChain next = END_OF_CHAIN;
+        for(int i = procedures.size() - 1; i >= 0; i--) {
+            next = new RouteProcedureChainImpl(procedures.get(i), next, metrics, i);
+        }
+        this.head = next;
     }
 
+    /**
+     * Route and channel bulkheads are checked before any work is queued on stages.
+     * Transaction is registered first, so exchange waiting in route queue expires on time.
+     */
     public void process(Exchange exchange) {
-        exchangeRegistry.register(exchange.getTxId(), exchange, route.getExpireIn()-(System.currentTimeMillis() - exchange.getCreatedAt()));
-        RouteProcedureChain chain = new RouteProcedureChainImpl(procedures.iterator());
-        chain.doNext(exchange);
+        long expireAt = exchange.getCreatedAt() + route.getExpireIn();
+        if(System.currentTimeMillis() >= expireAt) {
+            rejectProcedure.call(exchange, new RouteProcessException(MessageConstants.GATEWAY_TIMEOUT, "Gateway timeout"));
+            return;
+        }
+        inFlightTable.register(exchange, expireAt, expiredHandler);
+        admission.enter(exchange, route.getName(), channelName, startProcedure, admissionRejectProcedure);
+    }
+
+    private void start(Exchange exchange) {
+        RequestBodyStream bodyStream = exchange.getRequestBodyStream();
+        if(bodyStream != null && route.getStreamingPolicy() == null) {
+            // Route reads body as a whole, so it goes on when the rest of body is received
+            bodyStream.aggregate(bodyExecutor, () -> head.doNext(exchange), cause -> {
+                if(inFlightTable.complete(exchange.getTxId()) != null) {
+                    rejectProcedure.call(exchange, new RouteProcessException(MessageConstants.BAD_REQUEST, "Request body is not completed"));
+                }
+            });
+            return;
+        }
+        head.doNext(exchange);
+    }
+
+    /**
+     * @param bodyExecutor executor which continues exchanges whose body is received after dispatch
+     */
+    public void setBodyExecutor(Executor bodyExecutor) {
+        this.bodyExecutor = bodyExecutor;
+    }
+
+    public RouteMetrics getMetrics() {
+        return metrics;
     }
 
     private static class RouteProcedureChainImpl implements RouteProcedureChain {
-        private final Iterator<RouteProcedure> procItr;
+        private final RouteProcedure procedure;
+        private final RouteProcedureChain next;
+        private final RouteMetrics metrics;
+        private final int index;
 
-        public RouteProcedureChainImpl(Iterator<RouteProcedure> procItr) {
-            this.procItr = procItr;
+        public RouteProcedureChainImpl(RouteProcedure procedure, RouteProcedureChain next, RouteMetrics metrics, int index) {
+            this.procedure = procedure;
+            this.next = next;
+            this.metrics = metrics;
+            this.index = index;
         }
 
         public void doNext(Exchange exchange) {
             if(!exchange.isClosed()) {
-                if (procItr.hasNext()) {
-                    RouteProcedure procedure = procItr.next();
-                    procedure.call(exchange, this);
-                }
+                metrics.recordBoundary(index, exchange);
+                procedure.call(exchange, next);
             }
         }
     }
@@ -0,0 +1,91 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.RouteTask;
+import io.pocat.platform.gateway.MessageConstants;
+import io.pocat.platform.gateway.utils.stage.Rejectable;
+import io.pocat.platform.gateway.utils.stage.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs a route task or filter and continues the chain.
+ * Task runs on the given stage executor, or on the current thread if executor is null.
+ */
+public class RouteTaskProcedure implements RouteProcedure {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteTaskProcedure.class);
+
+    private final String routeName;
+    private final RouteTask task;
+    private final ExecutorService executor;
+    private final RouteErrorProcedure errorProcedure;
+    private final AdmissionController admission;
+
+    public RouteTaskProcedure(String routeName, RouteTask task, ExecutorService executor, RouteErrorProcedure errorProcedure, AdmissionController admission) {
+        this.routeName = routeName;
+        this.task = task;
+        this.executor = executor;
+        this.errorProcedure = errorProcedure;
+        this.admission = admission;
+    }
+
+    @Override
+    public void call(Exchange exchange, RouteProcedureChain chain) {
+        if(executor == null) {
+            if(runTask(exchange)) {
+                chain.doNext(exchange);
+            }
+            return;
+        }
+        try {
+            executor.execute(new ProcedureTask(exchange, chain));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Exceed thread pool size : Reject route [" + routeName + "] procedure.");
+            errorProcedure.call(exchange, admission.rejectByStage(stageName()));
+        }
+    }
+
+    private String stageName() {
+        return executor instanceof Stage ? ((Stage) executor).getName() : routeName;
+    }
+
+    private boolean runTask(Exchange exchange) {
+        try {
+            task.doTask(exchange);
+            return true;
+        } catch (RouteProcessException e) {
+            errorProcedure.call(exchange, e);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception is thrown during route [" + routeName + "] processing.", e);
+            errorProcedure.call(exchange, new RouteProcessException(MessageConstants.UNKNOWN_ERROR, e.getMessage() == null ? "Unknown Error" : e.getMessage()));
+        }
+        return false;
+    }
+
+    private final class ProcedureTask implements Rejectable {
+        private final Exchange exchange;
+        private final RouteProcedureChain chain;
+
+        ProcedureTask(Exchange exchange, RouteProcedureChain chain) {
+            this.exchange = exchange;
+            this.chain = chain;
+        }
+
+        @Override
+        public void run() {
+            if(runTask(exchange)) {
+                chain.doNext(exchange);
+            }
+        }
+
+        @Override
+        public void reject() {
+            LOGGER.warn("Stage is overloaded : Shed route [" + routeName + "] procedure.");
+            errorProcedure.call(exchange, admission.rejectByStage(stageName()));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.platform.gateway.MessageConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upstream destination template compiled once per route, e.g. "channel:orders.${path:userId}".
+ * Template is split into literal and variable segments, and rendered in one pass per request.
+ * Variable "${header:name}" is request header, any other "${name}" is exchange attribute such as "path:name".
+ */
+public class TopicTemplate {
+    private static final String VARIABLE_START = "${";
+    private static final char VARIABLE_END = '}';
+    private static final String HEADER_PREFIX = "header:";
+    private static final int MAX_REUSED_CAPACITY = 1024;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String template;
+    private final Segment[] segments;
+
+    private TopicTemplate(String template, Segment[] segments) {
+        this.template = template;
+        this.segments = segments;
+    }
+
+    public static TopicTemplate compile(String template) {
+        if(template == null || template.isEmpty()) {
+            throw new IllegalArgumentException("Topic template is empty.");
+        }
+        List<Segment> segments = new ArrayList<>();
+        int pos = 0;
+        while(pos < template.length()) {
+            int start = template.indexOf(VARIABLE_START, pos);
+            int end = start < 0 ? -1 : template.indexOf(VARIABLE_END, start + VARIABLE_START.length());
+            if(start < 0 || end < 0) {
+                segments.add(new LiteralSegment(template.substring(pos)));
+                break;
+            }
+            if(start > pos) {
+                segments.add(new LiteralSegment(template.substring(pos, start)));
+            }
+            String varName = template.substring(start + VARIABLE_START.length(), end);
+            if(varName.isEmpty()) {
+                throw new IllegalArgumentException("Empty variable in topic template [" + template + "].");
+            }
+            if(varName.startsWith(HEADER_PREFIX)) {
+                segments.add(new HeaderSegment(varName.substring(HEADER_PREFIX.length())));
+            } else {
+                segments.add(new AttributeSegment(varName));
+            }
+            pos = end + 1;
+        }
+        return new TopicTemplate(template, segments.toArray(new Segment[0]));
+    }
+
+    public boolean isConstant() {
+        return segments.length == 1 && segments[0] instanceof LiteralSegment;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @throws RouteProcessException with {@link MessageConstants#MISSING_TOPIC_VARIABLE} if a variable has no value
+     */
+    public String render(Exchange exchange) throws RouteProcessException {
+        if(isConstant()) {
+            return template;
+        }
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        for(Segment segment:segments) {
+            segment.appendTo(builder, exchange);
+        }
+        String result = builder.toString();
+        if(builder.capacity() > MAX_REUSED_CAPACITY) {
+            // do not keep a huge buffer in every thread
+            BUILDER.remove();
+        }
+        return result;
+    }
+
+    private interface Segment {
+        void appendTo(StringBuilder builder, Exchange exchange) throws RouteProcessException;
+    }
+
+    private static final class LiteralSegment implements Segment {
+        private final String literal;
+
+        LiteralSegment(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, Exchange exchange) {
+            builder.append(literal);
+        }
+    }
+
+    private static final class HeaderSegment implements Segment {
+        private final String headerName;
+
+        HeaderSegment(String headerName) {
+            this.headerName = headerName;
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, Exchange exchange) throws RouteProcessException {
+            String value = exchange.getRequestHeader(headerName);
+            if(value == null) {
+                throw new RouteProcessException(MessageConstants.MISSING_TOPIC_VARIABLE, "Header [" + headerName + "] for upstream topic is missing.");
+            }
+            builder.append(value);
+        }
+    }
+
+    private static final class AttributeSegment implements Segment {
+        private final String attrName;
+
+        AttributeSegment(String attrName) {
+            this.attrName = attrName;
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, Exchange exchange) throws RouteProcessException {
+            Object value = exchange.getAttribute(attrName);
+            if(value == null) {
+                throw new RouteProcessException(MessageConstants.MISSING_TOPIC_VARIABLE, "Variable [" + attrName + "] for upstream topic is missing.");
+            }
+            builder.append(value);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.message.MessageDelivery;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import io.pocat.platform.gateway.utils.timer.Timeout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single flight of identical upstream requests of a route.
+ * The first exchange of a key publishes and the others wait on its call. The reply fans out to every waiting exchange.
+ * Call is joined only until its deadline, and the timer removes it then, so a lost reply or an expired leader
+ * does not hold a key longer than the route expiration.
+ */
+public class UpstreamCoalescer {
+    private final InFlightTable inFlightTable;
+    private final HashedWheelTimer timer;
+    private final long maxWait;
+    private final Map<String, Call> calls = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param maxWait how long a call can be joined after it is published, in milliseconds
+     */
+    public UpstreamCoalescer(InFlightTable inFlightTable, HashedWheelTimer timer, long maxWait) {
+        this.inFlightTable = inFlightTable;
+        this.timer = timer;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Join the call of key, or start a new call.
+     * @param procedure continues exchange with reply
+     * @param errorProcedure fails exchange if the call fails
+     * @return call to publish if exchange leads it, or null if exchange waits on a call of another exchange
+     */
+    public Call join(String key, Exchange exchange, DownStreamProcedure procedure, RouteErrorProcedure errorProcedure) {
+        Waiter waiter = new Waiter(exchange, procedure, errorProcedure);
+        while(true) {
+            Call call = calls.get(key);
+            if(call != null && call.join(waiter)) {
+                coalesced.increment();
+                return null;
+            }
+            Call newCall = new Call(key, waiter, System.currentTimeMillis() + maxWait);
+            boolean started = call == null ? calls.putIfAbsent(key, newCall) == null : calls.replace(key, call, newCall);
+            if(started) {
+                try {
+                    newCall.timeout = timer.newTimeout(newCall::abandon, maxWait, TimeUnit.MILLISECONDS);
+                } catch (RuntimeException e) {
+                    calls.remove(key, newCall);
+                    throw e;
+                }
+                return newCall;
+            }
+        }
+    }
+
+    public int getCallNum() {
+        return calls.size();
+    }
+
+    /**
+     * @return exchanges which did not publish by themselves
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * In-flight call of a key. It is the continuation of the leading exchange, and multiplexes the reply to followers.
+     */
+    public class Call implements DownStreamProcedure {
+        private final String key;
+        private final Waiter leader;
+        private final long deadline;
+        private final List<Waiter> followers = new ArrayList<>();
+        private boolean isClosed = false;
+        private volatile Timeout timeout;
+
+        Call(String key, Waiter leader, long deadline) {
+            this.key = key;
+            this.leader = leader;
+            this.deadline = deadline;
+        }
+
+        synchronized boolean join(Waiter waiter) {
+            if(isClosed || System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            followers.add(waiter);
+            return true;
+        }
+
+        private synchronized List<Waiter> close() {
+            isClosed = true;
+            calls.remove(key, this);
+            Timeout timeout = this.timeout;
+            if(timeout != null) {
+                timeout.cancel();
+            }
+            return followers;
+        }
+
+        /**
+         * Continue leader with reply. Reply was already completed for leader by response handler.
+         */
+        @Override
+        public void call(MessageDelivery message) {
+            List<Waiter> waiters = close();
+            leader.procedure.call(message);
+            for(Waiter waiter:waiters) {
+                // follower may be expired meanwhile
+                if(inFlightTable.complete(waiter.exchange.getTxId()) != null) {
+                    waiter.procedure.call(replyOf(message, waiter.exchange));
+                }
+            }
+        }
+
+        /**
+         * Leader could not publish. Followers fail with the same error.
+         */
+        public void fail(RouteProcessException e) {
+            for(Waiter waiter:close()) {
+                if(inFlightTable.complete(waiter.exchange.getTxId()) != null) {
+                    waiter.errorProcedure.call(waiter.exchange, e);
+                }
+            }
+        }
+
+        /**
+         * Leader expired before publishing, or call is not replied until its deadline.
+         * Followers time out by their own expiration, and new exchanges start a new call.
+         */
+        public void abandon() {
+            close();
+        }
+    }
+
+    /**
+     * Reply of leader as if follower had its own call. Transaction headers of leader are replaced with those of follower,
+     * since converters copy reply headers into the response. Payload is shared.
+     */
+    private static MessageDelivery replyOf(MessageDelivery message, Exchange exchange) {
+        Map<String, String> rawHeaders = new HashMap<>(message.getHeaders());
+        rawHeaders.put(MessageHeaders.TX_ID_HEADER_NAME, exchange.getTxId());
+        String correlationId = exchange.getCorrelationId();
+        if(correlationId == null) {
+            rawHeaders.remove(MessageHeaders.CORRELATION_ID_HEADER_NAME);
+        } else {
+            rawHeaders.put(MessageHeaders.CORRELATION_ID_HEADER_NAME, correlationId);
+        }
+        MessageHeaders headers = new MessageHeaders(rawHeaders);
+        return new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return message.getPayload();
+            }
+        };
+    }
+
+    private static final class Waiter {
+        private final Exchange exchange;
+        private final DownStreamProcedure procedure;
+        private final RouteErrorProcedure errorProcedure;
+
+        Waiter(Exchange exchange, DownStreamProcedure procedure, RouteErrorProcedure errorProcedure) {
+            this.exchange = exchange;
+            this.procedure = procedure;
+            this.errorProcedure = errorProcedure;
+        }
+    }
+}
@@ -1,37 +1,47 @@
 package io.pocat.platform.gateway.route;
 
+import io.pocat.gateway.connector.RequestBodyStream;
 import io.pocat.gateway.message.MessageDelivery;
 import io.pocat.gateway.connector.Exchange;
 import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.gateway.route.CoalescingPolicy;
 import io.pocat.gateway.route.MessageConverter;
 import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.StreamingPolicy;
 import io.pocat.platform.messagebus.MessageBusConnection;
 import io.pocat.platform.gateway.MessageConstants;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
 
+import static io.pocat.gateway.message.MessageHeaders.CHUNK_LAST_HEADER_NAME;
+import static io.pocat.gateway.message.MessageHeaders.CHUNK_SEQ_HEADER_NAME;
 import static io.pocat.gateway.message.MessageHeaders.REPLY_TO_HEADER_NAME;
 import static io.pocat.gateway.message.MessageHeaders.TX_ID_HEADER_NAME;
 
 public class UpstreamTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamTask.class);
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
-
-    private static final String ERROR_CODE_NAME = "error.code";
-    private static final String ERROR_MESSAGE_NAME = "error.message";
-    private static final String HEADER_PREFIX = "header:";
+    private static final char KEY_SEPARATOR = '\u0000';
 
     private RouteErrorProcedure errorProcedure;
+    private InFlightTable inFlightTable;
     private MessageConverter messageConverter;
     private MessageBusConnection connection;
-    private String destination;
+    private TopicTemplate destination;
     private String replyTo;
+    private CoalescingPolicy coalescingPolicy;
+    private UpstreamCoalescer coalescer;
+    private CircuitBreaker circuitBreaker;
+    private StreamingPolicy streamingPolicy;
+    private long replyIdleTimeout;
+    private ReplyStreamTable replyStreamTable;
+    private Executor chunkExecutor;
 
     public UpstreamTask(MessageBusConnection connection) {
         this.connection = connection;
@@ -39,12 +49,7 @@ public class UpstreamTask {
 
     public void doTask(Exchange exchange, RouteProcedureChain chain) {
         DownStreamProcedure downStreamProcedure = message -> {
-            int statusCode;
-            try {
-                statusCode = Integer.parseInt(message.getHeaders().get(MessageConstants.STATUS_CODE_HEADER_NAME));
-            } catch (NumberFormatException e) {
-                statusCode = MessageConstants.UNKNOWN_ERROR;
-            }
+            int statusCode = statusOf(message);
             if(statusCode != 0) {
                 errorProcedure.call(exchange, new RouteProcessException(statusCode, new String(message.getPayload(), StandardCharsets.UTF_8)));
                 return;
@@ -54,43 +59,204 @@ public class UpstreamTask {
             chain.doNext(exchange);
         };
 
-        DownStreamProcedureRegistry.getInstance().register(exchange.getTxId(), downStreamProcedure);
+        String destination;
+        try {
+            destination = this.destination.render(exchange);
+        } catch (RouteProcessException e) {
+            errorProcedure.call(exchange, e);
+            return;
+        }
+
+        UpstreamCoalescer.Call call = null;
+        if(coalescer != null) {
+            String key = coalescingPolicy.createKey(exchange);
+            if(key != null) {
+                call = coalescer.join(destination + KEY_SEPARATOR + key, exchange, downStreamProcedure, errorProcedure);
+                if(call == null) {
+                    // reply of identical request in flight continues this exchange
+                    return;
+                }
+                downStreamProcedure = call;
+            }
+        }
+
+        long permit = CircuitBreaker.REJECTED;
+        if(circuitBreaker != null) {
+            permit = circuitBreaker.tryAcquire();
+            if(permit == CircuitBreaker.REJECTED) {
+                RouteProcessException error = circuitBreaker.reject();
+                errorProcedure.call(exchange, error);
+                if(call != null) {
+                    call.fail(error);
+                }
+                return;
+            }
+            downStreamProcedure = new BreakerProcedure(circuitBreaker, permit, downStreamProcedure);
+        }
+
+        if(!inFlightTable.attach(exchange.getTxId(), downStreamProcedure)) {
+            // already expired
+            if(circuitBreaker != null) {
+                circuitBreaker.release(permit);
+            }
+            if(call != null) {
+                call.abandon();
+            }
+            return;
+        }
         try {
-            String destination = buildTopic(exchange);
             MessageDelivery delivery = messageConverter.convertExchangeToMessage(exchange);
             Map<String, String> headers = new HashMap<>(delivery.getHeaders());
             headers.put(REPLY_TO_HEADER_NAME, replyTo);
             headers.put(TX_ID_HEADER_NAME, exchange.getTxId());
+            if(streamingPolicy != null) {
+                publishChunks(exchange, destination, headers, permit);
+                return;
+            }
             connection.publish(destination, headers, delivery.getPayload());
+        } catch (RouteProcessException e) {
+            // Request is not published, so upstream is not to blame
+            if(circuitBreaker != null) {
+                circuitBreaker.release(permit);
+            }
+            if(streamingPolicy != null) {
+                replyStreamTable.remove(exchange.getTxId());
+            }
+            errorProcedure.call(exchange, e);
+            if(call != null) {
+                call.fail(e);
+            }
         } catch (Exception e) {
-            LOGGER.error("Exception thrown during upstream", e);
-            errorProcedure.call(exchange, new RouteProcessException(MessageConstants.UNKNOWN_ERROR, "UnknownError"));
+            if(isClosedMeanwhile(exchange, e)) {
+                // Expiration answered the exchange and released its body. Upstream is not called.
+                if(circuitBreaker != null) {
+                    circuitBreaker.release(permit);
+                }
+                if(streamingPolicy != null) {
+                    replyStreamTable.remove(exchange.getTxId());
+                }
+                if(call != null) {
+                    call.abandon();
+                }
+                return;
+            }
+            RouteProcessException error = publishFailed(exchange, e, permit);
+            if(call != null) {
+                call.fail(error);
+            }
         }
     }
 
-    private String buildTopic(Exchange exchange) {
-        String result = destination;
-        Matcher matcher = VARIABLE_PATTERN.matcher(destination);
-        while(matcher.find()) {
-            if(matcher.group(1).startsWith(HEADER_PREFIX)) {
-                String value = exchange.getRequestHeader(matcher.group(1).substring(HEADER_PREFIX.length()));
-                if(value != null) {
-                    result = result.replace(matcher.group(), value);
+    private static boolean isClosedMeanwhile(Exchange exchange, Exception e) {
+        return e instanceof IllegalStateException && exchange.isClosed();
+    }
+
+    private RouteProcessException publishFailed(Exchange exchange, Exception e, long permit) {
+        LOGGER.error("Exception thrown during upstream", e);
+        RouteProcessException error = new RouteProcessException(MessageConstants.UNKNOWN_ERROR, "UnknownError");
+        if(circuitBreaker != null) {
+            circuitBreaker.onFailure(permit);
+        }
+        if(streamingPolicy != null) {
+            replyStreamTable.remove(exchange.getTxId());
+        }
+        errorProcedure.call(exchange, error);
+        return error;
+    }
+
+    /**
+     * Request body goes in chunk messages which carry headers of request, tx id and chunk sequence.
+     * Body still arriving from connection is published as it arrives, at most window chunks read ahead.
+     */
+    private void publishChunks(Exchange exchange, String destination, Map<String, String> headers, long permit) throws Exception {
+        long maxBodySize = streamingPolicy.getMaxBodySize();
+        int chunkSize = streamingPolicy.getChunkSize();
+        RequestBodyStream bodyStream = exchange.getRequestBodyStream();
+        if(bodyStream == null) {
+            byte[] body = exchange.getRequestContents();
+            checkBodySize(body.length, maxBodySize);
+            replyStreamTable.register(exchange, streamingPolicy.getChunkWindow(), replyIdleTimeout);
+            int seq = 0;
+            int offset = 0;
+            do {
+                int length = Math.min(chunkSize, body.length - offset);
+                byte[] chunk = length == body.length ? body : Arrays.copyOfRange(body, offset, offset + length);
+                offset += length;
+                connection.publish(destination, chunkHeaders(headers, seq++, offset == body.length), chunk);
+            } while(offset < body.length);
+            return;
+        }
+
+        checkBodySize(bodyStream.getContentLength(), maxBodySize);
+        replyStreamTable.register(exchange, streamingPolicy.getChunkWindow(), replyIdleTimeout);
+        bodyStream.read(chunkSize, streamingPolicy.getChunkWindow(), chunkExecutor, new RequestBodyStream.ChunkHandler() {
+            private long bodySize = 0;
+            private Exception publishError;
+
+            @Override
+            public void onChunk(byte[] chunk, int seq, boolean last) throws Exception {
+                bodySize += chunk.length;
+                // Body without length is checked as it arrives
+                checkBodySize(bodySize, maxBodySize);
+                try {
+                    connection.publish(destination, chunkHeaders(headers, seq, last), chunk);
+                } catch (Exception e) {
+                    publishError = e;
+                    throw e;
                 }
-            } else {
-                if(exchange.getAttribute(matcher.group(1)) != null) {
-                    String value = (String) exchange.getAttribute(matcher.group(1));
-                    result = result.replace(matcher.group(), value);
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+                if(publishError != null) {
+                    publishFailed(exchange, publishError, permit);
+                    return;
+                }
+                if(circuitBreaker != null) {
+                    circuitBreaker.release(permit);
+                }
+                replyStreamTable.remove(exchange.getTxId());
+                if(cause instanceof RouteProcessException) {
+                    errorProcedure.call(exchange, (RouteProcessException) cause);
+                } else {
+                    // Connection is closed in the middle of body
+                    errorProcedure.call(exchange, new RouteProcessException(MessageConstants.BAD_REQUEST, "Request body is not completed"));
                 }
             }
+        });
+    }
+
+    private static void checkBodySize(long bodySize, long maxBodySize) throws RouteProcessException {
+        if(maxBodySize > 0 && bodySize > maxBodySize) {
+            throw new RouteProcessException(MessageConstants.TOO_LARGE_CONTENTS, "Request body exceeds " + maxBodySize + " bytes");
+        }
+    }
+
+    private static Map<String, String> chunkHeaders(Map<String, String> headers, int seq, boolean last) {
+        Map<String, String> chunkHeaders = new HashMap<>(headers);
+        chunkHeaders.put(CHUNK_SEQ_HEADER_NAME, Integer.toString(seq));
+        if(last) {
+            chunkHeaders.put(CHUNK_LAST_HEADER_NAME, "true");
+        }
+        return chunkHeaders;
+    }
+
+    private static int statusOf(MessageDelivery message) {
+        try {
+            return Integer.parseInt(message.getHeaders().get(MessageConstants.STATUS_CODE_HEADER_NAME));
+        } catch (NumberFormatException e) {
+            return MessageConstants.UNKNOWN_ERROR;
         }
-        return result;
     }
 
     public void setConnection(MessageBusConnection connection) {
         this.connection = connection;
     }
 
+    public void setInFlightTable(InFlightTable inFlightTable) {
+        this.inFlightTable = inFlightTable;
+    }
+
     public void setMessageConverter(MessageConverter messageConverter) {
         this.messageConverter = messageConverter;
     }
@@ -99,14 +265,85 @@ public class UpstreamTask {
         this.errorProcedure = errorProcedure;
     }
 
+    /**
+     * @param destination destination template. It is compiled here once.
+     */
     public void setDestination(String destination) {
-        this.destination = destination;
+        this.destination = TopicTemplate.compile(destination);
     }
 
     public void setReplyTo(String replyTo) {
         this.replyTo = replyTo;
     }
 
+    /**
+     * Fail fast while upstream channel is failing. Timeouts are reported to breaker by route expiration handler.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Coalesce identical requests to one upstream call. Requests are identical if they have the same topic and key by policy.
+     * @param timer timer which removes calls not replied until max wait
+     * @param maxWait how long an upstream call can be joined, usually expiration of route
+     */
+    public void setCoalescing(CoalescingPolicy coalescingPolicy, HashedWheelTimer timer, long maxWait) {
+        this.coalescingPolicy = coalescingPolicy;
+        this.coalescer = coalescingPolicy == null ? null : new UpstreamCoalescer(inFlightTable, timer, maxWait);
+    }
+
+    /**
+     * Send request body in chunks, and accept reply in chunks. Route must not be coalesced.
+     * @param replyIdleTimeout how long a streamed reply waits for its next chunk, usually expiration of route
+     */
+    public void setStreaming(StreamingPolicy streamingPolicy, long replyIdleTimeout) {
+        this.streamingPolicy = streamingPolicy;
+        this.replyIdleTimeout = replyIdleTimeout;
+    }
+
+    public void setReplyStreamTable(ReplyStreamTable replyStreamTable) {
+        this.replyStreamTable = replyStreamTable;
+    }
+
+    /**
+     * @param chunkExecutor executor which publishes chunks of body arriving after dispatch
+     */
+    public void setChunkExecutor(Executor chunkExecutor) {
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    /**
+     * Continuation which reports reply or timeout of a call to circuit breaker with the permit of the call.
+     */
+    private static final class BreakerProcedure implements DownStreamProcedure {
+        private final CircuitBreaker circuitBreaker;
+        private final long permit;
+        private final DownStreamProcedure continuation;
+
+        BreakerProcedure(CircuitBreaker circuitBreaker, long permit, DownStreamProcedure continuation) {
+            this.circuitBreaker = circuitBreaker;
+            this.permit = permit;
+            this.continuation = continuation;
+        }
+
+        @Override
+        public void call(MessageDelivery message) {
+            // 4xx replies are failures of request, not of upstream
+            if(statusOf(message) >= MessageConstants.UNKNOWN_ERROR) {
+                circuitBreaker.onFailure(permit);
+            } else {
+                circuitBreaker.onSuccess(permit);
+            }
+            continuation.call(message);
+        }
+
+        @Override
+        public void onExpired() {
+            circuitBreaker.onFailure(permit);
+        }
+    }
+
     private static class MessageDeliveryImpl implements MessageDelivery {
         @Override
         public MessageHeaders getHeaders() {
@@ -2,29 +2,22 @@ package io.pocat.platform.gateway.utils.pathtree;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Tree of items by path with single level ("*") and multiple level ("#") wildcards.
+ * Nodes are immutable. addItem copies nodes on the path and swaps the root, so lookups take no lock.
+ * Lookup walks the path by index and does not allocate. Precedence is literal, then single level, then multiple level.
+ */
 public class PathTree<T> {
     private static final String ROOT_NODE_NAME = "";
-    private final PathTreeNode<T> rootNode = new PathTreeNode<>(ROOT_NODE_NAME);
-    private final Lock readLock;
-    private final Lock writeLock;
+
+    private final Object writeLock = new Object();
+    private volatile PathTreeNode<T> rootNode = new PathTreeNode<>(ROOT_NODE_NAME);
+    private volatile int maxWildCardNum = 0;
     private String delimiter = "/";
     private String singleLevelWildCard = "*";
     private String multipleLevelWildCard = "#";
 
-    public PathTree() {
-        this(false);
-    }
-
-    public PathTree(boolean fairness) {
-        ReadWriteLock readWriteLock = new ReentrantReadWriteLock(fairness);
-        this.readLock = readWriteLock.readLock();
-        this.writeLock = readWriteLock.writeLock();
-    }
-
     public void setDelimiter(String delimiter) {
         this.delimiter = delimiter;
     }
@@ -38,137 +31,201 @@ public class PathTree<T> {
     }
 
     public void addItem(String path, T item) throws InvalidPathException {
-        String refinedPath = refinePath(path);
-        String[] nodeNames = refinedPath.split(delimiter);
+        checkPath(path);
+        List<String> nodeNames = new ArrayList<>();
+        int begin = beginOf(path);
+        int end = endOf(path, begin);
+        int pos = begin;
+        while(end >= begin && pos <= end) {
+            int segEnd = segmentEnd(path, pos, end);
+            nodeNames.add(path.substring(pos, segEnd));
+            pos = segEnd + delimiter.length();
+        }
+
+        int wildCardNum = 0;
+        for(String nodeName:nodeNames) {
+            if(nodeName.equals(singleLevelWildCard) || nodeName.equals(multipleLevelWildCard)) {
+                wildCardNum++;
+            }
+        }
 
-        writeLock.lock();
-        try {
-            PathTreeNode<T> node = addChildNode(rootNode, nodeNames, 0);
-            node.setItem(item);
-        } finally {
-            writeLock.unlock();
+        synchronized (writeLock) {
+            this.rootNode = addChildNode(rootNode, nodeNames, 0, item);
+            this.maxWildCardNum = Math.max(maxWildCardNum, wildCardNum);
         }
     }
 
+    /**
+     * @return the most wildcards in a path of this tree. Captures of {@link #findItem(String, int[])} need twice of it.
+     */
+    public int getMaxWildCardNum() {
+        return maxWildCardNum;
+    }
+
     // /a/b/c
-    private PathTreeNode<T> addChildNode(PathTreeNode<T> currentNode, String[] nodeNames, int index) {
-        if(nodeNames.length == index) {
-            return currentNode;
-        }
-        PathTreeNode<T> childNode;
-        if(nodeNames[index].equals(singleLevelWildCard)) {
-            if(currentNode.getSingleLevelNode() == null) {
-                currentNode.setSingleLevelNode(new PathTreeNode<>(singleLevelWildCard));
+    private PathTreeNode<T> addChildNode(PathTreeNode<T> currentNode, List<String> nodeNames, int index, T item) {
+        if(nodeNames.size() == index) {
+            return currentNode.withItem(item);
+        }
+        String nodeName = nodeNames.get(index);
+        if(nodeName.equals(singleLevelWildCard)) {
+            PathTreeNode<T> childNode = currentNode.getSingleLevelNode();
+            if(childNode == null) {
+                childNode = new PathTreeNode<>(singleLevelWildCard);
             }
-            childNode = currentNode.getSingleLevelNode();
-        } else if(nodeNames[index].equals(multipleLevelWildCard)) {
-            if(currentNode.getMultipleLevelNode() == null) {
-                currentNode.setMultipleLevelNode(new PathTreeNode<>(multipleLevelWildCard));
+            return currentNode.withSingleLevelNode(addChildNode(childNode, nodeNames, index+1, item));
+        } else if(nodeName.equals(multipleLevelWildCard)) {
+            PathTreeNode<T> childNode = currentNode.getMultipleLevelNode();
+            if(childNode == null) {
+                childNode = new PathTreeNode<>(multipleLevelWildCard);
             }
-            childNode = currentNode.getMultipleLevelNode();
-        } else if(!currentNode.hasChildNode(nodeNames[index])) {
-            childNode = new PathTreeNode<>(nodeNames[index]);
-            currentNode.addChildNode(childNode);
-        } else {
-            childNode = currentNode.getChildNode(nodeNames[index]);
+            return currentNode.withMultipleLevelNode(addChildNode(childNode, nodeNames, index+1, item));
         }
-        return addChildNode(childNode, nodeNames, index+1);
+        PathTreeNode<T> childNode = currentNode.getChildNode(nodeName);
+        if(childNode == null) {
+            childNode = new PathTreeNode<>(nodeName);
+        }
+        return currentNode.withChildNode(addChildNode(childNode, nodeNames, index+1, item));
     }
 
     public T findItem(String path) throws InvalidPathException {
-        String refinedPath = refinePath(path);
-        String[] nodeNames = refinedPath.split(delimiter);
-        if(nodeNames.length == 0) {
+        checkPath(path);
+        int begin = beginOf(path);
+        int end = endOf(path, begin);
+        if(end < begin) {
             return null;
         }
-        readLock.lock();
-        try {
-            return findChildNode(rootNode, nodeNames, 0);
-        } finally {
-            readLock.unlock();
-        }
+        return findChildNode(rootNode, path, begin, end, null, 0);
     }
 
-    public List<T> findAll(String path) throws InvalidPathException {
-        String refinedPath = refinePath(path);
-        String[] nodeNames = refinedPath.split(delimiter);
-        if(nodeNames.length == 0) {
+    /**
+     * Find item and capture the regions of path matched by wildcards.
+     * Region of n-th wildcard is [captures[2n], captures[2n+1]). Region of multiple level wildcard spans its segments.
+     * @param captures array of at least twice of {@link #getMaxWildCardNum()}
+     */
+    public T findItem(String path, int[] captures) throws InvalidPathException {
+        checkPath(path);
+        int begin = beginOf(path);
+        int end = endOf(path, begin);
+        if(end < begin) {
             return null;
         }
+        return findChildNode(rootNode, path, begin, end, captures, 0);
+    }
 
-        readLock.lock();
-        try {
-            return findAllChildNode(rootNode, nodeNames, 0);
-        } finally {
-            readLock.unlock();
+    public List<T> findAll(String path) throws InvalidPathException {
+        checkPath(path);
+        int begin = beginOf(path);
+        int end = endOf(path, begin);
+        if(end < begin) {
+            return null;
         }
+        List<T> gather = new ArrayList<>();
+        findAllChildNode(rootNode, path, begin, end, gather);
+        return gather;
     }
 
-    private List<T> findAllChildNode(PathTreeNode<T> currentNode, String[] nodeNames, int index) {
-        List<T> gather = new ArrayList<>();
-        if(nodeNames.length == index) {
+    /**
+     * @param pos start of current segment. Greater than end if every segment is consumed.
+     * @param end end of the last segment
+     */
+    private void findAllChildNode(PathTreeNode<T> currentNode, String path, int pos, int end, List<T> gather) {
+        if(pos > end) {
             if(currentNode.getItem() != null) {
                 gather.add(currentNode.getItem());
             }
-            return gather;
+            return;
         }
-        if(currentNode.hasChildNode(nodeNames[index])) {
-            PathTreeNode<T> childNode = currentNode.getChildNode(nodeNames[index]);
-            gather.addAll(findAllChildNode(childNode, nodeNames, index+1));
+        int segEnd = segmentEnd(path, pos, end);
+        int next = segEnd + delimiter.length();
+        PathTreeNode<T> childNode = currentNode.getChildNode(path, pos, segEnd);
+        if(childNode != null) {
+            findAllChildNode(childNode, path, next, end, gather);
         }
         if(currentNode.getSingleLevelNode() != null) {
-            gather.addAll(findAllChildNode(currentNode.getSingleLevelNode(), nodeNames, index+1));
+            findAllChildNode(currentNode.getSingleLevelNode(), path, next, end, gather);
         }
         if(currentNode.getMultipleLevelNode() != null) {
             PathTreeNode<T> multipleNode = currentNode.getMultipleLevelNode();
-            while(index < nodeNames.length) {
-                gather.addAll(findAllChildNode(multipleNode, nodeNames, ++index));
+            while(true) {
+                findAllChildNode(multipleNode, path, next, end, gather);
+                if(next > end) {
+                    break;
+                }
+                next = segmentEnd(path, next, end) + delimiter.length();
             }
         }
-
-        return gather;
     }
 
-    private T findChildNode(PathTreeNode<T> currentNode, String[] nodeNames, int index) {
-        if(nodeNames.length == index) {
+    /**
+     * @param wildCardIndex number of wildcards matched before current segment
+     */
+    private T findChildNode(PathTreeNode<T> currentNode, String path, int pos, int end, int[] captures, int wildCardIndex) {
+        if(pos > end) {
             return currentNode.getItem();
         }
+        int segEnd = segmentEnd(path, pos, end);
+        int next = segEnd + delimiter.length();
 
         T item = null;
-        if(currentNode.hasChildNode(nodeNames[index])) {
-            PathTreeNode<T> childNode = currentNode.getChildNode(nodeNames[index]);
-            item = findChildNode(childNode, nodeNames, index+1);
+        PathTreeNode<T> childNode = currentNode.getChildNode(path, pos, segEnd);
+        if(childNode != null) {
+            item = findChildNode(childNode, path, next, end, captures, wildCardIndex);
         }
-        if(item == null) {
-            if(currentNode.getSingleLevelNode() != null) {
-                item = findChildNode(currentNode.getSingleLevelNode(), nodeNames, index+1);
-            }
-            if(item == null) {
-                if (currentNode.getMultipleLevelNode() != null) {
-                    PathTreeNode<T> multipleNode = currentNode.getMultipleLevelNode();
-                    while (item == null && index < nodeNames.length) {
-                        item = findChildNode(multipleNode, nodeNames, ++index);
-                    }
-                    return item;
+        if(item == null && currentNode.getSingleLevelNode() != null) {
+            capture(captures, wildCardIndex, pos, segEnd);
+            item = findChildNode(currentNode.getSingleLevelNode(), path, next, end, captures, wildCardIndex + 1);
+        }
+        if(item == null && currentNode.getMultipleLevelNode() != null) {
+            // multiple level wildcard takes one or more segments
+            PathTreeNode<T> multipleNode = currentNode.getMultipleLevelNode();
+            while(true) {
+                capture(captures, wildCardIndex, pos, segEnd);
+                item = findChildNode(multipleNode, path, next, end, captures, wildCardIndex + 1);
+                if(item != null || next > end) {
+                    break;
                 }
+                segEnd = segmentEnd(path, next, end);
+                next = segEnd + delimiter.length();
             }
-            return item;
         }
-        PathTreeNode<T> childNode = currentNode.getChildNode(nodeNames[index]);
-        return findChildNode(childNode, nodeNames, index+1);
+        return item;
+    }
+
+    private static void capture(int[] captures, int wildCardIndex, int start, int end) {
+        if(captures != null) {
+            captures[wildCardIndex << 1] = start;
+            captures[(wildCardIndex << 1) + 1] = end;
+        }
     }
 
-    private String refinePath(final String path) throws InvalidPathException {
+    private void checkPath(String path) throws InvalidPathException {
         if(path == null || path.isEmpty()) {
             throw new InvalidPathException("Path is empty");
         }
-        String refinedPath = path;
-        if(refinedPath.startsWith(delimiter)) {
-            refinedPath = refinedPath.substring(1);
+    }
+
+    private int beginOf(String path) {
+        return path.startsWith(delimiter) ? delimiter.length() : 0;
+    }
+
+    /**
+     * @return end of the last segment. Trailing delimiters are ignored. Less than begin if path has no segment.
+     */
+    private int endOf(String path, int begin) {
+        int end = path.length();
+        if(end == begin) {
+            // path is root. it has one empty segment
+            return end;
         }
-        if(refinedPath.endsWith(delimiter)) {
-            refinedPath = refinedPath.substring(0, refinedPath.length()-1);
+        while(end - delimiter.length() >= begin && path.startsWith(delimiter, end - delimiter.length())) {
+            end -= delimiter.length();
         }
-        return refinedPath;
+        return end == begin ? -1 : end;
+    }
+
+    private int segmentEnd(String path, int pos, int end) {
+        int segEnd = path.indexOf(delimiter, pos);
+        return (segEnd < 0 || segEnd > end) ? end : segEnd;
     }
 }
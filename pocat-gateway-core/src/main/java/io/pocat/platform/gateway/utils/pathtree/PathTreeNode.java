@@ -1,33 +1,68 @@
 package io.pocat.platform.gateway.utils.pathtree;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Immutable node of {@link PathTree}. Modification creates a new node.
+ * Children are kept in an open addressing table, so a child can be found by a region of path without substring.
+ */
 public class PathTreeNode<T> {
+    private static final Object[] EMPTY_TABLE = new Object[0];
+
     private final String name;
-    private final Map<String, PathTreeNode<T>> children = new HashMap<>();
-    private PathTreeNode<T> singleMatchNode;
-    private PathTreeNode<T> multipleMatchNode;
-    private T item;
+    // [name0, node0, name1, node1, ...]
+    private final Object[] children;
+    private final int childNum;
+    private final PathTreeNode<T> singleMatchNode;
+    private final PathTreeNode<T> multipleMatchNode;
+    private final T item;
 
     public PathTreeNode(String name) {
+        this(name, EMPTY_TABLE, 0, null, null, null);
+    }
+
+    private PathTreeNode(String name, Object[] children, int childNum, PathTreeNode<T> singleMatchNode, PathTreeNode<T> multipleMatchNode, T item) {
         this.name = name;
+        this.children = children;
+        this.childNum = childNum;
+        this.singleMatchNode = singleMatchNode;
+        this.multipleMatchNode = multipleMatchNode;
+        this.item = item;
     }
 
-    public boolean hasChildNode(String nodeName) {
-        return children.containsKey(nodeName);
+    public String getName() {
+        return name;
     }
 
-    public void addChildNode(PathTreeNode<T> pathTreeNode) {
-        children.put(pathTreeNode.name, pathTreeNode);
+    public boolean hasChildNode(String nodeName) {
+        return getChildNode(nodeName) != null;
     }
 
     public PathTreeNode<T> getChildNode(String nodeName) {
-        return children.get(nodeName);
+        return getChildNode(nodeName, 0, nodeName.length());
     }
 
-    public void setItem(T item) {
-        this.item = item;
+    /**
+     * Find child by name which is the region [start, end) of path.
+     */
+    @SuppressWarnings("unchecked")
+    public PathTreeNode<T> getChildNode(String path, int start, int end) {
+        if(childNum == 0) {
+            return null;
+        }
+        int mask = (children.length >> 1) - 1;
+        int len = end - start;
+        for(int slot = hash(path, start, end) & mask; ; slot = (slot + 1) & mask) {
+            String key = (String) children[slot << 1];
+            if(key == null) {
+                return null;
+            }
+            if(key.length() == len && key.regionMatches(0, path, start, len)) {
+                return (PathTreeNode<T>) children[(slot << 1) + 1];
+            }
+        }
+    }
+
+    public int getChildNum() {
+        return childNum;
     }
 
     public T getItem() {
@@ -38,15 +73,87 @@ public class PathTreeNode<T> {
         return singleMatchNode;
     }
 
-    public void setSingleLevelNode(PathTreeNode<T> singleMatchNode) {
-        this.singleMatchNode = singleMatchNode;
-    }
-
     public PathTreeNode<T> getMultipleLevelNode() {
         return multipleMatchNode;
     }
 
-    public void setMultipleLevelNode(PathTreeNode<T> multipleMatchNode) {
-        this.multipleMatchNode = multipleMatchNode;
+    public PathTreeNode<T> withItem(T item) {
+        return new PathTreeNode<>(name, children, childNum, singleMatchNode, multipleMatchNode, item);
+    }
+
+    public PathTreeNode<T> withSingleLevelNode(PathTreeNode<T> singleMatchNode) {
+        return new PathTreeNode<>(name, children, childNum, singleMatchNode, multipleMatchNode, item);
+    }
+
+    public PathTreeNode<T> withMultipleLevelNode(PathTreeNode<T> multipleMatchNode) {
+        return new PathTreeNode<>(name, children, childNum, singleMatchNode, multipleMatchNode, item);
+    }
+
+    /**
+     * @return copy of this node with the child added or replaced.
+     * Table is copied as is and rehashed only when it grows, so adding N children rehashes O(N) in total.
+     */
+    @SuppressWarnings("unchecked")
+    public PathTreeNode<T> withChildNode(PathTreeNode<T> childNode) {
+        int slot = slotOf(childNode.name);
+        if(slot >= 0) {
+            Object[] table = children.clone();
+            table[(slot << 1) + 1] = childNode;
+            return new PathTreeNode<>(name, table, childNum, singleMatchNode, multipleMatchNode, item);
+        }
+        int newChildNum = childNum + 1;
+        Object[] table;
+        // keep load factor under 0.5
+        if(newChildNum * 2 <= children.length >> 1) {
+            table = children.clone();
+        } else {
+            int capacity = Math.max(2, children.length >> 1);
+            while(capacity < newChildNum * 2) {
+                capacity <<= 1;
+            }
+            table = new Object[capacity << 1];
+            for(int i = 0; i < children.length; i += 2) {
+                if(children[i] != null) {
+                    put(table, (String) children[i], (PathTreeNode<T>) children[i + 1]);
+                }
+            }
+        }
+        put(table, childNode.name, childNode);
+        return new PathTreeNode<>(name, table, newChildNum, singleMatchNode, multipleMatchNode, item);
+    }
+
+    private int slotOf(String childName) {
+        if(childNum == 0) {
+            return -1;
+        }
+        int mask = (children.length >> 1) - 1;
+        for(int slot = hash(childName, 0, childName.length()) & mask; ; slot = (slot + 1) & mask) {
+            Object key = children[slot << 1];
+            if(key == null) {
+                return -1;
+            }
+            if(key.equals(childName)) {
+                return slot;
+            }
+        }
+    }
+
+    private static void put(Object[] table, String key, PathTreeNode<?> node) {
+        int mask = (table.length >> 1) - 1;
+        int slot = hash(key, 0, key.length()) & mask;
+        while(table[slot << 1] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot << 1] = key;
+        table[(slot << 1) + 1] = node;
+    }
+
+    private static int hash(String path, int start, int end) {
+        // same as String.hashCode of the region
+        int h = 0;
+        for(int i = start; i < end; i++) {
+            h = 31 * h + path.charAt(i);
+        }
+        return h ^ (h >>> 16);
     }
 }
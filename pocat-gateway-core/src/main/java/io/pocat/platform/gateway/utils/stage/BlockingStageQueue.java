@@ -0,0 +1,34 @@
+package io.pocat.platform.gateway.utils.stage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class BlockingStageQueue implements StageQueue {
+    private final BlockingQueue<Runnable> queue;
+    private final int capacity;
+
+    public BlockingStageQueue(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        return queue.offer(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+}
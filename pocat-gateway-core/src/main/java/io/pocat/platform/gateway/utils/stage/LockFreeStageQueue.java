@@ -0,0 +1,91 @@
+package io.pocat.platform.gateway.utils.stage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free array queue.
+ * Every slot carries a sequence number, so producers and consumers only CAS their own cursor
+ * and never take a lock. (D. Vyukov's bounded MPMC queue)
+ */
+public class LockFreeStageQueue implements StageQueue {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Runnable> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private final AtomicLong dequeuePos = new AtomicLong();
+
+    public LockFreeStageQueue(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than 0.");
+        }
+        int size = 1;
+        while(size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = capacity;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        if(task == null) {
+            throw new NullPointerException();
+        }
+        while(true) {
+            long pos = enqueuePos.get();
+            if(pos - dequeuePos.get() >= capacity) {
+                return false;
+            }
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if(diff == 0) {
+                if(enqueuePos.compareAndSet(pos, pos + 1)) {
+                    buffer.set(index, task);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if(diff < 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        while(true) {
+            long pos = dequeuePos.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if(diff == 0) {
+                if(dequeuePos.compareAndSet(pos, pos + 1)) {
+                    Runnable task = buffer.getAndSet(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return task;
+                }
+            } else if(diff < 0) {
+                return null;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = enqueuePos.get() - dequeuePos.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,25 @@
+package io.pocat.platform.gateway.utils.stage;
+
+public enum OverflowPolicy {
+    /**
+     * Throw RejectedExecutionException to the caller.
+     */
+    REJECT,
+    /**
+     * Run the task on the caller thread.
+     */
+    CALLER_RUNS,
+    /**
+     * Drop the oldest queued task to make room for the new one.
+     * Dropped {@link Rejectable} task is rejected. Other tasks run on the caller thread instead.
+     */
+    SHED;
+
+    public static OverflowPolicy of(String name) {
+        try {
+            return OverflowPolicy.valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid overflow policy [" + name + "]");
+        }
+    }
+}
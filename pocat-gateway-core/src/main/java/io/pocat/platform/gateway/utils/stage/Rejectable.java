@@ -0,0 +1,12 @@
+package io.pocat.platform.gateway.utils.stage;
+
+/**
+ * Task which is told when stage drops it after it is queued, e.g. shed by {@link OverflowPolicy#SHED}.
+ * Task carrying an exchange answers it in reject, so the exchange releases its slots and buffers.
+ */
+public interface Rejectable extends Runnable {
+    /**
+     * Called on the thread which sheds the task, instead of run.
+     */
+    void reject();
+}
@@ -3,6 +3,9 @@ package io.pocat.platform.gateway.utils.stage;
 import java.util.concurrent.ExecutorService;
 
 public interface Stage extends ExecutorService {
+    String getName();
+    StageMetrics getMetrics();
+
     void start();
     void stop();
 }
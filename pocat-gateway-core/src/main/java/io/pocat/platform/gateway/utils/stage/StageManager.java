@@ -16,6 +16,8 @@
 
 package io.pocat.platform.gateway.utils.stage;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 public class StageManager {
@@ -29,6 +31,10 @@ public class StageManager {
         return stages.get(stageName);
     }
 
+    public Collection<Stage> getStages() {
+        return Collections.unmodifiableCollection(stages.values());
+    }
+
     public void start() {
         for(Stage stage:stages.values()) {
             stage.start();
@@ -0,0 +1,100 @@
+package io.pocat.platform.gateway.utils.stage;
+
+import io.pocat.platform.gateway.metrics.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class StageMetrics {
+    private final StagedExecutorService stage;
+    final LongAdder submitted = new LongAdder();
+    final LongAdder completed = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder shed = new LongAdder();
+    final LongAdder callerRuns = new LongAdder();
+    final LongAdder waitNanos = new LongAdder();
+    final LongAdder serviceNanos = new LongAdder();
+    final Histogram waitHistogram = new Histogram();
+    final Histogram serviceHistogram = new Histogram();
+
+    StageMetrics(StagedExecutorService stage) {
+        this.stage = stage;
+    }
+
+    public String getStageName() {
+        return stage.getName();
+    }
+
+    public int getQueueDepth() {
+        return stage.getQueueDepth();
+    }
+
+    public int getQueueCapacity() {
+        return stage.getQueueCapacity();
+    }
+
+    public int getWorkerNum() {
+        return stage.getWorkerNum();
+    }
+
+    public int getActiveWorkerNum() {
+        return stage.getActiveWorkerNum();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * @return sum of time tasks spent in queue
+     */
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * @return sum of time workers spent running tasks
+     */
+    public long getTotalServiceNanos() {
+        return serviceNanos.sum();
+    }
+
+    public long getAverageWaitNanos() {
+        long completed = this.completed.sum();
+        return completed == 0 ? 0 : waitNanos.sum() / completed;
+    }
+
+    public long getAverageServiceNanos() {
+        long completed = this.completed.sum();
+        return completed == 0 ? 0 : serviceNanos.sum() / completed;
+    }
+
+    /**
+     * @return distribution of time tasks spent in queue in nanos
+     */
+    public Histogram getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    /**
+     * @return distribution of time workers spent running tasks in nanos
+     */
+    public Histogram getServiceHistogram() {
+        return serviceHistogram;
+    }
+}
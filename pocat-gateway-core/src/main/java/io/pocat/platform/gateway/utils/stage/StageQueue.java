@@ -0,0 +1,21 @@
+package io.pocat.platform.gateway.utils.stage;
+
+/**
+ * Bounded task queue of a stage. Stage workers wait on their own signal, so queue does not need to block.
+ * Implementation must be safe for multiple producers and multiple consumers.
+ */
+public interface StageQueue {
+    /**
+     * @return false if queue is full
+     */
+    boolean offer(Runnable task);
+
+    /**
+     * @return head of queue, or null if queue is empty
+     */
+    Runnable poll();
+
+    int size();
+
+    int capacity();
+}
@@ -1,36 +1,71 @@
 package io.pocat.platform.gateway.utils.stage;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-// todo Create StagedExecutor
+/**
+ * SEDA stage. Tasks are queued in a bounded queue and served by the stage's own workers.
+ * Stage keeps min workers alive and adds workers up to max while no worker is idle.
+ * Workers above min exit after keep-alive time without task.
+ * When queue is full, overflow policy decides what happens to the new task.
+ */
 public class StagedExecutorService extends AbstractExecutorService implements Stage {
-    private static final int DEFAULT_THRESHOLD = 5;
+    private static final Logger LOGGER = LoggerFactory.getLogger(StagedExecutorService.class);
 
     private final String name;
-    private final ExecutorService mainPool;
-    private final BlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<>();
+    private final StageQueue queue;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final long keepAliveNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final ThreadFactory threadFactory;
+    private final StageMetrics metrics = new StageMetrics(this);
 
-    private final int threshold;
-    private final ClassLoader contextClassLoader;
+    private final Semaphore available = new Semaphore(0);
     private final AtomicInteger workerNum = new AtomicInteger(0);
+    private final AtomicInteger idleWorkerNum = new AtomicInteger(0);
+    private final AtomicInteger workerSeq = new AtomicInteger(0);
+    private final ReentrantLock terminationLock = new ReentrantLock();
+    private final Condition terminated = terminationLock.newCondition();
+
+    private volatile boolean isStarted = false;
+    private volatile boolean isShutdown = false;
 
-    private boolean isShutdown = false;
+    private StagedExecutorService(Builder builder) {
+        this.name = builder.name;
+        this.queue = builder.queue != null ? builder.queue : new BlockingStageQueue(builder.capacity);
+        this.minWorkers = builder.minWorkers;
+        this.maxWorkers = builder.maxWorkers;
+        this.keepAliveNanos = builder.keepAliveNanos;
+        this.overflowPolicy = builder.overflowPolicy;
+        ClassLoader contextClassLoader = builder.contextClassLoader;
+        ThreadFactory threadFactory = builder.threadFactory;
+        this.threadFactory = runnable -> {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName(name + "-worker-" + workerSeq.getAndIncrement());
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        };
+    }
 
-    public StagedExecutorService(String name, ExecutorService mainPool) {
-        this(name, mainPool, DEFAULT_THRESHOLD);
+    public static Builder builder(String name) {
+        return new Builder(name);
     }
 
-    public StagedExecutorService(String name, ExecutorService mainPool, int threshold) {
-        this(name, mainPool, threshold, Thread.currentThread().getContextClassLoader());
+    public String getName() {
+        return name;
     }
 
-    public StagedExecutorService(String name, ExecutorService mainPool, int threshold, ClassLoader contextClassLoader) {
-        this.name = name;
-        this.mainPool = mainPool;
-        this.threshold = threshold;
-        this.contextClassLoader = contextClassLoader;
+    @Override
+    public StageMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
@@ -45,76 +80,292 @@ public class StagedExecutorService extends AbstractExecutorService implements St
 
     @Override
     public boolean isShutdown() {
-        return mainPool.isShutdown();
+        return isShutdown;
     }
 
     @Override
     public boolean isTerminated() {
-        return mainPool.isTerminated();
+        return isShutdown && workerNum.get() == 0;
     }
 
     @Override
     public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-       return mainPool.awaitTermination(timeout, unit);
+        long nanos = unit.toNanos(timeout);
+        terminationLock.lock();
+        try {
+            while(!isTerminated()) {
+                if(nanos <= 0) {
+                    return false;
+                }
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            terminationLock.unlock();
+        }
     }
 
     @Override
     public void execute(Runnable command) {
-        if(!isShutdown) {
-            this.taskQueue.add(command);
-            if (this.taskQueue.size() > this.threshold) {
-                mainPool.execute(() -> {
-                    int current = this.workerNum.getAndIncrement();
-
-                    String oldName = Thread.currentThread().getName();
-                    ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
-
-                    Thread.currentThread().setName(name + "-borrow-worker-" + current + "-" + oldName);
-                    Thread.currentThread().setContextClassLoader(contextClassLoader);
-                    while (!(isShutdown && taskQueue.isEmpty())) {
-                        Runnable task = taskQueue.poll();
-                        if (task == null) {
-                            break;
-                        }
-                        task.run();
+        if(isShutdown) {
+            metrics.rejected.increment();
+            throw new RejectedExecutionException("Stage [" + name + "] is stopped.");
+        }
+        StageTask task = new StageTask(command);
+        while(!queue.offer(task)) {
+            switch (overflowPolicy) {
+                case CALLER_RUNS:
+                    metrics.callerRuns.increment();
+                    task.enqueuedAt = System.nanoTime();
+                    task.run();
+                    return;
+                case SHED:
+                    Runnable shed = queue.poll();
+                    if(shed != null) {
+                        metrics.shed.increment();
+                        ((StageTask) shed).shed();
                     }
-
-                    Thread.currentThread().setContextClassLoader(oldClassLoader);
-                    Thread.currentThread().setName(oldName);
-
-                    this.workerNum.decrementAndGet();
-                });
+                    continue;
+                default:
+                    metrics.rejected.increment();
+                    throw new RejectedExecutionException("Stage [" + name + "] queue is full.");
             }
         }
+        metrics.submitted.increment();
+        available.release();
+        if(idleWorkerNum.get() == 0) {
+            addWorker(maxWorkers);
+        }
     }
 
     @Override
     public void start() {
-        mainPool.execute(() -> {
-            int current = workerNum.getAndIncrement();
-            String oldName = Thread.currentThread().getName();
-            ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        if(isStarted) {
+            return;
+        }
+        isStarted = true;
+        for(int i = 0; i < minWorkers; i++) {
+            addWorker(minWorkers);
+        }
+    }
 
-            Thread.currentThread().setName(name + "-main-worker-" + current);
-            Thread.currentThread().setContextClassLoader(contextClassLoader);
+    @Override
+    public void stop() {
+        isShutdown = true;
+        // wake up every worker, then they drain queue and exit
+        available.release(Math.max(workerNum.get(), 1) + queue.size());
+    }
 
-            while(!(isShutdown && taskQueue.isEmpty())) {
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    int getQueueCapacity() {
+        return queue.capacity();
+    }
+
+    int getWorkerNum() {
+        return workerNum.get();
+    }
+
+    int getActiveWorkerNum() {
+        return workerNum.get() - idleWorkerNum.get();
+    }
+
+    private void addWorker(int limit) {
+        if(!isStarted) {
+            return;
+        }
+        while(true) {
+            int current = workerNum.get();
+            if(current >= limit) {
+                return;
+            }
+            if(workerNum.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            threadFactory.newThread(this::runWorker).start();
+        } catch (Throwable t) {
+            LOGGER.error("Stage [" + name + "] failed to add worker.", t);
+            workerExited(false);
+        }
+    }
+
+    private void runWorker() {
+        boolean retired = false;
+        try {
+            while(true) {
+                idleWorkerNum.incrementAndGet();
+                boolean acquired;
                 try {
-                    Runnable task = taskQueue.take();
-                    task.run();
-                } catch (InterruptedException ignored) {
-                    // do nothing
+                    acquired = available.tryAcquire(keepAliveNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    acquired = false;
+                } finally {
+                    idleWorkerNum.decrementAndGet();
+                }
+                if(!acquired) {
+                    if(isShutdown) {
+                        return;
+                    }
+                    if(retire()) {
+                        retired = true;
+                        return;
+                    }
+                    continue;
                 }
+                Runnable task = queue.poll();
+                if(task == null) {
+                    // shed task or wake up call of stop
+                    if(isShutdown && queue.size() == 0) {
+                        return;
+                    }
+                    continue;
+                }
+                task.run();
+            }
+        } finally {
+            workerExited(retired);
+        }
+    }
+
+    private boolean retire() {
+        while(true) {
+            int current = workerNum.get();
+            if(current <= minWorkers) {
+                return false;
+            }
+            if(workerNum.compareAndSet(current, current - 1)) {
+                return true;
             }
+        }
+    }
 
-            Thread.currentThread().setContextClassLoader(oldClassLoader);
-            Thread.currentThread().setName(oldName);
+    private void workerExited(boolean alreadyCounted) {
+        if(!alreadyCounted) {
             workerNum.decrementAndGet();
-        });
+        }
+        if(isShutdown) {
+            terminationLock.lock();
+            try {
+                terminated.signalAll();
+            } finally {
+                terminationLock.unlock();
+            }
+        }
     }
 
-    @Override
-    public void stop() {
-        isShutdown = true;
+    private final class StageTask implements Runnable {
+        private final Runnable command;
+        private long enqueuedAt = System.nanoTime();
+
+        StageTask(Runnable command) {
+            this.command = command;
+        }
+
+        /**
+         * Task which cannot be rejected is not dropped silently. It runs on the caller thread.
+         */
+        void shed() {
+            if(!(command instanceof Rejectable)) {
+                metrics.callerRuns.increment();
+                run();
+                return;
+            }
+            try {
+                ((Rejectable) command).reject();
+            } catch (Throwable t) {
+                LOGGER.error("Unexpected exception is thrown rejecting task shed by stage [" + name + "].", t);
+            }
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            long waited = startedAt - enqueuedAt;
+            metrics.waitNanos.add(waited);
+            metrics.waitHistogram.record(waited);
+            try {
+                command.run();
+            } catch (Throwable t) {
+                LOGGER.error("Unexpected exception is thrown in stage [" + name + "].", t);
+            } finally {
+                long served = System.nanoTime() - startedAt;
+                metrics.serviceNanos.add(served);
+                metrics.serviceHistogram.record(served);
+                metrics.completed.increment();
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int capacity = 65536;
+        private int minWorkers = Runtime.getRuntime().availableProcessors();
+        private int maxWorkers = Runtime.getRuntime().availableProcessors() * 16;
+        private long keepAliveNanos = TimeUnit.SECONDS.toNanos(60);
+        private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+        private StageQueue queue = null;
+        private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        private ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public StagedExecutorService build() {
+            if(minWorkers < 0 || maxWorkers <= 0 || minWorkers > maxWorkers) {
+                throw new IllegalArgumentException("Invalid worker range [" + minWorkers + ", " + maxWorkers + "] of stage [" + name + "]");
+            }
+            if(queue == null && capacity <= 0) {
+                throw new IllegalArgumentException("Invalid capacity [" + capacity + "] of stage [" + name + "]");
+            }
+            return new StagedExecutorService(this);
+        }
+
+        public Builder setCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder setMinWorkers(int minWorkers) {
+            this.minWorkers = minWorkers;
+            return this;
+        }
+
+        public Builder setMaxWorkers(int maxWorkers) {
+            this.maxWorkers = maxWorkers;
+            return this;
+        }
+
+        public Builder setKeepAlive(long keepAlive, TimeUnit unit) {
+            this.keepAliveNanos = unit.toNanos(keepAlive);
+            return this;
+        }
+
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Set custom queue. Capacity is ignored when queue is set.
+         */
+        public Builder setQueue(StageQueue queue) {
+            this.queue = queue;
+            return this;
+        }
+
+        public Builder setThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public Builder setContextClassLoader(ClassLoader contextClassLoader) {
+            this.contextClassLoader = contextClassLoader;
+            return this;
+        }
     }
 }
@@ -0,0 +1,326 @@
+package io.pocat.platform.gateway.utils.timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Timer shared by every route of a gateway.
+ * Timeouts are hashed into a fixed size wheel of buckets by their expiration tick.
+ * Each bucket has its own lock, so register and cancel are O(1) and only contend with the tick thread
+ * and the callers which hit the same bucket. One tick thread advances the wheel and expires timeouts.
+ */
+public class HashedWheelTimer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static final long DEFAULT_TICK_DURATION_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+    private final LongAdder pending = new LongAdder();
+
+    private volatile long startTime;
+    private volatile boolean isRunning = false;
+    private Thread worker;
+
+    private HashedWheelTimer(Builder builder) {
+        this.name = builder.name;
+        this.tickNanos = builder.tickNanos;
+        this.taskExecutor = builder.taskExecutor;
+        int wheelSize = normalize(builder.wheelSize);
+        this.wheel = new Bucket[wheelSize];
+        for(int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public synchronized void start() {
+        if(isRunning) {
+            return;
+        }
+        this.startTime = System.nanoTime();
+        this.isRunning = true;
+        this.worker = new Thread(this::tickLoop, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public synchronized void stop() {
+        if(!isRunning) {
+            return;
+        }
+        this.isRunning = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if(!isRunning) {
+            throw new IllegalStateException("Timer [" + name + "] is not running.");
+        }
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        long expireTick = (deadline + tickNanos - 1) / tickNanos;
+
+        HashedWheelTimeout timeout = new HashedWheelTimeout(this, task);
+        while(true) {
+            Bucket bucket = wheel[(int) (expireTick & mask)];
+            long processedTick = bucket.add(timeout, expireTick);
+            if(processedTick < expireTick) {
+                pending.increment();
+                return timeout;
+            }
+            // The tick thread already passed this bucket. Push the timeout into the next tick.
+            expireTick = processedTick + 1;
+        }
+    }
+
+    public long pendingTimeouts() {
+        return pending.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void tickLoop() {
+        long tick = 0;
+        while(isRunning) {
+            long sleepNanos = startTime + tick * tickNanos - System.nanoTime();
+            if(sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            HashedWheelTimeout expired = wheel[(int) (tick & mask)].expire(tick);
+            while(expired != null) {
+                HashedWheelTimeout next = expired.nextExpired;
+                expired.nextExpired = null;
+                pending.decrement();
+                runTask(expired.task);
+                expired = next;
+            }
+            tick++;
+        }
+    }
+
+    private void runTask(Runnable task) {
+        if(taskExecutor != null) {
+            try {
+                taskExecutor.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Timer [" + name + "] task executor rejected expired task. Run it in tick thread.");
+            }
+        }
+        try {
+            task.run();
+        } catch (Throwable t) {
+            LOGGER.warn("Timer [" + name + "] expired task threw exception.", t);
+        }
+    }
+
+    private void cancelled(HashedWheelTimeout timeout) {
+        Bucket bucket = timeout.bucket;
+        if(bucket != null && bucket.remove(timeout)) {
+            pending.decrement();
+        }
+    }
+
+    private static int normalize(int wheelSize) {
+        if(wheelSize <= 0) {
+            throw new IllegalArgumentException("Wheel size must be greater than 0.");
+        }
+        int normalized = 1;
+        while(normalized < wheelSize) {
+            normalized <<= 1;
+        }
+        return normalized;
+    }
+
+    private static final class Bucket {
+        private final ReentrantLock lock = new ReentrantLock();
+        private HashedWheelTimeout head;
+        private HashedWheelTimeout tail;
+        private long processedTick = -1;
+
+        /**
+         * @return last processed tick of this bucket. If it is not less than expire tick, timeout is not added.
+         */
+        long add(HashedWheelTimeout timeout, long expireTick) {
+            lock.lock();
+            try {
+                if(processedTick >= expireTick) {
+                    return processedTick;
+                }
+                timeout.expireTick = expireTick;
+                timeout.bucket = this;
+                if(tail == null) {
+                    head = tail = timeout;
+                } else {
+                    tail.next = timeout;
+                    timeout.prev = tail;
+                    tail = timeout;
+                }
+                return processedTick;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(HashedWheelTimeout timeout) {
+            lock.lock();
+            try {
+                if(timeout.bucket != this) {
+                    return false;
+                }
+                unlink(timeout);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        HashedWheelTimeout expire(long tick) {
+            HashedWheelTimeout expiredHead = null;
+            HashedWheelTimeout expiredTail = null;
+            lock.lock();
+            try {
+                processedTick = tick;
+                HashedWheelTimeout timeout = head;
+                while(timeout != null) {
+                    HashedWheelTimeout next = timeout.next;
+                    if(timeout.expireTick <= tick && timeout.expire()) {
+                        unlink(timeout);
+                        if(expiredTail == null) {
+                            expiredHead = expiredTail = timeout;
+                        } else {
+                            expiredTail.nextExpired = timeout;
+                            expiredTail = timeout;
+                        }
+                    }
+                    timeout = next;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return expiredHead;
+        }
+
+        private void unlink(HashedWheelTimeout timeout) {
+            if(timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if(timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private static final class HashedWheelTimeout implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<HashedWheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimeout.class, "state");
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private volatile int state = ST_INIT;
+
+        // guarded by bucket lock
+        private long expireTick;
+        private Bucket bucket;
+        private HashedWheelTimeout prev;
+        private HashedWheelTimeout next;
+        // only touched by tick thread
+        private HashedWheelTimeout nextExpired;
+
+        HashedWheelTimeout(HashedWheelTimer timer, Runnable task) {
+            this.timer = timer;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if(!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.cancelled(this);
+            return true;
+        }
+
+        boolean expire() {
+            return STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+    }
+
+    public static final class Builder {
+        private String name = "pocat-timer";
+        private long tickNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TICK_DURATION_MILLIS);
+        private int wheelSize = DEFAULT_WHEEL_SIZE;
+        private Executor taskExecutor = null;
+
+        public HashedWheelTimer build() {
+            return new HashedWheelTimer(this);
+        }
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder setTickDuration(long tickDuration, TimeUnit unit) {
+            if(tickDuration <= 0) {
+                throw new IllegalArgumentException("Tick duration must be greater than 0.");
+            }
+            this.tickNanos = unit.toNanos(tickDuration);
+            return this;
+        }
+
+        public Builder setWheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+            return this;
+        }
+
+        public Builder setTaskExecutor(Executor taskExecutor) {
+            this.taskExecutor = taskExecutor;
+            return this;
+        }
+    }
+}
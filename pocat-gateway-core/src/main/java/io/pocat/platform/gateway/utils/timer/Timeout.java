@@ -0,0 +1,13 @@
+package io.pocat.platform.gateway.utils.timer;
+
+public interface Timeout {
+    /**
+     * Cancel this timeout. Task of cancelled timeout will never run.
+     * @return true if timeout is cancelled by this call, false if it is already expired or cancelled
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    boolean isExpired();
+}
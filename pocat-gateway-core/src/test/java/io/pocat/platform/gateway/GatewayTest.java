@@ -0,0 +1,67 @@
+package io.pocat.platform.gateway;
+
+import io.pocat.gateway.route.CircuitBreakerConfig;
+import io.pocat.platform.gateway.route.CircuitBreaker;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GatewayTest {
+    private static CircuitBreakerConfig config(int failureRateThreshold) {
+        return new CircuitBreakerConfig() {
+            @Override
+            public int getFailureRateThreshold() {
+                return failureRateThreshold;
+            }
+
+            @Override
+            public int getMinimumCalls() {
+                return 4;
+            }
+
+            @Override
+            public long getWindow() {
+                return 10000;
+            }
+
+            @Override
+            public long getOpenDuration() {
+                return 1000;
+            }
+
+            @Override
+            public int getHalfOpenCalls() {
+                return 2;
+            }
+        };
+    }
+
+    @Test
+    public void testCircuitBreakerFollowsReloadedConfig() {
+        Gateway gateway = new Gateway(null);
+        CircuitBreaker breaker = gateway.getCircuitBreaker("api", "orders", config(50));
+        // same settings by another config instance keep breaker and its state
+        assertSame(breaker, gateway.getCircuitBreaker("api", "orders", config(50)));
+
+        CircuitBreaker reconfigured = gateway.getCircuitBreaker("api", "orders", config(80));
+        assertNotSame(breaker, reconfigured);
+        assertTrue(reconfigured.isConfiguredBy(config(80)));
+        assertEquals(1, gateway.getCircuitBreakers("api").size());
+    }
+
+    @Test
+    public void testServicesKeepTheirOwnCircuitBreakers() {
+        Gateway gateway = new Gateway(null);
+        CircuitBreaker api = gateway.getCircuitBreaker("api", "orders", config(50));
+        CircuitBreaker admin = gateway.getCircuitBreaker("admin", "orders", config(80));
+        assertNotSame(api, admin);
+
+        // build or reload of one service does not replace the breaker of another
+        assertSame(api, gateway.getCircuitBreaker("api", "orders", config(50)));
+        assertSame(admin, gateway.getCircuitBreaker("admin", "orders", config(80)));
+        assertTrue(api.isConfiguredBy(config(50)));
+        assertEquals(1, gateway.getCircuitBreakers("api").size());
+        assertEquals(1, gateway.getCircuitBreakers("admin").size());
+        assertTrue(gateway.getCircuitBreakers("unknown").isEmpty());
+    }
+}
@@ -0,0 +1,374 @@
+package io.pocat.platform.gateway;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.protocol.ProtocolRouter;
+import io.pocat.gateway.route.*;
+import io.pocat.platform.gateway.cache.CacheInvalidator;
+import io.pocat.platform.gateway.cache.ResponseCache;
+import io.pocat.platform.gateway.metrics.RouteMetrics;
+import io.pocat.platform.gateway.route.AdmissionController;
+import io.pocat.platform.gateway.route.Bulkhead;
+import io.pocat.platform.gateway.route.InFlightTable;
+import io.pocat.platform.gateway.route.MockExchange;
+import io.pocat.platform.gateway.route.RouteProcedure;
+import io.pocat.platform.gateway.route.RouteProcessor;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import io.pocat.platform.messagebus.MessageBusConnection;
+import io.pocat.platform.messagebus.MessageDeliveryHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RouteTableManagerTest {
+    private static final String ROUTE_HEADER_NAME = "Route";
+
+    private HashedWheelTimer timer;
+    private InFlightTable inFlightTable;
+    private AdmissionController admission;
+    private MockConnection connection;
+    private CacheInvalidator invalidator;
+    private final ArrayDeque<Runnable> stage = new ArrayDeque<>();
+    private final List<String> completed = new ArrayList<>();
+
+    // Config read by the next build
+    private List<TestRoute> routes;
+    private String version;
+    private RuntimeException failure;
+    private final List<RecordingFilter> filters = new ArrayList<>();
+    private RouteTableManager manager;
+
+    @Before
+    public void setUp() throws IOException {
+        timer = HashedWheelTimer.builder().setTickDuration(1, TimeUnit.MILLISECONDS).build();
+        timer.start();
+        inFlightTable = new InFlightTable(timer, 4);
+        admission = new AdmissionController("test", AdmissionController.UNLIMITED, AdmissionController.UNLIMITED, 50300, 1);
+        connection = new MockConnection();
+        invalidator = new CacheInvalidator(connection, "gateway-1");
+        manager = new RouteTableManager("route group [test]", this::buildTable, admission, invalidator);
+
+        routes = Arrays.asList(new TestRoute("users", "users:get", 4, "user-events"), new TestRoute("orders", "orders:get", 2, null));
+        version = "v1";
+        manager.init();
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testReloadAppliesAddedAndRemovedRoutes() throws RouteProcessException {
+        RouteTable oldTable = manager.getRouteTable();
+        Bulkhead usersBulkhead = admission.getRouteBulkhead("users");
+        ResponseCache oldCache = oldTable.caches.get("users");
+        oldCache.put("users/1", response());
+
+        routes = Arrays.asList(new TestRoute("users", "users:get", 4, "user-events"), new TestRoute("products", "products:get", 3, null));
+        version = "v2";
+        assertTrue(manager.reload());
+
+        RouteTable newTable = manager.getRouteTable();
+        assertNotSame(oldTable, newTable);
+        dispatch("products");
+        runStage();
+        assertEquals(Arrays.asList("v2:products"), completed);
+        try {
+            dispatch("orders");
+            fail("Removed route must not be found");
+        } catch (RouteProcessException expected) {
+        }
+
+        // unchanged route keeps its bulkhead, removed route and channel lose theirs
+        assertSame(usersBulkhead, admission.getRouteBulkhead("users"));
+        assertNotNull(admission.getRouteBulkhead("products"));
+        assertNull(admission.getRouteBulkhead("orders"));
+        assertEquals(new HashSet<>(Arrays.asList("users:get", "products:get")), channelNames());
+
+        // invalidation reaches the cache of new table only
+        ResponseCache newCache = newTable.caches.get("users");
+        newCache.put("users/1", response());
+        connection.deliver("user-events", "users/1");
+        assertNull(newCache.get("users/1"));
+        assertNotNull(oldCache.get("users/1"));
+    }
+
+    @Test
+    public void testFailedReloadKeepsCurrentTable() throws RouteProcessException {
+        RouteTable table = manager.getRouteTable();
+        Bulkhead usersBulkhead = admission.getRouteBulkhead("users");
+        Bulkhead ordersBulkhead = admission.getRouteBulkhead("orders");
+        Collection<Bulkhead> channelBulkheads = new ArrayList<>(admission.getChannelBulkheads());
+
+        routes = Arrays.asList(new TestRoute("users", "users:get", 8, "user-events"), new TestRoute("products", "products:get", 3, null));
+        version = "v2";
+        failure = new IllegalArgumentException("Routes of upstream channel [users:get] have different circuit breaker configs.");
+        assertFalse(manager.reload());
+
+        assertSame(table, manager.getRouteTable());
+        dispatch("orders");
+        runStage();
+        assertEquals(Arrays.asList("v1:orders"), completed);
+        assertSame(usersBulkhead, admission.getRouteBulkhead("users"));
+        assertSame(ordersBulkhead, admission.getRouteBulkhead("orders"));
+        assertNull(admission.getRouteBulkhead("products"));
+        assertEquals(channelBulkheads.size(), admission.getChannelBulkheads().size());
+        assertTrue(admission.getChannelBulkheads().containsAll(channelBulkheads));
+
+        // current cache is still invalidated
+        ResponseCache cache = table.caches.get("users");
+        cache.put("users/1", response());
+        connection.deliver("user-events", "users/1");
+        assertNull(cache.get("users/1"));
+        assertFalse(filters.get(0).isDestroyed);
+    }
+
+    @Test
+    public void testExchangeDispatchedBeforeSwapFinishesOnOldTable() throws RouteProcessException {
+        ScheduledExecutorService retireExecutor = Executors.newSingleThreadScheduledExecutor();
+        manager.setRetireExecutor(retireExecutor);
+        try {
+            // exchange waits in stage while routes are reloaded
+            dispatch("users");
+            assertTrue(completed.isEmpty());
+
+            version = "v2";
+            assertTrue(manager.reload());
+            runStage();
+            assertEquals(Arrays.asList("v1:users"), completed);
+            // filters of old table outlive the swap for in-flight exchanges
+            assertFalse(filters.get(0).isDestroyed);
+
+            dispatch("users");
+            runStage();
+            assertEquals(Arrays.asList("v1:users", "v2:users"), completed);
+        } finally {
+            retireExecutor.shutdownNow();
+        }
+        manager.destroy();
+        assertTrue(filters.get(0).isDestroyed);
+        assertTrue(filters.get(1).isDestroyed);
+    }
+
+    private void dispatch(String routeName) throws RouteProcessException {
+        MockExchange exchange = new MockExchange();
+        exchange.setRequestHeader(ROUTE_HEADER_NAME, routeName);
+        assertTrue(admission.admit(exchange));
+        // same as service container, exchange is bound to the table read at dispatch
+        manager.getRouteTable().process(exchange);
+    }
+
+    private void runStage() {
+        Runnable task;
+        while((task = stage.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private Set<String> channelNames() {
+        Set<String> names = new HashSet<>();
+        for(Bulkhead bulkhead:admission.getChannelBulkheads()) {
+            names.add(bulkhead.getName());
+        }
+        return names;
+    }
+
+    private static MockExchange response() {
+        MockExchange reply = new MockExchange();
+        reply.setResponseContents(new byte[10]);
+        return reply;
+    }
+
+    private RouteTable buildTable() {
+        if(failure != null) {
+            throw failure;
+        }
+        String tableVersion = version;
+        Map<String, Route> routeMap = new HashMap<>();
+        Map<String, RouteProcessor> processors = new HashMap<>();
+        Map<String, ResponseCache> caches = new HashMap<>();
+        Map<String, Integer> channelLimits = new HashMap<>();
+        long maxExpireIn = 0;
+        for(TestRoute route:routes) {
+            routeMap.put(route.getName(), route);
+            List<RouteProcedure> procedures = Arrays.asList(
+                    (exchange, chain) -> stage.add(() -> chain.doNext(exchange)),
+                    (exchange, chain) -> {
+                        inFlightTable.complete(exchange.getTxId());
+                        admission.release(exchange);
+                        completed.add(tableVersion + ":" + route.getName());
+                    });
+            RouteMetrics metrics = new RouteMetrics(route.getName());
+            metrics.setProcedureNames(Arrays.asList("stage", "response"));
+            processors.put(route.getName(), new RouteProcessor(route, procedures, inFlightTable, tx -> {}, admission,
+                    (exchange, e) -> fail("Exchange must not fail"), metrics));
+            if(route.getCachePolicy() != null) {
+                caches.put(route.getName(), new ResponseCache(route.getName(), 1024 * 1024, 60000));
+            }
+            channelLimits.merge(route.channelName, route.channelLimit, Math::min);
+            maxExpireIn = Math.max(maxExpireIn, route.getExpireIn());
+        }
+        ProtocolRouter router = new ProtocolRouter() {
+            @Override
+            public void addRoute(Route route) {
+                routeMap.put(route.getName(), route);
+            }
+
+            @Override
+            public Route findRoute(Exchange exchange) throws RouteProcessException {
+                Route route = routeMap.get(exchange.getRequestHeader(ROUTE_HEADER_NAME));
+                if(route == null) {
+                    throw new RouteProcessException(40400, "Not found");
+                }
+                return route;
+            }
+        };
+        RecordingFilter filter = new RecordingFilter();
+        filters.add(filter);
+        return new RouteTable(router, null, processors, Collections.singletonList(filter), new ArrayList<>(routes), caches, channelLimits, maxExpireIn);
+    }
+
+    private static class TestRoute implements Route {
+        private final String name;
+        private final String channelName;
+        private final int channelLimit;
+        private final String invalidationSource;
+
+        TestRoute(String name, String channelName, int channelLimit, String invalidationSource) {
+            this.name = name;
+            this.channelName = channelName;
+            this.channelLimit = channelLimit;
+            this.invalidationSource = invalidationSource;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getExpireIn() {
+            return 10000;
+        }
+
+        @Override
+        public ExecutionMode getExecutionMode() {
+            return ExecutionMode.STAGED;
+        }
+
+        @Override
+        public List<RouteTask> getBeforeFilterTasks() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RouteFilterConfig> getRequestFilterConfigs() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public UpstreamConfig getUpstreamConfig() {
+            return null;
+        }
+
+        @Override
+        public List<RouteFilterConfig> getResponseFilterConfigs() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RouteTask> getAfterFilterTasks() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<ErrorTemplate> getErrorTemplates() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public ResponseCachePolicy getCachePolicy() {
+            if(invalidationSource == null) {
+                return null;
+            }
+            return new ResponseCachePolicy() {
+                @Override
+                public long getTtl() {
+                    return 60000;
+                }
+
+                @Override
+                public long getMaxSize() {
+                    return 1024 * 1024;
+                }
+
+                @Override
+                public String getInvalidationSource() {
+                    return invalidationSource;
+                }
+
+                @Override
+                public String createKey(Exchange exchange) {
+                    return null;
+                }
+            };
+        }
+    }
+
+    private static class RecordingFilter implements RouteFilter {
+        private boolean isDestroyed = false;
+
+        @Override
+        public void init(RouteFilterContext filterConfig) {
+            // nothing to init
+        }
+
+        @Override
+        public void doFilter(Exchange exchange) {
+            // nothing to filter
+        }
+
+        @Override
+        public void destroy() {
+            isDestroyed = true;
+        }
+    }
+
+    private static class MockConnection implements MessageBusConnection {
+        private final List<MessageDeliveryHandler> handlers = new ArrayList<>();
+
+        void deliver(String source, String key) {
+            for(MessageDeliveryHandler handler:handlers) {
+                handler.onDelivery(source, Collections.singletonMap(CacheInvalidator.CACHE_KEY_HEADER_NAME, key), new byte[0]);
+            }
+        }
+
+        @Override
+        public void publish(String destination, Map<String, String> headers, byte[] payload) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void bind(String groupName, String messageSource) {
+            // every source is delivered
+        }
+
+        @Override
+        public void subscribe(String groupName, MessageDeliveryHandler handler) {
+            handlers.add(handler);
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.pocat.platform.gateway.cache;
+
+import io.pocat.platform.gateway.route.MockExchange;
+import io.pocat.platform.messagebus.MessageBusConnection;
+import io.pocat.platform.messagebus.MessageDeliveryHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CacheInvalidatorTest {
+    private static ResponseCache createCache(String name, String... keys) {
+        ResponseCache cache = new ResponseCache(name, 1024 * 1024, 60000);
+        for(String key:keys) {
+            MockExchange reply = new MockExchange();
+            reply.setResponseContents(new byte[10]);
+            cache.put(key, reply);
+        }
+        return cache;
+    }
+
+    @Test
+    public void testInvalidateByMessage() {
+        MockConnection connection = new MockConnection();
+        CacheInvalidator invalidator = new CacheInvalidator(connection, "gateway-1");
+        ResponseCache users = createCache("users", "users/1", "users/2");
+        ResponseCache profiles = createCache("profiles", "users/1");
+        ResponseCache orders = createCache("orders", "orders/1");
+        invalidator.register("user-events", users);
+        invalidator.register("user-events", profiles);
+        invalidator.register("order-events", orders);
+        // group is subscribed once and bound to each source once
+        assertEquals(Arrays.asList("gateway-1:user-events", "gateway-1:order-events"), connection.binds);
+        assertEquals(1, connection.handlers.size());
+
+        connection.deliver("user-events", Collections.singletonMap(CacheInvalidator.CACHE_KEY_HEADER_NAME, "users/1"));
+        assertNull(users.get("users/1"));
+        assertNull(profiles.get("users/1"));
+        assertNotNull(users.get("users/2"));
+        assertNotNull(orders.get("orders/1"));
+
+        // message without key clears caches of the source
+        connection.deliver("user-events", Collections.emptyMap());
+        assertNull(users.get("users/2"));
+        assertNotNull(orders.get("orders/1"));
+    }
+
+    @Test
+    public void testUnregister() {
+        MockConnection connection = new MockConnection();
+        CacheInvalidator invalidator = new CacheInvalidator(connection, "gateway-1");
+        ResponseCache oldCache = createCache("users", "users/1");
+        ResponseCache newCache = createCache("users", "users/1");
+        invalidator.register("user-events", oldCache);
+        invalidator.register("user-events", newCache);
+        invalidator.unregister("user-events", oldCache);
+
+        connection.deliver("user-events", Collections.emptyMap());
+        assertNotNull(oldCache.get("users/1"));
+        assertNull(newCache.get("users/1"));
+        // unknown source is ignored
+        invalidator.invalidate("unknown", null);
+    }
+
+    @Test
+    public void testBindFailureLeavesCacheToTtl() {
+        MockConnection connection = new MockConnection();
+        connection.failingSource = "user-events";
+        CacheInvalidator invalidator = new CacheInvalidator(connection, "gateway-1");
+        ResponseCache users = createCache("users", "users/1");
+        invalidator.register("user-events", users);
+        assertTrue(connection.binds.isEmpty());
+
+        invalidator.invalidate("user-events", null);
+        assertNotNull(users.get("users/1"));
+    }
+
+    private static class MockConnection implements MessageBusConnection {
+        private final List<String> binds = new ArrayList<>();
+        private final List<MessageDeliveryHandler> handlers = new ArrayList<>();
+        private String failingSource;
+
+        void deliver(String source, Map<String, String> headers) {
+            for(MessageDeliveryHandler handler:handlers) {
+                handler.onDelivery(source, headers, new byte[0]);
+            }
+        }
+
+        @Override
+        public void publish(String destination, Map<String, String> headers, byte[] payload) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void bind(String groupName, String messageSource) throws IOException {
+            if(messageSource.equals(failingSource)) {
+                throw new IOException("Bind failed");
+            }
+            binds.add(groupName + ":" + messageSource);
+        }
+
+        @Override
+        public void subscribe(String groupName, MessageDeliveryHandler handler) {
+            handlers.add(handler);
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.pocat.platform.gateway.cache;
+
+import io.pocat.platform.gateway.route.MockExchange;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+    @Test
+    public void testHitAndInvalidate() {
+        ResponseCache cache = new ResponseCache("test", 1024 * 1024, 60000);
+        MockExchange reply = new MockExchange();
+        reply.setResponseHeader("Content-Type", "application/json");
+        reply.setResponseContents("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        cache.put("/users/1", reply);
+
+        CachedResponse response = cache.get("/users/1");
+        assertNotNull(response);
+        MockExchange exchange = new MockExchange();
+        response.applyTo(exchange);
+        assertEquals("application/json", exchange.getResponseHeader("Content-Type"));
+        assertArrayEquals(reply.getResponseContents(), exchange.getResponseContents());
+        assertNull(cache.get("/users/2"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.invalidate("/users/1");
+        assertNull(cache.get("/users/1"));
+    }
+
+    @Test
+    public void testOffHeapHit() {
+        ResponseCache cache = new ResponseCache("test", 1024 * 1024, 60000, true);
+        MockExchange reply = new MockExchange();
+        reply.setResponseHeader("Content-Type", "application/json");
+        byte[] contents = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        reply.setResponseContents(contents);
+        cache.put("/users/1", reply);
+        // entry does not keep the heap array of reply
+        contents[0] = 0;
+
+        CachedResponse response = cache.get("/users/1");
+        assertTrue(response.isOffHeap());
+        for(int i = 0; i < 2; i++) {
+            MockExchange exchange = new MockExchange();
+            response.applyTo(exchange);
+            assertEquals("application/json", exchange.getResponseHeader("Content-Type"));
+            assertEquals("{\"id\":1}", new String(exchange.getResponseContents(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testEvictBySize() {
+        // 16 segments of 256 bytes
+        ResponseCache cache = new ResponseCache("test", 16 * 256, 60000);
+        for(int i = 0; i < 1000; i++) {
+            MockExchange reply = new MockExchange();
+            reply.setResponseContents(new byte[100]);
+            cache.put("key" + i, reply);
+        }
+        assertTrue(cache.getSize() <= 16 * 256);
+        assertTrue(cache.getEvictionCount() > 0);
+
+        // larger than a segment is not cached
+        MockExchange large = new MockExchange();
+        large.setResponseContents(new byte[512]);
+        cache.put("large", large);
+        assertNull(cache.get("large"));
+    }
+}
@@ -0,0 +1,54 @@
+package io.pocat.platform.gateway.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void testBucketBounds() {
+        for(long value = 0; value < 100000; value++) {
+            long highest = Histogram.highestValueOf(Histogram.indexOf(value));
+            assertTrue(highest >= value);
+            // error is within 1/16 of magnitude
+            assertTrue(highest - value <= Math.max(0, value / 16));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueOf(Histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testQuantile() {
+        Histogram histogram = new Histogram();
+        for(long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+
+        long median = histogram.getValueAtQuantile(0.5);
+        assertTrue(median >= 500 && median <= 500 + 500 / 16);
+        long p99 = histogram.getValueAtQuantile(0.99);
+        assertTrue(p99 >= 990 && p99 <= 1000);
+        assertEquals(1000, histogram.getValueAtQuantile(1.0));
+        assertEquals(0, new Histogram().getValueAtQuantile(0.5));
+    }
+
+    @Test
+    public void testPrometheusText() {
+        Histogram histogram = new Histogram();
+        histogram.record(2_000_000);
+        MetricWriter writer = new MetricWriter();
+        writer.counter("pocat_test", "Test counter", 3, "route", "a\"b");
+        writer.counter("pocat_test", "Test counter", 4, "route", "c");
+        writer.summary("pocat_test_seconds", "Test summary", histogram, 1e-9);
+        String text = writer.toText();
+
+        assertEquals(1, text.split("# TYPE pocat_test counter", -1).length - 1);
+        assertTrue(text.contains("pocat_test_total{route=\"a\\\"b\"} 3\n"));
+        assertTrue(text.contains("pocat_test_total{route=\"c\"} 4\n"));
+        assertTrue(text.contains("# TYPE pocat_test_seconds summary\n"));
+        assertTrue(text.contains("pocat_test_seconds{quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains("pocat_test_seconds_count 1\n"));
+    }
+}
@@ -0,0 +1,155 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.RouteRejectedException;
+import io.pocat.platform.gateway.MessageConstants;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+    @Test
+    public void testServiceLimit() {
+        AdmissionController admission = new AdmissionController("test", 2, AdmissionController.UNLIMITED, 50300, 1);
+        MockExchange first = new MockExchange();
+        MockExchange second = new MockExchange();
+        assertTrue(admission.admit(first));
+        assertTrue(admission.admit(second));
+        assertFalse(admission.admit(new MockExchange()));
+        assertEquals(2, admission.getInFlight());
+        assertEquals(1, admission.getShedCount());
+
+        admission.release(first);
+        // second release of the same exchange is ignored
+        admission.release(first);
+        assertEquals(1, admission.getInFlight());
+        assertTrue(admission.admit(new MockExchange()));
+    }
+
+    @Test
+    public void testRouteLimit() {
+        AdmissionController admission = new AdmissionController("test", AdmissionController.UNLIMITED, 1, 50300, 1);
+        admission.addRoute("route1", 0, 0);
+        admission.addRoute("route2", 0, 0);
+        int[] started = new int[1];
+        List<RouteProcessException> rejected = new ArrayList<>();
+
+        MockExchange first = new MockExchange();
+        assertTrue(admission.admit(first));
+        admission.enter(first, "route1", null, ex -> started[0]++, (exchange, e) -> rejected.add(e));
+
+        MockExchange second = new MockExchange();
+        assertTrue(admission.admit(second));
+        admission.enter(second, "route1", null, ex -> started[0]++, (exchange, e) -> rejected.add(e));
+        assertEquals(1, rejected.size());
+        admission.enter(second, "route2", null, ex -> started[0]++, (exchange, e) -> rejected.add(e));
+        assertEquals(2, started[0]);
+        assertEquals(1, admission.getRouteShedCount("route1"));
+
+        admission.release(first);
+        assertEquals(0, admission.getRouteInFlight("route1"));
+        assertEquals(1, admission.getInFlight());
+    }
+
+    @Test
+    public void testChannelSaturation() {
+        AdmissionController admission = new AdmissionController("test", AdmissionController.UNLIMITED, AdmissionController.UNLIMITED, 50300, 1);
+        admission.addRoute("route1", 0, 0);
+        admission.addChannel("channel1", 1);
+        int[] started = new int[1];
+        List<RouteProcessException> rejected = new ArrayList<>();
+
+        MockExchange first = new MockExchange();
+        admission.enter(first, "route1", "channel1", ex -> started[0]++, (exchange, e) -> rejected.add(e));
+        admission.enter(new MockExchange(), "route1", "channel1", ex -> started[0]++, (exchange, e) -> rejected.add(e));
+        assertEquals(1, started[0]);
+        assertEquals(1, rejected.size());
+        assertEquals(MessageConstants.ROUTE_SATURATED, rejected.get(0).getErrorCode());
+
+        admission.release(first);
+        admission.enter(new MockExchange(), "route1", "channel1", ex -> started[0]++, (exchange, e) -> rejected.add(e));
+        assertEquals(2, started[0]);
+    }
+
+    @Test
+    public void testQueuedExchangeClosedGivesSlot() {
+        AdmissionController admission = new AdmissionController("test", AdmissionController.UNLIMITED, AdmissionController.UNLIMITED, 50300, 1);
+        List<Runnable> handedOff = new ArrayList<>();
+        admission.setQueueExecutor(handedOff::add);
+        admission.addRoute("route1", 1, 2);
+        List<Exchange> started = new ArrayList<>();
+        List<RouteProcessException> rejected = new ArrayList<>();
+
+        MockExchange first = new MockExchange();
+        MockExchange second = new MockExchange();
+        MockExchange third = new MockExchange();
+        for(MockExchange exchange:Arrays.asList(first, second, third)) {
+            assertTrue(admission.admit(exchange));
+            admission.enter(exchange, "route1", null, started::add, (ex, e) -> rejected.add(e));
+        }
+        assertEquals(Arrays.asList(first), started);
+
+        // second expires while waiting, and is answered and released before its turn
+        second.close();
+        admission.release(second);
+        admission.release(first);
+        assertEquals(1, handedOff.size());
+        handedOff.get(0).run();
+        assertEquals(2, handedOff.size());
+        handedOff.get(1).run();
+        assertEquals(Arrays.asList(first, third), started);
+        assertEquals(1, admission.getRouteInFlight("route1"));
+
+        admission.release(third);
+        assertEquals(0, admission.getRouteInFlight("route1"));
+        assertEquals(0, admission.getInFlight());
+        assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void testReloadBulkheads() {
+        AdmissionController admission = new AdmissionController("test", AdmissionController.UNLIMITED, AdmissionController.UNLIMITED, 50300, 1);
+        admission.addRoute("route1", 1, 0);
+        admission.addRoute("route2", 1, 0);
+        admission.addChannel("channel1", 1);
+        MockExchange held = new MockExchange();
+        List<RouteProcessException> rejected = new ArrayList<>();
+        admission.enter(held, "route1", "channel1", ex -> {}, (exchange, e) -> rejected.add(e));
+        Bulkhead oldChannel = admission.getChannelBulkheads().iterator().next();
+
+        // reload drops route2 and raises channel limit
+        admission.addRoute("route1", 1, 0);
+        admission.addChannel("channel1", 2);
+        admission.retainBulkheads(Collections.singleton("route1"), Collections.singleton("channel1"));
+        assertNull(admission.getRouteBulkhead("route2"));
+        assertEquals(1, admission.getRouteBulkheads().size());
+        assertEquals(1, admission.getRouteInFlight("route1"));
+        Bulkhead newChannel = admission.getChannelBulkheads().iterator().next();
+        assertNotSame(oldChannel, newChannel);
+        assertEquals(2, newChannel.getMaxConcurrency());
+
+        // exchange admitted before reload gives back the slot it holds
+        admission.release(held);
+        assertEquals(0, oldChannel.getInFlight());
+        assertEquals(0, admission.getRouteInFlight("route1"));
+
+        admission.retainBulkheads(Collections.singleton("route1"), Collections.emptySet());
+        assertTrue(admission.getChannelBulkheads().isEmpty());
+        assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void testReject() {
+        AdmissionController admission = new AdmissionController("test", 1, 1, 42900, 3);
+        RouteRejectedException e = admission.rejectByStage("upstream");
+        assertEquals(42900, e.getErrorCode());
+        assertEquals(3, e.getRetryAfter());
+        assertEquals(1, admission.getStageRejectedCount());
+    }
+}
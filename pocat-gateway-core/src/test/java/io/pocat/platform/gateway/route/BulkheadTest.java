@@ -0,0 +1,56 @@
+package io.pocat.platform.gateway.route;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkheadTest {
+    @Test
+    public void testQueue() {
+        Bulkhead bulkhead = new Bulkhead("route1", 1, 1);
+        List<String> started = new ArrayList<>();
+        MockExchange first = new MockExchange();
+        MockExchange second = new MockExchange();
+        assertTrue(bulkhead.enter(first, exchange -> started.add(exchange == first ? "first" : "other")));
+        assertTrue(bulkhead.enter(second, exchange -> started.add(exchange == second ? "second" : "other")));
+        assertFalse(bulkhead.enter(new MockExchange(), exchange -> started.add("third")));
+        assertEquals(1, bulkhead.getInFlight());
+        assertEquals(1, bulkhead.getQueued());
+        assertEquals(1, bulkhead.getRejectedCount());
+        assertTrue(bulkhead.getSaturation() >= 1.0);
+
+        // released slot is handed to the waiting exchange
+        bulkhead.release();
+        assertEquals(Arrays.asList("first", "second"), started);
+        assertEquals(1, bulkhead.getInFlight());
+        assertEquals(0, bulkhead.getQueued());
+
+        bulkhead.release();
+        assertEquals(0, bulkhead.getInFlight());
+    }
+
+    @Test
+    public void testQueuedTaskRunsOnQueueExecutor() {
+        List<Runnable> handedOff = new ArrayList<>();
+        Bulkhead bulkhead = new Bulkhead("route1", 1, 1, handedOff::add);
+        List<String> started = new ArrayList<>();
+        assertTrue(bulkhead.enter(new MockExchange(), exchange -> started.add("first")));
+        assertTrue(bulkhead.enter(new MockExchange(), exchange -> started.add("second")));
+        assertEquals(Arrays.asList("first"), started);
+        assertTrue(handedOff.isEmpty());
+
+        // releasing thread does not run the waiting task. It keeps the slot until the executor runs it.
+        bulkhead.release();
+        assertEquals(Arrays.asList("first"), started);
+        assertEquals(1, handedOff.size());
+        assertEquals(1, bulkhead.getInFlight());
+        assertEquals(0, bulkhead.getQueued());
+
+        handedOff.get(0).run();
+        assertEquals(Arrays.asList("first", "second"), started);
+    }
+}
@@ -0,0 +1,148 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.gateway.route.ResponseCachePolicy;
+import io.pocat.platform.gateway.cache.ResponseCache;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CachedUpstreamProcedureTest {
+    private static final String KEY_HEADER_NAME = "Key";
+    // Set on response by http exchange from request
+    private static final String CORRELATION_ID_HEADER_NAME = "Correlation-ID";
+
+    private HashedWheelTimer timer;
+    private InFlightTable table;
+    private ResponseCache cache;
+    private CachedUpstreamProcedure procedure;
+    private final List<Exchange> upstreamCalls = new ArrayList<>();
+    private final List<Exchange> continued = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        timer = HashedWheelTimer.builder().setTickDuration(1, TimeUnit.MILLISECONDS).build();
+        timer.start();
+        table = new InFlightTable(timer, 4);
+        cache = new ResponseCache("route1", 1024 * 1024, 60000);
+        RouteProcedure upstream = (exchange, chain) -> {
+            // reply arrives and completes the transaction. Converter copies every reply header.
+            upstreamCalls.add(exchange);
+            assertNotNull(table.complete(exchange.getTxId()));
+            exchange.setResponseHeader(MessageHeaders.TX_ID_HEADER_NAME, exchange.getTxId());
+            exchange.setResponseHeader(MessageHeaders.MESSAGE_ID_HEADER_NAME, "message-" + upstreamCalls.size());
+            exchange.setResponseHeader(MessageHeaders.CORRELATION_ID_HEADER_NAME, exchange.getResponseHeader(CORRELATION_ID_HEADER_NAME));
+            exchange.setResponseHeader(MessageHeaders.STATUS_CODE_HEADER_NAME, "20000");
+            exchange.setResponseHeader(MessageHeaders.REPLY_TO_HEADER_NAME, "reply");
+            exchange.setResponseHeader("Content-Type", "text/plain");
+            exchange.setResponseContents("reply".getBytes(StandardCharsets.UTF_8));
+            chain.doNext(exchange);
+        };
+        procedure = new CachedUpstreamProcedure(new TestPolicy(), cache, table, upstream);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    private MockExchange register(String key) {
+        MockExchange exchange = new MockExchange();
+        if(key != null) {
+            exchange.setRequestHeader(KEY_HEADER_NAME, key);
+        }
+        table.register(exchange, System.currentTimeMillis() + 60000, tx -> fail("Transaction must not expire"));
+        return exchange;
+    }
+
+    @Test
+    public void testMissThenHit() {
+        MockExchange first = register("users/1");
+        procedure.call(first, continued::add);
+        assertEquals(1, upstreamCalls.size());
+        assertNotNull(cache.get("users/1"));
+
+        MockExchange second = register("users/1");
+        procedure.call(second, continued::add);
+        assertEquals(1, upstreamCalls.size());
+        assertEquals(2, continued.size());
+        assertSame(second, continued.get(1));
+        assertEquals("text/plain", second.getResponseHeader("Content-Type"));
+        assertEquals("reply", new String(second.getResponseContents(), StandardCharsets.UTF_8));
+        // hit completes transaction like a reply, so it does not expire later
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testHitKeepsTransactionHeadersOfItsExchange() {
+        MockExchange first = register("users/1");
+        first.setResponseHeader(CORRELATION_ID_HEADER_NAME, "client-1");
+        procedure.call(first, continued::add);
+
+        MockExchange second = register("users/1");
+        second.setResponseHeader(CORRELATION_ID_HEADER_NAME, "client-2");
+        procedure.call(second, continued::add);
+        assertEquals(1, upstreamCalls.size());
+        assertEquals("client-1", first.getResponseHeader(CORRELATION_ID_HEADER_NAME));
+        assertEquals("client-2", second.getResponseHeader(CORRELATION_ID_HEADER_NAME));
+        assertEquals("text/plain", second.getResponseHeader("Content-Type"));
+        // headers of the reply transaction are not replayed
+        for(String headerName:Arrays.asList(MessageHeaders.TX_ID_HEADER_NAME, MessageHeaders.MESSAGE_ID_HEADER_NAME,
+                MessageHeaders.CORRELATION_ID_HEADER_NAME, MessageHeaders.STATUS_CODE_HEADER_NAME, MessageHeaders.REPLY_TO_HEADER_NAME)) {
+            assertNull(headerName, second.getResponseHeader(headerName));
+        }
+        assertEquals(first.getTxId(), first.getResponseHeader(MessageHeaders.TX_ID_HEADER_NAME));
+    }
+
+    @Test
+    public void testHitOfCompletedTransactionIsDropped() {
+        procedure.call(register("users/1"), continued::add);
+        MockExchange expired = register("users/1");
+        assertNotNull(table.complete(expired.getTxId()));
+
+        procedure.call(expired, continued::add);
+        assertEquals(1, continued.size());
+        assertNull(expired.getResponseContents());
+    }
+
+    @Test
+    public void testRequestWithoutKeyGoesUpstream() {
+        procedure.call(register(null), continued::add);
+        procedure.call(register(null), continued::add);
+        assertEquals(2, upstreamCalls.size());
+        assertEquals(2, continued.size());
+        assertEquals(0, cache.getEntryNum());
+    }
+
+    private static class TestPolicy implements ResponseCachePolicy {
+        @Override
+        public long getTtl() {
+            return 60000;
+        }
+
+        @Override
+        public long getMaxSize() {
+            return 1024 * 1024;
+        }
+
+        @Override
+        public String getInvalidationSource() {
+            return null;
+        }
+
+        @Override
+        public String createKey(Exchange exchange) {
+            return exchange.getRequestHeader(KEY_HEADER_NAME);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.route.CircuitBreakerConfig;
+import io.pocat.platform.gateway.MessageConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private static CircuitBreakerConfig config(long openDuration) {
+        return new CircuitBreakerConfig() {
+            @Override
+            public int getFailureRateThreshold() {
+                return 50;
+            }
+
+            @Override
+            public int getMinimumCalls() {
+                return 4;
+            }
+
+            @Override
+            public long getWindow() {
+                return 10000;
+            }
+
+            @Override
+            public long getOpenDuration() {
+                return openDuration;
+            }
+
+            @Override
+            public int getHalfOpenCalls() {
+                return 2;
+            }
+        };
+    }
+
+    private final long[] now = {100000};
+
+    private CircuitBreaker createBreaker(long openDuration) {
+        return new CircuitBreaker("orders", config(openDuration), () -> now[0]);
+    }
+
+    private static void failCalls(CircuitBreaker breaker, int calls) {
+        for(int i = 0; i < calls; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+    }
+
+    @Test
+    public void testOpenAndClose() {
+        CircuitBreaker breaker = createBreaker(50);
+        breaker.onSuccess(breaker.tryAcquire());
+        breaker.onSuccess(breaker.tryAcquire());
+        failCalls(breaker, 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        failCalls(breaker, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(MessageConstants.CIRCUIT_OPEN, breaker.reject().getErrorCode());
+
+        now[0] += 50;
+        // two trial calls only
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+        assertTrue(first != CircuitBreaker.REJECTED);
+        assertTrue(second != CircuitBreaker.REJECTED);
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(first);
+        breaker.onSuccess(second);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire() != CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    public void testTrialFailureOpens() {
+        CircuitBreaker breaker = createBreaker(20);
+        failCalls(breaker, 4);
+        now[0] += 20;
+        long trial = breaker.tryAcquire();
+        assertTrue(trial != CircuitBreaker.REJECTED);
+        breaker.onFailure(trial);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenCount());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void testStaleReplyIsNotTrial() {
+        CircuitBreaker breaker = createBreaker(20);
+        // calls taken while closed, replied after circuit opened and went half open
+        long stale1 = breaker.tryAcquire();
+        long stale2 = breaker.tryAcquire();
+        failCalls(breaker, 4);
+        now[0] += 20;
+        long trial1 = breaker.tryAcquire();
+        long trial2 = breaker.tryAcquire();
+        breaker.onSuccess(stale1);
+        breaker.onSuccess(stale2);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onFailure(stale1);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(trial1);
+        breaker.onSuccess(trial2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // trial reported late does not count in closed window
+        breaker.onFailure(trial1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testReleasedTrialPermit() {
+        CircuitBreaker breaker = createBreaker(20);
+        failCalls(breaker, 4);
+        now[0] += 20;
+        long trial1 = breaker.tryAcquire();
+        long trial2 = breaker.tryAcquire();
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        // call which is not made gives its permit to the next one
+        breaker.release(trial2);
+        long trial3 = breaker.tryAcquire();
+        assertTrue(trial3 != CircuitBreaker.REJECTED);
+        breaker.onSuccess(trial1);
+        breaker.onSuccess(trial3);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testWindowRolls() {
+        CircuitBreaker breaker = createBreaker(20);
+        failCalls(breaker, 3);
+        // failures older than window do not count
+        now[0] += 10000;
+        breaker.onSuccess(breaker.tryAcquire());
+        breaker.onSuccess(breaker.tryAcquire());
+        breaker.onSuccess(breaker.tryAcquire());
+        failCalls(breaker, 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
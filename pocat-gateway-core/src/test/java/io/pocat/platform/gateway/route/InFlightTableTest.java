@@ -0,0 +1,91 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InFlightTableTest {
+    private HashedWheelTimer timer;
+    private InFlightTable table;
+
+    @Before
+    public void setUp() {
+        timer = HashedWheelTimer.builder().setTickDuration(1, TimeUnit.MILLISECONDS).build();
+        timer.start();
+        table = new InFlightTable(timer, 4);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testCompleteRemovesTransaction() throws InterruptedException {
+        AtomicInteger expired = new AtomicInteger();
+        MockExchange exchange = new MockExchange();
+        table.register(exchange, System.currentTimeMillis() + 30, tx -> expired.incrementAndGet());
+        DownStreamProcedure continuation = message -> {};
+        assertTrue(table.attach(exchange.getTxId(), continuation));
+        assertEquals(1, table.size());
+
+        InFlightTransaction tx = table.complete(exchange.getTxId());
+        assertNotNull(tx);
+        assertSame(continuation, tx.getContinuation());
+        assertTrue(tx.isCompleted());
+        assertEquals(0, table.size());
+        assertNull(table.complete(exchange.getTxId()));
+
+        Thread.sleep(60);
+        assertEquals(0, expired.get());
+    }
+
+    @Test
+    public void testExpireRemovesTransaction() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        MockExchange exchange = new MockExchange();
+        table.register(exchange, System.currentTimeMillis() + 10, tx -> latch.countDown());
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, table.size());
+        assertFalse(table.attach(exchange.getTxId(), message -> {}));
+        assertNull(table.complete(exchange.getTxId()));
+    }
+
+    @Test
+    public void testFailAnswersOnlyOnce() throws InterruptedException {
+        MockExchange unregistered = new MockExchange();
+        assertTrue(table.fail(unregistered));
+
+        MockExchange exchange = new MockExchange();
+        table.register(exchange, System.currentTimeMillis() + 1000, tx -> fail("Completed transaction must not expire"));
+        assertTrue(table.fail(exchange));
+        assertEquals(0, table.size());
+        // completed transaction stays with its caller, e.g. response filter failing after reply
+        assertTrue(table.fail(exchange));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        MockExchange expiring = new MockExchange();
+        table.register(expiring, System.currentTimeMillis() + 10, tx -> latch.countDown());
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertFalse(table.fail(expiring));
+    }
+
+    @Test
+    public void testRegisterOnStoppedTimerLeavesNoEntry() {
+        timer.stop();
+        try {
+            table.register(new MockExchange(), System.currentTimeMillis() + 1000, tx -> {});
+            fail("Stopped timer must reject timeout");
+        } catch (IllegalStateException expected) {
+            assertEquals(0, table.size());
+        }
+    }
+}
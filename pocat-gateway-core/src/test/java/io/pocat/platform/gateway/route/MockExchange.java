@@ -0,0 +1,122 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.AbstractExchange;
+import io.pocat.gateway.connector.Connection;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.ExchangeContext;
+
+import java.util.*;
+
+public class MockExchange extends AbstractExchange {
+    private final Map<String, String> requestHeaders = new HashMap<>();
+    private final Map<String, String> responseHeaders = new HashMap<>();
+    private byte[] requestContents = new byte[0];
+    private byte[] responseContents;
+    private int closeCount = 0;
+    private List<byte[]> responseChunks;
+    private boolean isResponseStreamEnded = false;
+    private boolean isResponseStreamAborted = false;
+
+    public MockExchange() {
+        setContext(new ExchangeContext() {
+            @Override
+            public Connection getConnection() {
+                return null;
+            }
+
+            @Override
+            public void write(Exchange exchange) {
+                closeCount++;
+            }
+        });
+    }
+
+    public void setRequestHeader(String headerName, String headerValue) {
+        requestHeaders.put(headerName, headerValue);
+    }
+
+    public void setRequestContents(byte[] requestContents) {
+        this.requestContents = requestContents;
+    }
+
+    public int getCloseCount() {
+        return closeCount;
+    }
+
+    @Override
+    public String getCorrelationId() {
+        return getTxId();
+    }
+
+    @Override
+    public String getRequestHeader(String headerName) {
+        return requestHeaders.get(headerName);
+    }
+
+    @Override
+    public Collection<String> getRequestHeaderNames() {
+        return requestHeaders.keySet();
+    }
+
+    @Override
+    public byte[] getRequestContents() {
+        return requestContents;
+    }
+
+    @Override
+    public Set<String> getResponseHeaderNames() {
+        return responseHeaders.keySet();
+    }
+
+    @Override
+    public String getResponseHeader(String headerName) {
+        return responseHeaders.get(headerName);
+    }
+
+    @Override
+    public void setResponseHeader(String headerName, String headerValue) {
+        responseHeaders.put(headerName, headerValue);
+    }
+
+    @Override
+    public byte[] getResponseContents() {
+        return responseContents;
+    }
+
+    @Override
+    public void setResponseContents(byte[] contents) {
+        this.responseContents = contents;
+    }
+
+    @Override
+    public void startResponseStream(int window) {
+        this.responseChunks = new ArrayList<>();
+    }
+
+    @Override
+    public boolean writeResponseChunk(byte[] chunk, boolean last) {
+        if(isResponseStreamEnded || isResponseStreamAborted) {
+            return false;
+        }
+        responseChunks.add(chunk);
+        isResponseStreamEnded = last;
+        return true;
+    }
+
+    @Override
+    public void abortResponseStream() {
+        isResponseStreamAborted = true;
+    }
+
+    public List<byte[]> getResponseChunks() {
+        return responseChunks;
+    }
+
+    public boolean isResponseStreamEnded() {
+        return isResponseStreamEnded;
+    }
+
+    public boolean isResponseStreamAborted() {
+        return isResponseStreamAborted;
+    }
+}
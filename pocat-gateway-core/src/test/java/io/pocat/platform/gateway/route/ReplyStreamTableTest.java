@@ -0,0 +1,152 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.message.MessageDelivery;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.platform.gateway.MessageConstants;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplyStreamTableTest {
+    private HashedWheelTimer timer;
+    private InFlightTable inFlightTable;
+    private ReplyStreamTable table;
+
+    @Before
+    public void setUp() {
+        timer = HashedWheelTimer.builder().setTickDuration(1, TimeUnit.MILLISECONDS).build();
+        timer.start();
+        inFlightTable = new InFlightTable(timer, 4);
+        table = new ReplyStreamTable(inFlightTable, timer);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testChunksAreWrittenInOrder() {
+        MockExchange exchange = new MockExchange();
+        List<MessageDelivery> replies = register(exchange, 4);
+
+        assertTrue(table.offer(chunk(exchange, 1, false, "b")));
+        assertTrue(replies.isEmpty());
+        assertTrue(table.offer(chunk(exchange, 0, false, "a")));
+        assertEquals(1, replies.size());
+        assertEquals("a", new String(replies.get(0).getPayload(), StandardCharsets.UTF_8));
+        assertTrue(table.offer(chunk(exchange, 3, true, "d")));
+        assertTrue(table.offer(chunk(exchange, 2, false, "c")));
+
+        List<String> chunks = new ArrayList<>();
+        for(byte[] chunk:exchange.getResponseChunks()) {
+            chunks.add(new String(chunk, StandardCharsets.UTF_8));
+        }
+        assertEquals(Arrays.asList("b", "c", "d"), chunks);
+        assertTrue(exchange.isResponseStreamEnded());
+        assertEquals(0, table.size());
+        assertEquals(0, inFlightTable.size());
+        assertFalse(table.offer(chunk(exchange, 4, false, "e")));
+    }
+
+    @Test
+    public void testChunkOutOfWindowFailsReply() {
+        MockExchange exchange = new MockExchange();
+        List<MessageDelivery> replies = register(exchange, 2);
+
+        assertTrue(table.offer(chunk(exchange, 2, false, "c")));
+        assertEquals(1, replies.size());
+        assertEquals(String.valueOf(MessageConstants.BAD_GATEWAY), replies.get(0).getHeaders().get(MessageConstants.STATUS_CODE_HEADER_NAME));
+        assertNull(exchange.getResponseChunks());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testInvalidSeqFailsStream() {
+        MockExchange exchange = new MockExchange();
+        register(exchange, 4);
+
+        assertTrue(table.offer(chunk(exchange, 0, false, "a")));
+        MessageDelivery invalid = chunk(exchange, 1, false, "b");
+        invalid.getHeaders().put(MessageHeaders.CHUNK_SEQ_HEADER_NAME, "-1");
+        assertTrue(table.offer(invalid));
+        assertTrue(exchange.isResponseStreamAborted());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testChunkOfferedDuringDeliveryKeepsOrder() {
+        MockExchange exchange = new MockExchange();
+        List<MessageDelivery> replies = new ArrayList<>();
+        inFlightTable.register(exchange, System.currentTimeMillis() + 10000, tx -> {});
+        // continuation runs out of the lock, so it may take next chunk itself
+        inFlightTable.attach(exchange.getTxId(), reply -> {
+            replies.add(reply);
+            assertTrue(table.offer(chunk(exchange, 1, true, "b")));
+            assertTrue(exchange.getResponseChunks().isEmpty());
+        });
+        table.register(exchange, 4, 10000);
+
+        assertTrue(table.offer(chunk(exchange, 0, false, "a")));
+        assertEquals(1, replies.size());
+        assertEquals(1, exchange.getResponseChunks().size());
+        assertEquals("b", new String(exchange.getResponseChunks().get(0), StandardCharsets.UTF_8));
+        assertTrue(exchange.isResponseStreamEnded());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testErrorReplyIsNotStreamed() {
+        MockExchange exchange = new MockExchange();
+        List<MessageDelivery> replies = register(exchange, 4);
+
+        MessageDelivery error = chunk(exchange, 0, false, "not found");
+        error.getHeaders().put(MessageConstants.STATUS_CODE_HEADER_NAME, String.valueOf(MessageConstants.NOT_FOUND));
+        assertTrue(table.offer(error));
+        assertEquals(1, replies.size());
+        assertNull(exchange.getResponseChunks());
+        assertFalse(table.offer(chunk(exchange, 1, true, "rest")));
+    }
+
+    private List<MessageDelivery> register(MockExchange exchange, int window) {
+        List<MessageDelivery> replies = new ArrayList<>();
+        inFlightTable.register(exchange, System.currentTimeMillis() + 10000, tx -> {});
+        inFlightTable.attach(exchange.getTxId(), replies::add);
+        table.register(exchange, window, 10000);
+        return replies;
+    }
+
+    private static MessageDelivery chunk(MockExchange exchange, int seq, boolean last, String payload) {
+        Map<String, String> rawHeaders = new HashMap<>();
+        rawHeaders.put(MessageConstants.TX_ID_HEADER_NAME, exchange.getTxId());
+        rawHeaders.put(MessageConstants.STATUS_CODE_HEADER_NAME, String.valueOf(MessageConstants.SUCCESS_CODE));
+        rawHeaders.put(MessageHeaders.CHUNK_SEQ_HEADER_NAME, String.valueOf(seq));
+        if(last) {
+            rawHeaders.put(MessageHeaders.CHUNK_LAST_HEADER_NAME, "true");
+        }
+        MessageHeaders headers = new MessageHeaders(rawHeaders);
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return bytes;
+            }
+        };
+    }
+}
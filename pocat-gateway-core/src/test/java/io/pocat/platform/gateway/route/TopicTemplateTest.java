@@ -0,0 +1,42 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.platform.gateway.MessageConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TopicTemplateTest {
+    @Test
+    public void testConstant() throws RouteProcessException {
+        TopicTemplate template = TopicTemplate.compile("httpChannel:orders");
+        assertTrue(template.isConstant());
+        assertEquals("httpChannel:orders", template.render(new MockExchange()));
+    }
+
+    @Test
+    public void testRender() throws RouteProcessException {
+        TopicTemplate template = TopicTemplate.compile("httpChannel:test.${path:username}.${header:Region}");
+        MockExchange exchange = new MockExchange();
+        exchange.setAttribute("path:username", "pocat");
+        exchange.setRequestHeader("Region", "kr");
+        assertEquals("httpChannel:test.pocat.kr", template.render(exchange));
+    }
+
+    @Test
+    public void testUnclosedVariableIsLiteral() throws RouteProcessException {
+        TopicTemplate template = TopicTemplate.compile("httpChannel:test.${path");
+        assertEquals("httpChannel:test.${path", template.render(new MockExchange()));
+    }
+
+    @Test
+    public void testMissingVariable() {
+        TopicTemplate template = TopicTemplate.compile("httpChannel:test.${path:username}");
+        try {
+            template.render(new MockExchange());
+            fail();
+        } catch (RouteProcessException e) {
+            assertEquals(MessageConstants.MISSING_TOPIC_VARIABLE, e.getErrorCode());
+        }
+    }
+}
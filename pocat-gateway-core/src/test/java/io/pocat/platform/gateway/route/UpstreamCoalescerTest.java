@@ -0,0 +1,139 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.message.MessageDelivery;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UpstreamCoalescerTest {
+    private HashedWheelTimer timer;
+    private InFlightTable table;
+
+    @Before
+    public void setUp() {
+        timer = HashedWheelTimer.builder().setTickDuration(1, TimeUnit.MILLISECONDS).build();
+        timer.start();
+        table = new InFlightTable(timer, 4);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testReplyFansOut() {
+        UpstreamCoalescer coalescer = new UpstreamCoalescer(table, timer, 10000);
+        List<MockExchange> replied = new ArrayList<>();
+        List<MockExchange> exchanges = new ArrayList<>();
+        UpstreamCoalescer.Call call = null;
+        for(int i = 0; i < 3; i++) {
+            MockExchange exchange = new MockExchange();
+            table.register(exchange, System.currentTimeMillis() + 10000, tx -> {});
+            exchanges.add(exchange);
+            UpstreamCoalescer.Call joined = coalescer.join("orders:/orders/1", exchange, message -> replied.add(exchange), (ex, e) -> fail());
+            if(i == 0) {
+                assertNotNull(joined);
+                call = joined;
+            } else {
+                assertNull(joined);
+            }
+        }
+        assertEquals(1, coalescer.getCallNum());
+        assertEquals(2, coalescer.getCoalescedCount());
+
+        // response handler completes the leader before calling its continuation
+        table.complete(exchanges.get(0).getTxId());
+        call.call(new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return new MessageHeaders(new HashMap<>());
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return new byte[0];
+            }
+        });
+        assertEquals(exchanges, replied);
+        assertEquals(0, coalescer.getCallNum());
+        assertEquals(0, table.size());
+
+        // next request starts a new call
+        assertNotNull(coalescer.join("orders:/orders/1", new MockExchange(), message -> {}, (ex, e) -> {}));
+    }
+
+    @Test
+    public void testFollowersKeepTheirTransactionHeaders() {
+        UpstreamCoalescer coalescer = new UpstreamCoalescer(table, timer, 10000);
+        List<MockExchange> exchanges = new ArrayList<>();
+        List<MessageDelivery> replies = new ArrayList<>();
+        UpstreamCoalescer.Call call = null;
+        for(int i = 0; i < 3; i++) {
+            MockExchange exchange = new MockExchange();
+            table.register(exchange, System.currentTimeMillis() + 10000, tx -> {});
+            exchanges.add(exchange);
+            UpstreamCoalescer.Call joined = coalescer.join("orders:/orders/1", exchange, replies::add, (ex, e) -> fail());
+            if(i == 0) {
+                call = joined;
+            }
+        }
+
+        MockExchange leader = exchanges.get(0);
+        table.complete(leader.getTxId());
+        Map<String, String> rawHeaders = new HashMap<>();
+        rawHeaders.put(MessageHeaders.TX_ID_HEADER_NAME, leader.getTxId());
+        rawHeaders.put(MessageHeaders.CORRELATION_ID_HEADER_NAME, leader.getCorrelationId());
+        rawHeaders.put(MessageHeaders.CONTENT_TYPE_HEADER_NAME, "application/json");
+        byte[] payload = new byte[]{1, 2, 3};
+        call.call(new MessageDelivery() {
+            @Override
+            public MessageHeaders getHeaders() {
+                return new MessageHeaders(rawHeaders);
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return payload;
+            }
+        });
+
+        assertEquals(3, replies.size());
+        for(int i = 0; i < 3; i++) {
+            MessageHeaders headers = replies.get(i).getHeaders();
+            assertEquals(exchanges.get(i).getTxId(), headers.getTxId());
+            assertEquals(exchanges.get(i).getCorrelationId(), headers.getCorrelationId());
+            assertEquals("application/json", headers.getContentType());
+            assertSame(payload, replies.get(i).getPayload());
+        }
+        assertNotEquals(replies.get(1).getHeaders().getTxId(), replies.get(2).getHeaders().getTxId());
+        // reply of leader is left as it is
+        assertEquals(leader.getTxId(), rawHeaders.get(MessageHeaders.TX_ID_HEADER_NAME));
+    }
+
+    @Test
+    public void testUnrepliedCallIsRemovedAfterMaxWait() throws InterruptedException {
+        UpstreamCoalescer coalescer = new UpstreamCoalescer(table, timer, 20);
+        MockExchange leader = new MockExchange();
+        table.register(leader, System.currentTimeMillis() + 10000, tx -> {});
+        assertNotNull(coalescer.join("orders:/orders/1", leader, message -> {}, (ex, e) -> {}));
+        assertEquals(1, coalescer.getCallNum());
+
+        // reply of leader is lost, and the key is never requested again
+        long deadline = System.currentTimeMillis() + 5000;
+        while(coalescer.getCallNum() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, coalescer.getCallNum());
+    }
+}
@@ -0,0 +1,174 @@
+package io.pocat.platform.gateway.route;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.message.MessageDelivery;
+import io.pocat.gateway.message.MessageHeaders;
+import io.pocat.gateway.route.CircuitBreakerConfig;
+import io.pocat.gateway.route.MessageConverter;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.StreamingPolicy;
+import io.pocat.platform.gateway.MessageConstants;
+import io.pocat.platform.gateway.utils.timer.HashedWheelTimer;
+import io.pocat.platform.messagebus.MessageBusConnection;
+import io.pocat.platform.messagebus.MessageDeliveryHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UpstreamTaskTest {
+    private HashedWheelTimer timer;
+    private InFlightTable table;
+    private CircuitBreaker breaker;
+    private UpstreamTask task;
+    private final List<RouteProcessException> errors = new ArrayList<>();
+    private IOException publishError;
+
+    @Before
+    public void setUp() {
+        timer = HashedWheelTimer.builder().setTickDuration(1, TimeUnit.MILLISECONDS).build();
+        timer.start();
+        table = new InFlightTable(timer, 4);
+        // a single failure opens circuit
+        breaker = new CircuitBreaker("orders", new CircuitBreakerConfig() {
+            @Override
+            public int getFailureRateThreshold() {
+                return 1;
+            }
+
+            @Override
+            public int getMinimumCalls() {
+                return 1;
+            }
+
+            @Override
+            public long getWindow() {
+                return 10000;
+            }
+
+            @Override
+            public long getOpenDuration() {
+                return 10000;
+            }
+
+            @Override
+            public int getHalfOpenCalls() {
+                return 1;
+            }
+        });
+        task = new UpstreamTask(new MessageBusConnection() {
+            @Override
+            public void publish(String destination, Map<String, String> headers, byte[] payload) throws IOException {
+                if(publishError != null) {
+                    throw publishError;
+                }
+            }
+
+            @Override
+            public void bind(String groupName, String messageSource) {
+            }
+
+            @Override
+            public void subscribe(String groupName, MessageDeliveryHandler handler) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        task.setInFlightTable(table);
+        task.setErrorProcedure((exchange, e) -> errors.add(e));
+        task.setDestination("orders");
+        task.setReplyTo("reply:gateway-1");
+        task.setCircuitBreaker(breaker);
+        task.setMessageConverter(new MessageConverter() {
+            @Override
+            public void convertMessageToExchange(MessageDelivery message, Exchange exchange) {
+            }
+
+            @Override
+            public MessageDelivery convertExchangeToMessage(Exchange exchange) {
+                return new MessageDelivery() {
+                    @Override
+                    public MessageHeaders getHeaders() {
+                        return new MessageHeaders(new HashMap<>());
+                    }
+
+                    @Override
+                    public byte[] getPayload() {
+                        if(exchange.isClosed()) {
+                            throw new IllegalStateException("Exchange [" + exchange.getTxId() + "] is already closed");
+                        }
+                        return new byte[0];
+                    }
+                };
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    private MockExchange register() {
+        MockExchange exchange = new MockExchange();
+        table.register(exchange, System.currentTimeMillis() + 10000, tx -> {});
+        return exchange;
+    }
+
+    @Test
+    public void testExchangeClosedBeforePublishIsNotUpstreamFailure() {
+        MockExchange exchange = register();
+        // expiration answers the exchange while it waits in upstream stage
+        exchange.close();
+        task.doTask(exchange, ex -> fail("Closed exchange must not go on"));
+        assertTrue(errors.isEmpty());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testPublishFailureOpensCircuit() {
+        publishError = new IOException("Connection is closed");
+        task.doTask(register(), ex -> fail("Failed exchange must not go on"));
+        assertEquals(1, errors.size());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testTooLargeBodyIsNotUpstreamFailure() {
+        ReplyStreamTable replyStreamTable = new ReplyStreamTable(table, timer);
+        task.setReplyStreamTable(replyStreamTable);
+        task.setStreaming(new StreamingPolicy() {
+            @Override
+            public long getMaxBodySize() {
+                return 4;
+            }
+
+            @Override
+            public int getChunkSize() {
+                return 2;
+            }
+
+            @Override
+            public int getChunkWindow() {
+                return 2;
+            }
+        }, 10000);
+        MockExchange exchange = register();
+        exchange.setRequestContents(new byte[8]);
+        task.doTask(exchange, ex -> fail("Failed exchange must not go on"));
+        assertEquals(1, errors.size());
+        assertEquals(MessageConstants.TOO_LARGE_CONTENTS, errors.get(0).getErrorCode());
+        assertEquals(0, replyStreamTable.size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
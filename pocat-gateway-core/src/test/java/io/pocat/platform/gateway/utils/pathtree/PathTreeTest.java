@@ -0,0 +1,109 @@
+package io.pocat.platform.gateway.utils.pathtree;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PathTreeTest {
+    @Test
+    public void testPrecedence() throws InvalidPathException {
+        PathTree<String> tree = new PathTree<>();
+        tree.addItem("/api/v1/users/me", "literal");
+        tree.addItem("/api/v1/users/*", "single");
+        tree.addItem("/api/v1/#", "multiple");
+
+        assertEquals("literal", tree.findItem("/api/v1/users/me"));
+        assertEquals("single", tree.findItem("/api/v1/users/pocat"));
+        assertEquals("multiple", tree.findItem("/api/v1/users/pocat/orders"));
+        assertEquals("multiple", tree.findItem("/api/v1/orders"));
+        assertNull(tree.findItem("/api/v1"));
+        assertNull(tree.findItem("/api/v2/users/me"));
+    }
+
+    @Test
+    public void testMultipleLevelInMiddle() throws InvalidPathException {
+        PathTree<String> tree = new PathTree<>();
+        tree.addItem("/api/v1/#/stage/*", "stage");
+
+        assertEquals("stage", tree.findItem("/api/v1/a/b/c/stage/3"));
+        assertEquals("stage", tree.findItem("/api/v1/a/stage/3/"));
+        assertNull(tree.findItem("/api/v1/stage/3"));
+    }
+
+    @Test
+    public void testCaptures() throws InvalidPathException {
+        PathTree<String> tree = new PathTree<>();
+        tree.addItem("/api/v1/#/stage/*", "stage");
+        tree.addItem("/api/v1/users/*", "user");
+        assertEquals(2, tree.getMaxWildCardNum());
+
+        String path = "/api/v1/a/b/stage/3";
+        int[] captures = new int[tree.getMaxWildCardNum() * 2];
+        assertEquals("stage", tree.findItem(path, captures));
+        assertEquals("a/b", path.substring(captures[0], captures[1]));
+        assertEquals("3", path.substring(captures[2], captures[3]));
+
+        // literal branch "users" fails at "stage", so captures come from "#" branch
+        path = "/api/v1/users/stage/7";
+        assertEquals("stage", tree.findItem(path, captures));
+        assertEquals("users", path.substring(captures[0], captures[1]));
+        assertEquals("7", path.substring(captures[2], captures[3]));
+
+        path = "/api/v1/users/pocat";
+        assertEquals("user", tree.findItem(path, captures));
+        assertEquals("pocat", path.substring(captures[0], captures[1]));
+    }
+
+    @Test
+    public void testRootAndReplace() throws InvalidPathException {
+        PathTree<String> tree = new PathTree<>();
+        tree.addItem("/", "root");
+        tree.addItem("/a", "a");
+        tree.addItem("/a", "a2");
+
+        assertEquals("root", tree.findItem("/"));
+        assertEquals("a2", tree.findItem("a/"));
+    }
+
+    @Test
+    public void testFindAll() throws InvalidPathException {
+        PathTree<String> tree = new PathTree<>();
+        tree.addItem("/a/b", "literal");
+        tree.addItem("/a/*", "single");
+        tree.addItem("/#", "multiple");
+
+        List<String> items = tree.findAll("/a/b");
+        assertEquals(3, items.size());
+        assertTrue(items.contains("literal"));
+        assertTrue(items.contains("single"));
+        assertTrue(items.contains("multiple"));
+    }
+
+    @Test
+    public void testManyChildren() throws InvalidPathException {
+        PathTree<Integer> tree = new PathTree<>();
+        for(int i = 0; i < 1000; i++) {
+            tree.addItem("/api/res" + i + "/*", i);
+        }
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), tree.findItem("/api/res" + i + "/x"));
+        }
+    }
+
+    @Test
+    public void testReplaceAmongManyChildren() throws InvalidPathException {
+        PathTree<String> tree = new PathTree<>();
+        for(int i = 0; i < 1000; i++) {
+            tree.addItem("/api/item" + i, "item" + i);
+            tree.addItem("/api/item" + i + "/detail", "detail" + i);
+        }
+        tree.addItem("/api/item500", "replaced");
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(i == 500 ? "replaced" : "item" + i, tree.findItem("/api/item" + i));
+            assertEquals("detail" + i, tree.findItem("/api/item" + i + "/detail"));
+        }
+        assertNull(tree.findItem("/api/item1000"));
+    }
+}
@@ -0,0 +1,110 @@
+package io.pocat.platform.gateway.utils.stage;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StagedExecutorServiceTest {
+    @Test
+    public void testExecute() throws InterruptedException {
+        StagedExecutorService stage = StagedExecutorService.builder("test-stage")
+                .setQueue(new LockFreeStageQueue(1024)).setMinWorkers(2).setMaxWorkers(4).build();
+        stage.start();
+        int count = 1000;
+        CountDownLatch latch = new CountDownLatch(count);
+        for(int i = 0; i < count; i++) {
+            stage.execute(latch::countDown);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.getMetrics().getWorkerNum() <= 4);
+
+        stage.stop();
+        assertTrue(stage.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(count, stage.getMetrics().getCompletedCount());
+    }
+
+    @Test
+    public void testOverflowPolicies() throws InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        StagedExecutorService rejectStage = blockedStage(OverflowPolicy.REJECT, blocker);
+        try {
+            rejectStage.execute(() -> {});
+            fail("Task must be rejected");
+        } catch (RejectedExecutionException expected) {
+            assertEquals(1, rejectStage.getMetrics().getRejectedCount());
+        }
+
+        StagedExecutorService callerRunsStage = blockedStage(OverflowPolicy.CALLER_RUNS, blocker);
+        Thread caller = Thread.currentThread();
+        AtomicInteger ranOnCaller = new AtomicInteger();
+        callerRunsStage.execute(() -> {
+            if(Thread.currentThread() == caller) {
+                ranOnCaller.incrementAndGet();
+            }
+        });
+        assertEquals(1, ranOnCaller.get());
+
+        StagedExecutorService shedStage = blockedStage(OverflowPolicy.SHED, blocker);
+        shedStage.execute(() -> {});
+        assertEquals(1, shedStage.getMetrics().getShedCount());
+        assertEquals(1, shedStage.getMetrics().getQueueDepth());
+
+        blocker.countDown();
+        rejectStage.stop();
+        callerRunsStage.stop();
+        shedStage.stop();
+    }
+
+    @Test
+    public void testShedTaskIsRejectedOrRunOnCaller() throws InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        StagedExecutorService shedStage = blockedStage(OverflowPolicy.SHED, blocker);
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger ran = new AtomicInteger();
+        // queued plain task is shed by this one, and runs on caller
+        shedStage.execute(new Rejectable() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+            }
+
+            @Override
+            public void reject() {
+                rejected.incrementAndGet();
+            }
+        });
+        assertEquals(1, shedStage.getMetrics().getCallerRunsCount());
+
+        shedStage.execute(() -> {});
+        assertEquals(1, rejected.get());
+        assertEquals(0, ran.get());
+        assertEquals(2, shedStage.getMetrics().getShedCount());
+
+        blocker.countDown();
+        shedStage.stop();
+    }
+
+    private StagedExecutorService blockedStage(OverflowPolicy policy, CountDownLatch blocker) throws InterruptedException {
+        StagedExecutorService stage = StagedExecutorService.builder("test-" + policy)
+                .setCapacity(1).setMinWorkers(1).setMaxWorkers(1).setOverflowPolicy(policy).build();
+        stage.start();
+        CountDownLatch started = new CountDownLatch(1);
+        stage.execute(() -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {
+                // do nothing
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // fill queue
+        stage.execute(() -> {});
+        return stage;
+    }
+}
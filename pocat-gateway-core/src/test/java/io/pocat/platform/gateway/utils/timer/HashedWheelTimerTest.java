@@ -0,0 +1,66 @@
+package io.pocat.platform.gateway.utils.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = HashedWheelTimer.builder().setName("test-timer").setTickDuration(1, TimeUnit.MILLISECONDS).setWheelSize(8).build();
+        timer.start();
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long started = System.nanoTime();
+        Timeout timeout = timer.newTimeout(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        Timeout timeout = timer.newTimeout(fired::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        assertEquals(1, timer.pendingTimeouts());
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.pendingTimeouts());
+
+        Thread.sleep(60);
+        assertEquals(0, fired.get());
+    }
+
+    @Test
+    public void testExpireOverMultipleRounds() throws InterruptedException {
+        // wheel of 8 ticks, so these timeouts share buckets across several rounds
+        int count = 100;
+        CountDownLatch latch = new CountDownLatch(count);
+        for(int i = 0; i < count; i++) {
+            timer.newTimeout(latch::countDown, i % 40, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, timer.pendingTimeouts());
+    }
+}
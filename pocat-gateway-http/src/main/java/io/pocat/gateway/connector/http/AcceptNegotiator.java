@@ -0,0 +1,226 @@
+package io.pocat.gateway.connector.http;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates response mime type from Accept header without regex.
+ * Parsed media ranges and negotiated types are cached by raw Accept header in a bounded LRU cache.
+ * Cache is split into segments by hash of header, each an access ordered map behind its own lock, so threads rarely wait.
+ * Over the bound of a segment, its least recently used header is evicted.
+ */
+class AcceptNegotiator {
+    private static final int MAX_CACHED_ACCEPTS = 256;
+    private static final int SEGMENT_NUM = 8;
+    private static final String WILDCARD = "*";
+    private static final String NO_ACCEPTABLE_TYPE = "";
+
+    private static final MediaRange[] ACCEPT_ALL = new MediaRange[]{new MediaRange(WILDCARD, WILDCARD, 1.0, 0)};
+
+    private static final Segment[] SEGMENTS = new Segment[SEGMENT_NUM];
+
+    static {
+        for(int i = 0; i < SEGMENT_NUM; i++) {
+            SEGMENTS[i] = new Segment(MAX_CACHED_ACCEPTS / SEGMENT_NUM);
+        }
+    }
+
+    private AcceptNegotiator() {
+
+    }
+
+    /**
+     * @param accept raw Accept header. null means any type.
+     * @param types mime types which can be produced
+     * @return the most preferred type, or null if no type is acceptable
+     */
+    static String negotiate(String accept, Set<String> types) {
+        AcceptEntry entry = getEntry(accept == null ? "" : accept);
+        String negotiated = entry.negotiated.get(types);
+        if(negotiated == null) {
+            negotiated = select(entry.ranges, types);
+            if(entry.negotiated.size() < MAX_CACHED_ACCEPTS) {
+                entry.negotiated.put(types, negotiated);
+            }
+        }
+        return negotiated == NO_ACCEPTABLE_TYPE ? null : negotiated;
+    }
+
+    private static AcceptEntry getEntry(String accept) {
+        Segment segment = segmentOf(accept);
+        AcceptEntry entry;
+        synchronized (segment) {
+            entry = segment.get(accept);
+        }
+        if(entry != null) {
+            return entry;
+        }
+        // Parse out of the lock. Racing threads produce the same entry.
+        entry = new AcceptEntry(parse(accept));
+        synchronized (segment) {
+            segment.put(accept, entry);
+        }
+        return entry;
+    }
+
+    private static Segment segmentOf(String accept) {
+        int hash = accept.hashCode();
+        return SEGMENTS[(hash ^ (hash >>> 16)) & (SEGMENT_NUM - 1)];
+    }
+
+    static int cachedAcceptNum() {
+        int num = 0;
+        for(Segment segment:SEGMENTS) {
+            synchronized (segment) {
+                num += segment.size();
+            }
+        }
+        return num;
+    }
+
+    /**
+     * Check without touching recency of header
+     */
+    static boolean isCached(String accept) {
+        Segment segment = segmentOf(accept);
+        synchronized (segment) {
+            return segment.containsKey(accept);
+        }
+    }
+
+    /**
+     * Weight of each type comes from the most specific range matching it, so "application/json;q=0, application/*"
+     * excludes json only. The type of highest weight wins, then the one of earlier range, then the one listed first.
+     */
+    private static String select(MediaRange[] ranges, Set<String> types) {
+        String selected = NO_ACCEPTABLE_TYPE;
+        MediaRange selectedRange = null;
+        for(String type:types) {
+            MediaRange range = null;
+            for(MediaRange candidate:ranges) {
+                if(candidate.matches(type) && (range == null || candidate.specificity > range.specificity)) {
+                    range = candidate;
+                }
+            }
+            if(range == null || range.weight <= 0) {
+                continue;
+            }
+            if(selectedRange == null || range.weight > selectedRange.weight
+                    || (range.weight == selectedRange.weight && range.index < selectedRange.index)) {
+                selected = type;
+                selectedRange = range;
+            }
+        }
+        return selected;
+    }
+
+    static MediaRange[] parse(String accept) {
+        if(accept.isBlank()) {
+            return ACCEPT_ALL;
+        }
+        List<MediaRange> ranges = new ArrayList<>();
+        int start = 0;
+        while(start <= accept.length()) {
+            int end = accept.indexOf(',', start);
+            if(end < 0) {
+                end = accept.length();
+            }
+            MediaRange range = parseRange(accept, start, end, ranges.size());
+            // q=0 range is kept. It makes types it matches not acceptable.
+            if(range != null) {
+                ranges.add(range);
+            }
+            start = end + 1;
+        }
+        return ranges.toArray(new MediaRange[0]);
+    }
+
+    private static MediaRange parseRange(String accept, int start, int end, int index) {
+        int paramStart = accept.indexOf(';', start);
+        if(paramStart < 0 || paramStart > end) {
+            paramStart = end;
+        }
+        String mime = accept.substring(start, paramStart).trim();
+        if(mime.isEmpty()) {
+            return null;
+        }
+        int slash = mime.indexOf('/');
+        String type = slash < 0 ? mime : mime.substring(0, slash).trim();
+        String subtype = slash < 0 ? WILDCARD : mime.substring(slash + 1).trim();
+
+        double weight = 1.0;
+        int pos = paramStart;
+        while(pos < end) {
+            int next = accept.indexOf(';', pos + 1);
+            if(next < 0 || next > end) {
+                next = end;
+            }
+            String param = accept.substring(pos + 1, next).trim();
+            if(param.startsWith("q=")) {
+                try {
+                    weight = Double.parseDouble(param.substring("q=".length()));
+                } catch (NumberFormatException ignored) {
+                    // If invalid use default weight
+                }
+            }
+            pos = next;
+        }
+        return new MediaRange(type, subtype, weight, index);
+    }
+
+    // Guarded by itself
+    private static final class Segment extends LinkedHashMap<String, AcceptEntry> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AcceptEntry> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private static final class AcceptEntry {
+        private final MediaRange[] ranges;
+        private final Map<Set<String>, String> negotiated = new ConcurrentHashMap<>();
+
+        AcceptEntry(MediaRange[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    static final class MediaRange {
+        private final String type;
+        private final String subtype;
+        private final double weight;
+        private final int index;
+        // 2 for type/subtype, 1 for type/*, 0 for */*
+        private final int specificity;
+
+        MediaRange(String type, String subtype, double weight, int index) {
+            this.type = type;
+            this.subtype = subtype;
+            this.weight = weight;
+            this.index = index;
+            this.specificity = WILDCARD.equals(type) ? 0 : WILDCARD.equals(subtype) ? 1 : 2;
+        }
+
+        boolean matches(String mimeType) {
+            int slash = mimeType.indexOf('/');
+            if(slash < 0) {
+                return WILDCARD.equals(type) && WILDCARD.equals(subtype);
+            }
+            return matchesPart(type, mimeType, 0, slash) && matchesPart(subtype, mimeType, slash + 1, mimeType.length());
+        }
+
+        private static boolean matchesPart(String part, String mimeType, int start, int end) {
+            if(WILDCARD.equals(part)) {
+                return true;
+            }
+            return part.length() == end - start && mimeType.regionMatches(true, start, part, 0, part.length());
+        }
+    }
+}
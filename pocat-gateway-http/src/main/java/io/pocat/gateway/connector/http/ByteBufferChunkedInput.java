@@ -0,0 +1,63 @@
+package io.pocat.gateway.connector.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chunks of a heap or direct buffer. Each chunk wraps a range of the buffer without copy.
+ */
+class ByteBufferChunkedInput implements ChunkedInput<ByteBuf> {
+    private final ByteBuffer contents;
+    private final int length;
+    private final int chunkSize;
+    private int offset = 0;
+
+    ByteBufferChunkedInput(ByteBuffer contents, int chunkSize) {
+        this.contents = contents;
+        this.length = contents.remaining();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return offset >= length;
+    }
+
+    @Override
+    public void close() {
+        offset = length;
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) {
+        if(isEndOfInput()) {
+            return null;
+        }
+        int chunkLength = Math.min(chunkSize, length - offset);
+        ByteBuffer chunk = contents.duplicate();
+        chunk.position(contents.position() + offset).limit(contents.position() + offset + chunkLength);
+        offset += chunkLength;
+        return Unpooled.wrappedBuffer(chunk);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return offset;
+    }
+}
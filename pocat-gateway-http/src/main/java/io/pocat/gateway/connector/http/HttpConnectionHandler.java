@@ -1,12 +1,14 @@
 package io.pocat.gateway.connector.http;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.pocat.gateway.connector.ConnectionHandler;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.util.List;
 import java.util.Map;
 
@@ -14,21 +16,40 @@ import static io.netty.handler.codec.http.HttpResponseStatus.CONTINUE;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 public class HttpConnectionHandler implements ConnectionHandler {
+    private static final int CHUNKED_RESPONSE_THRESHOLD = 64 * 1024;
+    private static final int RESPONSE_CHUNK_SIZE = 16 * 1024;
+    // Requests with larger or unknown length are dispatched before their body, which is read as their route decides
+    private static final int STREAMED_BODY_THRESHOLD = 64 * 1024;
+    private static final int BODY_READ_AHEAD = 64 * 1024;
+    // Flushes of responses written while a read is in progress are merged into one
+    private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+
     @Override
     public void handleConnection(Channel channel) {
         ChannelPipeline cp = channel.pipeline();
 
+        cp.addLast("flush-consolidation", new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, true));
         cp.addLast("http-request-decoder", new HttpRequestDecoder());
         cp.addLast("http-response-encoder", new HttpResponseEncoder());
+        cp.addLast("http-chunked-writer", new ChunkedWriteHandler());
         cp.addLast("http-responder", new HttpResponder());
         cp.addLast("http-request-aggregator", new HttpRequestAggregator());
     }
 
     private static class HttpRequestAggregator extends ChannelInboundHandlerAdapter {
         private HttpExchangeBuilder exchangeBuilder;
+        private HttpRequestBodyStream bodyStream;
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if(bodyStream != null && msg instanceof HttpContent) {
+                boolean last = msg instanceof LastHttpContent;
+                bodyStream.offer(((HttpContent) msg).content(), last);
+                if(last) {
+                    bodyStream = null;
+                }
+                return;
+            }
             if(exchangeBuilder == null) {
                 exchangeBuilder = new HttpExchangeBuilder();
             }
@@ -53,15 +74,18 @@ public class HttpConnectionHandler implements ConnectionHandler {
                             Unpooled.EMPTY_BUFFER);
                     ctx.writeAndFlush(response);
                 }
+
+                if(!(msg instanceof LastHttpContent) && isStreamedBody(request)) {
+                    bodyStream = exchangeBuilder.streamRequestBody(ctx.channel(), HttpUtil.getContentLength(request, -1L), BODY_READ_AHEAD);
+                    ctx.fireChannelRead(exchangeBuilder.build());
+                    exchangeBuilder = null;
+                    return;
+                }
             }
 
             if (msg instanceof HttpContent) {
-                ByteBuf buf = ((HttpContent) msg).content();
-                try {
-                    exchangeBuilder.writeRequestContents(ByteBufUtil.getBytes(buf));
-                } finally {
-                    buf.release();
-                }
+                // Exchange keeps buffers of decoder and releases them when it is closed
+                exchangeBuilder.addRequestContent(((HttpContent) msg).content());
 
                 if (msg instanceof LastHttpContent) {
                     ctx.fireChannelRead(this.exchangeBuilder.build());
@@ -69,25 +93,137 @@ public class HttpConnectionHandler implements ConnectionHandler {
                 }
             }
         }
+
+        private boolean isStreamedBody(HttpRequest request) {
+            return HttpUtil.isTransferEncodingChunked(request) || HttpUtil.getContentLength(request, 0L) > STREAMED_BODY_THRESHOLD;
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if(exchangeBuilder != null) {
+                // Request is not completed
+                exchangeBuilder.release();
+                exchangeBuilder = null;
+            }
+            if(bodyStream != null) {
+                bodyStream.fail(new ClosedChannelException());
+                bodyStream = null;
+            }
+            super.channelInactive(ctx);
+        }
     }
 
-    private static class HttpResponder extends ChannelOutboundHandlerAdapter {
+    private static class HttpResponder extends ChannelDuplexHandler {
+        // Streamed response being written. Responses of a connection are written in order, so one at a time.
+        private HttpExchange streamingExchange;
+
         @Override
         public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if(msg instanceof HttpObject) {
+                // e.g. 100 Continue of request aggregator
+                ctx.write(msg, promise);
+                return;
+            }
             if(!(msg instanceof HttpExchange)) {
                 throw new IllegalStateException("Invalid message [" + msg.getClass().getName() + "]");
             }
             HttpExchange exchange = (HttpExchange) msg;
-            DefaultFullHttpResponse resp = new DefaultFullHttpResponse(
-                    HttpVersion.HTTP_1_1,
-                    HttpResponseStatus.valueOf(exchange.getResponseStatus()), Unpooled.copiedBuffer(exchange.getResponseContents()));
+            if(exchange.isResponseStreaming()) {
+                writeStream(ctx, exchange, promise);
+                return;
+            }
+            // Heap array or shared off-heap buffer of response cache
+            ByteBuffer contents = exchange.getResponseContentBuffer();
+            int contentLength = contents.remaining();
+            HttpResponseStatus status = HttpResponseStatus.valueOf(exchange.getResponseStatus());
+
+            // Flush comes from writer of exchange, so write here only
+            if(contentLength <= CHUNKED_RESPONSE_THRESHOLD) {
+                // Contents are wrapped, not copied. Encoder writes headers into a pooled buffer
+                FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.wrappedBuffer(contents));
+                setHeaders(resp, exchange);
+                resp.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+                ctx.write(resp, promise);
+                return;
+            }
+            // Large contents go in chunks as channel becomes writable, so they do not pile up in outbound buffer at once
+            HttpResponse resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+            setHeaders(resp, exchange);
+            resp.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+            ctx.write(resp);
+            ctx.write(new HttpChunkedInput(new ByteBufferChunkedInput(contents, RESPONSE_CHUNK_SIZE)), promise);
+        }
 
-            for(String headerName:exchange.getResponseHeaderNames()) {
-                resp.headers().set(headerName, exchange.getResponseHeader(headerName));
+        /**
+         * Exchange is written once when it is closed, and again for every chunk after that.
+         */
+        private void writeStream(ChannelHandlerContext ctx, HttpExchange exchange, ChannelPromise promise) {
+            if(exchange.isResponseStreamAborted()) {
+                // Status is sent already, so client learns it only by closed connection
+                if(streamingExchange == exchange) {
+                    streamingExchange = null;
+                }
+                promise.trySuccess();
+                ctx.close();
+                return;
+            }
+            if(exchange.markResponseHeadWritten()) {
+                HttpResponse resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(exchange.getResponseStatus()));
+                setHeaders(resp, exchange);
+                resp.headers().remove(HttpHeaderNames.CONTENT_LENGTH);
+                HttpUtil.setTransferEncodingChunked(resp, true);
+                ctx.write(resp);
+                ByteBuffer contents = exchange.getResponseContentBuffer();
+                if(contents.hasRemaining()) {
+                    ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(contents)));
+                }
+                streamingExchange = exchange;
+            }
+            if(streamingExchange == exchange) {
+                writeChunks(ctx);
+            }
+            promise.trySuccess();
+        }
+
+        /**
+         * Chunks stay in exchange while channel is not writable. Exchange aborts response when they exceed its window.
+         */
+        private void writeChunks(ChannelHandlerContext ctx) {
+            HttpExchange exchange = streamingExchange;
+            byte[] chunk;
+            while(ctx.channel().isWritable() && (chunk = exchange.pollResponseChunk()) != null) {
+                ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk)));
+            }
+            if(exchange.isResponseStreamEnded()) {
+                ctx.write(LastHttpContent.EMPTY_LAST_CONTENT);
+                streamingExchange = null;
             }
+        }
 
-            resp.headers().set(HttpHeaderNames.CONTENT_LENGTH, exchange.getResponseContents().length);
-            ctx.writeAndFlush(resp);
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if(streamingExchange != null && ctx.channel().isWritable()) {
+                writeChunks(ctx);
+                ctx.flush();
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if(streamingExchange != null) {
+                // Stop reassembling reply which cannot be written
+                streamingExchange.abortResponseStream();
+                streamingExchange = null;
+            }
+            super.channelInactive(ctx);
+        }
+
+        private void setHeaders(HttpResponse resp, HttpExchange exchange) {
+            HttpHeaders headers = resp.headers();
+            for(String headerName:exchange.getResponseHeaderNames()) {
+                headers.set(HttpResponseHeaders.name(headerName), HttpResponseHeaders.value(exchange.getResponseHeader(headerName)));
+            }
         }
     }
 }
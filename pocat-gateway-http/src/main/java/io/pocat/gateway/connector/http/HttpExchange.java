@@ -1,5 +1,6 @@
 package io.pocat.gateway.connector.http;
 
+import io.netty.buffer.ByteBuf;
 import io.pocat.gateway.connector.Exchange;
 
 import java.util.Collection;
@@ -20,6 +21,18 @@ public interface HttpExchange extends Exchange {
     List<String> getRequestParams(String paramName);
 
     String getQueryString();
+
+    /**
+     * Request body as received from connection, without copy. Valid until this exchange is closed.
+     * @return read-only view of request body
+     */
+    ByteBuf getRequestBody();
+
+    /**
+     * Request body which stays valid after this exchange is closed, for readers on other threads than request thread.
+     * @return retained read-only view which caller must release. null if this exchange is already closed
+     */
+    ByteBuf retainRequestBody();
     String getAcceptableMimeType(Set<String> types);
 
     int	getResponseStatus();
@@ -28,4 +41,27 @@ public interface HttpExchange extends Exchange {
     Set<String> getResponseHeaderNames();
     String	getResponseHeader(String headerName);
     void setResponseHeader(String headerName, String headerValue);
+
+    /**
+     * @return true if response contents are followed by chunks
+     */
+    boolean isResponseStreaming();
+
+    /**
+     * Head of streamed response is written once, by the first write of exchange after it is closed.
+     * @return true only for the first call
+     */
+    boolean markResponseHeadWritten();
+
+    /**
+     * @return next chunk to write to client, or null if no chunk is waiting
+     */
+    byte[] pollResponseChunk();
+
+    /**
+     * @return true if the last chunk is polled
+     */
+    boolean isResponseStreamEnded();
+
+    boolean isResponseStreamAborted();
 }
@@ -1,66 +1,37 @@
 package io.pocat.gateway.connector.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.pocat.gateway.connector.AbstractExchange;
+import io.pocat.gateway.connector.RequestBodyStream;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.stream.Collectors;
 
 class HttpExchangeBuilder {
-    private static final String ALL_PATTERN_STR = "(.*)";
-    private static final String ALL_PATTERN = "(.*)/(.*)";
+    private static final String ACCEPT_HEADER_NAME = "Accept";
+    // Composite consolidates, which is a copy, when components exceed this
+    private static final int MAX_BODY_COMPONENTS = 1024;
+    private static final byte[] EMPTY_CONTENTS = new byte[0];
 
     private String method;
     private final Map<String, String> headers = new HashMap<>();
     private Map<String, List<String>> queryParams;
     private String requestPath;
     private String queryString;
-    private List<String> accepts;
-    private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    // Body of one chunk is kept as is. Composite is created for the second chunk.
+    private ByteBuf body;
+    private CompositeByteBuf compositeBody;
+    // Body which arrives after exchange is built
+    private HttpRequestBodyStream bodyStream;
 
     public HttpExchange build() {
-        this.accepts = buildAccepts(headers.get("Accept"));
         return new HttpExchangeImpl(this);
     }
 
-    private List<String> buildAccepts(String acceptStr) {
-        if(acceptStr == null) {
-            return Collections.singletonList(ALL_PATTERN);
-        }
-        String[] accepts = acceptStr.split(",");
-        List<HttpAccept> acceptHeaders = new ArrayList<>(accepts.length);
-        for(String accept:accepts) {
-            double weight = 1.0;
-            accept = accept.trim();
-
-            String[] mimeWeight = accept.split(";");
-            String mime = mimeWeight[0];
-            String mimePattern = mime.replace("*", ALL_PATTERN_STR);
-            if(mimeWeight.length > 1) {
-                for(int i = 1; i < mimeWeight.length; i++) {
-                    if(mimeWeight[i].startsWith("q=")) {
-                        weight = Double.parseDouble(mimeWeight[i].substring("q=".length()));
-                    }
-                }
-
-            }
-            acceptHeaders.add(new HttpAccept(mimePattern, weight, acceptHeaders.size()));
-        }
-
-        acceptHeaders.sort((o1, o2) -> {
-            // sort by weight with descending order
-            if(o1.weight > o2.weight) {
-                return -1;
-            } else if(o1.weight < o2.weight) {
-                return 1;
-            } else {
-                // sort by index with ascending order
-                return Integer.compare(o1.index, o2.index);
-            }
-        });
-        return acceptHeaders.stream().map(httpAccept -> httpAccept.pattern).collect(Collectors.toList());
-    }
-
     public String getMethod() {
         return method;
     }
@@ -86,8 +57,50 @@ class HttpExchangeBuilder {
     }
 
     public void writeRequestContents(byte[] bytes) {
-        if(bytes != null) {
-            baos.writeBytes(bytes);
+        if(bytes != null && bytes.length > 0) {
+            addRequestContent(Unpooled.wrappedBuffer(bytes));
+        }
+    }
+
+    /**
+     * Append a chunk of request body without copy. Builder takes ownership of content.
+     * @param content chunk of request body
+     */
+    public void addRequestContent(ByteBuf content) {
+        if(!content.isReadable()) {
+            content.release();
+            return;
+        }
+        if(body == null) {
+            body = content;
+            return;
+        }
+        if(compositeBody == null) {
+            compositeBody = Unpooled.compositeBuffer(MAX_BODY_COMPONENTS);
+            compositeBody.addComponent(true, body);
+            body = compositeBody;
+        }
+        compositeBody.addComponent(true, content);
+    }
+
+    /**
+     * Build exchange before its body. Rest of request goes to the returned stream.
+     * @param contentLength length announced by client, or -1
+     * @param readAhead bytes read from connection before route decides how to read body
+     */
+    public HttpRequestBodyStream streamRequestBody(Channel channel, long contentLength, int readAhead) {
+        this.bodyStream = new HttpRequestBodyStream(channel, contentLength, readAhead);
+        return bodyStream;
+    }
+
+    /**
+     * Release request body of a request which is not built. e.g. connection is closed in the middle of request
+     */
+    public void release() {
+        if(body != null) {
+            body.release();
+            body = null;
+            compositeBody = null;
         }
     }
 
@@ -97,15 +110,42 @@ class HttpExchangeBuilder {
 
     private static class HttpExchangeImpl extends AbstractExchange implements HttpExchange {
         private final HttpExchangeBuilder builder;
-        private final byte[] requestContents;
+        // Guarded by this. Closing thread releases body while upstream thread may still read it.
+        private ByteBuf requestBody;
+        private int requestContentLength;
+        private byte[] requestContents;
+        private boolean isBodyReleased = false;
+        // null if body was complete when exchange is built
+        private final HttpRequestBodyStream bodyStream;
+        private boolean isBodyAggregated;
 
         private final Map<String, String> responseHeaders = new HashMap<>();
         private int responseStatus = 200;
         private byte[] responseContents = new byte[0];
+        // Contents set as a buffer, e.g. off-heap cache entry. Written as is unless a filter reads contents.
+        private ByteBuffer responseContentBuffer;
+
+        // Guarded by this. Chunks wait here until connection writes them, at most window of them.
+        private ArrayDeque<byte[]> responseChunks;
+        private int responseWindow;
+        // Set when exchange is closed. Chunks written before wait for the head.
+        private boolean isResponseHeadReady = false;
+        private boolean isResponseHeadWritten = false;
+        private boolean isResponseStreamEnded = false;
+        private boolean isResponseStreamAborted = false;
 
         public HttpExchangeImpl(HttpExchangeBuilder builder) {
             this.builder = builder;
-            this.requestContents = builder.baos.toByteArray();
+            this.requestBody = builder.body == null ? Unpooled.EMPTY_BUFFER : builder.body;
+            this.requestContentLength = requestBody.readableBytes();
+            this.bodyStream = builder.bodyStream;
+            this.isBodyAggregated = bodyStream == null;
+            if(bodyStream != null) {
+                bodyStream.setBodyTarget(this::setAggregatedBody);
+            }
+            builder.body = null;
+            builder.compositeBody = null;
+            builder.bodyStream = null;
             if(builder.headers.containsKey(CORRELATION_ID_HEADER_NAME)) {
                 responseHeaders.put(CORRELATION_ID_HEADER_NAME, builder.headers.get(CORRELATION_ID_HEADER_NAME));
             }
@@ -162,21 +202,94 @@ class HttpExchangeBuilder {
 
         @Override
         public String getAcceptableMimeType(Set<String> types) {
-            for(String pattern:builder.accepts) {
-                for(String type:types) {
-                    if(type.matches(pattern)) {
-                        return type;
-                    }
-                }
+            return AcceptNegotiator.negotiate(builder.headers.get(ACCEPT_HEADER_NAME), types);
+        }
+
+        @Override
+        public RequestBodyStream getRequestBodyStream() {
+            return bodyStream;
+        }
+
+        private synchronized void setAggregatedBody(ByteBuf body) {
+            if(isBodyReleased) {
+                body.release();
+                return;
+            }
+            requestBody = body;
+            requestContentLength = body.readableBytes();
+            isBodyAggregated = true;
+        }
+
+        @Override
+        public synchronized ByteBuf getRequestBody() {
+            checkBodyNotReleased();
+            return requestBody.asReadOnly();
+        }
+
+        @Override
+        public synchronized ByteBuf retainRequestBody() {
+            if(isBodyReleased) {
+                return null;
             }
-            return null;
+            checkBodyAggregated();
+            return requestBody.retainedDuplicate().asReadOnly();
         }
 
+        /**
+         * Copy of request body, taken once on first call.
+         */
         @Override
-        public byte[] getRequestContents() {
+        public synchronized byte[] getRequestContents() {
+            if(requestContents == null) {
+                checkBodyNotReleased();
+                requestContents = requestContentLength == 0 ? EMPTY_CONTENTS : ByteBufUtil.getBytes(requestBody);
+            }
             return requestContents;
         }
 
+        /**
+         * Bytes received so far while body is streamed.
+         */
+        @Override
+        public synchronized int getRequestContentLength() {
+            if(!isBodyAggregated) {
+                return (int) Math.min(bodyStream.getReceivedBytes(), Integer.MAX_VALUE);
+            }
+            return requestContentLength;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                isResponseHeadReady = true;
+            }
+            super.close();
+            releaseRequestBody();
+            if(bodyStream != null) {
+                bodyStream.abort();
+            }
+        }
+
+        private synchronized void releaseRequestBody() {
+            if(!isBodyReleased) {
+                isBodyReleased = true;
+                requestBody.release();
+            }
+        }
+
+        private void checkBodyNotReleased() {
+            if(isBodyReleased) {
+                throw new IllegalStateException("Request body of closed exchange is released");
+            }
+            checkBodyAggregated();
+        }
+
+        private void checkBodyAggregated() {
+            if(!isBodyAggregated) {
+                throw new IllegalStateException("Request body of exchange [" + getTxId() + "] is streamed");
+            }
+        }
+
         @Override
         public int getResponseStatus() {
             return responseStatus;
@@ -204,24 +317,124 @@ class HttpExchangeBuilder {
 
         @Override
         public byte[] getResponseContents() {
+            if(responseContentBuffer != null) {
+                // Reader may modify contents, so it takes its own copy of the shared buffer
+                responseContents = new byte[responseContentBuffer.remaining()];
+                responseContentBuffer.duplicate().get(responseContents);
+                responseContentBuffer = null;
+            }
             return responseContents;
         }
 
         @Override
         public void setResponseContents(byte[] contents) {
             this.responseContents = contents;
+            this.responseContentBuffer = null;
+        }
+
+        @Override
+        public void setResponseContentBuffer(ByteBuffer contents) {
+            this.responseContentBuffer = contents;
+            this.responseContents = null;
+        }
+
+        @Override
+        public ByteBuffer getResponseContentBuffer() {
+            if(responseContentBuffer != null) {
+                return responseContentBuffer.duplicate();
+            }
+            return ByteBuffer.wrap(responseContents == null ? EMPTY_CONTENTS : responseContents);
+        }
+
+        @Override
+        public int getResponseContentLength() {
+            if(responseContentBuffer != null) {
+                return responseContentBuffer.remaining();
+            }
+            return responseContents == null ? 0 : responseContents.length;
+        }
+
+        @Override
+        public synchronized void startResponseStream(int window) {
+            if(window <= 0) {
+                throw new IllegalArgumentException("Window must be positive.");
+            }
+            this.responseChunks = new ArrayDeque<>(window);
+            this.responseWindow = window;
+        }
+
+        @Override
+        public boolean writeResponseChunk(byte[] chunk, boolean last) {
+            boolean accepted;
+            boolean write;
+            synchronized (this) {
+                if(responseChunks == null) {
+                    throw new IllegalStateException("Response stream of exchange [" + getTxId() + "] is not started");
+                }
+                if(isResponseStreamAborted || isResponseStreamEnded) {
+                    return false;
+                }
+                if(responseChunks.size() >= responseWindow) {
+                    // Client does not keep up. Upstream cannot be paused, so response is given up.
+                    isResponseStreamAborted = true;
+                    responseChunks.clear();
+                    accepted = false;
+                } else {
+                    responseChunks.add(chunk);
+                    isResponseStreamEnded = last;
+                    accepted = true;
+                }
+                write = isResponseHeadReady;
+            }
+            if(write) {
+                getContext().write(this);
+            }
+            return accepted;
+        }
+
+        @Override
+        public void abortResponseStream() {
+            boolean write;
+            synchronized (this) {
+                if(responseChunks == null || isResponseStreamAborted) {
+                    return;
+                }
+                isResponseStreamAborted = true;
+                responseChunks.clear();
+                write = isResponseHeadReady;
+            }
+            if(write) {
+                getContext().write(this);
+            }
+        }
+
+        @Override
+        public synchronized boolean isResponseStreaming() {
+            return responseChunks != null;
+        }
+
+        @Override
+        public synchronized boolean markResponseHeadWritten() {
+            if(isResponseHeadWritten) {
+                return false;
+            }
+            isResponseHeadWritten = true;
+            return true;
         }
-    }
 
-    private static class HttpAccept {
-        private final String pattern;
-        private final double weight;
-        private final int index;
+        @Override
+        public synchronized byte[] pollResponseChunk() {
+            return responseChunks == null ? null : responseChunks.poll();
+        }
+
+        @Override
+        public synchronized boolean isResponseStreamEnded() {
+            return isResponseStreamEnded && responseChunks != null && responseChunks.isEmpty();
+        }
 
-        private HttpAccept(String pattern, double weight, int index) {
-            this.pattern = pattern;
-            this.weight = weight;
-            this.index = index;
+        @Override
+        public synchronized boolean isResponseStreamAborted() {
+            return isResponseStreamAborted;
         }
     }
 }
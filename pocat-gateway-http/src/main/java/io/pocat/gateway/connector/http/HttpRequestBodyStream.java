@@ -0,0 +1,347 @@
+package io.pocat.gateway.connector.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.pocat.gateway.connector.RequestBodyStream;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Request body offered by connection on its event loop and taken by reader on its executor. Guarded by this.
+ * Connection stops reading while buffered bytes exceed the limit of current state, and resumes as reader takes them.
+ */
+class HttpRequestBodyStream implements RequestBodyStream {
+    // Composite consolidates, which is a copy, when components exceed this
+    private static final int MAX_BODY_COMPONENTS = 1024;
+
+    private enum State {
+        // Route is not decided yet. Read ahead only.
+        WAITING,
+        READING,
+        AGGREGATING,
+        // Body is delivered, or stream is aborted or failed
+        DONE
+    }
+
+    private final Channel channel;
+    private final long contentLength;
+    private final ArrayDeque<ByteBuf> buffered = new ArrayDeque<>();
+    private Consumer<ByteBuf> bodyTarget;
+    private State state = State.WAITING;
+    private long maxBufferedBytes;
+    private long bufferedBytes = 0;
+    private long receivedBytes = 0;
+    private boolean ended = false;
+    private boolean paused = false;
+    private Throwable failure;
+
+    private Executor executor;
+    private int chunkSize;
+    private ChunkHandler handler;
+    private boolean draining = false;
+    private int seq = 0;
+
+    private Runnable onComplete;
+    private Consumer<Throwable> onError;
+
+    HttpRequestBodyStream(Channel channel, long contentLength, int readAhead) {
+        this.channel = channel;
+        this.contentLength = contentLength;
+        this.maxBufferedBytes = readAhead;
+    }
+
+    /**
+     * @param bodyTarget exchange which keeps aggregated body
+     */
+    synchronized void setBodyTarget(Consumer<ByteBuf> bodyTarget) {
+        this.bodyTarget = bodyTarget;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    synchronized long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * Called on event loop of connection. Stream takes ownership of content.
+     */
+    void offer(ByteBuf content, boolean last) {
+        boolean drain = false;
+        ByteBuf body = null;
+        synchronized (this) {
+            if(state == State.DONE || failure != null) {
+                content.release();
+                return;
+            }
+            receivedBytes += content.readableBytes();
+            if(content.isReadable()) {
+                buffered.add(content);
+                bufferedBytes += content.readableBytes();
+            } else {
+                content.release();
+            }
+            ended = last;
+            if(state == State.READING) {
+                drain = markDraining();
+            } else if(state == State.AGGREGATING && ended) {
+                state = State.DONE;
+                body = takeAll();
+            }
+            if(!ended && !paused && bufferedBytes >= maxBufferedBytes) {
+                paused = true;
+                channel.config().setAutoRead(false);
+            }
+        }
+        if(drain) {
+            executeDrain();
+        }
+        if(body != null) {
+            completeAggregation(body);
+        }
+    }
+
+    /**
+     * Called on event loop of connection when it is closed before end of body.
+     */
+    void fail(Throwable cause) {
+        boolean drain = false;
+        boolean aggregating = false;
+        synchronized (this) {
+            if(state == State.DONE || failure != null) {
+                return;
+            }
+            failure = cause;
+            releaseBuffered();
+            if(state == State.READING) {
+                drain = markDraining();
+            } else if(state == State.AGGREGATING) {
+                state = State.DONE;
+                aggregating = true;
+            }
+        }
+        if(drain) {
+            executeDrain();
+        }
+        if(aggregating) {
+            execute(() -> onError.accept(cause));
+        }
+    }
+
+    @Override
+    public void read(int chunkSize, int window, Executor executor, ChunkHandler handler) {
+        if(chunkSize <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Chunk size and window must be positive.");
+        }
+        boolean drain;
+        synchronized (this) {
+            checkWaiting();
+            this.state = State.READING;
+            this.chunkSize = chunkSize;
+            this.executor = executor;
+            this.handler = handler;
+            this.maxBufferedBytes = (long) chunkSize * window;
+            if(bufferedBytes < maxBufferedBytes) {
+                resume();
+            }
+            drain = markDraining();
+        }
+        if(drain) {
+            executeDrain();
+        }
+    }
+
+    @Override
+    public void aggregate(Executor executor, Runnable onComplete, Consumer<Throwable> onError) {
+        Throwable error;
+        ByteBuf body = null;
+        synchronized (this) {
+            checkWaiting();
+            this.executor = executor;
+            this.onComplete = onComplete;
+            this.onError = onError;
+            error = failure;
+            if(error != null || ended) {
+                state = State.DONE;
+                body = error == null ? takeAll() : null;
+            } else {
+                // Body is buffered in whole as it is for requests aggregated before dispatch
+                state = State.AGGREGATING;
+                maxBufferedBytes = Long.MAX_VALUE;
+                resume();
+            }
+        }
+        if(error != null) {
+            execute(() -> onError.accept(error));
+        } else if(body != null) {
+            completeAggregation(body);
+        }
+    }
+
+    @Override
+    public void abort() {
+        synchronized (this) {
+            if(state == State.DONE) {
+                return;
+            }
+            state = State.DONE;
+            releaseBuffered();
+            // Rest of body is read and dropped, so next request of connection can be read
+            resume();
+        }
+    }
+
+    private void checkWaiting() {
+        if(state != State.WAITING) {
+            throw new IllegalStateException("Request body is already " + (state == State.DONE ? "closed" : "being read"));
+        }
+    }
+
+    private boolean markDraining() {
+        if(draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    private void executeDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                draining = false;
+                state = State.DONE;
+                releaseBuffered();
+                resume();
+            }
+            handler.onError(e);
+        }
+    }
+
+    /**
+     * Deliver buffered chunks one by one until a full chunk is not buffered. Only one drain runs at a time.
+     */
+    private void drain() {
+        while(true) {
+            byte[] chunk;
+            int chunkSeq;
+            boolean last;
+            Throwable error = null;
+            synchronized (this) {
+                if(state != State.READING) {
+                    draining = false;
+                    return;
+                }
+                if(failure != null) {
+                    state = State.DONE;
+                    draining = false;
+                    error = failure;
+                    chunk = null;
+                    chunkSeq = -1;
+                    last = false;
+                } else if(bufferedBytes >= chunkSize || ended) {
+                    chunk = take((int) Math.min(chunkSize, bufferedBytes));
+                    chunkSeq = seq++;
+                    last = ended && bufferedBytes == 0;
+                    if(last) {
+                        state = State.DONE;
+                        draining = false;
+                    } else if(bufferedBytes < maxBufferedBytes) {
+                        resume();
+                    }
+                } else {
+                    // Less than a chunk is buffered, which is always below the limit
+                    resume();
+                    draining = false;
+                    return;
+                }
+            }
+            if(error != null) {
+                handler.onError(error);
+                return;
+            }
+            try {
+                handler.onChunk(chunk, chunkSeq, last);
+            } catch (Exception e) {
+                abort();
+                handler.onError(e);
+                return;
+            }
+            if(last) {
+                return;
+            }
+        }
+    }
+
+    private byte[] take(int size) {
+        byte[] chunk = new byte[size];
+        int offset = 0;
+        while(offset < size) {
+            ByteBuf buf = buffered.peek();
+            int length = Math.min(size - offset, buf.readableBytes());
+            buf.readBytes(chunk, offset, length);
+            offset += length;
+            if(!buf.isReadable()) {
+                buffered.poll().release();
+            }
+        }
+        bufferedBytes -= size;
+        return chunk;
+    }
+
+    private ByteBuf takeAll() {
+        ByteBuf body;
+        if(buffered.isEmpty()) {
+            body = Unpooled.EMPTY_BUFFER;
+        } else if(buffered.size() == 1) {
+            body = buffered.poll();
+        } else {
+            CompositeByteBuf composite = Unpooled.compositeBuffer(MAX_BODY_COMPONENTS);
+            for(ByteBuf buf:buffered) {
+                composite.addComponent(true, buf);
+            }
+            buffered.clear();
+            body = composite;
+        }
+        bufferedBytes = 0;
+        return body;
+    }
+
+    private void completeAggregation(ByteBuf body) {
+        bodyTarget.accept(body);
+        execute(onComplete);
+    }
+
+    private void releaseBuffered() {
+        for(ByteBuf buf:buffered) {
+            buf.release();
+        }
+        buffered.clear();
+        bufferedBytes = 0;
+    }
+
+    private void resume() {
+        if(paused) {
+            paused = false;
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Exchange must go on to its response
+            task.run();
+        }
+    }
+}
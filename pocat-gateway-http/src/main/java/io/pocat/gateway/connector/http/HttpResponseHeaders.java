@@ -0,0 +1,66 @@
+package io.pocat.gateway.connector.http;
+
+import io.netty.util.AsciiString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Response header names and common values encoded once as AsciiString.
+ * Encoder copies bytes of an AsciiString as is, instead of encoding chars of a String for every response.
+ */
+final class HttpResponseHeaders {
+    // Names come from upstream replies too, so cache is bounded
+    private static final int MAX_CACHED_NAMES = 512;
+
+    private static final Map<String, AsciiString> NAMES = new ConcurrentHashMap<>();
+    // Read only after class initialization
+    private static final Map<String, AsciiString> VALUES = new HashMap<>();
+
+    static {
+        // Keyed by names as exchanges set them. Netty constants are lower case
+        for(String name:new String[]{"Content-Type", "Retry-After", HttpExchange.CORRELATION_ID_HEADER_NAME, "Tx-Id", "Status-Code"}) {
+            NAMES.put(name, AsciiString.cached(name));
+        }
+        for(String value:new String[]{"application/json", "application/xml", "text/plain",
+                "application/json; charset=UTF-8", "application/xml; charset=UTF-8", "text/plain; charset=UTF-8", "0"}) {
+            VALUES.put(value, AsciiString.cached(value));
+        }
+    }
+
+    private HttpResponseHeaders() {
+
+    }
+
+    static CharSequence name(String name) {
+        AsciiString encoded = NAMES.get(name);
+        if(encoded != null) {
+            return encoded;
+        }
+        if(NAMES.size() >= MAX_CACHED_NAMES || !isAscii(name)) {
+            return name;
+        }
+        return NAMES.computeIfAbsent(name, AsciiString::cached);
+    }
+
+    /**
+     * Values are mostly unique per response, e.g. transaction id, so only well known values are pre-encoded.
+     */
+    static CharSequence value(String value) {
+        if(value == null) {
+            return null;
+        }
+        AsciiString encoded = VALUES.get(value);
+        return encoded == null ? value : encoded;
+    }
+
+    private static boolean isAscii(String s) {
+        for(int i = 0; i < s.length(); i++) {
+            if(s.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package io.pocat.gateway.route;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+
+public class CircuitBreakerConfigType implements CircuitBreakerConfig {
+    @JacksonXmlProperty(localName = "failure-rate")
+    private int failureRateThreshold = 50;
+    @JacksonXmlProperty(localName = "minimum-calls")
+    private int minimumCalls = 20;
+    private long window = 10000;
+    @JacksonXmlProperty(localName = "open-duration")
+    private long openDuration = 5000;
+    @JacksonXmlProperty(localName = "half-open-calls")
+    private int halfOpenCalls = 3;
+
+    @Override
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    @Override
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    @Override
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    @Override
+    public long getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    @Override
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+}
@@ -8,6 +8,10 @@ public class UpstreamConfigType implements UpstreamConfig {
     private String requestChannel;
     @JacksonXmlProperty(localName = "topic")
     private String requestTopic;
+    @JacksonXmlProperty(localName = "max-concurrency")
+    private int maxConcurrency;
+    @JacksonXmlProperty(localName = "circuit-breaker")
+    private CircuitBreakerConfigType circuitBreaker;
 
     @Override
     public String getRequestChannel() {
@@ -26,4 +30,22 @@ public class UpstreamConfigType implements UpstreamConfig {
     public void setRequestTopic(String requestTopic) {
         this.requestTopic = requestTopic;
     }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public CircuitBreakerConfig getCircuitBreakerConfig() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreakerConfigType circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
 }
@@ -0,0 +1,52 @@
+package io.pocat.gateway.route.http;
+
+import io.pocat.gateway.connector.http.HttpExchange;
+import io.pocat.gateway.protocol.CompiledTemplate;
+import io.pocat.gateway.route.RouteProcessException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Response format of error template compiled at load time.
+ * Headers and body without variables are encoded once and reused for every error response.
+ */
+public class CompiledResponseFormat implements HttpResponseFormat {
+    private final Map<String, String> responseHeaders;
+    private final String responseBody;
+    private final String[] headerNames;
+    private final CompiledTemplate[] headerValues;
+    private final CompiledTemplate body;
+
+    public CompiledResponseFormat(Map<String, String> responseHeaders, String responseBody) {
+        this.responseHeaders = Collections.unmodifiableMap(new LinkedHashMap<>(responseHeaders));
+        this.responseBody = responseBody;
+        this.headerNames = new String[responseHeaders.size()];
+        this.headerValues = new CompiledTemplate[responseHeaders.size()];
+        int i = 0;
+        for(Map.Entry<String, String> header:this.responseHeaders.entrySet()) {
+            headerNames[i] = header.getKey();
+            headerValues[i] = CompiledTemplate.compile(header.getValue());
+            i++;
+        }
+        this.body = CompiledTemplate.compile(responseBody);
+    }
+
+    @Override
+    public Map<String, String> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public void writeTo(HttpExchange exchange, RouteProcessException e) {
+        for(int i = 0; i < headerNames.length; i++) {
+            exchange.setResponseHeader(headerNames[i], headerValues[i].renderString(exchange, e));
+        }
+        exchange.setResponseContents(body.render(exchange, e));
+    }
+}
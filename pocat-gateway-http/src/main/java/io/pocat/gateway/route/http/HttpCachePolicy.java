@@ -0,0 +1,50 @@
+package io.pocat.gateway.route.http;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.ResponseCachePolicy;
+import io.pocat.gateway.route.http.config.HttpResponseCacheType;
+
+/**
+ * Response cache of a http route. Key is built by {@link HttpRequestKey} with vary headers.
+ */
+public class HttpCachePolicy implements ResponseCachePolicy {
+    private final HttpResponseCacheType descriptor;
+    private final HttpRequestKey requestKey;
+
+    public HttpCachePolicy(String routeName, HttpResponseCacheType descriptor, String[] pathVariableNames) {
+        this.descriptor = descriptor;
+        this.requestKey = new HttpRequestKey(routeName, descriptor.getKeys(), descriptor.getVaryHeaders(), pathVariableNames);
+        if(descriptor.getTtl() <= 0) {
+            throw new IllegalArgumentException("Cache ttl of route [" + routeName + "] must be positive.");
+        }
+        if(descriptor.getMaxSize() <= 0) {
+            throw new IllegalArgumentException("Cache max-size of route [" + routeName + "] must be positive.");
+        }
+    }
+
+    @Override
+    public long getTtl() {
+        return descriptor.getTtl();
+    }
+
+    @Override
+    public long getMaxSize() {
+        return descriptor.getMaxSize();
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return descriptor.isOffHeap();
+    }
+
+    @Override
+    public String getInvalidationSource() {
+        String source = descriptor.getInvalidationSource();
+        return source == null || source.isBlank() ? null : source.trim();
+    }
+
+    @Override
+    public String createKey(Exchange exchange) {
+        return requestKey.create(exchange);
+    }
+}
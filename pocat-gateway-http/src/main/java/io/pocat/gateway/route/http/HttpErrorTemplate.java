@@ -12,24 +12,14 @@ import java.util.stream.Collectors;
 
 public class HttpErrorTemplate implements ErrorTemplate {
     private final HttpErrorTemplateType descriptor;
-    private final Map<String, HttpResponseFormat> formats = new HashMap<>();
+    private final Map<String, CompiledResponseFormat> formats = new HashMap<>();
 
     public HttpErrorTemplate(HttpErrorTemplateType descriptor) {
         this.descriptor = descriptor;
 
         for(HttpResponseFormatType respFormat:descriptor.getResponseFormats()) {
             Map<String,String>responseHeaders = respFormat.getResponseHeaders().stream().collect(Collectors.toMap(HttpResponseHeaderType::getName, HttpResponseHeaderType::getValue));
-            formats.put(respFormat.getContentType(), new HttpResponseFormat() {
-                @Override
-                public Map<String, String> getResponseHeaders() {
-                    return responseHeaders;
-                }
-
-                @Override
-                public String getResponseBody() {
-                    return respFormat.getResponseBody();
-                }
-            });
+            formats.put(respFormat.getContentType(), new CompiledResponseFormat(responseHeaders, respFormat.getResponseBody()));
         }
     }
 
@@ -46,7 +36,7 @@ public class HttpErrorTemplate implements ErrorTemplate {
         return this.formats.keySet();
     }
 
-    public HttpResponseFormat getResponseFormat(String mimeType) {
+    public CompiledResponseFormat getResponseFormat(String mimeType) {
         return this.formats.get(mimeType);
     }
 }
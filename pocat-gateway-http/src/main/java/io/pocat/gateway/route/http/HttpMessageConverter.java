@@ -1,5 +1,7 @@
 package io.pocat.gateway.route.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.pocat.gateway.connector.http.HttpExchange;
 import io.pocat.gateway.message.MessageDelivery;
 import io.pocat.gateway.connector.Exchange;
@@ -43,7 +45,17 @@ public class HttpMessageConverter implements MessageConverter {
 
             @Override
             public byte[] getPayload() {
-                return httpExchange.getRequestContents();
+                // The only copy of request body, taken at message bus which publishes byte arrays.
+                // Body is retained while copying because expiration may close the exchange meanwhile.
+                ByteBuf body = httpExchange.retainRequestBody();
+                if(body == null) {
+                    throw new IllegalStateException("Exchange [" + httpExchange.getTxId() + "] is already closed");
+                }
+                try {
+                    return ByteBufUtil.getBytes(body);
+                } finally {
+                    body.release();
+                }
             }
         };
     }
@@ -5,12 +5,12 @@ import io.pocat.gateway.route.RouteProcessException;
 import io.pocat.gateway.connector.Exchange;
 import io.pocat.gateway.connector.http.HttpExchange;
 import io.pocat.gateway.route.ErrorTemplate;
-
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
+import io.pocat.gateway.route.RouteRejectedException;
 
 public class HttpProtocolErrorHandler extends ProtocolErrorHandler {
     private static final int NOT_ACCEPTABLE = 406;
+    private static final int INTERNAL_SERVER_ERROR = 500;
+    private static final String RETRY_AFTER_HEADER_NAME = "Retry-After";
 
     public HttpProtocolErrorHandler() {
 
@@ -23,6 +23,9 @@ public class HttpProtocolErrorHandler extends ProtocolErrorHandler {
     @Override
     public void handleError(Exchange exchange, RouteProcessException e) {
         HttpExchange httpExchange = (HttpExchange) exchange;
+        if(e instanceof RouteRejectedException && ((RouteRejectedException) e).getRetryAfter() > 0) {
+            httpExchange.setResponseHeader(RETRY_AFTER_HEADER_NAME, String.valueOf(((RouteRejectedException) e).getRetryAfter()));
+        }
         HttpErrorTemplate errorTemplate = (HttpErrorTemplate) findErrorTemplate(e.getErrorCode());
         if(errorTemplate == null) {
             writeDefaultErrorResponse(httpExchange, e);
@@ -34,21 +37,12 @@ public class HttpProtocolErrorHandler extends ProtocolErrorHandler {
             httpExchange.setResponseStatus(NOT_ACCEPTABLE);
             return;
         }
-        HttpResponseFormat format = errorTemplate.getResponseFormat(mimeType);
+        CompiledResponseFormat format = errorTemplate.getResponseFormat(mimeType);
         if(format == null) {
             httpExchange.setResponseStatus(NOT_ACCEPTABLE);
             return;
         }
-
-        Map<String, String> headers = format.getResponseHeaders();
-        for(String headerName:headers.keySet()) {
-            String headerValue = headers.get(headerName);
-            String result = replaceVariables(headerValue, httpExchange, e);
-            httpExchange.setResponseHeader(headerName, result);
-        }
-
-        String result = replaceVariables(format.getResponseBody(), httpExchange, e);
-        httpExchange.setResponseContents(result.getBytes(StandardCharsets.UTF_8));
+        format.writeTo(httpExchange, e);
     }
 
     @Override
@@ -58,6 +52,11 @@ public class HttpProtocolErrorHandler extends ProtocolErrorHandler {
 
     @Override
     protected void writeDefaultErrorResponse(Exchange exchange, RouteProcessException e) {
-        ((HttpExchange)exchange).setResponseStatus(500);
+        // Error code is HTTP status code followed by 2 digits. e.g. 50300 is 503
+        int statusCode = e.getErrorCode() / 100;
+        if(statusCode < 400 || statusCode >= 600) {
+            statusCode = INTERNAL_SERVER_ERROR;
+        }
+        ((HttpExchange)exchange).setResponseStatus(statusCode);
     }
 }
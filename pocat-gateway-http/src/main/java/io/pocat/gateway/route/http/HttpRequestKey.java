@@ -0,0 +1,84 @@
+package io.pocat.gateway.route.http;
+
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.http.HttpExchange;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Key of idempotent http request made of its method and selected parts. Only GET and HEAD requests have key,
+ * and they do not share keys since HEAD reply has no contents.
+ * Parts are "path:{name}" path variables and "param:{name}" query params. Without parts, key is the whole path and query.
+ * Values of selected headers are always appended.
+ */
+class HttpRequestKey {
+    private static final String PATH_VARIABLE_PREFIX = "path:";
+    private static final String PARAM_PREFIX = "param:";
+    private static final char SEPARATOR = '\u0000';
+
+    // attribute names of path variables, or null for query params
+    private final String[] keyAttrNames;
+    private final String[] keyParamNames;
+    private final String[] headers;
+
+    HttpRequestKey(String routeName, List<String> keys, List<String> headers, String[] pathVariableNames) {
+        keys = keys == null ? Collections.emptyList() : keys;
+        this.keyAttrNames = new String[keys.size()];
+        this.keyParamNames = new String[keys.size()];
+        for(int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i).trim();
+            if(key.startsWith(PATH_VARIABLE_PREFIX)) {
+                String varName = key.substring(PATH_VARIABLE_PREFIX.length());
+                if(!Arrays.asList(pathVariableNames).contains(varName)) {
+                    throw new IllegalArgumentException("Key [" + key + "] of route [" + routeName + "] is not a path variable.");
+                }
+                keyAttrNames[i] = key;
+            } else if(key.startsWith(PARAM_PREFIX)) {
+                keyParamNames[i] = key.substring(PARAM_PREFIX.length());
+            } else {
+                throw new IllegalArgumentException("Invalid key [" + key + "] of route [" + routeName + "].");
+            }
+        }
+        this.headers = headers == null ? new String[0] : headers.toArray(new String[0]);
+    }
+
+    String create(Exchange exchange) {
+        if(!(exchange instanceof HttpExchange)) {
+            return null;
+        }
+        HttpExchange httpExchange = (HttpExchange) exchange;
+        String method = httpExchange.getRequestMethod();
+        if(!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(64);
+        key.append(method.toUpperCase()).append(SEPARATOR);
+        if(keyAttrNames.length == 0) {
+            key.append(httpExchange.getRequestPath());
+            String query = httpExchange.getQueryString();
+            if(query != null && !query.isEmpty()) {
+                key.append('?').append(query);
+            }
+        } else {
+            for(int i = 0; i < keyAttrNames.length; i++) {
+                Object value = keyAttrNames[i] != null ? httpExchange.getAttribute(keyAttrNames[i]) : httpExchange.getRequestParam(keyParamNames[i]);
+                if(i > 0) {
+                    key.append(SEPARATOR);
+                }
+                if(value != null) {
+                    key.append(value);
+                }
+            }
+        }
+        for(String header:headers) {
+            String value = httpExchange.getRequestHeader(header);
+            key.append(SEPARATOR);
+            if(value != null) {
+                key.append(value);
+            }
+        }
+        return key.toString();
+    }
+}
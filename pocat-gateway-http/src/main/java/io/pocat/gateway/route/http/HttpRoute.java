@@ -9,21 +9,39 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class HttpRoute implements Route {
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{([^/]*)}");
+    private static final String PATH_DELIMITER = "/";
+    private static final String SINGLE_LEVEL_WILDCARD = "*";
+    private static final String MULTIPLE_LEVEL_WILDCARD = "#";
+    private static final String PATH_VARIABLE_PREFIX = "path:";
 
     private final HttpRouteType descriptor;
+    private final ExecutionMode executionMode;
+    private final HttpCachePolicy cachePolicy;
+    private final CoalescingPolicy coalescingPolicy;
+    private final HttpStreamingPolicy streamingPolicy;
     private String[] pathVariableNames;
-    private Pattern pathPattern;
+    private String[] pathVariableAttrNames;
     private String wildcardPath;
 
     public HttpRoute(HttpRouteType descriptor) {
         this.descriptor = descriptor;
-        buildPattern(descriptor);
+        this.executionMode = parseExecutionMode(descriptor.getExecutionMode());
+        buildWildcardPath(descriptor);
+        this.cachePolicy = descriptor.getCache() == null ? null : new HttpCachePolicy(descriptor.getName(), descriptor.getCache(), pathVariableNames);
+        if(descriptor.getCoalescing() == null) {
+            this.coalescingPolicy = null;
+        } else {
+            HttpRequestKey requestKey = new HttpRequestKey(descriptor.getName(), descriptor.getCoalescing().getKeys(), descriptor.getCoalescing().getHeaders(), pathVariableNames);
+            this.coalescingPolicy = requestKey::create;
+        }
+        this.streamingPolicy = descriptor.getStreaming() == null ? null : new HttpStreamingPolicy(descriptor.getName(), descriptor.getStreaming());
+        if(streamingPolicy != null && (cachePolicy != null || coalescingPolicy != null)) {
+            // Both share one reply message between requests, and a streamed reply is not one message
+            throw new IllegalArgumentException("Streaming route [" + descriptor.getName() + "] cannot have cache or coalescing.");
+        }
     }
 
     @Override
@@ -36,6 +54,36 @@ public class HttpRoute implements Route {
         return descriptor.getExpireIn();
     }
 
+    @Override
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return descriptor.getMaxConcurrency();
+    }
+
+    @Override
+    public int getMaxQueue() {
+        return descriptor.getMaxQueue();
+    }
+
+    @Override
+    public ResponseCachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    @Override
+    public CoalescingPolicy getCoalescingPolicy() {
+        return coalescingPolicy;
+    }
+
+    @Override
+    public StreamingPolicy getStreamingPolicy() {
+        return streamingPolicy;
+    }
+
     public int getSuccessCode() {
         return descriptor.getSuccessCode();
     }
@@ -52,26 +100,24 @@ public class HttpRoute implements Route {
         return wildcardPath;
     }
 
-    @Override
-    public List<RouteTask> getBeforeFilterTasks() {
-        return Collections.singletonList((exchange) -> {
-            if(!(exchange instanceof HttpExchange)) {
-                throw new InvalidProtocolException("HTTP");
-            }
-            HttpExchange httpExchange = (HttpExchange) exchange;
-            Matcher matcher = pathPattern.matcher(httpExchange.getRequestPath());
-            if(matcher.matches()) {
-                for(int i = 0; i < getPathVariableNames().length; i++) {
-                    String pathVarValue = matcher.group(i+1);
-                    exchange.setAttribute("path:" + getPathVariableNames()[i], pathVarValue);
-                }
-                httpExchange.setResponseStatus(getSuccessCode());
-            }
-        });
+    public String[] getPathVariableNames() {
+        return pathVariableNames.clone();
     }
 
-    private String[] getPathVariableNames() {
-        return pathVariableNames;
+    /**
+     * Set path variables captured by router as "path:{name}" attributes of exchange.
+     * @param captures regions of request path matched by wildcards of this route, in order
+     */
+    public void bindPathVariables(HttpExchange exchange, String requestPath, int[] captures) {
+        for(int i = 0; i < pathVariableAttrNames.length; i++) {
+            exchange.setAttribute(pathVariableAttrNames[i], requestPath.substring(captures[i << 1], captures[(i << 1) + 1]));
+        }
+    }
+
+    @Override
+    public List<RouteTask> getBeforeFilterTasks() {
+        // Path variables are bound by router while route is matched
+        return Collections.emptyList();
     }
 
     @Override
@@ -108,31 +154,63 @@ public class HttpRoute implements Route {
         return Collections.emptyList();
     }
 
-    private void buildPattern(HttpRouteType descriptor) {
+    private ExecutionMode parseExecutionMode(String mode) {
+        if(mode == null || mode.isBlank()) {
+            return ExecutionMode.STAGED;
+        }
+        try {
+            return ExecutionMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid execution mode [" + mode + "] of route [" + descriptor.getName() + "]");
+        }
+    }
+
+    private void buildWildcardPath(HttpRouteType descriptor) {
         String path = descriptor.getPath();
-        String wildcardPath = descriptor.getPath();
-        Matcher matcher = VARIABLE_PATTERN.matcher(path);
+        if(path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Path of route [" + descriptor.getName() + "] is empty");
+        }
+        StringBuilder wildcardPath = new StringBuilder(path.length());
         List<String> varNames = new ArrayList<>();
-        while (matcher.find()) {
-            for (int i = 0; i < matcher.groupCount(); i++) {
-                String varName = matcher.group(i + 1);
-                if (varName.endsWith("+")) {
-                    path = path.replace(matcher.group(0), "(.*)");
-                    wildcardPath = wildcardPath.replace(matcher.group(0), "#");
-                    varName = varName.substring(0, varName.length()-1);
+        int pos = 0;
+        while(pos <= path.length()) {
+            int segEnd = path.indexOf(PATH_DELIMITER, pos);
+            if(segEnd < 0) {
+                segEnd = path.length();
+            }
+            String segment = path.substring(pos, segEnd);
+            if(segment.startsWith("{") && segment.endsWith("}")) {
+                String varName = segment.substring(1, segment.length() - 1);
+                if(varName.endsWith("+")) {
+                    varName = varName.substring(0, varName.length() - 1);
+                    wildcardPath.append(MULTIPLE_LEVEL_WILDCARD);
                 } else {
-                    path = path.replace(matcher.group(0), "([^/]*)");
-                    wildcardPath = wildcardPath.replace(matcher.group(0), "*");
+                    wildcardPath.append(SINGLE_LEVEL_WILDCARD);
+                }
+                if(varName.isEmpty() || varName.contains("{") || varName.contains("}")) {
+                    throw new IllegalArgumentException("Invalid path variable [" + segment + "] of route [" + descriptor.getName() + "]");
                 }
                 if(varNames.contains(varName)) {
                     throw new IllegalArgumentException("Duplicate path variable name [" + varName + "]");
                 }
                 varNames.add(varName);
+            } else if(segment.contains("{") || segment.contains("}")) {
+                // variable must take a whole segment to be matched by path tree
+                throw new IllegalArgumentException("Path variable must be a whole segment [" + segment + "] of route [" + descriptor.getName() + "]");
+            } else {
+                wildcardPath.append(segment);
             }
+            if(segEnd < path.length()) {
+                wildcardPath.append(PATH_DELIMITER);
+            }
+            pos = segEnd + 1;
         }
-        this.wildcardPath = wildcardPath;
-        this.pathPattern = Pattern.compile(path);
+        this.wildcardPath = wildcardPath.toString();
         this.pathVariableNames = varNames.toArray(new String[0]);
+        this.pathVariableAttrNames = new String[pathVariableNames.length];
+        for(int i = 0; i < pathVariableNames.length; i++) {
+            pathVariableAttrNames[i] = PATH_VARIABLE_PREFIX + pathVariableNames[i];
+        }
     }
 
     private static class RouteFilterConfigImpl implements RouteFilterConfig {
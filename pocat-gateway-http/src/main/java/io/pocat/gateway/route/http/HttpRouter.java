@@ -12,8 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class HttpRouter implements ProtocolRouter {
-    private final Map<String, PathTree<String>> routePaths = new HashMap<>();
-    private final Map<String, HttpRoute> routes = new HashMap<>();
+    private final Map<String, PathTree<HttpRoute>> routePaths = new HashMap<>();
 
     @Override
     public void addRoute(Route route) {
@@ -22,14 +21,17 @@ public class HttpRouter implements ProtocolRouter {
         }
         HttpRoute httpRoute = (HttpRoute) route;
         try {
-            routes.put(httpRoute.getName(), httpRoute);
-            PathTree<String> pathTree = routePaths.computeIfAbsent(httpRoute.getMethod(), k->new PathTree<>());
-            pathTree.addItem(httpRoute.getWildcardPath(), httpRoute.getName());
+            PathTree<HttpRoute> pathTree = routePaths.computeIfAbsent(httpRoute.getMethod(), k->new PathTree<>());
+            pathTree.addItem(httpRoute.getWildcardPath(), httpRoute);
         } catch (InvalidPathException e) {
             throw new IllegalArgumentException("Invalid path [" + httpRoute.getWildcardPath() + "]");
         }
     }
 
+    /**
+     * Find route and bind its path variables to exchange in one pass of the path tree.
+     * Literal segment has precedence over "{var}", and "{var}" over "{var+}".
+     */
     @Override
     public Route findRoute(Exchange exchange) throws RouteProcessException {
         if(!(exchange instanceof HttpExchange)) {
@@ -38,19 +40,18 @@ public class HttpRouter implements ProtocolRouter {
 
         HttpExchange httpExchange = (HttpExchange) exchange;
         String requestPath = httpExchange.getRequestPath();
-        PathTree<String> pathTree = routePaths.get(httpExchange.getRequestMethod());
+        PathTree<HttpRoute> pathTree = routePaths.get(httpExchange.getRequestMethod());
         if(pathTree == null) {
             throw new RouteProcessException(40400, "Not found");
         }
         try {
-            String routeName = pathTree.findItem(requestPath);
-            if(routeName == null) {
-                throw new RouteProcessException(40400, "Not found");
-            }
-            HttpRoute route = routes.get(routeName);
+            int[] captures = new int[pathTree.getMaxWildCardNum() << 1];
+            HttpRoute route = pathTree.findItem(requestPath, captures);
             if(route == null) {
                 throw new RouteProcessException(40400, "Not found");
             }
+            route.bindPathVariables(httpExchange, requestPath, captures);
+            httpExchange.setResponseStatus(route.getSuccessCode());
             return route;
         } catch (InvalidPathException e) {
             throw new RouteProcessException(40001, "Invalid request path [" + requestPath + "]");
@@ -0,0 +1,40 @@
+package io.pocat.gateway.route.http;
+
+import io.pocat.gateway.route.StreamingPolicy;
+import io.pocat.gateway.route.http.config.HttpStreamingType;
+
+/**
+ * Streaming of a http route. Request bodies larger than connector read ahead, or without length, are read in chunks
+ * while they arrive. Smaller ones are sliced into chunks of the same size, so upstream sees one form.
+ */
+public class HttpStreamingPolicy implements StreamingPolicy {
+    private final HttpStreamingType descriptor;
+
+    public HttpStreamingPolicy(String routeName, HttpStreamingType descriptor) {
+        this.descriptor = descriptor;
+        if(descriptor.getMaxBodySize() < 0) {
+            throw new IllegalArgumentException("Streaming max-body-size of route [" + routeName + "] must not be negative.");
+        }
+        if(descriptor.getChunkSize() <= 0) {
+            throw new IllegalArgumentException("Streaming chunk-size of route [" + routeName + "] must be positive.");
+        }
+        if(descriptor.getChunkWindow() <= 0) {
+            throw new IllegalArgumentException("Streaming chunk-window of route [" + routeName + "] must be positive.");
+        }
+    }
+
+    @Override
+    public long getMaxBodySize() {
+        return descriptor.getMaxBodySize();
+    }
+
+    @Override
+    public int getChunkSize() {
+        return descriptor.getChunkSize();
+    }
+
+    @Override
+    public int getChunkWindow() {
+        return descriptor.getChunkWindow();
+    }
+}
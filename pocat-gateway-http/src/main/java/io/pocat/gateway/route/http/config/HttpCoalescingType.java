@@ -0,0 +1,31 @@
+package io.pocat.gateway.route.http.config;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+
+import java.util.List;
+
+public class HttpCoalescingType {
+    @JacksonXmlElementWrapper(localName = "keys")
+    @JacksonXmlProperty(localName = "key")
+    private List<String> keys;
+    @JacksonXmlElementWrapper(localName = "headers")
+    @JacksonXmlProperty(localName = "header")
+    private List<String> headers;
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<String> headers) {
+        this.headers = headers;
+    }
+}
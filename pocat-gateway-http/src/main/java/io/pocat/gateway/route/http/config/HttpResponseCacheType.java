@@ -0,0 +1,70 @@
+package io.pocat.gateway.route.http.config;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+
+import java.util.List;
+
+public class HttpResponseCacheType {
+    private long ttl;
+    @JacksonXmlProperty(localName = "max-size")
+    private long maxSize;
+    @JacksonXmlProperty(localName = "off-heap")
+    private boolean offHeap;
+    @JacksonXmlElementWrapper(localName = "keys")
+    @JacksonXmlProperty(localName = "key")
+    private List<String> keys;
+    @JacksonXmlElementWrapper(localName = "vary")
+    @JacksonXmlProperty(localName = "header")
+    private List<String> varyHeaders;
+    @JacksonXmlProperty(localName = "invalidation-source")
+    private String invalidationSource;
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+
+    public List<String> getVaryHeaders() {
+        return varyHeaders;
+    }
+
+    public void setVaryHeaders(List<String> varyHeaders) {
+        this.varyHeaders = varyHeaders;
+    }
+
+    public String getInvalidationSource() {
+        return invalidationSource;
+    }
+
+    public void setInvalidationSource(String invalidationSource) {
+        this.invalidationSource = invalidationSource;
+    }
+}
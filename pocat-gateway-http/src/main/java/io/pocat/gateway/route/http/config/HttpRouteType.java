@@ -15,7 +15,16 @@ public class HttpRouteType {
     private long expireIn;
     @JacksonXmlProperty(localName = "success-code")
     private int successCode;
+    @JacksonXmlProperty(localName = "execution-mode")
+    private String executionMode;
+    @JacksonXmlProperty(localName = "max-concurrency")
+    private int maxConcurrency;
+    @JacksonXmlProperty(localName = "max-queue")
+    private int maxQueue;
     private UpstreamConfigType upstream;
+    private HttpResponseCacheType cache;
+    private HttpCoalescingType coalescing;
+    private HttpStreamingType streaming;
     @JacksonXmlElementWrapper(localName = "request-filters")
     private List<RouteFilterType> requestFilters;
 
@@ -72,6 +81,30 @@ public class HttpRouteType {
         this.successCode = successCode;
     }
 
+    public String getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(String executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public void setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+    }
+
     public UpstreamConfigType getUpstream() {
         return upstream;
     }
@@ -80,6 +113,30 @@ public class HttpRouteType {
         this.upstream = upstream;
     }
 
+    public HttpResponseCacheType getCache() {
+        return cache;
+    }
+
+    public void setCache(HttpResponseCacheType cache) {
+        this.cache = cache;
+    }
+
+    public HttpCoalescingType getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(HttpCoalescingType coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public HttpStreamingType getStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(HttpStreamingType streaming) {
+        this.streaming = streaming;
+    }
+
     public List<RouteFilterType> getRequestFilters() {
         return requestFilters;
     }
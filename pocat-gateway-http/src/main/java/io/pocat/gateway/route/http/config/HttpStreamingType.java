@@ -0,0 +1,39 @@
+package io.pocat.gateway.route.http.config;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+
+public class HttpStreamingType {
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_CHUNK_WINDOW = 4;
+
+    @JacksonXmlProperty(localName = "max-body-size")
+    private long maxBodySize = 0;
+    @JacksonXmlProperty(localName = "chunk-size")
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    @JacksonXmlProperty(localName = "chunk-window")
+    private int chunkWindow = DEFAULT_CHUNK_WINDOW;
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkWindow() {
+        return chunkWindow;
+    }
+
+    public void setChunkWindow(int chunkWindow) {
+        this.chunkWindow = chunkWindow;
+    }
+}
@@ -20,4 +20,9 @@ public class HttpAuthFilter implements RouteFilter {
     public void destroy() {
 
     }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
 }
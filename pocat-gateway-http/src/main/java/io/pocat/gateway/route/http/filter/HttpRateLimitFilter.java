@@ -0,0 +1,250 @@
+package io.pocat.gateway.route.http.filter;
+
+import io.pocat.gateway.connector.Connection;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.route.RouteFilter;
+import io.pocat.gateway.route.RouteFilterContext;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.RouteRejectedException;
+import io.pocat.platform.gateway.MessageConstants;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limit of a route by client ip, request header or path variable.
+ * Bucket is kept as a single theoretical arrival time (GCRA) updated by CAS, so a check takes no lock and allocates nothing.
+ * Buckets of a filter are kept by its name and key, so filters initialized again by route reload go on with the same buckets.
+ * A background thread drops buckets idle longer than idle-timeout.
+ * Over the limit, request is rejected with {@link MessageConstants#TOO_MANY_REQUEST} and Retry-After.
+ *
+ * Init params
+ *   key : "ip", "header:{name}", "path:{name}" or "route". default is "ip"
+ *   rate : requests per second
+ *   burst : requests allowed at once. default is rate
+ *   idle-timeout : milliseconds to keep an idle bucket. default is 60000
+ */
+public class HttpRateLimitFilter implements RouteFilter {
+    private static final String KEY_PARAM_NAME = "key";
+    private static final String RATE_PARAM_NAME = "rate";
+    private static final String BURST_PARAM_NAME = "burst";
+    private static final String IDLE_TIMEOUT_PARAM_NAME = "idle-timeout";
+
+    private static final String IP_KEY = "ip";
+    private static final String ROUTE_KEY = "route";
+    private static final String HEADER_KEY_PREFIX = "header:";
+    private static final String PATH_KEY_PREFIX = "path:";
+    // requests without key share a bucket
+    private static final Object NO_KEY = new Object();
+
+    // Guarded by TABLES
+    private static final Map<String, BucketTable> TABLES = new HashMap<>();
+    private static ScheduledExecutorService sweeper;
+
+    private final LongSupplier nanoClock;
+    private KeyExtractor keyExtractor;
+    private long emissionInterval;
+    private long tolerance;
+    private String tableName;
+    private BucketTable table;
+
+    public HttpRateLimitFilter() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock monotonic time in nanos
+     */
+    HttpRateLimitFilter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void init(RouteFilterContext filterConfig) {
+        String key = filterConfig.getInitParam(KEY_PARAM_NAME);
+        key = key == null ? IP_KEY : key.trim();
+        this.keyExtractor = createKeyExtractor(key);
+
+        double rate = parseDouble(filterConfig, RATE_PARAM_NAME, -1);
+        if(rate <= 0) {
+            throw new IllegalArgumentException("Rate limit filter needs positive [" + RATE_PARAM_NAME + "].");
+        }
+        double burst = parseDouble(filterConfig, BURST_PARAM_NAME, Math.max(rate, 1));
+        if(burst < 1) {
+            throw new IllegalArgumentException("Burst of rate limit filter must be 1 or more.");
+        }
+        this.emissionInterval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.tolerance = (long) (emissionInterval * (burst - 1));
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos((long) parseDouble(filterConfig, IDLE_TIMEOUT_PARAM_NAME, 60000));
+        if(idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout of rate limit filter must be positive.");
+        }
+
+        this.tableName = filterConfig.getName() + "#" + key;
+        this.table = acquireTable(tableName, idleTimeout, nanoClock);
+    }
+
+    private static BucketTable acquireTable(String tableName, long idleTimeout, LongSupplier nanoClock) {
+        synchronized (TABLES) {
+            BucketTable table = TABLES.get(tableName);
+            if(table == null) {
+                table = new BucketTable();
+                if(sweeper == null) {
+                    sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "rate-limit-sweeper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                BucketTable sweptTable = table;
+                table.sweep = sweeper.scheduleWithFixedDelay(() -> sweptTable.evictIdle(nanoClock.getAsLong()), idleTimeout, idleTimeout, TimeUnit.NANOSECONDS);
+                TABLES.put(tableName, table);
+            }
+            table.idleTimeout = idleTimeout;
+            table.refCount++;
+            return table;
+        }
+    }
+
+    private static void releaseTable(String tableName, BucketTable table) {
+        synchronized (TABLES) {
+            if(--table.refCount > 0) {
+                return;
+            }
+            TABLES.remove(tableName, table);
+            table.sweep.cancel(false);
+            table.buckets.clear();
+        }
+    }
+
+    private static double parseDouble(RouteFilterContext filterConfig, String paramName, double defaultValue) {
+        String value = filterConfig.getInitParam(paramName);
+        if(value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid [" + paramName + "] of rate limit filter : " + value);
+        }
+    }
+
+    private static KeyExtractor createKeyExtractor(String key) {
+        if(key.equals(IP_KEY)) {
+            return exchange -> {
+                Connection connection = exchange.getContext() == null ? null : exchange.getContext().getConnection();
+                InetSocketAddress address = connection == null ? null : connection.getRemoteAddress();
+                // InetAddress is kept by socket address. No new key object per request.
+                return address == null ? null : address.getAddress();
+            };
+        } else if(key.equals(ROUTE_KEY)) {
+            return exchange -> NO_KEY;
+        } else if(key.startsWith(HEADER_KEY_PREFIX)) {
+            String headerName = key.substring(HEADER_KEY_PREFIX.length());
+            return exchange -> exchange.getRequestHeader(headerName);
+        } else if(key.startsWith(PATH_KEY_PREFIX)) {
+            // path variables are bound by router as "path:{name}" attributes
+            return exchange -> exchange.getAttribute(key);
+        }
+        throw new IllegalArgumentException("Invalid key [" + key + "] of rate limit filter.");
+    }
+
+    @Override
+    public void doFilter(Exchange exchange) throws RouteProcessException {
+        Object key = keyExtractor.extract(exchange);
+        if(key == null) {
+            key = NO_KEY;
+        }
+        long now = nanoClock.getAsLong();
+        Bucket bucket = table.buckets.get(key);
+        if(bucket == null) {
+            bucket = table.buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        long waitNanos = bucket.acquire(now, emissionInterval, tolerance);
+        if(waitNanos > 0) {
+            long retryAfter = Math.max((waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1), 1);
+            throw new RouteRejectedException(MessageConstants.TOO_MANY_REQUEST, "Too many requests.", retryAfter);
+        }
+    }
+
+    /**
+     * Drop idle buckets now instead of waiting the sweeper.
+     */
+    void evictIdle() {
+        table.evictIdle(nanoClock.getAsLong());
+    }
+
+    int getBucketNum() {
+        return table.buckets.size();
+    }
+
+    /**
+     * Buckets are dropped when the last filter of the same name and key is destroyed.
+     */
+    @Override
+    public void destroy() {
+        if(table != null) {
+            releaseTable(tableName, table);
+            table = null;
+        }
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    private interface KeyExtractor {
+        Object extract(Exchange exchange);
+    }
+
+    private static final class BucketTable {
+        private final Map<Object, Bucket> buckets = new ConcurrentHashMap<>();
+        private volatile long idleTimeout;
+        // Guarded by TABLES
+        private int refCount = 0;
+        private ScheduledFuture<?> sweep;
+
+        void evictIdle(long now) {
+            long timeout = idleTimeout;
+            // bucket is full again long ago
+            buckets.values().removeIf(bucket -> now - bucket.arrivalAt > timeout);
+        }
+    }
+
+    private static final class Bucket {
+        private static final AtomicLongFieldUpdater<Bucket> ARRIVAL_UPDATER = AtomicLongFieldUpdater.newUpdater(Bucket.class, "arrivalAt");
+
+        // theoretical arrival time of next request in nanos
+        private volatile long arrivalAt;
+
+        Bucket(long now) {
+            this.arrivalAt = now;
+        }
+
+        /**
+         * @return 0 if request is allowed, otherwise nanos to wait
+         */
+        long acquire(long now, long emissionInterval, long tolerance) {
+            while(true) {
+                long current = arrivalAt;
+                long base = current - now > 0 ? current : now;
+                long wait = base - now - tolerance;
+                if(wait > 0) {
+                    return wait;
+                }
+                if(ARRIVAL_UPDATER.compareAndSet(this, current, base + emissionInterval)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
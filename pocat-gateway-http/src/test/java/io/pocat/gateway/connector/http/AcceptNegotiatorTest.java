@@ -0,0 +1,67 @@
+package io.pocat.gateway.connector.http;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AcceptNegotiatorTest {
+    private static final Set<String> TYPES = new LinkedHashSet<>(Arrays.asList("application/json", "application/xml", "text/plain"));
+
+    @Test
+    public void testQualityOrder() {
+        assertEquals("application/xml", AcceptNegotiator.negotiate("application/json;q=0.5, application/xml", TYPES));
+        assertEquals("text/plain", AcceptNegotiator.negotiate("application/json; q=0.2, text/plain; q=0.9, application/xml; q=0.4", TYPES));
+        // invalid weight falls back to 1.0
+        assertEquals("application/xml", AcceptNegotiator.negotiate("application/json;q=0.5, application/xml;q=abc", TYPES));
+    }
+
+    @Test
+    public void testWildcards() {
+        assertEquals("application/json", AcceptNegotiator.negotiate(null, TYPES));
+        assertEquals("application/json", AcceptNegotiator.negotiate("", TYPES));
+        assertEquals("application/json", AcceptNegotiator.negotiate("*/*", TYPES));
+        assertEquals("text/plain", AcceptNegotiator.negotiate("text/*, application/*;q=0.8", TYPES));
+        assertEquals("application/json", AcceptNegotiator.negotiate("image/png, application/*;q=0.1", TYPES));
+        assertEquals("application/xml", AcceptNegotiator.negotiate("APPLICATION/XML", TYPES));
+    }
+
+    @Test
+    public void testTiesKeepHeaderOrder() {
+        assertEquals("text/plain", AcceptNegotiator.negotiate("text/plain, application/json", TYPES));
+        assertEquals("application/json", AcceptNegotiator.negotiate("application/json, text/plain", TYPES));
+        assertEquals("application/xml", AcceptNegotiator.negotiate("application/xml;q=0.7, text/plain;q=0.7", TYPES));
+    }
+
+    @Test
+    public void testNotAcceptable() {
+        assertNull(AcceptNegotiator.negotiate("image/png", TYPES));
+        // q=0 excludes the range
+        assertNull(AcceptNegotiator.negotiate("application/json;q=0, application/xml;q=0, text/plain;q=0", TYPES));
+        assertEquals("application/xml", AcceptNegotiator.negotiate("application/json;q=0, application/*", TYPES));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        for(int i = 0; i < 1000; i++) {
+            assertEquals("text/plain", AcceptNegotiator.negotiate("text/plain, application/x-" + i, TYPES));
+        }
+        assertTrue(AcceptNegotiator.cachedAcceptNum() <= 256);
+    }
+
+    @Test
+    public void testHotAcceptStaysCached() {
+        String hot = "application/json, text/plain;q=0.5";
+        for(int i = 0; i < 1000; i++) {
+            assertEquals("application/json", AcceptNegotiator.negotiate(hot, TYPES));
+            assertEquals("text/plain", AcceptNegotiator.negotiate("text/plain, application/x-cold-" + i, TYPES));
+        }
+        assertTrue(AcceptNegotiator.isCached(hot));
+        // cold headers are evicted in order of use
+        assertFalse(AcceptNegotiator.isCached("text/plain, application/x-cold-0"));
+        assertTrue(AcceptNegotiator.isCached("text/plain, application/x-cold-999"));
+    }
+}
@@ -0,0 +1,98 @@
+package io.pocat.gateway.connector.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HttpConnectionHandlerTest {
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+        new HttpConnectionHandler().handleConnection(channel);
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private static HttpExchange exchange() {
+        HttpExchangeBuilder builder = new HttpExchangeBuilder();
+        builder.setRequestMethod("GET");
+        builder.setRequestPath("/users/1");
+        return builder.build();
+    }
+
+    private static ByteBuffer offHeap(byte[] contents) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(contents.length);
+        buffer.put(contents).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private String writeResponse(HttpExchange exchange) {
+        channel.writeOutbound(exchange);
+        channel.runPendingTasks();
+        StringBuilder sb = new StringBuilder();
+        ByteBuf buf;
+        while((buf = channel.readOutbound()) != null) {
+            sb.append(buf.toString(StandardCharsets.ISO_8859_1));
+            buf.release();
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testWriteSharedContentBuffer() {
+        ByteBuffer contents = offHeap("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        // every hit of a cache entry writes the same buffer
+        for(int i = 0; i < 2; i++) {
+            HttpExchange exchange = exchange();
+            exchange.setResponseContentBuffer(contents.duplicate());
+            assertEquals(8, exchange.getResponseContentLength());
+            assertTrue(exchange.getResponseContentBuffer().isDirect());
+
+            String response = writeResponse(exchange);
+            assertTrue(response, response.startsWith("HTTP/1.1 200 OK"));
+            assertTrue(response, response.contains("content-length: 8"));
+            assertTrue(response, response.endsWith("\r\n\r\n{\"id\":1}"));
+        }
+        assertEquals(8, contents.remaining());
+    }
+
+    @Test
+    public void testWriteLargeContentBufferInChunks() {
+        byte[] bytes = new byte[100 * 1024];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        HttpExchange exchange = exchange();
+        exchange.setResponseContentBuffer(offHeap(bytes));
+
+        String response = writeResponse(exchange);
+        assertTrue(response, response.contains("content-length: " + bytes.length));
+        assertTrue(response.endsWith("\r\n\r\n" + new String(bytes, StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void testReadContentBufferTakesCopy() {
+        ByteBuffer contents = offHeap("cached".getBytes(StandardCharsets.UTF_8));
+        HttpExchange exchange = exchange();
+        exchange.setResponseContentBuffer(contents);
+
+        // e.g. response filter which rewrites body
+        byte[] read = exchange.getResponseContents();
+        read[0] = 'C';
+        String response = writeResponse(exchange);
+        assertTrue(response, response.endsWith("\r\n\r\nCached"));
+        assertEquals('c', contents.get(0));
+    }
+}
@@ -0,0 +1,243 @@
+package io.pocat.gateway.connector.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.pocat.gateway.connector.RequestBodyStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class HttpRequestBodyStreamTest {
+    private EmbeddedChannel channel;
+    private final TaskQueue executor = new TaskQueue();
+    private final RecordingHandler handler = new RecordingHandler();
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteBuf buf(String content) {
+        return Unpooled.copiedBuffer(content, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReadDeliversBufferedAndArrivingChunks() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 5, 16);
+        ByteBuf first = buf("abc");
+        // read ahead while route is not decided
+        stream.offer(first, false);
+        assertTrue(handler.chunks.isEmpty());
+
+        stream.read(2, 2, Runnable::run, handler);
+        assertEquals(Arrays.asList("0:ab:false"), handler.chunks);
+        ByteBuf second = buf("de");
+        stream.offer(second, true);
+        assertEquals(Arrays.asList("0:ab:false", "1:cd:false", "2:e:true"), handler.chunks);
+        assertTrue(handler.errors.isEmpty());
+        assertEquals(5, stream.getReceivedBytes());
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+
+        try {
+            stream.read(2, 2, Runnable::run, handler);
+            fail("Read body must not be read again");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testAggregate() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 4, 16);
+        List<ByteBuf> bodies = new ArrayList<>();
+        List<String> completed = new ArrayList<>();
+        stream.setBodyTarget(bodies::add);
+        stream.offer(buf("ab"), false);
+
+        stream.aggregate(executor, () -> completed.add("done"), e -> fail("Body must be completed"));
+        assertTrue(bodies.isEmpty());
+        stream.offer(buf("cd"), true);
+        assertEquals(1, bodies.size());
+        assertEquals("abcd", bodies.get(0).toString(StandardCharsets.UTF_8));
+        // completion runs on executor
+        assertTrue(completed.isEmpty());
+        executor.runAll();
+        assertEquals(Arrays.asList("done"), completed);
+        bodies.get(0).release();
+    }
+
+    @Test
+    public void testAggregateCompletedBody() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 2, 16);
+        List<ByteBuf> bodies = new ArrayList<>();
+        stream.setBodyTarget(bodies::add);
+        stream.offer(buf("ab"), true);
+
+        stream.aggregate(Runnable::run, () -> {}, e -> fail("Body must be completed"));
+        assertEquals(1, bodies.size());
+        assertEquals("ab", bodies.get(0).toString(StandardCharsets.UTF_8));
+        bodies.get(0).release();
+    }
+
+    @Test
+    public void testFailWhileAggregating() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 4, 16);
+        List<Throwable> errors = new ArrayList<>();
+        stream.setBodyTarget(body -> fail("Failed body must not be kept"));
+        ByteBuf first = buf("ab");
+        stream.offer(first, false);
+        stream.aggregate(Runnable::run, () -> fail("Failed body must not be completed"), errors::add);
+
+        IllegalStateException cause = new IllegalStateException("Connection is closed");
+        stream.fail(cause);
+        assertEquals(Arrays.asList(cause), errors);
+        assertEquals(0, first.refCnt());
+    }
+
+    @Test
+    public void testPauseAndResumeAtWindowLimit() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 16, 4);
+        // read ahead limit
+        stream.offer(buf("abcd"), false);
+        assertFalse(channel.config().isAutoRead());
+
+        // window of reader is larger than read ahead
+        stream.read(2, 4, executor, handler);
+        assertTrue(channel.config().isAutoRead());
+        stream.offer(buf("efgh"), false);
+        assertFalse(channel.config().isAutoRead());
+
+        // taking a chunk goes below the window
+        executor.runAll();
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(Arrays.asList("0:ab:false", "1:cd:false", "2:ef:false", "3:gh:false"), handler.chunks);
+        stream.abort();
+    }
+
+    @Test
+    public void testFailDuringDrain() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 8, 16);
+        stream.read(2, 2, executor, handler);
+        ByteBuf content = buf("abcd");
+        stream.offer(content, false);
+        // drain is queued on executor
+
+        IllegalStateException cause = new IllegalStateException("Connection is closed");
+        stream.fail(cause);
+        assertEquals(0, content.refCnt());
+        ByteBuf late = buf("ef");
+        stream.offer(late, false);
+        assertEquals(0, late.refCnt());
+
+        executor.runAll();
+        assertTrue(handler.chunks.isEmpty());
+        assertEquals(Arrays.asList(cause), handler.errors);
+    }
+
+    @Test
+    public void testChunkHandlerFailureAbortsStream() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 8, 16);
+        Exception cause = new Exception("Upstream is closed");
+        handler.failure = cause;
+        ByteBuf content = buf("abcd");
+        stream.offer(content, false);
+        stream.read(2, 2, Runnable::run, handler);
+        assertEquals(Arrays.asList(cause), handler.errors);
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void testAbortReleasesBuffers() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 16, 4);
+        ByteBuf first = buf("ab");
+        ByteBuf second = buf("cd");
+        stream.offer(first, false);
+        stream.offer(second, false);
+        assertFalse(channel.config().isAutoRead());
+
+        stream.abort();
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        // rest of body is read and dropped
+        assertTrue(channel.config().isAutoRead());
+        ByteBuf late = buf("ef");
+        stream.offer(late, false);
+        assertEquals(0, late.refCnt());
+
+        try {
+            stream.aggregate(Runnable::run, () -> {}, e -> {});
+            fail("Aborted body must not be aggregated");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testRejectedExecution() {
+        HttpRequestBodyStream stream = new HttpRequestBodyStream(channel, 16, 2);
+        ByteBuf content = buf("ab");
+        stream.offer(content, false);
+        assertFalse(channel.config().isAutoRead());
+
+        stream.read(2, 1, task -> {
+            throw new RejectedExecutionException("Executor is shut down");
+        }, handler);
+        assertEquals(1, handler.errors.size());
+        assertTrue(handler.errors.get(0) instanceof RejectedExecutionException);
+        assertEquals(0, content.refCnt());
+        assertTrue(channel.config().isAutoRead());
+        ByteBuf late = buf("cd");
+        stream.offer(late, false);
+        assertEquals(0, late.refCnt());
+    }
+
+    private static class TaskQueue implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        private void runAll() {
+            Runnable task;
+            while((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static class RecordingHandler implements RequestBodyStream.ChunkHandler {
+        private final List<String> chunks = new ArrayList<>();
+        private final List<Throwable> errors = new ArrayList<>();
+        private Exception failure;
+
+        @Override
+        public void onChunk(byte[] chunk, int seq, boolean last) throws Exception {
+            if(failure != null) {
+                throw failure;
+            }
+            chunks.add(seq + ":" + new String(chunk, StandardCharsets.UTF_8) + ":" + last);
+        }
+
+        @Override
+        public void onError(Throwable cause) {
+            errors.add(cause);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.pocat.gateway.route.http;
+
+import io.pocat.gateway.route.http.config.HttpResponseCacheType;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class HttpCachePolicyTest {
+    private static HttpCachePolicy createPolicy(String[] keys, String[] varyHeaders) {
+        HttpResponseCacheType descriptor = new HttpResponseCacheType();
+        descriptor.setTtl(1000);
+        descriptor.setMaxSize(1024);
+        if(keys != null) {
+            descriptor.setKeys(Arrays.asList(keys));
+        }
+        if(varyHeaders != null) {
+            descriptor.setVaryHeaders(Arrays.asList(varyHeaders));
+        }
+        return new HttpCachePolicy("route1", descriptor, new String[] {"id"});
+    }
+
+    @Test
+    public void testOnlyGetAndHeadAreCached() {
+        HttpCachePolicy policy = createPolicy(null, null);
+        assertNotNull(policy.createKey(new MockHttpExchange("GET", "/users/1")));
+        assertNotNull(policy.createKey(new MockHttpExchange("HEAD", "/users/1")));
+        assertNull(policy.createKey(new MockHttpExchange("POST", "/users/1")));
+        assertNull(policy.createKey(new MockHttpExchange("DELETE", "/users/1")));
+    }
+
+    @Test
+    public void testKeyHasMethod() {
+        HttpCachePolicy policy = createPolicy(null, null);
+        // HEAD reply has no contents, so it must not be served to GET
+        assertFalse(policy.createKey(new MockHttpExchange("GET", "/users/1")).equals(policy.createKey(new MockHttpExchange("HEAD", "/users/1"))));
+        assertEquals(policy.createKey(new MockHttpExchange("GET", "/users/1")), policy.createKey(new MockHttpExchange("get", "/users/1")));
+    }
+
+    @Test
+    public void testKeyOfPathAndQuery() {
+        HttpCachePolicy policy = createPolicy(null, null);
+        MockHttpExchange first = new MockHttpExchange("GET", "/users");
+        first.addRequestParam("page", "1");
+        MockHttpExchange second = new MockHttpExchange("GET", "/users");
+        second.addRequestParam("page", "2");
+        assertFalse(policy.createKey(first).equals(policy.createKey(second)));
+        assertFalse(policy.createKey(first).equals(policy.createKey(new MockHttpExchange("GET", "/users"))));
+    }
+
+    @Test
+    public void testKeyOfSelectedParts() {
+        HttpCachePolicy policy = createPolicy(new String[] {"path:id", "param:lang"}, null);
+        MockHttpExchange first = new MockHttpExchange("GET", "/users/1");
+        first.setAttribute("path:id", "1");
+        first.addRequestParam("lang", "en");
+        first.addRequestParam("trace", "a");
+        MockHttpExchange second = new MockHttpExchange("GET", "/users/1");
+        second.setAttribute("path:id", "1");
+        second.addRequestParam("lang", "en");
+        second.addRequestParam("trace", "b");
+        // params which are not key parts are ignored
+        assertEquals(policy.createKey(first), policy.createKey(second));
+
+        MockHttpExchange other = new MockHttpExchange("GET", "/users/2");
+        other.setAttribute("path:id", "2");
+        other.addRequestParam("lang", "en");
+        assertFalse(policy.createKey(first).equals(policy.createKey(other)));
+    }
+
+    @Test
+    public void testVaryHeaders() {
+        HttpCachePolicy policy = createPolicy(null, new String[] {"Accept-Language"});
+        MockHttpExchange english = new MockHttpExchange("GET", "/users/1");
+        english.setRequestHeader("Accept-Language", "en");
+        MockHttpExchange korean = new MockHttpExchange("GET", "/users/1");
+        korean.setRequestHeader("Accept-Language", "ko");
+        MockHttpExchange english2 = new MockHttpExchange("GET", "/users/1");
+        english2.setRequestHeader("Accept-Language", "en");
+        english2.setRequestHeader("User-Agent", "test");
+        assertFalse(policy.createKey(english).equals(policy.createKey(korean)));
+        assertEquals(policy.createKey(english), policy.createKey(english2));
+    }
+
+    @Test
+    public void testInvalidConfig() {
+        try {
+            createPolicy(new String[] {"path:name"}, null);
+            fail("Unknown path variable must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("path:name"));
+        }
+        try {
+            createPolicy(new String[] {"header:name"}, null);
+            fail("Unknown key part must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("header:name"));
+        }
+    }
+}
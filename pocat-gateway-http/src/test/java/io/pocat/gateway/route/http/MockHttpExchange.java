@@ -0,0 +1,181 @@
+package io.pocat.gateway.route.http;
+
+import io.netty.buffer.ByteBuf;
+import io.pocat.gateway.connector.AbstractExchange;
+import io.pocat.gateway.connector.Connection;
+import io.pocat.gateway.connector.Exchange;
+import io.pocat.gateway.connector.ExchangeContext;
+import io.pocat.gateway.connector.http.HttpExchange;
+
+import java.util.*;
+
+public class MockHttpExchange extends AbstractExchange implements HttpExchange {
+    private final String method;
+    private final String path;
+    private final Map<String, String> requestHeaders = new HashMap<>();
+    private final Map<String, List<String>> requestParams = new LinkedHashMap<>();
+    private final Map<String, String> responseHeaders = new HashMap<>();
+    private String queryString;
+    private int responseStatus = 200;
+    private byte[] responseContents;
+
+    public MockHttpExchange(String method, String path) {
+        this.method = method;
+        this.path = path;
+        setContext(new ExchangeContext() {
+            @Override
+            public Connection getConnection() {
+                return null;
+            }
+
+            @Override
+            public void write(Exchange exchange) {
+                // nothing to write
+            }
+        });
+    }
+
+    public void setRequestHeader(String headerName, String headerValue) {
+        requestHeaders.put(headerName, headerValue);
+    }
+
+    public void addRequestParam(String paramName, String paramValue) {
+        requestParams.computeIfAbsent(paramName, name -> new ArrayList<>()).add(paramValue);
+        StringBuilder query = new StringBuilder();
+        for(Map.Entry<String, List<String>> param:requestParams.entrySet()) {
+            for(String value:param.getValue()) {
+                if(query.length() > 0) {
+                    query.append('&');
+                }
+                query.append(param.getKey()).append('=').append(value);
+            }
+        }
+        this.queryString = query.toString();
+    }
+
+    @Override
+    public String getCorrelationId() {
+        return getTxId();
+    }
+
+    @Override
+    public String getRequestPath() {
+        return path;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestHeader(String headerName) {
+        return requestHeaders.get(headerName);
+    }
+
+    @Override
+    public Collection<String> getRequestHeaderNames() {
+        return requestHeaders.keySet();
+    }
+
+    @Override
+    public byte[] getRequestContents() {
+        return new byte[0];
+    }
+
+    @Override
+    public String getRequestParam(String paramName) {
+        List<String> values = requestParams.get(paramName);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getRequestParamNames() {
+        return requestParams.keySet();
+    }
+
+    @Override
+    public List<String> getRequestParams(String paramName) {
+        return requestParams.getOrDefault(paramName, Collections.emptyList());
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public ByteBuf getRequestBody() {
+        return null;
+    }
+
+    @Override
+    public ByteBuf retainRequestBody() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptableMimeType(Set<String> types) {
+        return types.isEmpty() ? null : types.iterator().next();
+    }
+
+    @Override
+    public int getResponseStatus() {
+        return responseStatus;
+    }
+
+    @Override
+    public void setResponseStatus(int status) {
+        this.responseStatus = status;
+    }
+
+    @Override
+    public Set<String> getResponseHeaderNames() {
+        return responseHeaders.keySet();
+    }
+
+    @Override
+    public String getResponseHeader(String headerName) {
+        return responseHeaders.get(headerName);
+    }
+
+    @Override
+    public void setResponseHeader(String headerName, String headerValue) {
+        responseHeaders.put(headerName, headerValue);
+    }
+
+    @Override
+    public byte[] getResponseContents() {
+        return responseContents;
+    }
+
+    @Override
+    public void setResponseContents(byte[] contents) {
+        this.responseContents = contents;
+    }
+
+    @Override
+    public boolean isResponseStreaming() {
+        return false;
+    }
+
+    @Override
+    public boolean markResponseHeadWritten() {
+        return false;
+    }
+
+    @Override
+    public byte[] pollResponseChunk() {
+        return null;
+    }
+
+    @Override
+    public boolean isResponseStreamEnded() {
+        return false;
+    }
+
+    @Override
+    public boolean isResponseStreamAborted() {
+        return false;
+    }
+}
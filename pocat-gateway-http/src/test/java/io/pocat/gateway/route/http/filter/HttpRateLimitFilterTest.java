@@ -0,0 +1,196 @@
+package io.pocat.gateway.route.http.filter;
+
+import io.pocat.gateway.route.RouteFilterContext;
+import io.pocat.gateway.route.RouteProcessException;
+import io.pocat.gateway.route.RouteRejectedException;
+import io.pocat.gateway.route.http.MockHttpExchange;
+import io.pocat.platform.gateway.MessageConstants;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpRateLimitFilterTest {
+    private final long[] now = {TimeUnit.SECONDS.toNanos(100)};
+
+    private HttpRateLimitFilter createFilter(String name, String... params) {
+        Map<String, String> initParams = new HashMap<>();
+        for(int i = 0; i < params.length; i += 2) {
+            initParams.put(params[i], params[i + 1]);
+        }
+        HttpRateLimitFilter filter = new HttpRateLimitFilter(() -> now[0]);
+        filter.init(new RouteFilterContext() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Object getResource(String resourceName) {
+                return null;
+            }
+
+            @Override
+            public Set<String> getInitParamNames() {
+                return Collections.unmodifiableSet(initParams.keySet());
+            }
+
+            @Override
+            public String getInitParam(String paramName) {
+                return initParams.get(paramName);
+            }
+        });
+        return filter;
+    }
+
+    private static MockHttpExchange request(String client) {
+        MockHttpExchange exchange = new MockHttpExchange("GET", "/orders");
+        exchange.setRequestHeader("Client-Id", client);
+        return exchange;
+    }
+
+    private static boolean pass(HttpRateLimitFilter filter, String client) {
+        return retryAfter(filter, client) == 0;
+    }
+
+    /**
+     * @return Retry-After seconds of rejected request, or 0 if request passes
+     */
+    private static long retryAfter(HttpRateLimitFilter filter, String client) {
+        try {
+            filter.doFilter(request(client));
+            return 0;
+        } catch (RouteRejectedException e) {
+            assertEquals(MessageConstants.TOO_MANY_REQUEST, e.getErrorCode());
+            return e.getRetryAfter();
+        } catch (RouteProcessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void advance(long millis) {
+        now[0] += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testRate() {
+        HttpRateLimitFilter filter = createFilter("test/rate", "key", "route", "rate", "2");
+        // burst is rate by default
+        assertTrue(pass(filter, "a"));
+        assertTrue(pass(filter, "a"));
+        assertEquals(1, retryAfter(filter, "a"));
+
+        advance(499);
+        assertFalse(pass(filter, "a"));
+        advance(1);
+        assertTrue(pass(filter, "a"));
+        assertFalse(pass(filter, "a"));
+        filter.destroy();
+    }
+
+    @Test
+    public void testBurst() {
+        HttpRateLimitFilter filter = createFilter("test/burst", "key", "route", "rate", "1", "burst", "5");
+        for(int i = 0; i < 5; i++) {
+            assertTrue(pass(filter, "a"));
+        }
+        assertFalse(pass(filter, "a"));
+
+        // bucket fills at rate, not at once
+        advance(1000);
+        assertTrue(pass(filter, "a"));
+        assertFalse(pass(filter, "a"));
+        advance(10000);
+        for(int i = 0; i < 5; i++) {
+            assertTrue(pass(filter, "a"));
+        }
+        assertFalse(pass(filter, "a"));
+        filter.destroy();
+    }
+
+    @Test
+    public void testRetryAfterRoundsUp() {
+        // one request per 5 seconds
+        HttpRateLimitFilter filter = createFilter("test/retry-after", "key", "route", "rate", "0.2", "burst", "1");
+        assertTrue(pass(filter, "a"));
+        assertEquals(5, retryAfter(filter, "a"));
+        advance(2500);
+        assertEquals(3, retryAfter(filter, "a"));
+        advance(2499);
+        assertEquals(1, retryAfter(filter, "a"));
+        advance(1);
+        assertTrue(pass(filter, "a"));
+        filter.destroy();
+    }
+
+    @Test
+    public void testBucketPerKey() {
+        HttpRateLimitFilter filter = createFilter("test/key", "key", "header:Client-Id", "rate", "1");
+        assertTrue(pass(filter, "a"));
+        assertFalse(pass(filter, "a"));
+        assertTrue(pass(filter, "b"));
+        assertEquals(2, filter.getBucketNum());
+        filter.destroy();
+    }
+
+    @Test
+    public void testBucketsSurviveReload() {
+        HttpRateLimitFilter filter = createFilter("test/reload", "key", "header:Client-Id", "rate", "1");
+        assertTrue(pass(filter, "a"));
+
+        // reload initializes the filter again before the old one is destroyed
+        HttpRateLimitFilter reloaded = createFilter("test/reload", "key", "header:Client-Id", "rate", "1");
+        filter.destroy();
+        assertFalse(pass(reloaded, "a"));
+        reloaded.destroy();
+
+        // buckets are dropped with the last filter
+        HttpRateLimitFilter recreated = createFilter("test/reload", "key", "header:Client-Id", "rate", "1");
+        assertEquals(0, recreated.getBucketNum());
+        assertTrue(pass(recreated, "a"));
+        recreated.destroy();
+    }
+
+    @Test
+    public void testIdleBucketsAreEvicted() {
+        HttpRateLimitFilter filter = createFilter("test/idle", "key", "header:Client-Id", "rate", "1", "idle-timeout", "1000");
+        assertTrue(pass(filter, "a"));
+        advance(500);
+        assertTrue(pass(filter, "b"));
+        advance(1510);
+        filter.evictIdle();
+        // bucket of a is full again for more than idle timeout, b is not yet
+        assertEquals(1, filter.getBucketNum());
+        advance(500);
+        filter.evictIdle();
+        assertEquals(0, filter.getBucketNum());
+        filter.destroy();
+    }
+
+    @Test
+    public void testInvalidParams() {
+        try {
+            createFilter("test/invalid", "key", "route");
+            fail("Missing rate must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("rate"));
+        }
+        try {
+            createFilter("test/invalid", "key", "cookie:id", "rate", "1");
+            fail("Unknown key must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("cookie:id"));
+        }
+        try {
+            createFilter("test/invalid", "rate", "1", "burst", "0.5");
+            fail("Burst below 1 must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("Burst"));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package io.pocat.loadtest;
+
+import io.pocat.loadtest.bus.LoopbackEndpointConnectionFactory;
+import io.pocat.loadtest.service.EchoService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Writes config homes of gateway and service container which talk through loopback endpoint.
+ * Gateway routes GET and POST "/echo" to channel "bench:echo", echo service replies to namespace "reply".
+ */
+public class ConfigGenerator {
+    public static final String ECHO_CHANNEL = "bench:echo";
+    public static final String ECHO_PATH = "/echo";
+
+    private static final String ROUTE_GROUP_NAME = "bench-group";
+    private static final String ECHO_SERVICE_NAME = "echo";
+
+    private static final String GATEWAY_CONFIG_HOME_PROP_NAME = "io.pocat.gateway.config.home";
+    private static final String GATEWAY_ROUTES_HOME_PROP_NAME = "io.pocat.gateway.routes.home";
+    private static final String GATEWAY_CONTEXT_PROVIDER_FACTORY = "io.pocat.platform.gateway.GatewayContextProviderFactory";
+    private static final String CONTAINER_CONFIG_HOME_PROP_NAME = "io.pocat.container.config.home";
+    private static final String CONTAINER_SERVICES_HOME_PROP_NAME = "io.pocat.container.services.home";
+    private static final String CONTAINER_CONTEXT_PROVIDER_FACTORY = "io.pocat.service.ContainerContextProviderFactory";
+    private static final String CONTEXT_PROVIDER_FACTORY_PROP_NAME = "io.pocat.context.provider.factory";
+
+    private final Path home;
+
+    public ConfigGenerator(Path home) {
+        this.home = home;
+    }
+
+    /**
+     * Write config home of echo service container
+     * @param maxWorker worker number of echo service
+     * @return environments to create container context provider
+     */
+    public Map<String, String> writeContainerConfig(int maxWorker) throws IOException {
+        Path configHome = Files.createDirectories(home.resolve("container").resolve("config"));
+        Path servicesHome = Files.createDirectories(home.resolve("container").resolve("services"));
+        write(configHome.resolve("context.xml"), contextLines());
+        write(configHome.resolve("deploy.xml"), Arrays.asList(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>",
+                "<deploys>",
+                "    <deploy>",
+                "        <name>echoDeploy</name>",
+                "        <service-name>" + ECHO_SERVICE_NAME + "</service-name>",
+                "        <service-class>" + EchoService.class.getName() + "</service-class>",
+                "        <max-worker>" + maxWorker + "</max-worker>",
+                "        <listener>",
+                "            <consumer-group>",
+                "                <name>echo</name>",
+                "                <channels>",
+                "                    <channel name=\"" + ECHO_CHANNEL + "\"/>",
+                "                </channels>",
+                "            </consumer-group>",
+                "        </listener>",
+                "        <init-params>",
+                "            <init-param name=\"greeting\" value=\"Hi\"/>",
+                "        </init-params>",
+                "    </deploy>",
+                "</deploys>"
+        ));
+
+        // Deployer needs a library of service. Echo service itself is loaded from class path by parent loader.
+        Path libs = Files.createDirectories(servicesHome.resolve(ECHO_SERVICE_NAME).resolve("libs"));
+        try (OutputStream os = Files.newOutputStream(libs.resolve(ECHO_SERVICE_NAME + ".jar"))) {
+            // empty library
+            new JarOutputStream(os, new Manifest()).close();
+        }
+
+        Map<String, String> env = new HashMap<>();
+        env.put(CONTAINER_CONFIG_HOME_PROP_NAME, configHome.toString());
+        env.put(CONTAINER_SERVICES_HOME_PROP_NAME, servicesHome.toString());
+        env.put(CONTEXT_PROVIDER_FACTORY_PROP_NAME, CONTAINER_CONTEXT_PROVIDER_FACTORY);
+        return env;
+    }
+
+    /**
+     * Write config home of gateway sized to core number.
+     * Every run needs its own home because context providers are cached by environments.
+     * @param runName name of config home
+     * @param cores number of selector threads and stage workers
+     * @param port port of http connector
+     * @return environments to create gateway context provider
+     */
+    public Map<String, String> writeGatewayConfig(String runName, int cores, int port) throws IOException {
+        Path configHome = Files.createDirectories(home.resolve("gateway-" + runName));
+        Path routesHome = Files.createDirectories(configHome.resolve("routes"));
+        write(configHome.resolve("context.xml"), contextLines());
+
+        List<String> lines = new ArrayList<>(Arrays.asList(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>",
+                "<gateway>",
+                "    <name>loadtest</name>",
+                // acceptor and selector event loops borrow threads from worker pool
+                "    <worker-pool-size>" + (cores * 4 + 16) + "</worker-pool-size>",
+                "    <thread-mode>platform</thread-mode>",
+                "    <response-namespace>reply</response-namespace>",
+                "    <stages>"
+        ));
+        for(String stageName:new String[]{"dispatcher-stage", "filter-stage", "upstream-stage", "response-stage"}) {
+            lines.addAll(Arrays.asList(
+                    "        <stage name=\"" + stageName + "\">",
+                    "            <capacity>16384</capacity>",
+                    "            <min-workers>" + cores + "</min-workers>",
+                    "            <max-workers>" + cores * 2 + "</max-workers>",
+                    "            <queue>lock-free</queue>",
+                    "            <overflow-policy>reject</overflow-policy>",
+                    "        </stage>"
+            ));
+        }
+        lines.addAll(Arrays.asList(
+                "    </stages>",
+                "    <services>",
+                "        <service>",
+                "            <name>bench-service</name>",
+                "            <protocol>http</protocol>",
+                "            <route-group>" + ROUTE_GROUP_NAME + "</route-group>",
+                "            <connectors>",
+                "                <connector acceptor=\"1\" selector=\"" + cores + "\">",
+                "                    <name>bench</name>",
+                "                    <port>" + port + "</port>",
+                "                </connector>",
+                "            </connectors>",
+                "        </service>",
+                "    </services>",
+                "</gateway>"
+        ));
+        write(configHome.resolve("gateway-config.xml"), lines);
+
+        write(routesHome.resolve(ROUTE_GROUP_NAME + ".xml"), Arrays.asList(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>",
+                "<http-api-group>",
+                "    <name>" + ROUTE_GROUP_NAME + "</name>",
+                "    <http-error-templates>",
+                "        <http-error-template error-code=\"50400\">",
+                "            <response-code>504</response-code>",
+                "            <response-formats>",
+                "                <response-format content-type=\"application/json\">",
+                "                    <response-body>{\"error-code\":\"${error.code}\", \"error-message\":\"${error.message}\"}</response-body>",
+                "                </response-format>",
+                "            </response-formats>",
+                "        </http-error-template>",
+                "    </http-error-templates>",
+                "</http-api-group>"
+        ));
+        Path groupHome = Files.createDirectories(routesHome.resolve(ROUTE_GROUP_NAME));
+        write(groupHome.resolve("echo-get.xml"), routeLines("echo-get", "GET"));
+        write(groupHome.resolve("echo-post.xml"), routeLines("echo-post", "POST"));
+
+        Map<String, String> env = new HashMap<>();
+        env.put(GATEWAY_CONFIG_HOME_PROP_NAME, configHome.toString());
+        env.put(GATEWAY_ROUTES_HOME_PROP_NAME, routesHome.toString());
+        env.put(CONTEXT_PROVIDER_FACTORY_PROP_NAME, GATEWAY_CONTEXT_PROVIDER_FACTORY);
+        return env;
+    }
+
+    private static List<String> contextLines() {
+        return Arrays.asList(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>",
+                "<context>",
+                "    <endpoints>",
+                "        <endpoint>",
+                "            <name>loopback01</name>",
+                "            <type>" + LoopbackEndpointConnectionFactory.ENDPOINT_TYPE + "</type>",
+                "        </endpoint>",
+                "    </endpoints>",
+                "    <namespaces>",
+                "        <namespace>",
+                "            <name>bench</name>",
+                "            <endpoint-ref>loopback01</endpoint-ref>",
+                "        </namespace>",
+                "        <namespace>",
+                "            <name>reply</name>",
+                "            <endpoint-ref>loopback01</endpoint-ref>",
+                "        </namespace>",
+                "    </namespaces>",
+                // Service container watches resources context, which exists only with a resource in it.
+                // Resources are created on lookup, so this one is never created.
+                "    <resources>",
+                "        <resource>",
+                "            <type>none</type>",
+                "            <name>unused</name>",
+                "        </resource>",
+                "    </resources>",
+                "</context>"
+        );
+    }
+
+    private static List<String> routeLines(String name, String method) {
+        return Arrays.asList(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>",
+                "<http-api>",
+                "    <name>" + name + "</name>",
+                "    <method>" + method + "</method>",
+                "    <path>" + ECHO_PATH + "</path>",
+                "    <expire-in>5000</expire-in>",
+                "    <success-code>200</success-code>",
+                "    <upstream>",
+                "        <channel>" + ECHO_CHANNEL + "</channel>",
+                "    </upstream>",
+                "</http-api>"
+        );
+    }
+
+    private static void write(Path path, List<String> lines) throws IOException {
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+}
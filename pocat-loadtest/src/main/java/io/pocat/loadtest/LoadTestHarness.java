@@ -0,0 +1,149 @@
+package io.pocat.loadtest;
+
+import io.pocat.env.InitialEnvContextProvider;
+import io.pocat.loadtest.bus.LoopbackChannelManager;
+import io.pocat.loadtest.client.LoadResult;
+import io.pocat.loadtest.client.OpenLoopLoadGenerator;
+import io.pocat.platform.gateway.Gateway;
+import io.pocat.service.ServiceContainer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots gateway and echo service container in one JVM, connected by loopback message bus,
+ * and drives gateway with open loop HTTP load.
+ * For every core number, a gateway sized to it is started and loaded with every connection number in turn.
+ * Gateway shares the machine with load generator and service. Pin the process with taskset to get
+ * numbers comparable between machines.
+ *
+ * Options
+ *   --cores=1,2,4          selector threads and stage workers of gateway
+ *   --connections=16,64    concurrent HTTP connections
+ *   --rate=10000           requests per second of all connections
+ *   --duration=30          measured seconds of each run
+ *   --warmup=5             seconds before measuring of each run
+ *   --payload-size=0       size of POST body. GET without body if 0
+ *   --port=18080           port of first gateway. Each gateway listens its own port
+ *   --client-threads=2     event loop threads of load generator
+ *   --out=result.csv       write results as csv as well
+ */
+public class LoadTestHarness {
+    private static final String CSV_HEADER = "cores,connections,target_rate,throughput,p50_ms,p99_ms,p999_ms,max_ms,completed,errors";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] coresList = parseIntList(options.getOrDefault("cores", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int[] connectionsList = parseIntList(options.getOrDefault("connections", "16,64,256"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "10000"));
+        long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "5"));
+        int payloadSize = Integer.parseInt(options.getOrDefault("payload-size", "0"));
+        int basePort = Integer.parseInt(options.getOrDefault("port", "18080"));
+        int clientThreads = Integer.parseInt(options.getOrDefault("client-threads", "2"));
+        String out = options.get("out");
+
+        Path home = Files.createTempDirectory("pocat-loadtest");
+        ConfigGenerator generator = new ConfigGenerator(home);
+        List<String> rows = new ArrayList<>();
+        rows.add(CSV_HEADER);
+
+        ServiceContainer container = new ServiceContainer("loadtest", new InitialEnvContextProvider(generator.writeContainerConfig(256)));
+        container.start();
+        try {
+            if(!LoopbackChannelManager.getInstance().awaitSubscriber(ConfigGenerator.ECHO_CHANNEL, 10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Echo service is not subscribing channel [" + ConfigGenerator.ECHO_CHANNEL + "]");
+            }
+            System.out.println(CSV_HEADER);
+            for(int run = 0; run < coresList.length; run++) {
+                int cores = coresList[run];
+                int port = basePort + run;
+                Gateway gateway = new Gateway(new InitialEnvContextProvider(generator.writeGatewayConfig("cores" + cores + "-" + run, cores, port)));
+                try {
+                    gateway.init();
+                    gateway.start();
+                    for(int connections:connectionsList) {
+                        LoadResult result = OpenLoopLoadGenerator.builder("127.0.0.1", port)
+                                .setPath(ConfigGenerator.ECHO_PATH)
+                                .setConnections(connections)
+                                .setRate(rate)
+                                .setDuration(duration, TimeUnit.SECONDS)
+                                .setWarmup(warmup, TimeUnit.SECONDS)
+                                .setPayloadSize(payloadSize)
+                                .setThreads(clientThreads)
+                                .build()
+                                .run();
+                        String row = toRow(cores, result);
+                        rows.add(row);
+                        System.out.println(row);
+                    }
+                } finally {
+                    gateway.shutdown();
+                }
+            }
+        } finally {
+            container.stop();
+        }
+        long dropped = LoopbackChannelManager.getInstance().getDroppedCount();
+        if(dropped > 0) {
+            System.out.println("Messages dropped without subscriber: " + dropped);
+        }
+        if(out != null) {
+            write(Paths.get(out), rows);
+        }
+        // Service container and message bus leave non daemon threads
+        System.exit(0);
+    }
+
+    private static String toRow(int cores, LoadResult result) {
+        return String.format(Locale.ROOT, "%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%d,%d",
+                cores,
+                result.getConnections(),
+                result.getTargetRate(),
+                result.getThroughput(),
+                result.getLatencyMillis(0.5),
+                result.getLatencyMillis(0.99),
+                result.getLatencyMillis(0.999),
+                result.getMaxLatencyMillis(),
+                result.getCompleted(),
+                result.getErrors());
+    }
+
+    private static void write(Path path, List<String> rows) throws IOException {
+        try (PrintStream ps = new PrintStream(Files.newOutputStream(path))) {
+            for(String row:rows) {
+                ps.println(row);
+            }
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for(String arg:args) {
+            if(!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option [" + arg + "]. Options are --name=value");
+            }
+            int index = arg.indexOf('=');
+            options.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        return options;
+    }
+
+    private static int[] parseIntList(String value) {
+        String[] items = value.split(",");
+        int[] values = new int[items.length];
+        for(int i = 0; i < items.length; i++) {
+            values[i] = Integer.parseInt(items[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,67 @@
+package io.pocat.loadtest.bus;
+
+import io.pocat.platform.messagebus.MessageDeliveryHandler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every consumer group bound to a channel gets each message once.
+ * Consumers subscribed with same group name compete for messages in round robin order.
+ */
+public class LoopbackChannel {
+    private final Map<String, ConsumerGroup> groups = new ConcurrentHashMap<>();
+    private final LongAdder droppedCount = new LongAdder();
+
+    public void publish(String messageSource, Map<String, String> headers, byte[] payload) {
+        if(groups.isEmpty()) {
+            droppedCount.increment();
+            return;
+        }
+        for(ConsumerGroup group:groups.values()) {
+            MessageDeliveryHandler handler = group.next();
+            if(handler == null) {
+                droppedCount.increment();
+                continue;
+            }
+            handler.onDelivery(messageSource, headers, payload);
+        }
+    }
+
+    public void subscribe(String groupName, MessageDeliveryHandler handler) {
+        groups.computeIfAbsent(groupName, name -> new ConsumerGroup()).handlers.add(handler);
+    }
+
+    public void unsubscribe(String groupName, MessageDeliveryHandler handler) {
+        groups.computeIfPresent(groupName, (name, group) -> {
+            group.handlers.remove(handler);
+            return group.handlers.isEmpty() ? null : group;
+        });
+    }
+
+    public boolean hasSubscriber() {
+        return !groups.isEmpty();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private static class ConsumerGroup {
+        private final List<MessageDeliveryHandler> handlers = new CopyOnWriteArrayList<>();
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        private MessageDeliveryHandler next() {
+            // Copy on write list may shrink between size and get
+            Object[] snapshot = handlers.toArray();
+            if(snapshot.length == 0) {
+                return null;
+            }
+            return (MessageDeliveryHandler) snapshot[Math.floorMod(cursor.getAndIncrement(), snapshot.length)];
+        }
+    }
+}
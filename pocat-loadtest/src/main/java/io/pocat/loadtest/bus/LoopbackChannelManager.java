@@ -0,0 +1,42 @@
+package io.pocat.loadtest.bus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class LoopbackChannelManager {
+    private static final LoopbackChannelManager INSTANCE = new LoopbackChannelManager();
+
+    public static LoopbackChannelManager getInstance() {
+        return INSTANCE;
+    }
+    private final Map<String, LoopbackChannel> channelMap = new ConcurrentHashMap<>();
+
+    public LoopbackChannel getChannel(String name) {
+        return channelMap.computeIfAbsent(name, s -> new LoopbackChannel());
+    }
+
+    /**
+     * Wait until a consumer subscribes to channel. Services subscribe asynchronously after container start.
+     * @return true if channel has a subscriber
+     */
+    public boolean awaitSubscriber(String name, long timeout, TimeUnit unit) throws InterruptedException {
+        LoopbackChannel channel = getChannel(name);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(!channel.hasSubscriber()) {
+            if(System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public long getDroppedCount() {
+        long dropped = 0;
+        for(LoopbackChannel channel:channelMap.values()) {
+            dropped += channel.getDroppedCount();
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,31 @@
+package io.pocat.loadtest.bus;
+
+import io.pocat.platform.messagebus.EndpointConnection;
+import io.pocat.platform.messagebus.EndpointConsumerGroup;
+import io.pocat.platform.messagebus.EndpointContext;
+import io.pocat.platform.messagebus.EndpointPublisher;
+
+import java.util.concurrent.ExecutorService;
+
+public class LoopbackEndpointConnection implements EndpointConnection {
+    private final EndpointContext descriptor;
+
+    public LoopbackEndpointConnection(EndpointContext descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    @Override
+    public String getEndpointName() {
+        return descriptor.getName();
+    }
+
+    @Override
+    public EndpointPublisher createPublisher(ExecutorService executor) {
+        return new LoopbackEndpointPublisher(executor);
+    }
+
+    @Override
+    public EndpointConsumerGroup createConsumerGroup(String groupName, ExecutorService executor) {
+        return new LoopbackEndpointConsumerGroup(groupName);
+    }
+}
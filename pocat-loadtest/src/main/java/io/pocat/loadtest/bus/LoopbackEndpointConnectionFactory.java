@@ -0,0 +1,22 @@
+package io.pocat.loadtest.bus;
+
+import io.pocat.platform.messagebus.EndpointConnection;
+import io.pocat.platform.messagebus.EndpointConnectionFactory;
+import io.pocat.platform.messagebus.EndpointContext;
+
+/**
+ * Endpoint of type "loopback" delivers messages between gateway and services in the same JVM.
+ */
+public class LoopbackEndpointConnectionFactory implements EndpointConnectionFactory {
+    public static final String ENDPOINT_TYPE = "loopback";
+
+    @Override
+    public EndpointConnection createConnection(EndpointContext descriptor) {
+        return new LoopbackEndpointConnection(descriptor);
+    }
+
+    @Override
+    public boolean isSupportedEndpointType(String endpointType) {
+        return ENDPOINT_TYPE.equalsIgnoreCase(endpointType);
+    }
+}
@@ -0,0 +1,42 @@
+package io.pocat.loadtest.bus;
+
+import io.pocat.platform.messagebus.EndpointConsumerGroup;
+import io.pocat.platform.messagebus.MessageDeliveryHandler;
+import io.pocat.platform.messagebus.MessageSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoopbackEndpointConsumerGroup implements EndpointConsumerGroup {
+    private final String groupName;
+    private final List<String> channels = new ArrayList<>();
+    private MessageDeliveryHandler handler;
+
+    public LoopbackEndpointConsumerGroup(String groupName) {
+        this.groupName = groupName;
+    }
+
+    @Override
+    public void bind(MessageSource messageSource) {
+        channels.add(messageSource.getName());
+    }
+
+    @Override
+    public void subscribe(MessageDeliveryHandler handler) {
+        this.handler = handler;
+        for(String channel:channels) {
+            LoopbackChannelManager.getInstance().getChannel(channel).subscribe(groupName, handler);
+        }
+    }
+
+    @Override
+    public void close() {
+        if(handler == null) {
+            return;
+        }
+        for(String channel:channels) {
+            LoopbackChannelManager.getInstance().getChannel(channel).unsubscribe(groupName, handler);
+        }
+        handler = null;
+    }
+}
@@ -0,0 +1,29 @@
+package io.pocat.loadtest.bus;
+
+import io.pocat.platform.messagebus.Destination;
+import io.pocat.platform.messagebus.EndpointPublisher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public class LoopbackEndpointPublisher implements EndpointPublisher {
+    private final ExecutorService executor;
+
+    public LoopbackEndpointPublisher(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void publish(Destination destination, Map<String, String> headers, byte[] payload) {
+        String name = destination.getName();
+        // Publisher may reuse header map after publish, as it would do with a real broker
+        Map<String, String> deliveredHeaders = new HashMap<>(headers);
+        executor.execute(() -> LoopbackChannelManager.getInstance().getChannel(name).publish(name, deliveredHeaders, payload));
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
@@ -0,0 +1,54 @@
+package io.pocat.loadtest.client;
+
+import io.pocat.platform.gateway.metrics.Histogram;
+
+/**
+ * Result of a load run. Latencies are measured from the time a request was scheduled to be sent.
+ */
+public class LoadResult {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final int connections;
+    private final int targetRate;
+    private final long completed;
+    private final long errors;
+    private final long durationNanos;
+    private final Histogram latency;
+
+    LoadResult(int connections, int targetRate, long completed, long errors, long durationNanos, Histogram latency) {
+        this.connections = connections;
+        this.targetRate = targetRate;
+        this.completed = completed;
+        this.errors = errors;
+        this.durationNanos = durationNanos;
+        this.latency = latency;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getThroughput() {
+        return completed * 1e9 / durationNanos;
+    }
+
+    public double getLatencyMillis(double quantile) {
+        return latency.getValueAtQuantile(quantile) / NANOS_PER_MILLI;
+    }
+
+    public double getMaxLatencyMillis() {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,321 @@
+package io.pocat.loadtest.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.pocat.platform.gateway.metrics.Histogram;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends requests at a constant rate regardless of how fast responses come back.
+ * Every connection has its own send schedule. A request which cannot be sent on schedule because
+ * the previous one is not answered yet waits, and its latency is counted from the scheduled time.
+ * So a stall of server shows up in latency of all requests scheduled during the stall.
+ */
+public class OpenLoopLoadGenerator {
+    private static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+    private static final long CONNECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long CONNECT_RETRY_MILLIS = 100;
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private final String path;
+    private final int connections;
+    private final int rate;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final byte[] payload;
+    private final int threads;
+
+    private final Histogram latency = new Histogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private long measureStart;
+    private long measureEnd;
+    private CountDownLatch drained;
+
+    private OpenLoopLoadGenerator(Builder builder) {
+        this.host = builder.host;
+        this.port = builder.port;
+        this.path = builder.path;
+        this.connections = builder.connections;
+        this.rate = builder.rate;
+        this.durationNanos = builder.durationNanos;
+        this.warmupNanos = builder.warmupNanos;
+        this.payload = new byte[builder.payloadSize];
+        Arrays.fill(this.payload, (byte) 'a');
+        this.threads = builder.threads;
+    }
+
+    public static Builder builder(String host, int port) {
+        return new Builder(host, port);
+    }
+
+    public LoadResult run() throws IOException, InterruptedException {
+        EventLoopGroup group = new NioEventLoopGroup(threads);
+        List<LoadConnection> loadConnections = new ArrayList<>();
+        try {
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.TCP_NODELAY, true);
+            for(int i = 0; i < connections; i++) {
+                LoadConnection loadConnection = new LoadConnection(i);
+                bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpClientCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+                        ch.pipeline().addLast(loadConnection);
+                    }
+                });
+                loadConnection.channel = connect(bootstrap);
+                loadConnections.add(loadConnection);
+            }
+
+            long intervalNanos = (long) (connections * 1e9 / rate);
+            long start = System.nanoTime();
+            this.measureStart = start + warmupNanos;
+            this.measureEnd = measureStart + durationNanos;
+            this.drained = new CountDownLatch(connections);
+            for(LoadConnection loadConnection:loadConnections) {
+                // Spread connections over an interval so total rate is smooth
+                long firstSchedule = start + intervalNanos * loadConnection.index / connections;
+                loadConnection.channel.eventLoop().execute(() -> loadConnection.start(firstSchedule, intervalNanos));
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(measureEnd - System.nanoTime()) + DRAIN_TIMEOUT_MILLIS;
+            drained.await(Math.max(remainingMillis, 0), TimeUnit.MILLISECONDS);
+        } finally {
+            // Requests not answered until now count as errors when channel becomes inactive
+            for(LoadConnection loadConnection:loadConnections) {
+                loadConnection.channel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+        return new LoadResult(connections, rate, completed.sum(), errors.sum(), durationNanos, latency);
+    }
+
+    private Channel connect(Bootstrap bootstrap) throws IOException, InterruptedException {
+        // Gateway binds its connectors asynchronously after start
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while(true) {
+            ChannelFuture future = bootstrap.connect(host, port).awaitUninterruptibly();
+            if(future.isSuccess()) {
+                return future.channel();
+            }
+            if(System.nanoTime() - deadline > 0) {
+                throw new IOException("Failed to connect to [" + host + ":" + port + "]", future.cause());
+            }
+            Thread.sleep(CONNECT_RETRY_MILLIS);
+        }
+    }
+
+    private boolean isMeasured(long schedule) {
+        return schedule - measureStart >= 0 && schedule - measureEnd < 0;
+    }
+
+    /**
+     * All fields are accessed on event loop of the connection.
+     */
+    private class LoadConnection extends SimpleChannelInboundHandler<FullHttpResponse> {
+        private final int index;
+        private final String uri;
+        // Scheduled send time of requests which are not answered yet. Head is in flight.
+        private final ArrayDeque<Long> pending = new ArrayDeque<>();
+        private Channel channel;
+        private long intervalNanos;
+        private long nextSchedule;
+        private boolean inFlight = false;
+        private boolean finished = false;
+
+        private LoadConnection(int index) {
+            this.index = index;
+            this.uri = payload.length == 0 ? path + "?name=user" + index : path;
+        }
+
+        private void start(long firstSchedule, long intervalNanos) {
+            this.intervalNanos = intervalNanos;
+            this.nextSchedule = firstSchedule;
+            tick();
+        }
+
+        private void tick() {
+            long now = System.nanoTime();
+            while(nextSchedule - now <= 0 && nextSchedule - measureEnd < 0) {
+                pending.add(nextSchedule);
+                nextSchedule += intervalNanos;
+            }
+            if(!inFlight && !pending.isEmpty()) {
+                send();
+            }
+            if(nextSchedule - measureEnd < 0) {
+                channel.eventLoop().schedule(this::tick, nextSchedule - now, TimeUnit.NANOSECONDS);
+            } else {
+                finishIfDrained();
+            }
+        }
+
+        private void send() {
+            FullHttpRequest request;
+            if(payload.length == 0) {
+                request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+            } else {
+                request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri, Unpooled.wrappedBuffer(payload));
+            }
+            request.headers().set(HttpHeaderNames.HOST, host);
+            request.headers().set(HttpHeaderNames.ACCEPT, HttpHeaderValues.APPLICATION_JSON);
+            request.headers().set(HttpHeaderNames.CONTENT_LENGTH, payload.length);
+            inFlight = true;
+            channel.writeAndFlush(request);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            long now = System.nanoTime();
+            Long schedule = pending.poll();
+            inFlight = false;
+            if(schedule != null && isMeasured(schedule)) {
+                int status = response.status().code();
+                if(status >= 200 && status < 300) {
+                    latency.record(now - schedule);
+                    completed.increment();
+                } else {
+                    errors.increment();
+                }
+            }
+            if(!pending.isEmpty()) {
+                send();
+            } else if(nextSchedule - measureEnd >= 0) {
+                finishIfDrained();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            for(long schedule:pending) {
+                if(isMeasured(schedule)) {
+                    errors.increment();
+                }
+            }
+            pending.clear();
+            // Stop sending on closed connection
+            nextSchedule = measureEnd;
+            finish();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+
+        private void finishIfDrained() {
+            if(pending.isEmpty()) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if(!finished) {
+                finished = true;
+                drained.countDown();
+            }
+        }
+    }
+
+    public static class Builder {
+        private final String host;
+        private final int port;
+        private String path = "/";
+        private int connections = 16;
+        private int rate = 1000;
+        private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+        private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+        private int payloadSize = 0;
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        private Builder(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public Builder setPath(String path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder setConnections(int connections) {
+            if(connections <= 0) {
+                throw new IllegalArgumentException("Connections must be positive.");
+            }
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * @param rate total requests per second of all connections
+         */
+        public Builder setRate(int rate) {
+            if(rate <= 0) {
+                throw new IllegalArgumentException("Rate must be positive.");
+            }
+            this.rate = rate;
+            return this;
+        }
+
+        public Builder setDuration(long duration, TimeUnit unit) {
+            this.durationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder setWarmup(long warmup, TimeUnit unit) {
+            this.warmupNanos = unit.toNanos(warmup);
+            return this;
+        }
+
+        /**
+         * @param payloadSize size of POST body. GET without body if 0
+         */
+        public Builder setPayloadSize(int payloadSize) {
+            this.payloadSize = payloadSize;
+            return this;
+        }
+
+        public Builder setThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public OpenLoopLoadGenerator build() {
+            return new OpenLoopLoadGenerator(this);
+        }
+    }
+}
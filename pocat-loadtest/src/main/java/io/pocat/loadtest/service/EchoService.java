@@ -0,0 +1,33 @@
+package io.pocat.loadtest.service;
+
+import io.pocat.service.MessageExchange;
+import io.pocat.service.Service;
+import io.pocat.service.ServiceConfig;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replies request payload as is. Replies greeting to "name" header as SampleService does if request has no payload.
+ */
+public class EchoService implements Service {
+    private String greeting;
+
+    @Override
+    public void init(ServiceConfig config) {
+        this.greeting = config.getInitParameter("greeting");
+    }
+
+    @Override
+    public void serve(MessageExchange messageExchange) {
+        byte[] payload = messageExchange.getRequestPayload();
+        if(payload == null || payload.length == 0) {
+            payload = (greeting + " " + messageExchange.getRequestHeader("name")).getBytes(StandardCharsets.UTF_8);
+        }
+        messageExchange.setReplyPayload(payload);
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+}
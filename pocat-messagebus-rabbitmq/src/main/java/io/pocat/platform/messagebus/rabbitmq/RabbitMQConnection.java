@@ -22,10 +22,10 @@ import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Wrapper of RabbitMQ {@link com.rabbitmq.client.Connection}
@@ -68,7 +68,12 @@ public class RabbitMQConnection {
     /**
      * List of connection
      */
-    private final List<Connection> connections = new ArrayList<>();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+    /**
+     * Lock to open channel. ReentrantLock does not pin virtual thread while connection is opened
+     */
+    private final ReentrantLock channelLock = new ReentrantLock();
 
     /**
      * Constructor
@@ -119,31 +124,39 @@ public class RabbitMQConnection {
      * @return opened channel; null if channel max
      * @throws IOException if it encounters a problem to open channel.
      */
-    private synchronized Channel createChannel() throws IOException {
-        Channel channel = null;
-        if(channelCount.get() < maxChannel) {
-            for(Connection connection:connections) {
-                // todo check AutoRecovery of rabbitmq library
-                // open channel from current connections
-                channel = connection.createChannel();
-            }
-            while(channel == null && connections.size() < DEFAULT_MAX_CONNECTION) {
-                // open new connection to create channel. while connection size is not max
-                try {
-                    Connection connection = cf.newConnection(this.executor);
-                    connections.add(0, connection);
+    private Channel createChannel() throws IOException {
+        channelLock.lock();
+        try {
+            Channel channel = null;
+            if(channelCount.get() < maxChannel) {
+                for(Connection connection:connections) {
+                    // todo check AutoRecovery of rabbitmq library
+                    // open channel from current connections
                     channel = connection.createChannel();
-                } catch (TimeoutException e) {
-                    throw new IOException(e);
+                    if(channel != null) {
+                        break;
+                    }
+                }
+                while(channel == null && connections.size() < DEFAULT_MAX_CONNECTION) {
+                    // open new connection to create channel. while connection size is not max
+                    try {
+                        Connection connection = cf.newConnection(this.executor);
+                        connections.add(0, connection);
+                        channel = connection.createChannel();
+                    } catch (TimeoutException e) {
+                        throw new IOException(e);
+                    }
+                }
+                if(channel != null) {
+                    // Channel open success.
+                    channelCount.incrementAndGet();
+                    return channel;
                 }
             }
-            if(channel != null) {
-                // Channel open success.
-                channelCount.incrementAndGet();
-                return channel;
-            }
+            return null;
+        } finally {
+            channelLock.unlock();
         }
-        return null;
     }
 
     /**
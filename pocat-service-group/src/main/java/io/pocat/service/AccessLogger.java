@@ -16,68 +16,148 @@
 
 package io.pocat.service;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.logging.*;
+import io.pocat.common.accesslog.AccessLogHandlers;
+import io.pocat.common.accesslog.AsyncAccessLogger;
+import io.pocat.platform.messagebus.MessageBusConnection;
+import io.pocat.platform.messagebus.MessageBusConnectionFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Access logger of service container. Disabled until handlers are configured in logger.xml.
+ */
 public class AccessLogger {
-    private static final Formatter ACCESS_LOG_FORMATTER = new AccessLogFormatter();
-    private final Logger logger;
-    public AccessLogger() {
-        this.logger = initLogger();
-    }
+    public static final String CONSUME_OPERATION = "CONSUME";
+    public static final String REPLY_OPERATION = "REPLY";
+    public static final String PUBLISH_OPERATION = "PUBLISH";
 
-    private Logger initLogger() {
-        Logger logger = Logger.getAnonymousLogger();
-        logger.setUseParentHandlers(false);
-        logger.setLevel(Level.ALL);
-        Handler[] handlers = logger.getHandlers();
-        for(Handler handler:handlers) {
-            logger.removeHandler(handler);
-        }
-        return logger;
-    }
+    public static final int SUCCESS_STATUS = 0;
+    public static final int FAILURE_STATUS = 50000;
+
+    private static final String HANDLER_NODE_PATH = "/logger/access-logger/handler";
+    private static final String TYPE_NODE_PATH = "type";
+    private static final String PARAM_NODE_PATH = "params/param";
+    private static final String CAPACITY_NODE_PATH = "/logger/access-logger/capacity";
 
-    public void addHandler(Handler handler) {
-        handler.setLevel(Level.ALL);
-        handler.setFormatter(ACCESS_LOG_FORMATTER);
-        this.logger.addHandler(handler);
+    private static final AccessLogger INSTANCE = new AccessLogger();
+
+    private volatile AsyncAccessLogger logger;
+    private MessageBusConnection connection;
+
+    public static AccessLogger getInstance() {
+        return INSTANCE;
     }
 
-    public void log(AccessLogRecord record) {
-        this.logger.log(Level.ALL, record.toString());
+    private AccessLogger() {
+
     }
 
-    public static class AccessLogFormatter extends Formatter {
-        @Override
-        public String format(LogRecord record) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(
-                    record.getInstant(), ZoneId.systemDefault());
-            String source;
-            if (record.getSourceClassName() != null) {
-                source = record.getSourceClassName();
-                if (record.getSourceMethodName() != null) {
-                    source += " " + record.getSourceMethodName();
+    /**
+     * Build handlers from logger config and start writer
+     * @param loggerConfig url of logger.xml
+     * @param connectionFactory factory of connection for channel handler
+     * @throws IOException if config cannot be read
+     */
+    synchronized void start(URL loggerConfig, MessageBusConnectionFactory connectionFactory) throws IOException {
+        AsyncAccessLogger.Builder builder = AsyncAccessLogger.builder("service-container");
+        int handlerCount = 0;
+        try (InputStream is = loggerConfig.openStream()) {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(is);
+            Element root = document.getDocumentElement();
+            XPath xPath = XPathFactory.newInstance().newXPath();
+
+            String capacity = ((String) xPath.evaluate(CAPACITY_NODE_PATH, root, XPathConstants.STRING)).trim();
+            if(!capacity.isEmpty()) {
+                builder.setCapacity(Integer.parseInt(capacity));
+            }
+            NodeList handlerNodes = (NodeList) xPath.evaluate(HANDLER_NODE_PATH, root, XPathConstants.NODESET);
+            for(int i = 0; i < handlerNodes.getLength(); i++) {
+                Node handlerNode = handlerNodes.item(i);
+                String type = ((String) xPath.evaluate(TYPE_NODE_PATH, handlerNode, XPathConstants.STRING)).trim();
+                if(type.isEmpty()) {
+                    continue;
+                }
+                Map<String, String> params = new HashMap<>();
+                NodeList paramNodes = (NodeList) xPath.evaluate(PARAM_NODE_PATH, handlerNode, XPathConstants.NODESET);
+                for(int j = 0; j < paramNodes.getLength(); j++) {
+                    NamedNodeMap attributes = paramNodes.item(j).getAttributes();
+                    params.put(attributes.getNamedItem("name").getNodeValue(), attributes.getNamedItem("value").getNodeValue());
                 }
-            } else {
-                source = record.getLoggerName();
+                if(AccessLogHandlers.CHANNEL_TYPE.equalsIgnoreCase(type) && connection == null) {
+                    connection = connectionFactory.newConnection();
+                }
+                builder.addHandler(AccessLogHandlers.create(type, params, connection));
+                handlerCount++;
             }
-            String message = formatMessage(record);
-            String throwable = "";
-            if (record.getThrown() != null) {
-                StringWriter sw = new StringWriter();
-                PrintWriter pw = new PrintWriter(sw);
-                pw.println();
-                record.getThrown().printStackTrace(pw);
-                pw.close();
-                throwable = sw.toString();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse logger config [" + loggerConfig + "]", e);
+        }
+        if(handlerCount == 0) {
+            return;
+        }
+        AsyncAccessLogger newLogger = builder.build();
+        newLogger.start();
+        this.logger = newLogger;
+    }
+
+    synchronized void stop() {
+        AsyncAccessLogger oldLogger = this.logger;
+        this.logger = null;
+        if(oldLogger != null) {
+            oldLogger.stop();
+        }
+        if(connection != null) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+
             }
-            return zdt.toString() + " " + record.getMessage();
+            connection = null;
+        }
+    }
+
+    /**
+     * Record a message exchange. Never blocks caller.
+     * @param startedAt start time in epoch millis
+     * @param txId transaction id of message
+     * @param source channel the message comes from
+     * @param operation one of CONSUME, REPLY and PUBLISH
+     * @param target consumer group or destination channel
+     * @param status status code
+     * @param requestSize size of received payload
+     * @param responseSize size of sent payload
+     */
+    public void log(long startedAt, String txId, String source, String operation, String target,
+                    int status, int requestSize, int responseSize) {
+        AsyncAccessLogger current = this.logger;
+        if(current == null) {
+            return;
         }
+        current.log(startedAt, txId, source, operation, target, status,
+                System.currentTimeMillis() - startedAt, requestSize, responseSize);
+    }
+
+    public boolean isEnabled() {
+        return logger != null;
     }
 
-    private class AccessLogRecord {
+    public long getDroppedCount() {
+        AsyncAccessLogger current = this.logger;
+        return current == null ? 0 : current.getDroppedCount();
     }
 }
@@ -47,6 +47,11 @@ public class ContainerContextProviderFactory implements ContextProviderFactory {
      */
     public static final String DEPLOY_CONTEXT_ROOT_PATH = "/env/deploy";
 
+    /**
+     * Logger config context. Exists only if logger file is in config home.
+     */
+    public static final String LOGGER_CONTEXT_PATH = "/env/logger";
+
     /**
      * Create ContextProvider
      * @param env Environment variables which will be used to create ContextProvider
@@ -68,6 +73,7 @@ public class ContainerContextProviderFactory implements ContextProviderFactory {
         private static final String PROPERTIES_FILE_NAME = "env.properties";
         private static final String CONTEXT_FILE_NAME = "context.xml";
         private static final String DEPLOY_FILE_NAME = "deploy.xml";
+        private static final String LOGGER_FILE_NAME = "logger.xml";
 
         private static final String SERVICE_HOME_CONTEXT_PATH = "/env/services";
         private static final String SERVICE_LIBS_DIR_NAME = "libs";
@@ -108,6 +114,7 @@ public class ContainerContextProviderFactory implements ContextProviderFactory {
 
             reloadContext(configHome + File.separator + CONTEXT_FILE_NAME);
             reloadDeploy(configHome + File.separator + DEPLOY_FILE_NAME);
+            loadLogger(configHome + File.separator + LOGGER_FILE_NAME);
 
             getContextTree().addContext(new Context(getContextTree(), SERVICE_HOME_CONTEXT_PATH));
             reloadServices(serviceHome);
@@ -148,6 +155,22 @@ public class ContainerContextProviderFactory implements ContextProviderFactory {
             }
         }
 
+        /**
+         * Add logger config to tree. Logger config is read once at container start.
+         *
+         * @param loggerFilePath xml logger file path
+         */
+        private void loadLogger(String loggerFilePath) {
+            File loggerFile = new File(loggerFilePath);
+            if (loggerFile.exists()) {
+                try {
+                    getContextTree().addContext(new Context(getContextTree(), LOGGER_CONTEXT_PATH, loggerFile.toURI().toURL()));
+                } catch (MalformedURLException ignored) {
+
+                }
+            }
+        }
+
         /**
          * Load service home to tree
          *
@@ -32,7 +32,16 @@ public class MessageChannelPublisherImpl implements MessageChannelPublisher {
 
     @Override
     public void publish(Map<String, String> headers, byte[] payload) throws IOException {
-        conn.publish(destination, headers, payload);
-        // todo AccessLogger.getInstance().log();
+        long startedAt = System.currentTimeMillis();
+        int status = AccessLogger.SUCCESS_STATUS;
+        try {
+            conn.publish(destination, headers, payload);
+        } catch (IOException e) {
+            status = AccessLogger.FAILURE_STATUS;
+            throw e;
+        } finally {
+            AccessLogger.getInstance().log(startedAt, headers == null ? null : headers.get("Tx-Id"), null,
+                    AccessLogger.PUBLISH_OPERATION, destination, status, 0, payload == null ? 0 : payload.length);
+        }
     }
 }
@@ -53,6 +53,9 @@ public class ServiceContainer {
     public void start() throws IOException {
         this.resourceManager = new ResourceManager(new EnvResourceContextProvider(provider));
         this.messageBusConnectionFactory  = new MessageBusConnectionFactory(new EnvMessageBusContextProvider(provider));
+        if(this.provider.hasData(ContainerContextProviderFactory.LOGGER_CONTEXT_PATH)) {
+            AccessLogger.getInstance().start(this.provider.getDataURL(ContainerContextProviderFactory.LOGGER_CONTEXT_PATH), messageBusConnectionFactory);
+        }
 
         Set<String> deployNames = this.provider.listChildNames("/env/deploy");
 
@@ -84,6 +87,7 @@ public class ServiceContainer {
             delegator.stop();
         }
         serviceExecutor.shutdown();
+        AccessLogger.getInstance().stop();
         try {
             this.provider.close();
         } catch (Exception ignored) {
@@ -16,6 +16,7 @@
 
 package io.pocat.service;
 
+import io.pocat.common.concurrent.VirtualThreads;
 import io.pocat.env.ContextProvider;
 import io.pocat.platform.messagebus.MessageBusConnection;
 import io.pocat.platform.messagebus.MessageDeliveryHandler;
@@ -23,6 +24,8 @@ import io.pocat.service.deploy.ConsumerGroupDescriptor;
 import io.pocat.service.deploy.DeploymentDescriptor;
 import io.pocat.service.deploy.OutboundChannelDescriptor;
 import io.pocat.service.deploy.ResourceDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URL;
@@ -32,6 +35,8 @@ import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 public class ServiceDeployer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceDeployer.class);
+
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("");
     private static final String SERVICE_HOME_CONTEXT_PATH = "/env/services";
     private ServiceContainer serviceContainer;
@@ -51,7 +56,7 @@ public class ServiceDeployer {
             Service service = (Service) serviceClass.getConstructor().newInstance();
             ServiceDelegator delegator = new ServiceDelegator(service);
 
-            ExecutorService executor = Executors.newFixedThreadPool(deployDesc.getMaxWorker());
+            ExecutorService executor = createExecutor(deployDesc);
             delegator.setExecutor(executor);
 
             MessageBusConnection messageBusConnection = serviceContainer.getMessageBusConnectionFactory().newConnection(executor);
@@ -85,27 +90,38 @@ public class ServiceDeployer {
                 }
 
                 MessageDeliveryHandler deliveryHandler = (msgSource, messageHeader, payload) -> {
-                    // todo AccessLogger.getInstance().log();
+                    long receivedAt = System.currentTimeMillis();
                     executor.execute(new Runnable() {
                         @Override
                         public void run() {
                             MessageExchangeImpl exchange = new MessageExchangeImpl(msgSource, messageHeader, payload, desc.isTapType());
+                            AccessLogger accessLogger = AccessLogger.getInstance();
+                            String txId = messageHeader.get("Tx-Id");
+                            int requestSize = payload == null ? 0 : payload.length;
 
+                            int status = AccessLogger.SUCCESS_STATUS;
                             try {
                                 delegator.delegateExchange(exchange);
                             } catch (ServiceException e) {
+                                status = AccessLogger.FAILURE_STATUS;
                                 e.printStackTrace();
                             }
+                            accessLogger.log(receivedAt, txId, msgSource, AccessLogger.CONSUME_OPERATION, consumerGroupName, status, requestSize, 0);
                             if(exchange.isSetReply()) {
+                                String replyTo = exchange.getRequestHeader("Reply-To");
+                                byte[] replyPayload = exchange.getReplyPayload();
+                                int replyStatus = AccessLogger.SUCCESS_STATUS;
                                 try {
                                     Map<String, String> replyHeaders = new HashMap<>(exchange.getReplyHeaders());
-                                    replyHeaders.put("Tx-Id", messageHeader.get("Tx-Id"));
+                                    replyHeaders.put("Tx-Id", txId);
                                     replyHeaders.put("Status-Code", String.valueOf(0));
-                                    messageBusConnection.publish(exchange.getRequestHeader("Reply-To"), replyHeaders, exchange.getReplyPayload());
+                                    messageBusConnection.publish(replyTo, replyHeaders, replyPayload);
                                 } catch (IOException e) {
+                                    replyStatus = AccessLogger.FAILURE_STATUS;
                                     e.printStackTrace();
                                 }
-                                // todo AccessLogger.getInstance().log();
+                                accessLogger.log(receivedAt, txId, msgSource, AccessLogger.REPLY_OPERATION, replyTo, replyStatus,
+                                        requestSize, replyPayload == null ? 0 : replyPayload.length);
                             }
                         }
                     });
@@ -122,6 +138,17 @@ public class ServiceDeployer {
         return null;
     }
 
+    private ExecutorService createExecutor(DeploymentDescriptor deployDesc) {
+        if(VirtualThreads.isVirtualMode(deployDesc.getThreadMode())) {
+            if(VirtualThreads.isSupported()) {
+                // Blocking service call does not hold a platform thread, so max-worker does not cap concurrency.
+                return VirtualThreads.newVirtualThreadPerTaskExecutor();
+            }
+            LOGGER.warn("Virtual thread is not supported on this JVM. Deploy [" + deployDesc.getName() + "] runs on platform threads.");
+        }
+        return Executors.newFixedThreadPool(deployDesc.getMaxWorker());
+    }
+
     private String updateVariables(String name, String serviceId, String serviceName) {
         String varName = name;
 
@@ -33,6 +33,7 @@ public class DeploymentDescriptor {
     private final List<OutboundChannelDescriptor> outboundChannelDescriptors = new ArrayList<>();
 
     private int maxWorker = Runtime.getRuntime().availableProcessors()*4;
+    private String threadMode = "platform";
 
     public DeploymentDescriptor(String name, String serviceName, String serviceClass) {
         this.name = name;
@@ -60,6 +61,14 @@ public class DeploymentDescriptor {
         this.maxWorker = maxWorker;
     }
 
+    public String getThreadMode() {
+        return threadMode;
+    }
+
+    public void setThreadMode(String threadMode) {
+        this.threadMode = threadMode;
+    }
+
     public List<ConsumerGroupDescriptor> getConsumerGroupDescriptors() {
         return consumerGroupDescriptors;
     }
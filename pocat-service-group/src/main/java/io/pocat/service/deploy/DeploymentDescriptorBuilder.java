@@ -39,6 +39,7 @@ public class DeploymentDescriptorBuilder {
     private static final String SERVICE_NAME_NODE_PATH = "/deploy/service-name";
     private static final String SERVICE_CLASS_NODE_PATH = "/deploy/service-class";
     private static final String MAX_WORKER_NODE_PATH = "/deploy/max-worker";
+    private static final String THREAD_MODE_NODE_PATH = "/deploy/thread-mode";
 
     private static final String INIT_PARAMS_NODE_PATH = "/deploy/init-params/init-param";
 
@@ -102,6 +103,11 @@ public class DeploymentDescriptorBuilder {
                 }
             }
 
+            String threadMode = (String) xPath.evaluate(THREAD_MODE_NODE_PATH, root, XPathConstants.STRING);
+            if(threadMode != null && !threadMode.isBlank()) {
+                descriptor.setThreadMode(threadMode.trim());
+            }
+
             addInitParams(descriptor, root);
             addConsumerGroup(descriptor, root);
             addResources(descriptor, root);